@@ -309,6 +309,73 @@ public class RunQA extends Task
         qaProcessor.getConfig().setIncludeToolOutput("true".equalsIgnoreCase(includeToolOutput));
     }
 
+    /**
+     * @param runToolsInProcess true to run the tools within the Ant VM rather than each in a new VM.
+     */
+    public void setRunToolsInProcess(final String runToolsInProcess)
+    {
+        qaProcessor.getConfig().setRunToolsInProcess("true".equalsIgnoreCase(runToolsInProcess));
+    }
+
+    /**
+     * @param useDaemon true to run the tools using a long-running daemon, which keeps them loaded between builds.
+     */
+    public void setUseDaemon(final String useDaemon)
+    {
+        qaProcessor.getConfig().setUseDaemon("true".equalsIgnoreCase(useDaemon));
+    }
+
+    /**
+     * @param incremental true to only run Checkstyle and PMD on the source files which have changed since the previous build.
+     */
+    public void setIncremental(final String incremental)
+    {
+        qaProcessor.getConfig().setIncremental("true".equalsIgnoreCase(incremental));
+    }
+
+    /**
+     * @param linkWorkspace true to link collected files into the temporary directory rather than copying them.
+     */
+    public void setLinkWorkspace(final String linkWorkspace)
+    {
+        qaProcessor.getConfig().setLinkWorkspace("true".equalsIgnoreCase(linkWorkspace));
+    }
+
+    /**
+     * Sanity4J's files are kept in a "sanity4j-workspace" subdirectory, which is cleaned up
+     * after each build. Nothing else in the directory is modified.
+     *
+     * @param workspaceDir a directory which is kept between builds to hold the collected files.
+     */
+    public void setWorkspaceDir(final String workspaceDir)
+    {
+        qaProcessor.getConfig().setWorkspaceDir(workspaceDir);
+    }
+
+    /**
+     * @param prewarmJaxbContexts true to create the JAXB contexts used to read the tool results at the start of the run.
+     */
+    public void setPrewarmJaxbContexts(final String prewarmJaxbContexts)
+    {
+        qaProcessor.getConfig().setPrewarmJaxbContexts("true".equalsIgnoreCase(prewarmJaxbContexts));
+    }
+
+    /**
+     * @param diagnosticStore where to hold the diagnostics: "heap", "direct" or "mapped", or unset to hold them as objects.
+     */
+    public void setDiagnosticStore(final String diagnosticStore)
+    {
+        qaProcessor.getConfig().setDiagnosticStore(diagnosticStore);
+    }
+
+    /**
+     * @param resultCacheDir the directory used to cache tool results between incremental builds.
+     */
+    public void setResultCacheDir(final String resultCacheDir)
+    {
+        qaProcessor.getConfig().setResultCacheDir(resultCacheDir);
+    }
+
     /**
      * Sets the maximum number of threads to use (default is 1).
      * 
@@ -319,6 +386,16 @@ public class RunQA extends Task
         qaProcessor.getConfig().setNumThreads(numThreads);
     }
 
+    /**
+     * Sets the number of shards to split the sources into for Checkstyle and PMD (default is 1).
+     * 
+     * @param toolShards the number of shards.
+     */
+    public void setToolShards(final int toolShards)
+    {
+        qaProcessor.getConfig().setToolShards(toolShards);
+    }
+
     /**
      * Executes this task, invoking the {@link QAProcessor} which has already been configured by Ant using the setters
      * in this Task.
@@ -334,8 +411,17 @@ public class RunQA extends Task
         QaLogger.getInstance().debug("Java Runtime:             [" + qaProcessor.getConfig().getJavaRuntime() + "]");
         QaLogger.getInstance().debug("Java Args:                [" + qaProcessor.getConfig().getJavaArgs() + "]");
         QaLogger.getInstance().debug("Number of Threads:        [" + qaProcessor.getConfig().getNumThreads() + "]");
+        QaLogger.getInstance().debug("Tool Shards:              [" + qaProcessor.getConfig().getToolShards() + "]");
         QaLogger.getInstance().debug("Products Directory:       [" + qaProcessor.getConfig().getProductsDir() + "]");
         QaLogger.getInstance().debug("Report Directory:         [" + qaProcessor.getConfig().getReportDir() + "]");
+        QaLogger.getInstance().debug("Run Tools In Process:     [" + qaProcessor.getConfig().isRunToolsInProcess() + "]");
+        QaLogger.getInstance().debug("Use Daemon:               [" + qaProcessor.getConfig().isUseDaemon() + "]");
+        QaLogger.getInstance().debug("Incremental:              [" + qaProcessor.getConfig().isIncremental() + "]");
+        QaLogger.getInstance().debug("Link Workspace:           [" + qaProcessor.getConfig().isLinkWorkspace() + "]");
+        QaLogger.getInstance().debug("Workspace Directory:      [" + qaProcessor.getConfig().getWorkspaceDir() + "]");
+        QaLogger.getInstance().debug("Result Cache Directory:   [" + qaProcessor.getConfig().getResultCacheDir() + "]");
+        QaLogger.getInstance().debug("Prewarm JAXB Contexts:    [" + qaProcessor.getConfig().isPrewarmJaxbContexts() + "]");
+        QaLogger.getInstance().debug("Diagnostic Store:         [" + qaProcessor.getConfig().getDiagnosticStore() + "]");
         QaLogger.getInstance().debug("Summary DataFile:         [" + qaProcessor.getConfig().getSummaryDataFile() + "]");
         
         try
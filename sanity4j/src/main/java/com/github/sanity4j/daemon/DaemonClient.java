@@ -0,0 +1,392 @@
+package com.github.sanity4j.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.github.sanity4j.util.JavaCommandLine;
+import com.github.sanity4j.util.QAException;
+import com.github.sanity4j.util.QaLogger;
+import com.github.sanity4j.util.StringUtil;
+import com.github.sanity4j.workflow.QAConfig;
+
+/**
+ * DaemonClient runs tools using a {@link ToolDaemon}, starting a new daemon if there is
+ * no compatible daemon running. A daemon is only compatible with clients in the working
+ * directory it was started in, so that the tools resolve relative paths as they would
+ * if they were run by the client.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class DaemonClient
+{
+    /** How long to wait for a new daemon to start, in milliseconds. */
+    private static final int START_TIMEOUT = 30000;
+
+    /** How long to wait between checks for a new daemon having started, in milliseconds. */
+    private static final int START_POLL_INTERVAL = 100;
+
+    /** Used to stop threads in this VM from starting daemons at the same time. */
+    private static final Object START_LOCK = new Object();
+
+    /** The directory containing the daemon state files. */
+    private final File stateDir;
+
+    /** The java runtime to start daemons with. */
+    private final String javaRuntime;
+
+    /** The java arguments to start daemons with. */
+    private final String javaArgs;
+
+    /** The working directory of the client, which the tools must be run in. */
+    private final String workingDir;
+
+    /** The fingerprint of a compatible daemon. */
+    private final String fingerprint;
+
+    /**
+     * Creates a DaemonClient.
+     *
+     * @param config the configuration for the current run.
+     */
+    public DaemonClient(final QAConfig config)
+    {
+        this(DaemonProtocol.getDefaultStateDir(), config.getJavaRuntime(), config.getJavaArgs());
+    }
+
+    /**
+     * Creates a DaemonClient.
+     *
+     * @param stateDir the directory containing the daemon state files.
+     * @param javaRuntime the java runtime to start daemons with.
+     * @param javaArgs the java arguments to start daemons with.
+     */
+    DaemonClient(final File stateDir, final String javaRuntime, final String javaArgs)
+    {
+        this.stateDir = stateDir;
+        this.javaRuntime = javaRuntime;
+        this.javaArgs = javaArgs == null ? "" : javaArgs;
+        this.workingDir = DaemonProtocol.getWorkingDirectory();
+        this.fingerprint = DaemonProtocol.getFingerprint(javaRuntime, this.javaArgs, workingDir);
+    }
+
+    /**
+     * Runs a tool using the daemon, given the command line which would have been used to run it as an external process.
+     *
+     * @param cmdLine the command line to run.
+     * @param classpath the class path for the tool.
+     * @param out where to pipe the tool's System.out to.
+     * @param err where to pipe the tool's System.err to.
+     * @return the exit code of the tool.
+     *
+     * @throws IOException if the daemon could not be contacted, or refused the request. The tool will not have been run.
+     */
+    public int runCommandLine(final String cmdLine, final List<String> classpath,
+                              final OutputStream out, final OutputStream err) throws IOException
+    {
+        JavaCommandLine javaCommandLine = JavaCommandLine.parse(cmdLine);
+        QaLogger.getInstance().info("Daemon: " + cmdLine);
+
+        List<String> properties = new ArrayList<String>();
+
+        for (Map.Entry<String, String> entry : javaCommandLine.getSystemProperties().entrySet())
+        {
+            properties.add(entry.getKey());
+            properties.add(entry.getValue());
+        }
+
+        Socket socket = connect();
+
+        try
+        {
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            DaemonProtocol.writeString(request, DaemonProtocol.COMMAND_RUN);
+            DaemonProtocol.writeString(request, workingDir);
+            DaemonProtocol.writeStrings(request, classpath);
+            DaemonProtocol.writeString(request, javaCommandLine.getMainClass());
+            DaemonProtocol.writeStrings(request, Arrays.asList(javaCommandLine.getArguments()));
+            DaemonProtocol.writeStrings(request, properties);
+            request.flush();
+
+            if (response.readUnsignedByte() != DaemonProtocol.ACCEPTED)
+            {
+                throw new IOException("Request rejected by daemon " + fingerprint);
+            }
+
+            // From here on, the tool is running, so failures must not be reported as the daemon being unavailable.
+            try
+            {
+                return readResponse(response, out, err);
+            }
+            catch (IOException e)
+            {
+                throw new QAException("Lost connection to daemon " + fingerprint + " while running " + javaCommandLine.getMainClass(), e);
+            }
+        }
+        finally
+        {
+            DaemonProtocol.close(socket);
+        }
+    }
+
+    /**
+     * Asks the daemon to stop, if it is running.
+     */
+    public void stopDaemon()
+    {
+        Socket socket = null;
+
+        try
+        {
+            socket = connectToRunningDaemon();
+
+            if (socket != null)
+            {
+                DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+                DaemonProtocol.writeString(request, DaemonProtocol.COMMAND_STOP);
+                request.flush();
+                socket.getInputStream().read();
+            }
+        }
+        catch (IOException e)
+        {
+            QaLogger.getInstance().debug("Unable to stop daemon " + fingerprint, e);
+        }
+        finally
+        {
+            DaemonProtocol.close(socket);
+        }
+    }
+
+    /**
+     * Reads the tool's output and exit code from the daemon.
+     *
+     * @param response the stream to read the response from.
+     * @param out where to pipe the tool's System.out to.
+     * @param err where to pipe the tool's System.err to.
+     * @return the exit code of the tool.
+     * @throws IOException if there is an error reading the response.
+     */
+    private int readResponse(final DataInputStream response, final OutputStream out, final OutputStream err) throws IOException
+    {
+        byte[] buffer = new byte[0];
+
+        while (true)
+        {
+            int frameType = response.read();
+
+            switch (frameType)
+            {
+                case DaemonProtocol.FRAME_STDOUT:
+                case DaemonProtocol.FRAME_STDERR:
+                {
+                    int length = response.readInt();
+
+                    if (buffer.length < length)
+                    {
+                        buffer = new byte[length];
+                    }
+
+                    response.readFully(buffer, 0, length);
+                    (frameType == DaemonProtocol.FRAME_STDOUT ? out : err).write(buffer, 0, length);
+                    break;
+                }
+                case DaemonProtocol.FRAME_EXIT:
+                    return response.readInt();
+
+                case DaemonProtocol.FRAME_ERROR:
+                    throw new QAException("Daemon " + fingerprint + " failed to run tool: " + DaemonProtocol.readString(response));
+
+                case -1:
+                    throw new EOFException("Unexpected end of response");
+
+                default:
+                    throw new IOException("Unknown frame type " + frameType);
+            }
+        }
+    }
+
+    /**
+     * Connects to a compatible daemon, starting one if necessary.
+     *
+     * @return a socket connected to the daemon, with the request header already written.
+     * @throws IOException if a daemon could not be contacted.
+     */
+    private Socket connect() throws IOException
+    {
+        Socket socket = connectToRunningDaemon();
+
+        if (socket != null)
+        {
+            return socket;
+        }
+
+        synchronized (START_LOCK)
+        {
+            stateDir.mkdirs();
+            RandomAccessFile lockFile = new RandomAccessFile(new File(stateDir, fingerprint + ".lock"), "rw");
+
+            try
+            {
+                // Another VM may also be starting a daemon
+                FileLock lock = lockFile.getChannel().lock();
+
+                try
+                {
+                    socket = connectToRunningDaemon();
+
+                    if (socket == null)
+                    {
+                        startDaemon();
+                        socket = connectToRunningDaemon();
+                    }
+                }
+                finally
+                {
+                    lock.release();
+                }
+            }
+            finally
+            {
+                DaemonProtocol.close(lockFile);
+            }
+        }
+
+        if (socket == null)
+        {
+            throw new IOException("Unable to connect to daemon " + fingerprint);
+        }
+
+        return socket;
+    }
+
+    /**
+     * Connects to an already running compatible daemon.
+     *
+     * @return a socket connected to the daemon, with the request header already written,
+     *         or null if there is no daemon running.
+     */
+    private Socket connectToRunningDaemon()
+    {
+        File stateFile = DaemonProtocol.getStateFile(stateDir, fingerprint);
+
+        if (!stateFile.exists())
+        {
+            return null;
+        }
+
+        Socket socket = null;
+
+        try
+        {
+            Properties state = DaemonProtocol.readState(stateFile);
+            int port = Integer.parseInt(state.getProperty(DaemonProtocol.PROPERTY_PORT));
+
+            socket = new Socket(InetAddress.getByName(null), port);
+
+            DataOutputStream header = new DataOutputStream(socket.getOutputStream());
+            DaemonProtocol.writeString(header, DaemonProtocol.MAGIC);
+            DaemonProtocol.writeString(header, state.getProperty(DaemonProtocol.PROPERTY_TOKEN));
+            DaemonProtocol.writeString(header, fingerprint);
+
+            return socket;
+        }
+        catch (Exception e)
+        {
+            // The daemon has died without cleaning up - remove the stale state so that a new daemon is started
+            QaLogger.getInstance().debug("Removing stale daemon state " + stateFile);
+            DaemonProtocol.close(socket);
+            stateFile.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Starts a new daemon, and waits for it to advertise itself.
+     *
+     * @throws IOException if the daemon could not be started.
+     */
+    private void startDaemon() throws IOException
+    {
+        File codeLocation = DaemonProtocol.getCodeLocation();
+
+        if (codeLocation == null)
+        {
+            throw new IOException("Unable to determine Sanity4J class path");
+        }
+
+        List<String> command = new ArrayList<String>();
+        command.add(javaRuntime);
+
+        if (!StringUtil.empty(javaArgs))
+        {
+            command.addAll(Arrays.asList(JavaCommandLine.splitArguments(javaArgs)));
+        }
+
+        command.add("-cp");
+        command.add(codeLocation.getPath());
+        command.add(ToolDaemon.class.getName());
+        command.add(stateDir.getPath());
+        command.add(fingerprint);
+        command.add(String.valueOf(ToolDaemon.DEFAULT_IDLE_TIMEOUT));
+
+        QaLogger.getInstance().info("Starting Sanity4J daemon " + fingerprint);
+
+        File logFile = new File(stateDir, fingerprint + ".log");
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(new File(workingDir));
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.appendTo(logFile));
+        Process process = builder.start();
+
+        File stateFile = DaemonProtocol.getStateFile(stateDir, fingerprint);
+
+        for (int waited = 0; waited < START_TIMEOUT; waited += START_POLL_INTERVAL)
+        {
+            if (stateFile.exists())
+            {
+                return;
+            }
+
+            try
+            {
+                process.exitValue();
+                throw new IOException("Daemon failed to start, see " + logFile);
+            }
+            catch (IllegalThreadStateException stillRunning)
+            {
+                // Still starting
+            }
+
+            try
+            {
+                Thread.sleep(START_POLL_INTERVAL);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for daemon to start", e);
+            }
+        }
+
+        process.destroy();
+        throw new IOException("Timed out waiting for daemon to start, see " + logFile);
+    }
+}
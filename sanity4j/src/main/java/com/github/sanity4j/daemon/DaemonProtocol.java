@@ -0,0 +1,309 @@
+package com.github.sanity4j.daemon;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import com.github.sanity4j.workflow.QAProcessor;
+
+/**
+ * DaemonProtocol contains the details shared by the {@link ToolDaemon} and the {@link DaemonClient}:
+ * where the daemon's state file is kept, how daemons are fingerprinted, and how requests and
+ * responses are encoded.
+ *
+ * <p>A request consists of a header (magic, token, fingerprint, command), followed for
+ * {@link #COMMAND_RUN} by the client's working directory, the tool class path, main class,
+ * arguments and system properties.
+ * The daemon responds with {@link #ACCEPTED} or {@link #REJECTED}, then a series of frames,
+ * each a type byte followed by the frame data, ending with an {@link #FRAME_EXIT} or
+ * {@link #FRAME_ERROR} frame.</p>
+ *
+ * <p>The daemon is run with only the Sanity4J jar on its class path, so this package must not
+ * use any classes which depend on Sanity4J's third party libraries.</p>
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+final class DaemonProtocol
+{
+    /** Identifies Sanity4J daemon requests. */
+    static final String MAGIC = "sanity4j-daemon";
+
+    /** Command to run a tool. */
+    static final String COMMAND_RUN = "run";
+
+    /** Command to stop the daemon. */
+    static final String COMMAND_STOP = "stop";
+
+    /** Response sent when a request has been accepted. */
+    static final int ACCEPTED = 0;
+
+    /** Response sent when a request has been rejected. */
+    static final int REJECTED = 1;
+
+    /** Frame containing data written to stdout by the tool. */
+    static final int FRAME_STDOUT = 1;
+
+    /** Frame containing data written to stderr by the tool. */
+    static final int FRAME_STDERR = 2;
+
+    /** Frame containing the tool's exit code. */
+    static final int FRAME_EXIT = 3;
+
+    /** Frame containing a message describing why the tool could not be run. */
+    static final int FRAME_ERROR = 4;
+
+    /** State file property holding the daemon's port. */
+    static final String PROPERTY_PORT = "port";
+
+    /** State file property holding the token clients must present. */
+    static final String PROPERTY_TOKEN = "token";
+
+    /** The character set used to encode strings. */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** No instance methods here. */
+    private DaemonProtocol()
+    {
+    }
+
+    /**
+     * @return the default directory containing the daemon state files.
+     */
+    static File getDefaultStateDir()
+    {
+        return new File(System.getProperty("user.home"), ".sanity4j" + File.separatorChar + "daemon");
+    }
+
+    /**
+     * Returns the state file for the daemon with the given fingerprint.
+     *
+     * @param stateDir the directory containing the daemon state files.
+     * @param fingerprint the daemon fingerprint.
+     * @return the daemon's state file.
+     */
+    static File getStateFile(final File stateDir, final String fingerprint)
+    {
+        return new File(stateDir, fingerprint + ".properties");
+    }
+
+    /**
+     * Calculates a fingerprint identifying a daemon which is compatible with the current Sanity4J installation.
+     * The fingerprint changes if Sanity4J is upgraded or rebuilt, if a different VM configuration is requested,
+     * or for a different working directory, as the tools resolve relative paths against the working directory.
+     *
+     * @param javaRuntime the java runtime the daemon is run with.
+     * @param javaArgs the java arguments the daemon is run with.
+     * @param workingDir the working directory the daemon is run in, see {@link #getWorkingDirectory()}.
+     * @return the fingerprint.
+     */
+    static String getFingerprint(final String javaRuntime, final String javaArgs, final String workingDir)
+    {
+        CRC32 crc = new CRC32();
+        crc.update((getCodeStamp() + '|' + javaRuntime + '|' + javaArgs + '|' + workingDir).getBytes(UTF8));
+
+        return QAProcessor.QA_VERSION + '-' + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * @return the absolute path of the current VM's working directory.
+     */
+    static String getWorkingDirectory()
+    {
+        return new File(System.getProperty("user.dir")).getAbsolutePath();
+    }
+
+    /**
+     * @return a string which changes whenever the Sanity4J code is replaced.
+     */
+    static String getCodeStamp()
+    {
+        File location = getCodeLocation();
+
+        if (location == null)
+        {
+            return "unknown";
+        }
+
+        return location.getPath() + '|' + location.length() + '|' + location.lastModified();
+    }
+
+    /**
+     * @return the jar or directory which Sanity4J was loaded from, or null if unknown.
+     */
+    static File getCodeLocation()
+    {
+        CodeSource codeSource = DaemonProtocol.class.getProtectionDomain().getCodeSource();
+
+        if (codeSource == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return new File(codeSource.getLocation().toURI());
+        }
+        catch (URISyntaxException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a daemon state file.
+     *
+     * @param stateFile the file to read.
+     * @return the daemon state.
+     * @throws IOException if the file could not be read.
+     */
+    static Properties readState(final File stateFile) throws IOException
+    {
+        Properties state = new Properties();
+        InputStream in = new FileInputStream(stateFile);
+
+        try
+        {
+            state.load(in);
+        }
+        finally
+        {
+            close(in);
+        }
+
+        return state;
+    }
+
+    /**
+     * Writes a daemon state file, which is only readable by the current user as it contains the daemon token.
+     *
+     * @param stateFile the file to write.
+     * @param state the daemon state.
+     * @throws IOException if the file could not be written.
+     */
+    static void writeState(final File stateFile, final Properties state) throws IOException
+    {
+        File tempFile = new File(stateFile.getPath() + ".tmp");
+        tempFile.delete();
+        tempFile.createNewFile();
+        tempFile.setReadable(false, false);
+        tempFile.setReadable(true, true);
+
+        OutputStream out = new FileOutputStream(tempFile);
+
+        try
+        {
+            state.store(out, "Sanity4J daemon");
+        }
+        finally
+        {
+            close(out);
+        }
+
+        // Rename so that clients never see a partially written file.
+        stateFile.delete();
+
+        if (!tempFile.renameTo(stateFile))
+        {
+            throw new IOException("Unable to create " + stateFile);
+        }
+    }
+
+    /**
+     * Writes a string.
+     *
+     * @param out the stream to write to.
+     * @param string the string to write.
+     * @throws IOException if there is an error writing to the stream.
+     */
+    static void writeString(final DataOutputStream out, final String string) throws IOException
+    {
+        byte[] bytes = string.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in the stream to read from.
+     * @return the string read.
+     * @throws IOException if there is an error reading from the stream.
+     */
+    static String readString(final DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Writes a list of strings.
+     *
+     * @param out the stream to write to.
+     * @param strings the strings to write.
+     * @throws IOException if there is an error writing to the stream.
+     */
+    static void writeStrings(final DataOutputStream out, final List<String> strings) throws IOException
+    {
+        out.writeInt(strings.size());
+
+        for (String string : strings)
+        {
+            writeString(out, string);
+        }
+    }
+
+    /**
+     * Reads a list of strings written by {@link #writeStrings(DataOutputStream, List)}.
+     *
+     * @param in the stream to read from.
+     * @return the strings read.
+     * @throws IOException if there is an error reading from the stream.
+     */
+    static List<String> readStrings(final DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+        List<String> strings = new ArrayList<String>(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            strings.add(readString(in));
+        }
+
+        return strings;
+    }
+
+    /**
+     * Closes a stream, ignoring any errors.
+     *
+     * @param closeable the stream to close, may be null.
+     */
+    static void close(final Closeable closeable)
+    {
+        if (closeable != null)
+        {
+            try
+            {
+                closeable.close();
+            }
+            catch (IOException ignored)
+            {
+                // Nothing more can be done
+            }
+        }
+    }
+}
@@ -0,0 +1,581 @@
+package com.github.sanity4j.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.sanity4j.util.ChildFirstClassLoader;
+import com.github.sanity4j.util.InProcessJavaRunner;
+import com.github.sanity4j.util.QaLogger;
+
+/**
+ * <p>ToolDaemon is a long-running process which runs the analysis tools on behalf of
+ * {@link DaemonClient}s, so that the tools' classes stay loaded and JIT-compiled between runs.
+ * Each tool is run in-process by {@link InProcessJavaRunner}, using class loaders which are
+ * kept for reuse by later requests for the same tool. Any state which a tool caches statically
+ * (e.g. parsed rule sets and configurations) is therefore also kept between runs.</p>
+ *
+ * <p>The daemon runs in the working directory of the client which started it, and rejects requests
+ * from clients in any other working directory, as the tools resolve relative paths against it.
+ * A client whose request is rejected runs the tool itself.</p>
+ *
+ * <p>A request's system properties are only set while its tool is running. As they are shared by
+ * every request, a request whose properties conflict with those of a request which is already
+ * running is rejected, and the client then runs the tool itself.</p>
+ *
+ * <p>The daemon listens on a loopback socket, and advertises its port and an access token
+ * in a state file which is only readable by the current user. The daemon stops:</p>
+ * <ul>
+ *   <li>when it has been idle for longer than its idle timeout;</li>
+ *   <li>when the Sanity4J code it was started from is replaced, or its state file is deleted;</li>
+ *   <li>when the heap is still mostly full after its cached class loaders have been discarded;</li>
+ *   <li>when asked to by a client.</li>
+ * </ul>
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class ToolDaemon
+{
+    /** The default idle timeout, in minutes. */
+    public static final int DEFAULT_IDLE_TIMEOUT = 30;
+
+    /** How often the daemon checks whether it should stop, in milliseconds. */
+    private static final int CHECK_INTERVAL = 5000;
+
+    /** How often the daemon checks whether the remaining requests have completed when stopping, in milliseconds. */
+    private static final int STOP_POLL_INTERVAL = 100;
+
+    /** The fraction of the maximum heap which may be in use after a request before the daemon recycles itself. */
+    private static final double MAX_HEAP_USAGE = 0.75;
+
+    /** The number of milliseconds in a minute. */
+    private static final long MILLIS_PER_MINUTE = 60000L;
+
+    /** The number of bits in the access token. */
+    private static final int TOKEN_BITS = 130;
+
+    /** The radix used to encode the access token. */
+    private static final int TOKEN_RADIX = 32;
+
+    /** The fingerprint of this daemon. */
+    private final String fingerprint;
+
+    /** The state file used to advertise this daemon. */
+    private final File stateFile;
+
+    /** How long the daemon may be idle for before it stops, in milliseconds. */
+    private final long idleTimeout;
+
+    /** The code stamp when the daemon was started, used to detect when Sanity4J has been replaced. */
+    private final String codeStamp = DaemonProtocol.getCodeStamp();
+
+    /** The working directory of the daemon, which clients must share. */
+    private final String workingDir = DaemonProtocol.getWorkingDirectory();
+
+    /** Whether the cached class loaders have been discarded because the heap was full. */
+    private volatile boolean classLoadersDiscarded;
+
+    /** The token which clients must present. */
+    private final String token = new BigInteger(TOKEN_BITS, new SecureRandom()).toString(TOKEN_RADIX);
+
+    /** Idle class loaders, keyed by tool class path. A class loader is only used by one request at a time. */
+    private final Map<List<String>, LinkedList<ChildFirstClassLoader>> classLoaders = new HashMap<List<String>, LinkedList<ChildFirstClassLoader>>();
+
+    /** The number of requests currently being handled. */
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    /** The time the last request completed. */
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    /** Set when the daemon should stop accepting requests. */
+    private volatile boolean stopping;
+
+    /** The socket the daemon accepts requests on. */
+    private ServerSocket server;
+
+    /**
+     * Creates a ToolDaemon.
+     *
+     * @param stateDir the directory to write the state file to.
+     * @param fingerprint the fingerprint of this daemon.
+     * @param idleTimeout how long the daemon may be idle for before it stops, in milliseconds.
+     */
+    ToolDaemon(final File stateDir, final String fingerprint, final long idleTimeout)
+    {
+        this.fingerprint = fingerprint;
+        this.stateFile = DaemonProtocol.getStateFile(stateDir, fingerprint);
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Starts a daemon.
+     *
+     * @param args the state directory, the daemon fingerprint and the idle timeout in minutes.
+     */
+    public static void main(final String[] args)
+    {
+        if (args.length != 3)
+        {
+            System.err.println("Usage: ToolDaemon <state dir> <fingerprint> <idle timeout (minutes)>");
+            System.exit(1);
+        }
+
+        try
+        {
+            ToolDaemon daemon = new ToolDaemon(new File(args[0]), args[1], Long.parseLong(args[2]) * MILLIS_PER_MINUTE);
+            daemon.serve();
+            System.exit(0);
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Accepts and handles requests until the daemon stops.
+     *
+     * @throws IOException if the daemon could not be started.
+     */
+    void serve() throws IOException
+    {
+        if (!InProcessJavaRunner.isAvailable())
+        {
+            throw new IOException("Tools can not be run in-process");
+        }
+
+        server = new ServerSocket(0, 0, InetAddress.getByName(null));
+        server.setSoTimeout(CHECK_INTERVAL);
+
+        try
+        {
+            Properties state = new Properties();
+            state.setProperty(DaemonProtocol.PROPERTY_PORT, String.valueOf(server.getLocalPort()));
+            state.setProperty(DaemonProtocol.PROPERTY_TOKEN, token);
+
+            stateFile.getParentFile().mkdirs();
+            DaemonProtocol.writeState(stateFile, state);
+            QaLogger.getInstance().info("Sanity4J daemon " + fingerprint + " listening on port " + server.getLocalPort());
+
+            while (!stopping)
+            {
+                try
+                {
+                    final Socket socket = server.accept();
+                    activeRequests.incrementAndGet();
+
+                    Thread handler = new Thread("sanity4j-daemon-request")
+                    {
+                        @Override
+                        public void run()
+                        {
+                            handle(socket);
+                        }
+                    };
+
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+                catch (SocketTimeoutException e)
+                {
+                    checkStop();
+                }
+                catch (SocketException e)
+                {
+                    // The socket is closed when the daemon is stopped
+                    if (!stopping)
+                    {
+                        throw e;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            stateFile.delete();
+            DaemonProtocol.close(server);
+        }
+
+        // Let any requests which are still running complete
+        while (activeRequests.get() > 0)
+        {
+            try
+            {
+                Thread.sleep(STOP_POLL_INTERVAL);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        discardClassLoaders();
+        QaLogger.getInstance().info("Sanity4J daemon " + fingerprint + " stopped");
+    }
+
+    /**
+     * Determines whether the daemon should stop, because it is idle or stale.
+     */
+    private void checkStop()
+    {
+        if (!stateFile.exists())
+        {
+            stop("state file deleted");
+        }
+        else if (!codeStamp.equals(DaemonProtocol.getCodeStamp()))
+        {
+            stop("Sanity4J has been replaced");
+        }
+        else if (activeRequests.get() == 0 && System.currentTimeMillis() - lastActivity > idleTimeout)
+        {
+            stop("idle timeout");
+        }
+    }
+
+    /**
+     * Stops the daemon from accepting any more requests.
+     *
+     * @param reason the reason the daemon is stopping.
+     */
+    private void stop(final String reason)
+    {
+        if (!stopping)
+        {
+            QaLogger.getInstance().info("Stopping Sanity4J daemon: " + reason);
+            stopping = true;
+            DaemonProtocol.close(server);
+        }
+    }
+
+    /**
+     * Handles a single request.
+     *
+     * @param socket the socket the request was received on.
+     */
+    private void handle(final Socket socket)
+    {
+        DataOutputStream out = null;
+
+        try
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            String magic = DaemonProtocol.readString(in);
+            String requestToken = DaemonProtocol.readString(in);
+            String requestFingerprint = DaemonProtocol.readString(in);
+            String command = DaemonProtocol.readString(in);
+
+            if (!DaemonProtocol.MAGIC.equals(magic) || !token.equals(requestToken) || stopping)
+            {
+                out.writeByte(DaemonProtocol.REJECTED);
+            }
+            else if (!fingerprint.equals(requestFingerprint) || DaemonProtocol.COMMAND_STOP.equals(command))
+            {
+                out.writeByte(DaemonProtocol.REJECTED);
+                stop("requested by client");
+            }
+            else if (!workingDir.equals(DaemonProtocol.readString(in)))
+            {
+                // Relative paths in the request would be resolved against the wrong directory
+                QaLogger.getInstance().debug("Rejecting request from a client in a different working directory");
+                out.writeByte(DaemonProtocol.REJECTED);
+            }
+            else
+            {
+                List<String> classpath = DaemonProtocol.readStrings(in);
+                String mainClass = DaemonProtocol.readString(in);
+                List<String> args = DaemonProtocol.readStrings(in);
+                Map<String, String> systemProperties = toMap(DaemonProtocol.readStrings(in));
+
+                // System properties are shared by all requests, so a request which needs different values
+                // to a request which is already running is refused, and the client runs the tool itself.
+                try
+                {
+                    InProcessJavaRunner.acquireSystemProperties(systemProperties);
+                }
+                catch (InProcessJavaRunner.UnavailableException e)
+                {
+                    QaLogger.getInstance().debug("Rejecting request for " + mainClass + ": " + e.getMessage());
+                    out.writeByte(DaemonProtocol.REJECTED);
+                    return;
+                }
+
+                try
+                {
+                    out.writeByte(DaemonProtocol.ACCEPTED);
+                    out.flush();
+
+                    run(classpath, mainClass, args, out);
+                }
+                finally
+                {
+                    InProcessJavaRunner.releaseSystemProperties(systemProperties);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            QaLogger.getInstance().debug("Failed to handle request", e);
+        }
+        finally
+        {
+            DaemonProtocol.close(out);
+            DaemonProtocol.close(socket);
+
+            lastActivity = System.currentTimeMillis();
+            activeRequests.decrementAndGet();
+            checkMemory();
+        }
+    }
+
+    /**
+     * Converts the system properties sent by a client to a map.
+     *
+     * @param properties the system properties, as alternating keys and values.
+     * @return the system properties, keyed by name.
+     */
+    private static Map<String, String> toMap(final List<String> properties)
+    {
+        Map<String, String> systemProperties = new HashMap<String, String>();
+
+        for (int i = 0; i + 1 < properties.size(); i += 2)
+        {
+            systemProperties.put(properties.get(i), properties.get(i + 1));
+        }
+
+        return systemProperties;
+    }
+
+    /**
+     * Runs a tool for a client, sending the tool's output and exit code back to the client.
+     * The tool's system properties must already have been set.
+     *
+     * @param classpath the tool's class path.
+     * @param mainClass the tool's main class.
+     * @param args the tool arguments.
+     * @param out the stream to send the response to.
+     * @throws IOException if there is an error sending the response.
+     */
+    private void run(final List<String> classpath, final String mainClass, final List<String> args,
+                     final DataOutputStream out) throws IOException
+    {
+        String[] argArray = args.toArray(new String[args.size()]);
+
+        ChildFirstClassLoader classLoader = borrowClassLoader(classpath);
+        int exitCode;
+
+        try
+        {
+            exitCode = InProcessJavaRunner.runMain(classLoader, mainClass, argArray,
+                                                   new FrameOutputStream(out, DaemonProtocol.FRAME_STDOUT),
+                                                   new FrameOutputStream(out, DaemonProtocol.FRAME_STDERR));
+        }
+        catch (RuntimeException e)
+        {
+            synchronized (out)
+            {
+                out.writeByte(DaemonProtocol.FRAME_ERROR);
+                DaemonProtocol.writeString(out, String.valueOf(e.getMessage()));
+                out.flush();
+            }
+
+            DaemonProtocol.close(classLoader);
+            return;
+        }
+
+        returnClassLoader(classpath, classLoader);
+
+        synchronized (out)
+        {
+            out.writeByte(DaemonProtocol.FRAME_EXIT);
+            out.writeInt(exitCode);
+            out.flush();
+        }
+    }
+
+    /**
+     * Takes an idle class loader for the given class path, creating a new one if none are idle.
+     *
+     * @param classpath the class path.
+     * @return a class loader for the class path.
+     */
+    private ChildFirstClassLoader borrowClassLoader(final List<String> classpath)
+    {
+        synchronized (classLoaders)
+        {
+            LinkedList<ChildFirstClassLoader> idle = classLoaders.get(classpath);
+
+            if (idle != null && !idle.isEmpty())
+            {
+                return idle.removeFirst();
+            }
+        }
+
+        return InProcessJavaRunner.createClassLoader(classpath);
+    }
+
+    /**
+     * Makes a class loader available for reuse by later requests.
+     *
+     * @param classpath the class loader's class path.
+     * @param classLoader the class loader.
+     */
+    private void returnClassLoader(final List<String> classpath, final ChildFirstClassLoader classLoader)
+    {
+        synchronized (classLoaders)
+        {
+            LinkedList<ChildFirstClassLoader> idle = classLoaders.get(classpath);
+
+            if (idle == null)
+            {
+                idle = new LinkedList<ChildFirstClassLoader>();
+                classLoaders.put(new ArrayList<String>(classpath), idle);
+            }
+
+            idle.addFirst(classLoader);
+        }
+    }
+
+    /**
+     * Discards all the idle class loaders, allowing the memory they use to be reclaimed.
+     */
+    private void discardClassLoaders()
+    {
+        synchronized (classLoaders)
+        {
+            for (LinkedList<ChildFirstClassLoader> idle : classLoaders.values())
+            {
+                for (ChildFirstClassLoader classLoader : idle)
+                {
+                    DaemonProtocol.close(classLoader);
+                }
+            }
+
+            classLoaders.clear();
+        }
+    }
+
+    /**
+     * Checks how much of the heap is in use. If too much is in use, the cached class loaders are discarded,
+     * and if that has not freed enough memory by the next check, the daemon stops so that a fresh daemon
+     * will be started. Garbage collection is left to the VM, so that requests are not paused by it.
+     */
+    private void checkMemory()
+    {
+        if (!isHeapFull())
+        {
+            classLoadersDiscarded = false;
+        }
+        else if (classLoadersDiscarded)
+        {
+            stop("heap usage is too high");
+        }
+        else
+        {
+            discardClassLoaders();
+            classLoadersDiscarded = true;
+        }
+    }
+
+    /**
+     * Determines whether the heap usage is above the recycling threshold. The usage after the most recent
+     * garbage collection is used, as the current usage includes garbage which has not yet been collected.
+     *
+     * @return true if the heap usage is above the recycling threshold.
+     */
+    private static boolean isHeapFull()
+    {
+        long used = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+
+            if (usage != null)
+            {
+                used += usage.getUsed();
+            }
+        }
+
+        return used > Runtime.getRuntime().maxMemory() * MAX_HEAP_USAGE;
+    }
+
+    /**
+     * An OutputStream which sends data to the client in frames of the given type.
+     */
+    private static final class FrameOutputStream extends OutputStream
+    {
+        /** The stream to send the frames to. Writes are synchronized on this stream. */
+        private final DataOutputStream out;
+
+        /** The frame type. */
+        private final int frameType;
+
+        /**
+         * Creates a FrameOutputStream.
+         *
+         * @param out the stream to send the frames to.
+         * @param frameType the frame type.
+         */
+        FrameOutputStream(final DataOutputStream out, final int frameType)
+        {
+            this.out = out;
+            this.frameType = frameType;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final int b) throws IOException
+        {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException
+        {
+            synchronized (out)
+            {
+                out.writeByte(frameType);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void flush() throws IOException
+        {
+            synchronized (out)
+            {
+                out.flush();
+            }
+        }
+    }
+}
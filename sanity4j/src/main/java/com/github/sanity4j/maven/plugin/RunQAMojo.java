@@ -271,14 +271,74 @@ public class RunQAMojo extends AbstractMavenReport
     @Parameter(defaultValue = "false")
     private boolean includeToolOutput;
 
+    /**
+     * If true, the tools are run within the Maven VM rather than each in a new VM.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean runToolsInProcess;
+
+    /**
+     * If true, the tools are run by a long-running daemon, which keeps them loaded between builds.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean useDaemon;
+
+    /**
+     * If true, Checkstyle and PMD are only run on the source files which have changed since the previous build.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * The directory used to cache tool results between incremental builds. Defaults to a directory in
+     * the workspace directory, if one is set, or otherwise in ~/.sanity4j/cache.
+     */
+    @Parameter
+    private String resultCacheDir;
+
     /**
      * The number of threads to use to run the tools and produce the report
      * output.
      */
     @Parameter(defaultValue = "1")
     private int numThreads; 
-    // TODO: Add support for concurrent tasks
-    // (Note: some tasks can not be run in parallel).
+
+    /**
+     * The number of shards to split the sources into for Checkstyle and PMD,
+     * so that each tool can be run on several shards concurrently.
+     */
+    @Parameter(defaultValue = "1")
+    private int toolShards; 
+
+    /**
+     * If true, collected files are linked into the temporary directory rather than copied, where possible,
+     * and library jars are used from their original location.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean linkWorkspace;
+
+    /**
+     * A directory which is kept between builds to hold the collected files, so that
+     * only the files which have changed need to be collected on the next build.
+     * Sanity4J's files are kept in a "sanity4j-workspace" subdirectory, which is cleaned up
+     * after each build. Nothing else in the directory is modified.
+     */
+    @Parameter
+    private String workspaceDir;
+
+    /**
+     * If true, the JAXB contexts used to read the tool results are created in the background
+     * at the start of the run, rather than when the results are first read.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean prewarmJaxbContexts;
+
+    /**
+     * Where to hold the diagnostics: "heap", "direct" or "mapped" to hold them in columns, with the messages
+     * on the heap, in direct memory or in a memory-mapped file. By default, each diagnostic is an object.
+     */
+    @Parameter
+    private String diagnosticStore;
 
     /**
      * Whether to use historical statistics when generating sanity4j reports.
@@ -541,13 +601,22 @@ public class RunQAMojo extends AbstractMavenReport
 
         qaConfig.setCoverageMergeDataFile(getCoverageMergeDataFile());
         qaConfig.setIncludeToolOutput(isIncludeToolOutput());
+        qaConfig.setRunToolsInProcess(isRunToolsInProcess());
+        qaConfig.setUseDaemon(isUseDaemon());
+        qaConfig.setIncremental(isIncremental());
+        qaConfig.setResultCacheDir(getResultCacheDir());
         qaConfig.setJavaRuntime(getJavaRuntime());
         qaConfig.setJavaArgs(getJavaArgs());
         qaConfig.setNumThreads(getNumThreads());
+        qaConfig.setToolShards(getToolShards());
+        qaConfig.setLinkWorkspace(isLinkWorkspace());
         qaConfig.setProductsDir(getProductsDir());
         qaConfig.setReportDir(getReportDir());
         qaConfig.setSummaryDataFile(getSummaryDataFile().replaceAll(" ", ""));
         qaConfig.setTempDir(getTempDir());
+        qaConfig.setWorkspaceDir(getWorkspaceDir());
+        qaConfig.setPrewarmJaxbContexts(isPrewarmJaxbContexts());
+        qaConfig.setDiagnosticStore(getDiagnosticStore());
         qaConfig.setExternalPropertiesPath(getExternalPropertiesPath(), getAdditionalProperties());
 
         if (isUseHistory())
@@ -1253,6 +1322,38 @@ public class RunQAMojo extends AbstractMavenReport
         return includeToolOutput;
     }
 
+    /**
+     * @return Is Run Tools In Process.
+     */
+    public boolean isRunToolsInProcess() 
+    {
+        return runToolsInProcess;
+    }
+
+    /**
+     * @return Is Use Daemon.
+     */
+    public boolean isUseDaemon() 
+    {
+        return useDaemon;
+    }
+
+    /**
+     * @return Is Incremental.
+     */
+    public boolean isIncremental() 
+    {
+        return incremental;
+    }
+
+    /**
+     * @return The Result Cache Dir.
+     */
+    public String getResultCacheDir() 
+    {
+        return resultCacheDir;
+    }
+
     /**
      * @return The Num Threads.
      */
@@ -1261,6 +1362,46 @@ public class RunQAMojo extends AbstractMavenReport
         return numThreads;
     }
 
+    /**
+     * @return The Tool Shards.
+     */
+    public int getToolShards() 
+    {
+        return toolShards;
+    }
+
+    /**
+     * @return Is Link Workspace.
+     */
+    public boolean isLinkWorkspace() 
+    {
+        return linkWorkspace;
+    }
+
+    /**
+     * @return The Workspace Dir.
+     */
+    public String getWorkspaceDir() 
+    {
+        return workspaceDir;
+    }
+
+    /**
+     * @return Is Prewarm JAXB Contexts.
+     */
+    public boolean isPrewarmJaxbContexts() 
+    {
+        return prewarmJaxbContexts;
+    }
+
+    /**
+     * @return The Diagnostic Store.
+     */
+    public String getDiagnosticStore() 
+    {
+        return diagnosticStore;
+    }
+
     /**
      * @return Is Use History.
      */
@@ -1,7 +1,9 @@
 package com.github.sanity4j.model.coverage; 
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
+import java.util.TreeMap;
 
 /** 
  * ClassCoverage - coverage information for a class.
@@ -14,12 +16,32 @@ public class ClassCoverage extends AbstractCoverage
     /** The class's name (enclosing class for inner classes). */
     private final String className;
     
-    /** Invocation counts by line number. */
-    private final Map<Integer, Integer> invocationsByLine = new HashMap<Integer, Integer>();
+    /** Marks a line which was not analysed in {@link #invocations}. */
+    private static final int NOT_ANALYSED = Integer.MIN_VALUE;
 
-    /** Branch coverage by line number. */
-    private final Map<Integer, Double> branchCoverageByLine = new HashMap<Integer, Double>();
-    
+    /** The initial number of lines to allocate. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The line number of the first entry in the arrays. */
+    private int firstLine;
+
+    /** Invocation counts, indexed by line number - firstLine, or {@link #NOT_ANALYSED}. */
+    private int[] invocations = new int[0];
+
+    /** Branch coverage, indexed by line number - firstLine, or NaN if not a branch. Null until a branch is added. */
+    private double[] branchCoverage;
+
+    /** The lowest line number with coverage. */
+    private int minLine = Integer.MAX_VALUE;
+
+    /** The highest line number with coverage. */
+    private int maxLine = Integer.MIN_VALUE;
+
+    /** The package which this class belongs to, for rolling up counts. */
+    private PackageCoverage packageCoverage;
+
+    /** The number of executable lines in the class. */
+    private int lineCount;
     /** The number of covered lines in the class. */
     private int coveredLineCount;
     /** The number of branches in the class. */
@@ -43,6 +65,33 @@ public class ClassCoverage extends AbstractCoverage
     {
         return className;
     }
+
+    /**
+     * Sets the package which this class belongs to. Counts added to the class
+     * afterwards are also added to the package.
+     * 
+     * @param packageCoverage the package coverage, or null if the class has been removed from its package
+     */
+    void setPackageCoverage(final PackageCoverage packageCoverage)
+    {
+        this.packageCoverage = packageCoverage;
+    }
+
+    /**
+     * @return the lowest line number which was analysed, or 0 if no lines were analysed.
+     */
+    public int getFirstLine()
+    {
+        return lineCount == 0 ? 0 : minLine;
+    }
+
+    /**
+     * @return the highest line number which was analysed, or -1 if no lines were analysed.
+     */
+    public int getLastLine()
+    {
+        return lineCount == 0 ? -1 : maxLine;
+    }
     
     /**
      * Returns the number of invocations of the given line.
@@ -54,9 +103,14 @@ public class ClassCoverage extends AbstractCoverage
      */
     public int getInvocationsForLine(final int lineNumber)
     {
-        Integer coverage = invocationsByLine.get(lineNumber);
+        int index = lineNumber - firstLine;
         
-        return coverage == null ? -1 : coverage.intValue();
+        if (index < 0 || index >= invocations.length || invocations[index] == NOT_ANALYSED)
+        {
+            return -1;
+        }
+        
+        return invocations[index];
     }
     
     /**
@@ -69,11 +123,58 @@ public class ClassCoverage extends AbstractCoverage
      */
     public double getBranchCoverageForLine(final int lineNumber)
     {
-        Double coverage = branchCoverageByLine.get(lineNumber);
+        int index = lineNumber - firstLine;
+        
+        if (branchCoverage == null || index < 0 || index >= branchCoverage.length || Double.isNaN(branchCoverage[index]))
+        {
+            return -1.0;
+        }
         
-        return coverage == null ? -1.0 : coverage.doubleValue();
+        return branchCoverage[index];
     }
     
+    /**
+     * Returns the invocation counts of the lines which were analysed. The map is built on each call,
+     * so {@link #getInvocationsForLine(int)} should be used to look up individual lines.
+     * 
+     * @return the invocation counts of the lines which were analysed, by line number.
+     */
+    public Map<Integer, Integer> getInvocationsByLine()
+    {
+        Map<Integer, Integer> invocationsByLine = new TreeMap<Integer, Integer>();
+        
+        for (int i = 0; i < invocations.length; i++)
+        {
+            if (invocations[i] != NOT_ANALYSED)
+            {
+                invocationsByLine.put(firstLine + i, invocations[i]);
+            }
+        }
+        
+        return Collections.unmodifiableMap(invocationsByLine);
+    }
+
+    /**
+     * Returns the branch coverage of the lines which are branches. The map is built on each call,
+     * so {@link #getBranchCoverageForLine(int)} should be used to look up individual lines.
+     * 
+     * @return the branch coverage of the lines which are branches, by line number.
+     */
+    public Map<Integer, Double> getBranchCoverageByLine()
+    {
+        Map<Integer, Double> branchCoverageByLine = new TreeMap<Integer, Double>();
+        
+        for (int i = 0; branchCoverage != null && i < branchCoverage.length; i++)
+        {
+            if (!Double.isNaN(branchCoverage[i]))
+            {
+                branchCoverageByLine.put(firstLine + i, branchCoverage[i]);
+            }
+        }
+        
+        return Collections.unmodifiableMap(branchCoverageByLine);
+    }
+
     /**
      * Adds coverage for a line.
      * 
@@ -84,22 +185,37 @@ public class ClassCoverage extends AbstractCoverage
     public void addLineCoverage(final int lineNumber, final int invocationCount, 
                                 final boolean isBranch)
     {
-        invocationsByLine.put(lineNumber, invocationCount);
+        int index = ensureCapacity(lineNumber);
+        int lines = 0;
+        int branches = 0;
+        int coveredLines = 0;
+        int coveredBranches = 0;
+
+        if (invocations[index] == NOT_ANALYSED)
+        {
+            lines++;
+            minLine = Math.min(minLine, lineNumber);
+            maxLine = Math.max(maxLine, lineNumber);
+        }
+
+        invocations[index] = invocationCount;
 
         if (isBranch)
         {
-            branchCount++;
+            branches++;
             
             if (invocationCount > 0)
             {
-                coveredBranchCount++;
+                coveredBranches++;
             }            
         }
         
         if (invocationCount > 0)
         {
-            coveredLineCount++;
+            coveredLines++;
         }
+        
+        addCounts(lines, coveredLines, branches, coveredBranches);
     }
 
     /**
@@ -110,7 +226,111 @@ public class ClassCoverage extends AbstractCoverage
      */
     public void addBranchCoverage(final int lineNumber, final double percentage)
     {
-        branchCoverageByLine.put(lineNumber, percentage);
+        int index = ensureCapacity(lineNumber);
+
+        if (branchCoverage == null)
+        {
+            branchCoverage = new double[invocations.length];
+            Arrays.fill(branchCoverage, Double.NaN);
+        }
+
+        branchCoverage[index] = percentage;
+    }
+
+    /**
+     * Ensures that the arrays can hold the given line, growing them if necessary.
+     * 
+     * @param lineNumber the line number
+     * @return the index of the line in the arrays
+     */
+    private int ensureCapacity(final int lineNumber)
+    {
+        if (invocations.length == 0)
+        {
+            firstLine = lineNumber;
+        }
+
+        int index = lineNumber - firstLine;
+
+        if (index < 0 || index >= invocations.length)
+        {
+            // Grow by at least half again, so that lines added in ascending or descending order are amortised
+            int newFirstLine = Math.min(firstLine, lineNumber);
+            int newLastLine = Math.max(firstLine + invocations.length - 1, lineNumber);
+            int minCapacity = newLastLine - newFirstLine + 1;
+            int capacity = Math.max(minCapacity, Math.max(INITIAL_CAPACITY, invocations.length + invocations.length / 2));
+
+            if (index < 0)
+            {
+                // Leave the spare capacity below the first line
+                newFirstLine = Math.min(newFirstLine, newLastLine - capacity + 1);
+            }
+
+            invocations = grow(invocations, firstLine - newFirstLine, capacity);
+
+            if (branchCoverage != null)
+            {
+                branchCoverage = grow(branchCoverage, firstLine - newFirstLine, capacity);
+            }
+
+            firstLine = newFirstLine;
+            index = lineNumber - firstLine;
+        }
+
+        return index;
+    }
+
+    /**
+     * Copies the invocation counts into a larger array.
+     * 
+     * @param values the invocation counts
+     * @param offset the index in the new array of the first value
+     * @param capacity the size of the new array
+     * @return the new array
+     */
+    private static int[] grow(final int[] values, final int offset, final int capacity)
+    {
+        int[] grown = new int[capacity];
+        Arrays.fill(grown, NOT_ANALYSED);
+        System.arraycopy(values, 0, grown, offset, values.length);
+        return grown;
+    }
+
+    /**
+     * Copies the branch coverage into a larger array.
+     * 
+     * @param values the branch coverage
+     * @param offset the index in the new array of the first value
+     * @param capacity the size of the new array
+     * @return the new array
+     */
+    private static double[] grow(final double[] values, final int offset, final int capacity)
+    {
+        double[] grown = new double[capacity];
+        Arrays.fill(grown, Double.NaN);
+        System.arraycopy(values, 0, grown, offset, values.length);
+        return grown;
+    }
+
+    /**
+     * Adds to the counts for this class, and the package which it belongs to.
+     * 
+     * @param lines the number of executable lines to add
+     * @param coveredLines the number of covered lines to add
+     * @param branches the number of branches to add
+     * @param coveredBranches the number of covered branches to add
+     */
+    private void addCounts(final int lines, final int coveredLines, final int branches, final int coveredBranches)
+    {
+        lineCount += lines;
+        coveredLineCount += coveredLines;
+        branchCount += branches;
+        coveredBranchCount += coveredBranches;
+
+        if (packageCoverage != null)
+        {
+            packageCoverage.addCounts(lines, coveredLines, branches, coveredBranches);
+        }
     }
     
     /**
@@ -118,7 +338,7 @@ public class ClassCoverage extends AbstractCoverage
      */
     public int getLineCount()
     {
-        return invocationsByLine.size();
+        return lineCount;
     }
     
     /**
@@ -15,6 +15,15 @@ public class Coverage extends AbstractCoverage
 {
     /** PackageCoverages keyed by package name. */
     private final Map<String, PackageCoverage> packagesByName = new HashMap<String, PackageCoverage>();
+
+    /** The number of executable lines in this coverage. */
+    private int lineCount;
+    /** The number of covered lines in this coverage. */
+    private int coveredLineCount;
+    /** The number of branches in this coverage. */
+    private int branchCount;
+    /** The number of covered branches in this coverage. */
+    private int coveredBranchCount;
     
     /**
      * Retrieves the coverage information for the given package.
@@ -59,7 +68,38 @@ public class Coverage extends AbstractCoverage
      */
     public void addPackage(final PackageCoverage coverage)
     {
-        packagesByName.put(coverage.getPackageName(), coverage);
+        PackageCoverage previous = packagesByName.put(coverage.getPackageName(), coverage);
+
+        if (previous != coverage)
+        {
+            if (previous != null)
+            {
+                previous.setCoverage(null);
+                addCounts(-previous.getLineCount(), -previous.getCoveredLineCount(),
+                          -previous.getBranchCount(), -previous.getCoveredBranchCount());
+            }
+
+            coverage.setCoverage(this);
+            addCounts(coverage.getLineCount(), coverage.getCoveredLineCount(),
+                      coverage.getBranchCount(), coverage.getCoveredBranchCount());
+        }
+    }
+
+    /**
+     * Adds to the counts for this coverage. The counts are kept up to date as packages,
+     * classes and lines are added, rather than being summed each time they are needed.
+     * 
+     * @param lines the number of executable lines to add
+     * @param coveredLines the number of covered lines to add
+     * @param branches the number of branches to add
+     * @param coveredBranches the number of covered branches to add
+     */
+    void addCounts(final int lines, final int coveredLines, final int branches, final int coveredBranches)
+    {
+        lineCount += lines;
+        coveredLineCount += coveredLines;
+        branchCount += branches;
+        coveredBranchCount += coveredBranches;
     }
     
     /**
@@ -68,14 +108,7 @@ public class Coverage extends AbstractCoverage
     @Override
     public int getLineCount()
     {
-        int count = 0;
-        
-        for (PackageCoverage coverage : packagesByName.values())
-        {
-            count += coverage.getLineCount();
-        }
-        
-        return count;
+        return lineCount;
     }
     
     /**
@@ -84,14 +117,7 @@ public class Coverage extends AbstractCoverage
     @Override
     public int getCoveredLineCount()
     {
-        int count = 0;
-        
-        for (PackageCoverage coverage : packagesByName.values())
-        {
-            count += coverage.getCoveredLineCount();
-        }
-        
-        return count;
+        return coveredLineCount;
     }
     
     /**
@@ -100,14 +126,7 @@ public class Coverage extends AbstractCoverage
     @Override
     public int getBranchCount()
     {
-        int count = 0;
-        
-        for (PackageCoverage coverage : packagesByName.values())
-        {
-            count += coverage.getBranchCount();
-        }
-        
-        return count;
+        return branchCount;
     }
     
     /**
@@ -116,14 +135,7 @@ public class Coverage extends AbstractCoverage
     @Override
     public int getCoveredBranchCount()
     {
-        int count = 0;
-        
-        for (PackageCoverage coverage : packagesByName.values())
-        {
-            count += coverage.getCoveredBranchCount();
-        }
-        
-        return count;
+        return coveredBranchCount;
     }
     
     /**
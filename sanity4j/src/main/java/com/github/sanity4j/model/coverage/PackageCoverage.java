@@ -18,6 +18,18 @@ public class PackageCoverage extends AbstractCoverage
     
     /** ClassCoverages in this package, keyed by name. */
     private final Map<String, ClassCoverage> classesByName = new HashMap<String, ClassCoverage>();
+
+    /** The coverage which this package belongs to, for rolling up counts. */
+    private Coverage coverage;
+
+    /** The number of executable lines in the package. */
+    private int lineCount;
+    /** The number of covered lines in the package. */
+    private int coveredLineCount;
+    /** The number of branches in the package. */
+    private int branchCount;
+    /** The number of covered branches in the package. */
+    private int coveredBranchCount;
     
     /**
      * Creates a PackageCoverage.
@@ -53,7 +65,55 @@ public class PackageCoverage extends AbstractCoverage
      */
     public void addClass(final ClassCoverage coverage)
     {
-        classesByName.put(coverage.getClassName(), coverage);
+        ClassCoverage previous = classesByName.put(coverage.getClassName(), coverage);
+
+        if (previous != coverage)
+        {
+            if (previous != null)
+            {
+                previous.setPackageCoverage(null);
+                addCounts(-previous.getLineCount(), -previous.getCoveredLineCount(),
+                          -previous.getBranchCount(), -previous.getCoveredBranchCount());
+            }
+
+            coverage.setPackageCoverage(this);
+            addCounts(coverage.getLineCount(), coverage.getCoveredLineCount(),
+                      coverage.getBranchCount(), coverage.getCoveredBranchCount());
+        }
+    }
+
+    /**
+     * Sets the coverage which this package belongs to. Counts added to the package
+     * afterwards are also added to the coverage.
+     * 
+     * @param coverage the coverage, or null if the package has been removed
+     */
+    void setCoverage(final Coverage coverage)
+    {
+        this.coverage = coverage;
+    }
+
+    /**
+     * Adds to the counts for this package, and the coverage which it belongs to.
+     * The counts are kept up to date as classes and lines are added, rather than
+     * being summed over all the classes each time they are needed.
+     * 
+     * @param lines the number of executable lines to add
+     * @param coveredLines the number of covered lines to add
+     * @param branches the number of branches to add
+     * @param coveredBranches the number of covered branches to add
+     */
+    void addCounts(final int lines, final int coveredLines, final int branches, final int coveredBranches)
+    {
+        lineCount += lines;
+        coveredLineCount += coveredLines;
+        branchCount += branches;
+        coveredBranchCount += coveredBranches;
+
+        if (coverage != null)
+        {
+            coverage.addCounts(lines, coveredLines, branches, coveredBranches);
+        }
     }    
 
     /**
@@ -70,14 +130,7 @@ public class PackageCoverage extends AbstractCoverage
     @Override
     public int getLineCount()
     {
-        int count = 0;
-        
-        for (ClassCoverage coverage : classesByName.values())
-        {
-            count += coverage.getLineCount();
-        }
-        
-        return count;
+        return lineCount;
     }
     
     /**
@@ -86,14 +139,7 @@ public class PackageCoverage extends AbstractCoverage
     @Override
     public int getCoveredLineCount()
     {
-        int count = 0;
-        
-        for (ClassCoverage coverage : classesByName.values())
-        {
-            count += coverage.getCoveredLineCount();
-        }
-        
-        return count;
+        return coveredLineCount;
     }
     
     /**
@@ -102,14 +148,7 @@ public class PackageCoverage extends AbstractCoverage
     @Override
     public int getBranchCount()
     {
-        int count = 0;
-        
-        for (ClassCoverage coverage : classesByName.values())
-        {
-            count += coverage.getBranchCount();
-        }
-        
-        return count;
+        return branchCount;
     }
     
     /**
@@ -118,14 +157,7 @@ public class PackageCoverage extends AbstractCoverage
     @Override
     public int getCoveredBranchCount()
     {
-        int count = 0;
-        
-        for (ClassCoverage coverage : classesByName.values())
-        {
-            count += coverage.getCoveredBranchCount();
-        }
-        
-        return count;
+        return coveredBranchCount;
     }
     
     /**
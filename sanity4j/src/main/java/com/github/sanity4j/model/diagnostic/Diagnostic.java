@@ -1,7 +1,6 @@
 package com.github.sanity4j.model.diagnostic;
 
-import java.util.StringTokenizer;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.github.sanity4j.util.QaLogger;
 
@@ -15,8 +14,23 @@ public class Diagnostic
 {
     /**
      * A sequence used to generate id numbers. Safe as Sanity4J only runs within one VM.
+     * Ids are handed out to each thread in blocks of {@link #ID_BLOCK_SIZE}, so that
+     * result readers running in parallel don't contend for the sequence.
      */
-    private static int idCounter = 1;
+    private static final AtomicInteger ID_COUNTER = new AtomicInteger(1);
+
+    /** The number of ids allocated to a thread at a time. */
+    private static final int ID_BLOCK_SIZE = 1024;
+
+    /** The current thread's block of ids, holding the next id and the end of the block. */
+    private static final ThreadLocal<int[]> ID_BLOCK = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            return new int[2];
+        }
+    };
 
     /** The diagnostic properties, which controls severities, exclusions and categorisation. */
     private final DiagnosticFactory diagnosticFactory;
@@ -89,16 +103,26 @@ public class Diagnostic
     /** Tool's rule name, if applicable. */
     private String ruleName;
 
+    /** Rule id indicating that the rule has not been looked up yet. */
+    private static final int UNRESOLVED_RULE = -2;
+
+    /** Rule id indicating that the rule has no properties. */
+    private static final int UNKNOWN_RULE = -1;
+
+    /** The id of this diagnostic's rule in the factory's rule registry, or {@link #UNRESOLVED_RULE} / {@link #UNKNOWN_RULE}. */
+    private int ruleId = UNRESOLVED_RULE;
+
     /** Diagnostic message. */
     private String message;
 
     /** The identifier of the diagnostic. */
-    private final int identifier = nextId();
+    private final int identifier;
 
     /** Default constructor. */
     public Diagnostic()
     {
         diagnosticFactory = DiagnosticFactory.getInstance();
+        identifier = nextId();
     }
 
     /**
@@ -109,12 +133,41 @@ public class Diagnostic
     Diagnostic(final DiagnosticFactory diagnosticFactory)
     {
         this.diagnosticFactory = diagnosticFactory;
+        identifier = nextId();
+    }
+
+    /**
+     * Package protected constructor, for diagnostics which have already been assigned an id.
+     * 
+     * @param diagnosticFactory The diagnosticFactory which contains the properties used by this {@link Diagnostic}.
+     * @param identifier the id of the diagnostic.
+     */
+    Diagnostic(final DiagnosticFactory diagnosticFactory, final int identifier)
+    {
+        this.diagnosticFactory = diagnosticFactory;
+        this.identifier = identifier;
+    }
+
+    /**
+     * @return the diagnosticFactory which contains the properties used by this {@link Diagnostic}.
+     */
+    DiagnosticFactory getDiagnosticFactory()
+    {
+        return diagnosticFactory;
     }
 
     /** @return the next id in the id sequence. */
-    private static synchronized int nextId()
+    private static int nextId()
     {
-        return idCounter++;
+        int[] block = ID_BLOCK.get();
+
+        if (block[0] == block[1])
+        {
+            block[0] = ID_COUNTER.getAndAdd(ID_BLOCK_SIZE);
+            block[1] = block[0] + ID_BLOCK_SIZE;
+        }
+
+        return block[0]++;
     }
 
     /**
@@ -130,9 +183,10 @@ public class Diagnostic
      */
     public String getPackageName()
     {
-        int index = className.lastIndexOf('.');
+        String name = getClassName();
+        int index = name.lastIndexOf('.');
 
-        return (index == -1) ? "" : className.substring(0, index);
+        return (index == -1) ? "" : name.substring(0, index);
     }
 
     /**
@@ -237,6 +291,7 @@ public class Diagnostic
     public void setSource(final int source)
     {
         this.source = source;
+        invalidateRule();
     }
 
     /**
@@ -253,6 +308,36 @@ public class Diagnostic
     public void setRuleName(final String ruleName)
     {
         this.ruleName = ruleName;
+        invalidateRule();
+    }
+
+    /**
+     * Discards the rule looked up for this diagnostic, when the source or rule name changes.
+     */
+    void invalidateRule()
+    {
+        ruleId = UNRESOLVED_RULE;
+    }
+
+    /**
+     * Retrieves the metadata for this diagnostic's rule. The rule is looked up once,
+     * and only its id is kept.
+     * 
+     * @return the rule, or null if there are no properties for the rule.
+     */
+    RuleRegistry.Rule getRule()
+    {
+        RuleRegistry registry = diagnosticFactory.getRuleRegistry();
+        int id = ruleId;
+
+        if (id == UNRESOLVED_RULE)
+        {
+            RuleRegistry.Rule rule = registry.getRule(getSourceDescription(), getRuleName());
+            id = rule == null ? UNKNOWN_RULE : rule.getId();
+            ruleId = id;
+        }
+
+        return id == UNKNOWN_RULE ? null : registry.getRule(id);
     }
 
     /**
@@ -395,11 +480,8 @@ public class Diagnostic
      */
     public String[] getCategories()
     {
-        String sourceName = getSourceDescription();
-        String key = sourceName + '.' + ruleName + ".category";
-        String value = diagnosticFactory.getProperty(key);
-
-        return (value == null) ? new String[0] : value.split(",");
+        RuleRegistry.Rule rule = getRule();
+        return (rule == null) ? new String[0] : rule.getCategories();
     }
 
     /**
@@ -407,72 +489,39 @@ public class Diagnostic
      */
     public void calcSeverity()
     {
-        String sourceName = getSourceDescription();
+        RuleRegistry.Rule rule = getRule();
+        int value = (rule == null) ? RuleRegistry.UNDEFINED_SEVERITY : rule.getSeverity();
 
-        String key = sourceName + '.' + ruleName + ".severity";
-        String value = diagnosticFactory.getProperty(key);
-
-        if (value == null)
+        if (value == RuleRegistry.UNDEFINED_SEVERITY)
         {
-            String msg = "Missing diagnostic severity for [" + key + "]: will default to [" + SEVERITY_INFO
-                         + " (INFO)]";
+            String key = getSourceDescription() + '.' + getRuleName() + ".severity";
+
+            if (diagnosticFactory.getRuleRegistry().reportMissingSeverity(key))
+            {
+                String msg = "Missing diagnostic severity for [" + key + "]: will default to [" + SEVERITY_INFO
+                             + " (INFO)]";
+
+                QaLogger.getInstance().warn(msg);
+            }
 
-            QaLogger.getInstance().warn(msg);
-            diagnosticFactory.setProperty(key, String.valueOf(SEVERITY_INFO));
             setSeverity(SEVERITY_INFO);
         }
         else
         {
-            setSeverity(Integer.parseInt(value));
+            setSeverity(value);
         }
     }
 
     /**
      * Should this diagnostic be excluded from the report? This is controlled by the Diagnostic.properties file, as some
-     * of the tools don't support exclusions by class + rule.
+     * of the tools don't support exclusions by class + rule. The include and exclude patterns for each rule are
+     * compiled once, and the decision for each class is remembered.
      * 
      * @return true if the diagnostic should be excluded
      */
     public boolean isExcluded()
     {
-        String sourceName = getSourceDescription();
-        String keyBase = sourceName + '.' + ruleName;
-
-        String includes = diagnosticFactory.getProperty(keyBase + ".includes");
-        String excludes = diagnosticFactory.getProperty(keyBase + ".excludes");
-
-        // Is the file included by at least one include?
-        if (includes != null)
-        {
-            boolean include = false;
-
-            for (StringTokenizer st = new StringTokenizer(includes, ","); st.hasMoreTokens();)
-            {
-                if (Pattern.matches(st.nextToken(), className))
-                {
-                    include = true;
-                    break;
-                }
-            }
-
-            if (!include)
-            {
-                return true;
-            }
-        }
-
-        // Is the file excluded by at least one exclude?
-        if (excludes != null)
-        {
-            for (StringTokenizer st = new StringTokenizer(excludes, ","); st.hasMoreTokens();)
-            {
-                if (Pattern.matches(st.nextToken(), className))
-                {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        RuleRegistry.Rule rule = getRule();
+        return rule != null && rule.getFilter().isExcluded(getClassName());
     }
 }
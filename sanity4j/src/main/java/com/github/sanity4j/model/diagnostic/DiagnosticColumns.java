@@ -0,0 +1,59 @@
+package com.github.sanity4j.model.diagnostic;
+
+/**
+ * DiagnosticColumns provides access by row to the fields of a collection of diagnostics which
+ * a {@link DiagnosticSet} needs to sort and index them, without having to create a
+ * {@link Diagnostic} for each row.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+interface DiagnosticColumns
+{
+    /**
+     * @return the number of rows.
+     */
+    int size();
+
+    /**
+     * @param row the row.
+     * @return the diagnostic for the given row.
+     */
+    Diagnostic get(int row);
+
+    /**
+     * @param row the row.
+     * @return the class name for the given row, may be null.
+     */
+    String getClassName(int row);
+
+    /**
+     * @param row the row.
+     * @return the file name for the given row, may be null.
+     */
+    String getFileName(int row);
+
+    /**
+     * @param row the row.
+     * @return the start line for the given row.
+     */
+    int getStartLine(int row);
+
+    /**
+     * @param row the row.
+     * @return the id of the diagnostic for the given row.
+     */
+    int getId(int row);
+
+    /**
+     * @param row the row.
+     * @return the severity for the given row.
+     */
+    int getSeverity(int row);
+
+    /**
+     * @param row the row.
+     * @return the source (tool) for the given row.
+     */
+    int getSource(int row);
+}
@@ -19,29 +19,29 @@ public final class DiagnosticFactory
      */
     private static final Properties PROPERTIES = QaUtil.getProperties("/com/github/sanity4j/model/diagnostic/Diagnostic.properties");
 
-    /**
-     * The default {@link DiagnosticFactory} instance.
-     */
-    private static DiagnosticFactory instance = new DiagnosticFactory();
+    /** The rules built from the default properties alone, which each run's properties are overlaid on. */
+    private static final RuleRegistry DEFAULT_REGISTRY = new RuleRegistry(PROPERTIES);
 
     /**
-     * Private constructor to disallow explicit instantiation of a {@link DiagnosticFactory}.
+     * The default {@link DiagnosticFactory} instance. This is replaced when a factory is requested with
+     * different properties to the current instance, e.g. by the next run.
      */
-    private DiagnosticFactory()
-    {
-        // NO-OP.
-    }
+    private static DiagnosticFactory instance = new DiagnosticFactory(DEFAULT_REGISTRY);
+
+    /** A copy of the properties which the current instance's rules were overlaid with. */
+    private static Properties instanceOverlay = new Properties();
+
+    /** The rule metadata used by the diagnostics created by this factory. */
+    private final RuleRegistry ruleRegistry;
 
     /**
-     * Private constructor used by {@link #getInstance(Properties)} to create a {@link DiagnosticFactory} with a
-     * specific set of external properties.
+     * Private constructor to disallow explicit instantiation of a {@link DiagnosticFactory}.
      * 
-     * @param properties The specific set of external properties to be used by the newly created
-     *            {@link DiagnosticFactory}
+     * @param ruleRegistry the rule metadata to be used by the newly created {@link DiagnosticFactory}.
      */
-    private DiagnosticFactory(final Properties properties)
+    private DiagnosticFactory(final RuleRegistry ruleRegistry)
     {
-        DiagnosticFactory.PROPERTIES.putAll(properties);
+        this.ruleRegistry = ruleRegistry;
     }
 
     /**
@@ -49,21 +49,42 @@ public final class DiagnosticFactory
      * 
      * @return The {@link DiagnosticFactory} default singleton.
      */
-    public static DiagnosticFactory getInstance()
+    public static synchronized DiagnosticFactory getInstance()
     {
         return instance;
     }
 
     /**
-     * Returns a {@link DiagnosticFactory} with a specific set of external properties.
+     * <p>Returns a {@link DiagnosticFactory} with a specific set of external properties. The properties are
+     * overlaid on the default properties only, so the properties given for one run do not carry over to the
+     * next. The default factory is then replaced by the new factory.</p>
+     * 
+     * <p>The rules are only rebuilt when the properties change, so that each result reader in a run
+     * shares the same factory.</p>
      * 
      * @param properties The specific set of external properties to be used by the newly created
      *            {@link DiagnosticFactory}.
      * @return a {@link DiagnosticFactory} with the specified set of <em>properties</em>
      */
-    public static DiagnosticFactory getInstance(final Properties properties)
+    public static synchronized DiagnosticFactory getInstance(final Properties properties)
     {
-        return new DiagnosticFactory(properties);
+        Properties overlay = new Properties();
+
+        if (properties != null)
+        {
+            for (String key : properties.stringPropertyNames())
+            {
+                overlay.setProperty(key, properties.getProperty(key));
+            }
+        }
+
+        if (!overlay.equals(instanceOverlay))
+        {
+            instance = new DiagnosticFactory(DEFAULT_REGISTRY.withOverlay(overlay));
+            instanceOverlay = overlay;
+        }
+
+        return instance;
     }
 
     /**
@@ -85,17 +106,14 @@ public final class DiagnosticFactory
      */
     public String getProperty(final String key)
     {
-        return PROPERTIES.getProperty(key);
+        return ruleRegistry.getProperty(key);
     }
 
     /**
-     * Sets a {@link DiagnosticFactory} property.
-     * 
-     * @param key the key for the property to be set.
-     * @param value the value of the property to be associated with the given <em>key</em>.
+     * @return the rule metadata used by the diagnostics created by this factory.
      */
-    public void setProperty(final String key, final String value)
+    public RuleRegistry getRuleRegistry()
     {
-        PROPERTIES.setProperty(key, value);
+        return ruleRegistry;
     }
 }
@@ -1,22 +1,72 @@
-package com.github.sanity4j.model.diagnostic; 
+package com.github.sanity4j.model.diagnostic;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-/** 
+/**
  * DiagnosticSet a set of Diagnostics.
- * 
- * @author Yiannis Paschalidis 
+ *
+ * <p>Diagnostics may be added by several threads at once, e.g. by result readers running in
+ * parallel. Each thread appends to its own buffer, and the buffers are merged when the set is
+ * next read, so the set must not be read while diagnostics are still being added. Once all the
+ * diagnostics have been added, the set can be {@link #seal() sealed}, which builds the index
+ * up front, after which the set can safely be read by several threads at once.</p>
+ *
+ * <p>When read, the diagnostics are sorted by package, class, file and line into a single array,
+ * so that the diagnostics for a package (with or without its sub-packages) occupy a contiguous range
+ * of the array. The subsets returned by the <code>getDiagnosticsForX</code> methods are read-only
+ * views onto that array, either a range or a list of positions, rather than copies. Counts by severity
+ * and tool are kept as running totals, so counting the diagnostics in a range does not need to
+ * visit each diagnostic.</p>
+ *
+ * <p>For very large runs, the diagnostics can be held in a {@link DiagnosticStore} rather than as objects.
+ * Each thread's buffer is then appended to the store in batches. As the store can only be read once no
+ * more diagnostics will be added to it, a set backed by a store is sealed as soon as it is first read.</p>
+ *
+ * @author Yiannis Paschalidis
  * @since Sanity4J 1.0
  */
 public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
-{   
-    /** A list of all the diagnostics contained in this DiagnosticSet. */
-    private final List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+{
+    /** The number of diagnostics which each thread buffers before appending them to the {@link #store}. */
+    private static final int STORE_BATCH_SIZE = 1024;
+
+    /** A list of all the diagnostics contained in this DiagnosticSet, or null if this set is a view. */
+    private final List<Diagnostic> diagnostics;
+
+    /** The store which holds the diagnostics instead of {@link #diagnostics}, or null if the diagnostics are held as objects. */
+    private final DiagnosticStore store;
+
+    /** The buffers of each thread which has added diagnostics, which have not yet been merged into {@link #diagnostics}. */
+    private final Queue<List<Diagnostic>> buffers;
+
+    /** The buffer for the current thread. */
+    private final ThreadLocal<List<Diagnostic>> threadBuffer;
+
+    /** True if no more diagnostics can be added, and the index has been built. Views are always sealed. */
+    private volatile boolean sealed;
+
+    /** The index which this set reads from, or null if it needs to be (re)built. */
+    private Index index;
+
+    /** The start of the range of the index which this set contains, inclusive. */
+    private int start;
+
+    /** The end of the range of the index which this set contains, exclusive. */
+    private int end;
+
+    /** The positions in the index which this set contains, in ascending order, or null if this set is a range. */
+    private int[] positions;
+
+    /** The number of diagnostics in this set by severity, offset by the index's minimum severity. Only used for position views. */
+    private int[] severityCounts;
 
     /** Diagnostics keyed by the source file name. */
     private Map<String, List<Diagnostic>> diagnosticsByFileName;
@@ -29,17 +79,89 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
     /** Diagnostics keyed by their source (tool). */
     private Map<String, List<Diagnostic>> diagnosticsByTool;
 
+    /**
+     * Creates an empty DiagnosticSet, which holds its diagnostics as objects.
+     */
+    public DiagnosticSet()
+    {
+        this(null);
+    }
+
+    /**
+     * Creates an empty DiagnosticSet, which holds its diagnostics in the given store.
+     * Diagnostics added to the set are copied into the store, and the diagnostics read
+     * from the set are views of the store's rows.
+     *
+     * @param store the store to hold the diagnostics in, or null to hold the diagnostics as objects.
+     */
+    public DiagnosticSet(final DiagnosticStore store)
+    {
+        this.store = store;
+        diagnostics = new ArrayList<Diagnostic>();
+        buffers = new ConcurrentLinkedQueue<List<Diagnostic>>();
+
+        threadBuffer = new ThreadLocal<List<Diagnostic>>()
+        {
+            @Override
+            protected List<Diagnostic> initialValue()
+            {
+                List<Diagnostic> buffer = new ArrayList<Diagnostic>();
+                buffers.add(buffer);
+                return buffer;
+            }
+        };
+    }
+
+    /**
+     * Creates a view of a range of an index.
+     *
+     * @param index the index.
+     * @param start the start of the range, inclusive.
+     * @param end the end of the range, exclusive.
+     */
+    private DiagnosticSet(final Index index, final int start, final int end)
+    {
+        this.store = null;
+        this.diagnostics = null;
+        this.buffers = null;
+        this.threadBuffer = null;
+        this.sealed = true;
+        this.index = index;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Creates a view of positions in an index.
+     *
+     * @param index the index.
+     * @param positions the positions in the index, in ascending order.
+     */
+    private DiagnosticSet(final Index index, final int[] positions)
+    {
+        this(index, 0, 0);
+        this.positions = positions;
+        this.severityCounts = new int[index.severities.keyCount()];
+
+        for (int position : positions)
+        {
+            severityCounts[index.severities.keys[position] - index.severities.min]++;
+        }
+    }
+
     /**
      * @return the current Lists of Diagnostics, keyed by the source file name
      */
-    public Map<String, List<Diagnostic>> getDiagnosticsByFileName()
+    public synchronized Map<String, List<Diagnostic>> getDiagnosticsByFileName()
     {
+        getIndex();
+
         // Lazy initialization of collection
         if (diagnosticsByFileName == null)
         {
             diagnosticsByFileName = new HashMap<String, List<Diagnostic>>();
 
-            for (Diagnostic diagnostic : diagnostics)
+            for (Diagnostic diagnostic : this)
             {
                 if (diagnostic.getFileName() != null)
                 {
@@ -55,17 +177,19 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
     /**
      * @return the current Lists of Diagnostics, keyed by the class name
      */
-    public Map<String, List<Diagnostic>> getDiagnosticsByClassName()
+    public synchronized Map<String, List<Diagnostic>> getDiagnosticsByClassName()
     {
+        getIndex();
+
         // Lazy initialization of collection
         if (diagnosticsByClassName == null)
         {
             diagnosticsByClassName = new HashMap<String, List<Diagnostic>>();
 
-            for (Diagnostic diagnostic : diagnostics)
+            for (Diagnostic diagnostic : this)
             {
                 String className = diagnostic.getClassName();
-               
+
                 if (className != null)
                 {
                     addToMapList(diagnosticsByClassName, className, diagnostic);
@@ -79,14 +203,16 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
     /**
      * @return the current Lists of Diagnostics, keyed by package
      */
-    public Map<String, List<Diagnostic>> getDiagnosticsByPackageName()
+    public synchronized Map<String, List<Diagnostic>> getDiagnosticsByPackageName()
     {
+        getIndex();
+
         // Lazy initialization of collection
         if (diagnosticsByPackageName == null)
         {
             diagnosticsByPackageName = new HashMap<String, List<Diagnostic>>();
 
-            for (Diagnostic diagnostic : diagnostics)
+            for (Diagnostic diagnostic : this)
             {
                 if (diagnostic.getClassName() != null)
                 {
@@ -104,18 +230,20 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
 
         return diagnosticsByPackageName;
     }
-   
+
     /**
      * @return the current Lists of Diagnostics, keyed by severity
      */
-    public Map<String, List<Diagnostic>> getDiagnosticsBySeverity()
+    public synchronized Map<String, List<Diagnostic>> getDiagnosticsBySeverity()
     {
+        getIndex();
+
         // Lazy initialization of collection
         if (diagnosticsBySeverity == null)
         {
             diagnosticsBySeverity = new HashMap<String, List<Diagnostic>>();
 
-            for (Diagnostic diagnostic : diagnostics)
+            for (Diagnostic diagnostic : this)
             {
                 String severity = String.valueOf(diagnostic.getSeverity());
                 addToMapList(diagnosticsBySeverity, severity, diagnostic);
@@ -128,14 +256,16 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
     /**
      * @return the current Lists of Diagnostics, keyed by tool
      */
-    public Map<String, List<Diagnostic>> getDiagnosticsByTool()
+    public synchronized Map<String, List<Diagnostic>> getDiagnosticsByTool()
     {
+        getIndex();
+
         // Lazy initialization of collection
         if (diagnosticsByTool == null)
         {
             diagnosticsByTool = new HashMap<String, List<Diagnostic>>();
 
-            for (Diagnostic diagnostic : diagnostics)
+            for (Diagnostic diagnostic : this)
             {
                 String tool = String.valueOf(diagnostic.getSource());
                 addToMapList(diagnosticsByTool, tool, diagnostic);
@@ -147,20 +277,125 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
 
     /**
      * Adds the given diagnostic to the set of diagnostics.
-     * 
+     * This method may be called concurrently by multiple result readers.
+     *
      * @param diagnostic the diagnostic to add.
+     * @throws IllegalStateException if the set has been sealed, or is a subset of another set.
      */
     public void add(final Diagnostic diagnostic)
     {
-        if (!diagnostic.isExcluded())
+        if (sealed)
+        {
+            throw new IllegalStateException("Diagnostics can not be added to a sealed DiagnosticSet");
+        }
+
+        if (diagnostic.isExcluded())
+        {
+            return;
+        }
+
+        List<Diagnostic> buffer = threadBuffer.get();
+        buffer.add(diagnostic);
+
+        if (store != null && buffer.size() >= STORE_BATCH_SIZE)
+        {
+            store.appendAll(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Seals this set once all the diagnostics have been added. Any buffered diagnostics are merged,
+     * and the index is built, so that the set may then be read by several threads at once.
+     * Sealing a set which has already been sealed has no effect.
+     */
+    public synchronized void seal()
+    {
+        if (!sealed)
         {
-            diagnostics.add(diagnostic);
+            getIndex();
+            sealed = true;
+        }
+    }
+
+    /**
+     * @return true if this set has been sealed.
+     */
+    public boolean isSealed()
+    {
+        return sealed;
+    }
+
+    /**
+     * Merges the diagnostics which each thread has added into the list of all diagnostics,
+     * and builds the index if necessary.
+     *
+     * @return the index for this set.
+     */
+    private Index getIndex()
+    {
+        if (sealed)
+        {
+            return index;
+        }
+
+        synchronized (this)
+        {
+            boolean changed = false;
+
+            for (List<Diagnostic> buffer : buffers)
+            {
+                if (!buffer.isEmpty())
+                {
+                    if (store == null)
+                    {
+                        diagnostics.addAll(buffer);
+                    }
+                    else
+                    {
+                        store.appendAll(buffer);
+                    }
+
+                    buffer.clear();
+                    changed = true;
+                }
+            }
+
+            if (store != null)
+            {
+                store.seal();
+            }
+
+            if (changed)
+            {
+                index = null;
+                diagnosticsByFileName = null;
+                diagnosticsByClassName = null;
+                diagnosticsByPackageName = null;
+                diagnosticsBySeverity = null;
+                diagnosticsByTool = null;
+            }
+
+            if (index == null)
+            {
+                index = new Index(store == null ? new ObjectColumns(diagnostics) : store);
+                start = 0;
+                end = index.size();
+            }
+
+            // Once a store has been read, no more diagnostics can be added to it
+            if (store != null)
+            {
+                sealed = true;
+            }
+
+            return index;
         }
     }
 
     /**
      * Utility method to add a Diagnostic to a list of Diagnostics in a Map.
-     * 
+     *
      * @param map the map to add to
      * @param key the map key containing the list
      * @param diag the Diagnostic to add
@@ -180,9 +415,9 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
 
     /**
      * Returns the diagnostics obtained from the given tool.
-     * 
+     *
      * @param tool the tool, see Diagnostic.SOURCE_*
-     * 
+     *
      * @return the set of diagnostics for the given tool, may be empty
      */
     public DiagnosticSet getDiagnosticsForTool(final int tool)
@@ -193,29 +428,15 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
             return clone();
         }
 
-        DiagnosticSet subset = new DiagnosticSet();
-
-        List<Diagnostic> list = getDiagnosticsByTool().get(String.valueOf(tool));
-
-        if (list != null)
-        {
-            for (Diagnostic diagnostic : list)
-            {
-                if (diagnostic.getSource() == tool)
-                {
-                    subset.diagnostics.add(diagnostic);
-                }
-            }
-        }
-
-        return subset;
-    }   
+        Index idx = getIndex();
+        return select(idx, idx.tools, tool);
+    }
 
     /**
      * Returns the diagnostics with the given severity.
-     * 
+     *
      * @param severity the severity, see Diagnostic.SEVERITY_*
-     * 
+     *
      * @return the set of diagnostics for the given severity, may be empty
      */
     public DiagnosticSet getDiagnosticsForSeverity(final int severity)
@@ -226,29 +447,15 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
             return clone();
         }
 
-        DiagnosticSet subset = new DiagnosticSet();
-
-        List<Diagnostic> list = getDiagnosticsBySeverity().get(String.valueOf(severity));
-
-        if (list != null)
-        {
-            for (Diagnostic diagnostic : list)
-            {
-                if (diagnostic.getSeverity() == severity)
-                {
-                    subset.diagnostics.add(diagnostic);
-                }
-            }
-        }
-
-        return subset;
-    }      
+        Index idx = getIndex();
+        return select(idx, idx.severities, severity);
+    }
 
     /**
      * Returns the diagnostics for the given package and sub-packages.
-     * 
+     *
      * @param packageName the package name
-     * 
+     *
      * @return the set of diagnostics for the given package and sub-packages
      */
     public DiagnosticSet getDiagnosticsForPackage(final String packageName)
@@ -258,55 +465,170 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
 
    /**
     * Returns the diagnostics for the given package, and optionally, sub-packages.
-    * 
+    *
     * @param packageName the package name
-    * @param includeSubpackages if true, also include diagnostics for sub-packages 
-    * 
+    * @param includeSubpackages if true, also include diagnostics for sub-packages
+    *
     * @return the set of diagnostics for the given package
     */
-   public DiagnosticSet getDiagnosticsForPackage(final String packageName, 
+   public DiagnosticSet getDiagnosticsForPackage(final String packageName,
                                                   final boolean includeSubpackages)
     {
-        DiagnosticSet subset = new DiagnosticSet();
+        Index idx = getIndex();
+        int[] range = idx.packageRanges.get(packageName);
+
+        if (range == null)
+        {
+            return new DiagnosticSet(idx, 0, 0);
+        }
 
-        List<Diagnostic> list = getDiagnosticsByPackageName().get(packageName);
+        int rangeStart = includeSubpackages ? range[0] : range[2];
+        int rangeEnd = includeSubpackages ? range[1] : range[3];
 
-        if (list != null)
+        if (positions == null)
         {
-            for (Diagnostic diag : list)
-            {
-                if (includeSubpackages || packageName.equals(diag.getPackageName()))
-                {
-                    subset.diagnostics.add(diag);
-                }
-            }
+            int from = Math.max(start, rangeStart);
+            int to = Math.min(end, rangeEnd);
+
+            return new DiagnosticSet(idx, from, Math.max(from, to));
         }
 
-        return subset;
+        int from = lowerBound(positions, rangeStart);
+        int to = lowerBound(positions, rangeEnd);
+
+        return new DiagnosticSet(idx, Arrays.copyOfRange(positions, from, to));
     }
 
     /**
      * Returns the diagnostics for the given file.
-     * 
+     *
      * @param fileName the name of the file.
-     * 
+     *
      * @return the set of diagnostics for the given file.
      */
     public DiagnosticSet getDiagnosticsForFile(final String fileName)
     {
-        DiagnosticSet subset = new DiagnosticSet();
+        Index idx = getIndex();
+        int[] filePositions = idx.filePositions.get(fileName);
+
+        if (filePositions == null)
+        {
+            return new DiagnosticSet(idx, 0, 0);
+        }
+        else if (positions == null && start == 0 && end == idx.size())
+        {
+            // The index's positions are never modified, so can be shared
+            return new DiagnosticSet(idx, filePositions);
+        }
+
+        int[] subset = new int[filePositions.length];
+        int count = 0;
+
+        for (int position : filePositions)
+        {
+            if (contains(position))
+            {
+                subset[count++] = position;
+            }
+        }
+
+        return new DiagnosticSet(idx, Arrays.copyOf(subset, count));
+    }
+
+    /**
+     * Selects the diagnostics in this set with the given key.
+     *
+     * @param idx the index for this set.
+     * @param counts the running totals for the key.
+     * @param key the key to select.
+     * @return the selected diagnostics.
+     */
+    private DiagnosticSet select(final Index idx, final RunningCounts counts, final int key)
+    {
+        if (positions == null)
+        {
+            int count = counts.count(key, start, end);
+
+            if (count == 0)
+            {
+                return new DiagnosticSet(idx, 0, 0);
+            }
+            else if (count == end - start)
+            {
+                return new DiagnosticSet(idx, start, end);
+            }
+
+            int[] subset = new int[count];
+
+            for (int i = start, j = 0; j < count; i++)
+            {
+                if (counts.keys[i] == key)
+                {
+                    subset[j++] = i;
+                }
+            }
+
+            return new DiagnosticSet(idx, subset);
+        }
+
+        int[] subset = new int[positions.length];
+        int count = 0;
+
+        for (int position : positions)
+        {
+            if (counts.keys[position] == key)
+            {
+                subset[count++] = position;
+            }
+        }
+
+        return new DiagnosticSet(idx, Arrays.copyOf(subset, count));
+    }
+
+    /**
+     * Determines whether this set contains the diagnostic at the given position in the index.
+     *
+     * @param position the position in the index.
+     * @return true if this set contains the diagnostic at the given position.
+     */
+    private boolean contains(final int position)
+    {
+        if (positions == null)
+        {
+            return position >= start && position < end;
+        }
 
-        List<Diagnostic> list = getDiagnosticsByFileName().get(fileName);
+        int i = lowerBound(positions, position);
+        return i < positions.length && positions[i] == position;
+    }
 
-        if (list != null)
+    /**
+     * Finds the first element of a sorted array which is not less than the given value.
+     *
+     * @param array the sorted array.
+     * @param value the value to search for.
+     * @return the index of the first element which is not less than the value, or the array length if there is none.
+     */
+    private static int lowerBound(final int[] array, final int value)
+    {
+        int low = 0;
+        int high = array.length;
+
+        while (low < high)
         {
-            for (Diagnostic diagnostic : list)
+            int mid = (low + high) >>> 1;
+
+            if (array[mid] < value)
+            {
+                low = mid + 1;
+            }
+            else
             {
-                subset.diagnostics.add(diagnostic);
+                high = mid;
             }
         }
 
-        return subset;
+        return low;
     }
 
     /**
@@ -315,6 +637,7 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
     @Override
     public DiagnosticSet clone()
     {
+        getIndex();
         DiagnosticSet clone = null;
 
         try
@@ -328,10 +651,10 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
 
         return clone;
     }
-   
+
     /**
      * Returns the number of diagnostics with the given severity.
-     * 
+     *
      * @param severity the severity.
      * @return the number of diagnostics with the given severity.
      */
@@ -342,9 +665,15 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
             return size();
         }
 
-        List<Diagnostic> list = getDiagnosticsBySeverity().get(String.valueOf(severity));
+        Index idx = getIndex();
+
+        if (positions == null)
+        {
+            return idx.severities.count(severity, start, end);
+        }
 
-        return list == null ? 0 : list.size();
+        int offset = severity - idx.severities.min;
+        return offset < 0 || offset >= severityCounts.length ? 0 : severityCounts[offset];
     }
 
     /**
@@ -352,7 +681,8 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
      */
     public int size()
     {
-        return diagnostics.size();
+        getIndex();
+        return positions == null ? end - start : positions.length;
     }
 
     /**
@@ -360,7 +690,7 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
      */
     public boolean isEmpty()
     {
-        return diagnostics.isEmpty();
+        return size() == 0;
     }
 
     /**
@@ -369,6 +699,510 @@ public final class DiagnosticSet implements Cloneable, Iterable<Diagnostic>
     @Override
     public Iterator<Diagnostic> iterator()
     {
-        return Collections.unmodifiableList(diagnostics).iterator();
+        final Index idx = getIndex();
+        final int rangeStart = start;
+        final int[] rangePositions = positions;
+        final int size = size();
+
+        return new AbstractList<Diagnostic>()
+        {
+            @Override
+            public Diagnostic get(final int i)
+            {
+                return idx.get(rangePositions == null ? rangeStart + i : rangePositions[i]);
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+        }.iterator();
+    }
+
+    /**
+     * The sorted diagnostics of a set, along with the positions of the diagnostics for each package and file.
+     * An index is never modified once it has been built, so may be shared by the views of a set.
+     */
+    private static final class Index
+    {
+        /** The diagnostics being indexed. */
+        private final DiagnosticColumns rows;
+
+        /** The rows of the diagnostics, sorted by package, class, file, line and then the order in which they were created. */
+        private final int[] order;
+
+        /** The ranges for each package: {start, end} including sub-packages, then {start, end} for the package alone. */
+        private final Map<String, int[]> packageRanges = new HashMap<String, int[]>();
+
+        /** The positions of the diagnostics for each file, in ascending order. */
+        private final Map<String, int[]> filePositions = new HashMap<String, int[]>();
+
+        /** Running totals of the diagnostics by severity. */
+        private final RunningCounts severities;
+
+        /** Running totals of the diagnostics by tool. */
+        private final RunningCounts tools;
+
+        /**
+         * Builds an index for the given diagnostics.
+         *
+         * @param rows the diagnostics to index.
+         */
+        private Index(final DiagnosticColumns rows)
+        {
+            this.rows = rows;
+            order = new int[rows.size()];
+
+            for (int i = 0; i < order.length; i++)
+            {
+                order[i] = i;
+            }
+
+            sort();
+
+            int[] severityKeys = new int[order.length];
+            int[] toolKeys = new int[order.length];
+            Map<String, Integer> fileCounts = new HashMap<String, Integer>();
+
+            for (int i = 0; i < order.length; i++)
+            {
+                severityKeys[i] = rows.getSeverity(order[i]);
+                toolKeys[i] = rows.getSource(order[i]);
+
+                String fileName = rows.getFileName(order[i]);
+
+                if (fileName != null)
+                {
+                    Integer count = fileCounts.get(fileName);
+                    fileCounts.put(fileName, count == null ? 1 : count + 1);
+                }
+            }
+
+            severities = new RunningCounts(severityKeys);
+            tools = new RunningCounts(toolKeys);
+
+            for (Map.Entry<String, Integer> entry : fileCounts.entrySet())
+            {
+                filePositions.put(entry.getKey(), new int[entry.getValue()]);
+            }
+
+            Map<String, Integer> fileFill = new HashMap<String, Integer>();
+
+            for (int i = 0; i < order.length; i++)
+            {
+                String fileName = rows.getFileName(order[i]);
+
+                if (fileName != null)
+                {
+                    Integer fill = fileFill.get(fileName);
+                    int pos = fill == null ? 0 : fill;
+                    filePositions.get(fileName)[pos] = i;
+                    fileFill.put(fileName, pos + 1);
+                }
+            }
+
+            indexPackages();
+        }
+
+        /**
+         * @return the number of diagnostics in the index.
+         */
+        private int size()
+        {
+            return order.length;
+        }
+
+        /**
+         * @param position the position in the index.
+         * @return the diagnostic at the given position.
+         */
+        private Diagnostic get(final int position)
+        {
+            return rows.get(order[position]);
+        }
+
+        /**
+         * Sorts the rows with a bottom-up merge sort, which is stable and avoids boxing the row numbers.
+         */
+        private void sort()
+        {
+            int[] src = order;
+            int[] dest = new int[order.length];
+
+            for (int width = 1; width < src.length; width *= 2)
+            {
+                for (int low = 0; low < src.length; low += 2 * width)
+                {
+                    int mid = Math.min(low + width, src.length);
+                    int high = Math.min(low + 2 * width, src.length);
+
+                    for (int i = low, j = mid, k = low; k < high; k++)
+                    {
+                        dest[k] = (j >= high || (i < mid && compareRows(src[i], src[j]) <= 0)) ? src[i++] : src[j++];
+                    }
+                }
+
+                int[] swap = src;
+                src = dest;
+                dest = swap;
+            }
+
+            if (src != order)
+            {
+                System.arraycopy(src, 0, order, 0, src.length);
+            }
+        }
+
+        /**
+         * Orders diagnostics by package, class, file, line and then the order in which they were created.
+         *
+         * @param row1 the first row.
+         * @param row2 the second row.
+         * @return a negative number, zero or a positive number if the first row is sorted before,
+         *         with or after the second row.
+         */
+        private int compareRows(final int row1, final int row2)
+        {
+            String class1 = rows.getClassName(row1);
+            String class2 = rows.getClassName(row2);
+            int result = comparePackages(class1, class2);
+
+            if (result == 0)
+            {
+                result = compareStrings(class1, class2);
+            }
+
+            if (result == 0)
+            {
+                result = compareStrings(rows.getFileName(row1), rows.getFileName(row2));
+            }
+
+            if (result == 0)
+            {
+                int line1 = rows.getStartLine(row1);
+                int line2 = rows.getStartLine(row2);
+                result = line1 < line2 ? -1 : (line1 == line2 ? 0 : 1);
+            }
+
+            if (result == 0)
+            {
+                int id1 = rows.getId(row1);
+                int id2 = rows.getId(row2);
+                result = id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+            }
+
+            return result;
+        }
+
+        /**
+         * Records the range of each package. As packages are sorted before their sub-packages, and
+         * the sub-packages of a package are sorted together, each package's range (with or without
+         * sub-packages) is contiguous.
+         */
+        private void indexPackages()
+        {
+            int runStart = 0;
+
+            for (int i = 1; i <= order.length; i++)
+            {
+                String runClass = rows.getClassName(order[runStart]);
+
+                if (i < order.length && comparePackages(runClass, rows.getClassName(order[i])) == 0)
+                {
+                    continue;
+                }
+
+                int lastDot = runClass == null ? -1 : runClass.lastIndexOf('.');
+
+                if (lastDot != -1)
+                {
+                    String packageName = runClass.substring(0, lastDot);
+                    packageRange(packageName)[2] = runStart;
+                    packageRange(packageName)[3] = i;
+
+                    for (String pkg = packageName; pkg != null; )
+                    {
+                        int[] range = packageRange(pkg);
+
+                        if (range[1] == 0)
+                        {
+                            range[0] = runStart;
+                        }
+
+                        range[1] = i;
+
+                        int dot = pkg.lastIndexOf('.');
+                        pkg = dot == -1 ? null : pkg.substring(0, dot);
+                    }
+                }
+
+                runStart = i;
+            }
+        }
+
+        /**
+         * Retrieves the range for a package, creating an empty range if necessary.
+         *
+         * @param packageName the package name.
+         * @return the range for the package.
+         */
+        private int[] packageRange(final String packageName)
+        {
+            int[] range = packageRanges.get(packageName);
+
+            if (range == null)
+            {
+                range = new int[4];
+                packageRanges.put(packageName, range);
+            }
+
+            return range;
+        }
+
+        /**
+         * Compares the package parts of two class names. Package separators sort before
+         * all other characters, so that a package's sub-packages are sorted together,
+         * immediately after the package. Class names which are null are sorted last.
+         *
+         * @param class1 the first class name, may be null.
+         * @param class2 the second class name, may be null.
+         * @return a negative number, zero or a positive number if the first package is less than,
+         *         equal to or greater than the second package.
+         */
+        private static int comparePackages(final String class1, final String class2)
+        {
+            if (class1 == null || class2 == null)
+            {
+                return class1 == null ? (class2 == null ? 0 : 1) : -1;
+            }
+
+            int len1 = Math.max(0, class1.lastIndexOf('.'));
+            int len2 = Math.max(0, class2.lastIndexOf('.'));
+
+            for (int i = 0; i < len1 && i < len2; i++)
+            {
+                char char1 = class1.charAt(i);
+                char char2 = class2.charAt(i);
+
+                if (char1 != char2)
+                {
+                    return char1 == '.' ? -1 : (char2 == '.' ? 1 : char1 - char2);
+                }
+            }
+
+            return len1 - len2;
+        }
+
+        /**
+         * Compares two strings, which may be null.
+         *
+         * @param str1 the first string, may be null.
+         * @param str2 the second string, may be null.
+         * @return a negative number, zero or a positive number if the first string is less than,
+         *         equal to or greater than the second string. Null strings are sorted last.
+         */
+        private static int compareStrings(final String str1, final String str2)
+        {
+            if (str1 == null || str2 == null)
+            {
+                return str1 == null ? (str2 == null ? 0 : 1) : -1;
+            }
+
+            return str1.compareTo(str2);
+        }
+    }
+
+    /**
+     * Provides access by row to diagnostics which are held as objects.
+     */
+    private static final class ObjectColumns implements DiagnosticColumns
+    {
+        /** The diagnostics. */
+        private final Diagnostic[] diagnostics;
+
+        /**
+         * Creates an ObjectColumns.
+         *
+         * @param list the diagnostics, which are copied.
+         */
+        private ObjectColumns(final List<Diagnostic> list)
+        {
+            diagnostics = list.toArray(new Diagnostic[list.size()]);
+        }
+
+        /** {@inheritDoc} */
+        public int size()
+        {
+            return diagnostics.length;
+        }
+
+        /** {@inheritDoc} */
+        public Diagnostic get(final int row)
+        {
+            return diagnostics[row];
+        }
+
+        /** {@inheritDoc} */
+        public String getClassName(final int row)
+        {
+            return diagnostics[row].getClassName();
+        }
+
+        /** {@inheritDoc} */
+        public String getFileName(final int row)
+        {
+            return diagnostics[row].getFileName();
+        }
+
+        /** {@inheritDoc} */
+        public int getStartLine(final int row)
+        {
+            return diagnostics[row].getStartLine();
+        }
+
+        /** {@inheritDoc} */
+        public int getId(final int row)
+        {
+            return diagnostics[row].getId();
+        }
+
+        /** {@inheritDoc} */
+        public int getSeverity(final int row)
+        {
+            return diagnostics[row].getSeverity();
+        }
+
+        /** {@inheritDoc} */
+        public int getSource(final int row)
+        {
+            return diagnostics[row].getSource();
+        }
+    }
+
+    /**
+     * Running totals of the number of diagnostics with each value of a small integer key,
+     * e.g. the severity or tool, so that the number in any range can be found in constant time.
+     * The totals are only kept at every {@link #CHECKPOINT_INTERVAL}th position, and the keys
+     * between the nearest checkpoint and the ends of the range are counted when needed.
+     */
+    private static final class RunningCounts
+    {
+        /** The number of positions between the checkpoints at which the running totals are kept. */
+        private static final int CHECKPOINT_INTERVAL = 64;
+
+        /** The key of each diagnostic in the index. */
+        private final int[] keys;
+
+        /** The smallest key. */
+        private final int min;
+
+        /**
+         * The running totals for each key, offset by {@link #min}. totals[k][c] is the number of diagnostics
+         * before position c * {@link #CHECKPOINT_INTERVAL} with key k.
+         */
+        private final int[][] totals;
+
+        /**
+         * Calculates the running totals for the given keys.
+         *
+         * @param keys the key of each diagnostic in the index.
+         */
+        private RunningCounts(final int[] keys)
+        {
+            this.keys = keys;
+
+            int minKey = 0;
+            int maxKey = -1;
+
+            for (int i = 0; i < keys.length; i++)
+            {
+                minKey = i == 0 ? keys[i] : Math.min(minKey, keys[i]);
+                maxKey = i == 0 ? keys[i] : Math.max(maxKey, keys[i]);
+            }
+
+            min = minKey;
+            totals = new int[maxKey - minKey + 1][];
+
+            int checkpoints = keys.length / CHECKPOINT_INTERVAL + 1;
+            int[] running = new int[totals.length];
+
+            for (int i = 0; i < keys.length; i++)
+            {
+                if (totals[keys[i] - min] == null)
+                {
+                    totals[keys[i] - min] = new int[checkpoints];
+                }
+            }
+
+            for (int i = 0; i < keys.length; i++)
+            {
+                running[keys[i] - min]++;
+
+                if ((i + 1) % CHECKPOINT_INTERVAL == 0)
+                {
+                    int checkpoint = (i + 1) / CHECKPOINT_INTERVAL;
+
+                    for (int k = 0; k < totals.length; k++)
+                    {
+                        if (totals[k] != null)
+                        {
+                            totals[k][checkpoint] = running[k];
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the number of distinct key values between the smallest and largest keys.
+         */
+        private int keyCount()
+        {
+            return totals.length;
+        }
+
+        /**
+         * Counts the diagnostics in a range with the given key.
+         *
+         * @param key the key to count.
+         * @param from the start of the range, inclusive.
+         * @param to the end of the range, exclusive.
+         * @return the number of diagnostics in the range with the given key.
+         */
+        private int count(final int key, final int from, final int to)
+        {
+            int offset = key - min;
+
+            if (offset < 0 || offset >= totals.length || totals[offset] == null || from >= to)
+            {
+                return 0;
+            }
+
+            return countBefore(offset, to) - countBefore(offset, from);
+        }
+
+        /**
+         * Counts the diagnostics before a position with the given key.
+         *
+         * @param offset the key to count, offset by {@link #min}.
+         * @param position the position to count up to, exclusive.
+         * @return the number of diagnostics before the position with the given key.
+         */
+        private int countBefore(final int offset, final int position)
+        {
+            int checkpoint = position / CHECKPOINT_INTERVAL;
+            int count = totals[offset][checkpoint];
+
+            for (int i = checkpoint * CHECKPOINT_INTERVAL; i < position; i++)
+            {
+                if (keys[i] - min == offset)
+                {
+                    count++;
+                }
+            }
+
+            return count;
+        }
     }
 }
@@ -0,0 +1,662 @@
+package com.github.sanity4j.model.diagnostic;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.sanity4j.util.QAException;
+import com.github.sanity4j.util.QaLogger;
+import com.github.sanity4j.util.QaUtil;
+
+/**
+ * <p>DiagnosticStore is a compact storage backend for a {@link DiagnosticSet}, for runs which produce
+ * too many diagnostics to keep each one as an object. Rather than one object per diagnostic, each field
+ * is stored in a column: lines, columns, severity and source are stored in int arrays, the class, file
+ * and rule names are stored once each in a dictionary and referred to by id, and messages are appended
+ * to an arena, which may be on the heap, in a direct buffer or in a memory-mapped file.</p>
+ *
+ * <p>The diagnostics returned by the store are lightweight views of a row of the store, so existing code
+ * which reads (or modifies) diagnostics continues to work. Rows are only appended, never removed.</p>
+ *
+ * <p>Rows are appended in batches, from the per-thread buffers of the owning {@link DiagnosticSet}, so that
+ * the store's lock is not taken for each diagnostic. Reads are not synchronised with appends, so the store
+ * must be {@link #seal() sealed} before it is read, after which no more rows can be appended.</p>
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class DiagnosticStore implements DiagnosticColumns, Closeable
+{
+    /** Store messages in a heap buffer. */
+    public static final String HEAP = "heap";
+
+    /** Store messages in a direct buffer, outside of the Java heap. */
+    public static final String DIRECT = "direct";
+
+    /** Store messages in a memory-mapped temporary file. */
+    public static final String MAPPED = "mapped";
+
+    /** The id column. */
+    private static final int ID = 0;
+    /** The start line column. */
+    private static final int START_LINE = 1;
+    /** The end line column. */
+    private static final int END_LINE = 2;
+    /** The start column column. */
+    private static final int START_COLUMN = 3;
+    /** The end column column. */
+    private static final int END_COLUMN = 4;
+    /** The severity column. */
+    private static final int SEVERITY = 5;
+    /** The source column. */
+    private static final int SOURCE = 6;
+    /** The class name id column. */
+    private static final int CLASS_NAME = 7;
+    /** The file name id column. */
+    private static final int FILE_NAME = 8;
+    /** The rule name id column. */
+    private static final int RULE_NAME = 9;
+    /** The diagnostic factory id column. */
+    private static final int FACTORY = 10;
+    /** The message length column, -1 for a null message. */
+    private static final int MESSAGE_LENGTH = 11;
+    /** The number of int columns. */
+    private static final int COLUMN_COUNT = 12;
+
+    /** The initial number of rows to allocate. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** The size of each chunk of the message arena. */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    /** The character set used to encode messages. */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The int columns. */
+    private final int[][] columns = new int[COLUMN_COUNT][INITIAL_CAPACITY];
+
+    /** The location of each message in the arena: the chunk index in the high word and the position in the low word. */
+    private long[] messageOffsets = new long[INITIAL_CAPACITY];
+
+    /** The class names. */
+    private final Dictionary classNames = new Dictionary();
+
+    /** The file names. */
+    private final Dictionary fileNames = new Dictionary();
+
+    /** The rule names. */
+    private final Dictionary ruleNames = new Dictionary();
+
+    /** The diagnostic factories, usually only one. */
+    private final List<DiagnosticFactory> factories = new ArrayList<DiagnosticFactory>();
+
+    /** The chunks of the message arena. */
+    private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+    /** The type of buffer which messages are stored in, see {@link #HEAP}, {@link #DIRECT} and {@link #MAPPED}. */
+    private final String arenaType;
+
+    /** The file which messages are mapped to, for {@link #MAPPED} stores. */
+    private final File mappedFile;
+
+    /** The channel for the mapped file, for {@link #MAPPED} stores. */
+    private FileChannel channel;
+
+    /** The size of the mapped file. */
+    private long mappedSize;
+
+    /** The number of rows in the store. */
+    private volatile int size;
+
+    /** True once no more rows can be appended, and the rows can be read. */
+    private volatile boolean sealed;
+
+    /** True once the store has been closed, and its message arena released. */
+    private volatile boolean closed;
+
+    /**
+     * Creates a DiagnosticStore.
+     *
+     * @param arenaType the type of buffer to store messages in, see {@link #HEAP}, {@link #DIRECT} and {@link #MAPPED}.
+     * @param tempDir the directory to create the memory-mapped file in, for {@link #MAPPED} stores.
+     * @throws QAException if the arena type is unknown, or the memory-mapped file can not be created.
+     */
+    public DiagnosticStore(final String arenaType, final File tempDir)
+    {
+        this.arenaType = arenaType;
+
+        if (MAPPED.equals(arenaType))
+        {
+            try
+            {
+                mappedFile = File.createTempFile("sanity4j-messages", ".dat", tempDir);
+                mappedFile.deleteOnExit();
+                channel = new RandomAccessFile(mappedFile, "rw").getChannel();
+            }
+            catch (IOException e)
+            {
+                throw new QAException("Unable to create diagnostic message file in " + tempDir, e);
+            }
+        }
+        else if (HEAP.equals(arenaType) || DIRECT.equals(arenaType))
+        {
+            mappedFile = null;
+        }
+        else
+        {
+            throw new QAException("Unknown diagnostic store [" + arenaType + "], expected one of "
+                                  + HEAP + ", " + DIRECT + " or " + MAPPED);
+        }
+    }
+
+    /**
+     * Appends a diagnostic to the store. The diagnostic itself is not retained.
+     *
+     * @param diagnostic the diagnostic to append.
+     * @return the row of the diagnostic in the store.
+     * @throws IllegalStateException if the store has been sealed.
+     */
+    public synchronized int append(final Diagnostic diagnostic)
+    {
+        checkNotSealed();
+        return appendRow(diagnostic);
+    }
+
+    /**
+     * Appends a batch of diagnostics to the store. The diagnostics themselves are not retained.
+     *
+     * @param diagnostics the diagnostics to append.
+     * @throws IllegalStateException if the store has been sealed.
+     */
+    public synchronized void appendAll(final Collection<Diagnostic> diagnostics)
+    {
+        checkNotSealed();
+
+        for (Diagnostic diagnostic : diagnostics)
+        {
+            appendRow(diagnostic);
+        }
+    }
+
+    /**
+     * Prevents any more rows from being appended, so that the rows can be read.
+     * Sealing a store which has already been sealed has no effect.
+     */
+    public synchronized void seal()
+    {
+        sealed = true;
+    }
+
+    /**
+     * @throws IllegalStateException if the store has been sealed.
+     */
+    private void checkNotSealed()
+    {
+        if (sealed)
+        {
+            throw new IllegalStateException("Diagnostics can not be added to a sealed DiagnosticStore");
+        }
+    }
+
+    /**
+     * Appends a diagnostic to the store. The caller must hold the store's lock.
+     *
+     * @param diagnostic the diagnostic to append.
+     * @return the row of the diagnostic in the store.
+     */
+    private int appendRow(final Diagnostic diagnostic)
+    {
+        if (size == messageOffsets.length)
+        {
+            int capacity = size * 2;
+
+            for (int i = 0; i < COLUMN_COUNT; i++)
+            {
+                columns[i] = Arrays.copyOf(columns[i], capacity);
+            }
+
+            messageOffsets = Arrays.copyOf(messageOffsets, capacity);
+        }
+
+        int row = size;
+        int factory = factories.indexOf(diagnostic.getDiagnosticFactory());
+
+        if (factory == -1)
+        {
+            factory = factories.size();
+            factories.add(diagnostic.getDiagnosticFactory());
+        }
+
+        columns[ID][row] = diagnostic.getId();
+        columns[START_LINE][row] = diagnostic.getStartLine();
+        columns[END_LINE][row] = diagnostic.getEndLine();
+        columns[START_COLUMN][row] = diagnostic.getStartColumn();
+        columns[END_COLUMN][row] = diagnostic.getEndColumn();
+        columns[SEVERITY][row] = diagnostic.getSeverity();
+        columns[SOURCE][row] = diagnostic.getSource();
+        columns[CLASS_NAME][row] = classNames.getId(diagnostic.getClassName());
+        columns[FILE_NAME][row] = fileNames.getId(diagnostic.getFileName());
+        columns[RULE_NAME][row] = ruleNames.getId(diagnostic.getRuleName());
+        columns[FACTORY][row] = factory;
+        setMessage(row, diagnostic.getMessage());
+
+        size = row + 1;
+        return row;
+    }
+
+    /**
+     * @return the number of diagnostics in the store.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns a view of the diagnostic in the given row.
+     *
+     * @param row the row.
+     * @return the diagnostic in the given row.
+     * @throws IllegalStateException if the store has not been sealed.
+     */
+    public Diagnostic get(final int row)
+    {
+        if (!sealed)
+        {
+            throw new IllegalStateException("Diagnostics can not be read from a DiagnosticStore until it has been sealed");
+        }
+
+        return new StoredDiagnostic(this, row, factories.get(columns[FACTORY][row]), columns[ID][row]);
+    }
+
+    /** {@inheritDoc} */
+    public String getClassName(final int row)
+    {
+        return classNames.getValue(columns[CLASS_NAME][row]);
+    }
+
+    /** {@inheritDoc} */
+    public String getFileName(final int row)
+    {
+        return fileNames.getValue(columns[FILE_NAME][row]);
+    }
+
+    /**
+     * @param row the row.
+     * @return the rule name for the given row, may be null.
+     */
+    String getRuleName(final int row)
+    {
+        return ruleNames.getValue(columns[RULE_NAME][row]);
+    }
+
+    /** {@inheritDoc} */
+    public int getStartLine(final int row)
+    {
+        return columns[START_LINE][row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the end line for the given row.
+     */
+    int getEndLine(final int row)
+    {
+        return columns[END_LINE][row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the start column for the given row.
+     */
+    int getStartColumn(final int row)
+    {
+        return columns[START_COLUMN][row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the end column for the given row.
+     */
+    int getEndColumn(final int row)
+    {
+        return columns[END_COLUMN][row];
+    }
+
+    /** {@inheritDoc} */
+    public int getId(final int row)
+    {
+        return columns[ID][row];
+    }
+
+    /** {@inheritDoc} */
+    public int getSeverity(final int row)
+    {
+        return columns[SEVERITY][row];
+    }
+
+    /** {@inheritDoc} */
+    public int getSource(final int row)
+    {
+        return columns[SOURCE][row];
+    }
+
+    /**
+     * Reads a message from the arena.
+     *
+     * @param row the row.
+     * @return the message for the given row, may be null.
+     */
+    String getMessage(final int row)
+    {
+        int length = columns[MESSAGE_LENGTH][row];
+
+        if (length == -1)
+        {
+            return null;
+        }
+        else if (closed)
+        {
+            // The chunks may have been unmapped, so must not be touched
+            throw new IllegalStateException("Diagnostic messages can not be read from a closed DiagnosticStore");
+        }
+
+        long offset = messageOffsets[row];
+        ByteBuffer chunk = chunks.get((int) (offset >>> 32)).duplicate();
+        chunk.position((int) offset);
+
+        byte[] bytes = new byte[length];
+        chunk.get(bytes);
+
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Sets an int column.
+     *
+     * @param row the row.
+     * @param column the column.
+     * @param value the value to set.
+     */
+    private synchronized void set(final int row, final int column, final int value)
+    {
+        columns[column][row] = value;
+    }
+
+    /**
+     * Sets the start line and, if necessary, the end line, as for {@link Diagnostic#setStartLine(int)}.
+     *
+     * @param row the row.
+     * @param startLine the start line.
+     */
+    synchronized void setStartLine(final int row, final int startLine)
+    {
+        columns[START_LINE][row] = Math.max(1, startLine);
+        columns[END_LINE][row] = Math.max(columns[END_LINE][row], startLine);
+    }
+
+    /**
+     * Sets the end line, as for {@link Diagnostic#setEndLine(int)}.
+     *
+     * @param row the row.
+     * @param endLine the end line.
+     */
+    void setEndLine(final int row, final int endLine)
+    {
+        set(row, END_LINE, Math.max(1, endLine));
+    }
+
+    /**
+     * Sets the start column and, if necessary, the end column, as for {@link Diagnostic#setStartColumn(int)}.
+     *
+     * @param row the row.
+     * @param startColumn the start column.
+     */
+    synchronized void setStartColumn(final int row, final int startColumn)
+    {
+        columns[START_COLUMN][row] = startColumn;
+        columns[END_COLUMN][row] = Math.max(columns[END_COLUMN][row], startColumn);
+    }
+
+    /**
+     * @param row the row.
+     * @param endColumn the end column.
+     */
+    void setEndColumn(final int row, final int endColumn)
+    {
+        set(row, END_COLUMN, endColumn);
+    }
+
+    /**
+     * @param row the row.
+     * @param severity the severity.
+     */
+    void setSeverity(final int row, final int severity)
+    {
+        set(row, SEVERITY, severity);
+    }
+
+    /**
+     * @param row the row.
+     * @param source the source (tool).
+     */
+    void setSource(final int row, final int source)
+    {
+        set(row, SOURCE, source);
+    }
+
+    /**
+     * @param row the row.
+     * @param className the class name.
+     */
+    synchronized void setClassName(final int row, final String className)
+    {
+        columns[CLASS_NAME][row] = classNames.getId(className);
+    }
+
+    /**
+     * @param row the row.
+     * @param fileName the file name.
+     */
+    synchronized void setFileName(final int row, final String fileName)
+    {
+        columns[FILE_NAME][row] = fileNames.getId(fileName);
+    }
+
+    /**
+     * @param row the row.
+     * @param ruleName the rule name.
+     */
+    synchronized void setRuleName(final int row, final String ruleName)
+    {
+        columns[RULE_NAME][row] = ruleNames.getId(ruleName);
+    }
+
+    /**
+     * Appends a message to the arena. The space used by any previous message for the row is not reclaimed.
+     *
+     * @param row the row.
+     * @param message the message, may be null.
+     */
+    synchronized void setMessage(final int row, final String message)
+    {
+        if (message == null)
+        {
+            columns[MESSAGE_LENGTH][row] = -1;
+            return;
+        }
+
+        byte[] bytes = message.getBytes(UTF8);
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+
+        if (chunk == null || chunk.remaining() < bytes.length)
+        {
+            chunk = allocate(Math.max(CHUNK_SIZE, bytes.length));
+            chunks.add(chunk);
+        }
+
+        messageOffsets[row] = ((long) (chunks.size() - 1) << 32) | chunk.position();
+        columns[MESSAGE_LENGTH][row] = bytes.length;
+        chunk.put(bytes);
+    }
+
+    /**
+     * Allocates a new chunk for the message arena.
+     *
+     * @param capacity the capacity of the chunk.
+     * @return the new chunk.
+     */
+    private ByteBuffer allocate(final int capacity)
+    {
+        if (HEAP.equals(arenaType))
+        {
+            return ByteBuffer.allocate(capacity);
+        }
+        else if (DIRECT.equals(arenaType))
+        {
+            return ByteBuffer.allocateDirect(capacity);
+        }
+
+        try
+        {
+            ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, mappedSize, capacity);
+            mappedSize += capacity;
+            return chunk;
+        }
+        catch (IOException e)
+        {
+            throw new QAException("Unable to extend diagnostic message file " + mappedFile, e);
+        }
+    }
+
+    /**
+     * Releases the message arena, and deletes the memory-mapped file if there is one.
+     * The store must not be used after it has been closed.
+     */
+    public synchronized void close()
+    {
+        closed = true;
+
+        // Direct and mapped chunks are released straight away, rather than when they are garbage collected,
+        // so that the memory is freed and the mapped file can be deleted on platforms which lock mapped files.
+        if (!HEAP.equals(arenaType))
+        {
+            for (ByteBuffer chunk : chunks)
+            {
+                release(chunk);
+            }
+        }
+
+        chunks.clear();
+
+        if (channel != null)
+        {
+            QaUtil.safeClose(channel);
+            channel = null;
+
+            if (!mappedFile.delete())
+            {
+                // Mapped files can't be deleted on some platforms until the mapping has been garbage collected.
+                QaLogger.getInstance().debug("Unable to delete " + mappedFile + ", it will be deleted on exit");
+            }
+        }
+    }
+
+    /**
+     * Releases the memory of a direct or mapped buffer. The buffer must not be used afterwards.
+     * There is no public API for this, so the VM's internal cleaner is used if it is accessible.
+     *
+     * @param buffer the buffer to release.
+     */
+    private static void release(final ByteBuffer buffer)
+    {
+        try
+        {
+            try
+            {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            }
+            catch (NoSuchMethodException e)
+            {
+                // Java 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+
+                if (cleaner != null)
+                {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            QaLogger.getInstance().debug("Unable to release diagnostic message buffer, it will be released when garbage collected");
+        }
+    }
+
+    /**
+     * A dictionary of strings, so that each distinct string is only stored once.
+     */
+    private static final class Dictionary
+    {
+        /** The id of each string. */
+        private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+        /** The strings, by id. */
+        private final List<String> values = new ArrayList<String>();
+
+        /**
+         * Retrieves the id for a string, adding it to the dictionary if necessary.
+         *
+         * @param value the string, may be null.
+         * @return the id of the string, or -1 for null.
+         */
+        private int getId(final String value)
+        {
+            if (value == null)
+            {
+                return -1;
+            }
+
+            Integer id = ids.get(value);
+
+            if (id == null)
+            {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+
+            return id;
+        }
+
+        /**
+         * Retrieves a string by id.
+         *
+         * @param id the id of the string, or -1 for null.
+         * @return the string, may be null.
+         */
+        private String getValue(final int id)
+        {
+            return id == -1 ? null : values.get(id);
+        }
+    }
+}
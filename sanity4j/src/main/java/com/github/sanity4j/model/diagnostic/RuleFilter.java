@@ -0,0 +1,328 @@
+package com.github.sanity4j.model.diagnostic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * <p>RuleFilter decides whether a class is included in the results for a single rule,
+ * from the rule's "includes" and "excludes" patterns in Diagnostic.properties.</p>
+ *
+ * <p>The patterns are compiled once, when the filter is created. Most patterns are simple:
+ * match everything, a class name, a prefix such as a package, or a suffix such as "Test".
+ * These are matched using hash sets and tries, and only the remaining patterns are matched
+ * as regular expressions. Decisions are remembered for each class name, as a rule usually
+ * reports many diagnostics for the same class.</p>
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+final class RuleFilter
+{
+    /** A filter which does not exclude anything, for rules without includes or excludes. */
+    static final RuleFilter NONE = new RuleFilter(null, null);
+
+    /** The regular expression which matches any class name. */
+    private static final String MATCH_ALL = ".*";
+
+    /** Compiled regular expressions, shared by all filters, keyed by pattern. */
+    private static final ConcurrentMap<String, Pattern> PATTERNS = new ConcurrentHashMap<String, Pattern>();
+
+    /** The patterns for the classes to include, or null to include all classes. */
+    private final PatternSet includes;
+
+    /** The patterns for the classes to exclude, or null to exclude nothing. */
+    private final PatternSet excludes;
+
+    /** The decisions made so far, keyed by class name. */
+    private final ConcurrentMap<String, Boolean> decisions = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * Creates a RuleFilter.
+     *
+     * @param includes a comma-delimited list of regular expressions for the classes to include, may be null.
+     * @param excludes a comma-delimited list of regular expressions for the classes to exclude, may be null.
+     */
+    RuleFilter(final String includes, final String excludes)
+    {
+        this.includes = includes == null ? null : new PatternSet(includes);
+        this.excludes = excludes == null ? null : new PatternSet(excludes);
+    }
+
+    /**
+     * Determines whether diagnostics for the given class should be excluded.
+     *
+     * @param className the class name.
+     * @return true if diagnostics for the class should be excluded.
+     */
+    boolean isExcluded(final String className)
+    {
+        if (includes == null && excludes == null)
+        {
+            return false;
+        }
+
+        String name = className == null ? "" : className;
+        Boolean excluded = decisions.get(name);
+
+        if (excluded == null)
+        {
+            // A class is excluded if it isn't matched by at least one include, or is matched by an exclude
+            excluded = (includes != null && !includes.matches(name)) || (excludes != null && excludes.matches(name));
+            decisions.put(name, excluded);
+        }
+
+        return excluded;
+    }
+
+    /**
+     * Returns the compiled form of the given regular expression.
+     *
+     * @param regex the regular expression.
+     * @return the compiled regular expression.
+     */
+    private static Pattern getPattern(final String regex)
+    {
+        Pattern pattern = PATTERNS.get(regex);
+
+        if (pattern == null)
+        {
+            pattern = Pattern.compile(regex);
+            PATTERNS.putIfAbsent(regex, pattern);
+        }
+
+        return pattern;
+    }
+
+    /**
+     * Returns the literal text matched by a regular expression, if the expression only matches literal text.
+     *
+     * @param regex the regular expression.
+     * @return the literal text matched, or null if the expression is not a simple literal.
+     */
+    private static String toLiteral(final String regex)
+    {
+        StringBuilder literal = new StringBuilder(regex.length());
+
+        for (int i = 0; i < regex.length(); i++)
+        {
+            char chr = regex.charAt(i);
+
+            if (chr == '\\' && i + 1 < regex.length() && regex.charAt(i + 1) == '.')
+            {
+                literal.append('.');
+                i++;
+            }
+            else if (Character.isLetterOrDigit(chr) || chr == '_')
+            {
+                literal.append(chr);
+            }
+            else
+            {
+                return null;
+            }
+        }
+
+        return literal.toString();
+    }
+
+    /**
+     * A set of patterns, any of which may match a class name.
+     */
+    private static final class PatternSet
+    {
+        /** Whether the set contains a pattern which matches all class names. */
+        private boolean matchAll;
+
+        /** Class names which are matched exactly. */
+        private final Set<String> literals = new HashSet<String>();
+
+        /** Prefixes which are matched, e.g. for packages. */
+        private final Trie prefixes = new Trie(false);
+
+        /** Suffixes which are matched, e.g. for class name conventions. */
+        private final Trie suffixes = new Trie(true);
+
+        /** The patterns which must be matched as regular expressions. */
+        private final List<Pattern> patterns = new ArrayList<Pattern>();
+
+        /**
+         * Creates a PatternSet.
+         *
+         * @param regexes a comma-delimited list of regular expressions.
+         */
+        PatternSet(final String regexes)
+        {
+            for (StringTokenizer st = new StringTokenizer(regexes, ","); st.hasMoreTokens();)
+            {
+                add(st.nextToken());
+            }
+        }
+
+        /**
+         * Adds a pattern to the set.
+         *
+         * @param regex the regular expression to add.
+         */
+        private void add(final String regex)
+        {
+            if (MATCH_ALL.equals(regex))
+            {
+                matchAll = true;
+                return;
+            }
+
+            boolean prefix = regex.endsWith(MATCH_ALL);
+            boolean suffix = regex.startsWith(MATCH_ALL);
+            String literal = null;
+
+            if (!(prefix && suffix))
+            {
+                int start = suffix ? MATCH_ALL.length() : 0;
+                int end = prefix ? regex.length() - MATCH_ALL.length() : regex.length();
+                literal = toLiteral(regex.substring(start, end));
+            }
+
+            if (literal == null)
+            {
+                patterns.add(getPattern(regex));
+            }
+            else if (prefix)
+            {
+                prefixes.add(literal);
+            }
+            else if (suffix)
+            {
+                suffixes.add(literal);
+            }
+            else
+            {
+                literals.add(literal);
+            }
+        }
+
+        /**
+         * Determines whether any of the patterns in the set match the given class name.
+         *
+         * @param className the class name.
+         * @return true if the class name is matched.
+         */
+        boolean matches(final String className)
+        {
+            if (matchAll || literals.contains(className) || prefixes.matches(className) || suffixes.matches(className))
+            {
+                return true;
+            }
+
+            for (Pattern pattern : patterns)
+            {
+                if (pattern.matcher(className).matches())
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * A character trie which matches strings starting (or ending) with any of a set of strings.
+     */
+    private static final class Trie
+    {
+        /** Whether strings are read backwards, to match suffixes. */
+        private final boolean reverse;
+
+        /** The root node of the trie, null if the trie is empty. */
+        private Node root;
+
+        /**
+         * Creates a Trie.
+         *
+         * @param reverse true to match suffixes, false to match prefixes.
+         */
+        Trie(final boolean reverse)
+        {
+            this.reverse = reverse;
+        }
+
+        /**
+         * Adds a string to the trie.
+         *
+         * @param text the prefix or suffix to add.
+         */
+        void add(final String text)
+        {
+            if (root == null)
+            {
+                root = new Node();
+            }
+
+            Node node = root;
+
+            for (int i = 0; i < text.length(); i++)
+            {
+                Character chr = text.charAt(reverse ? text.length() - 1 - i : i);
+                Node child = node.children.get(chr);
+
+                if (child == null)
+                {
+                    child = new Node();
+                    node.children.put(chr, child);
+                }
+
+                node = child;
+            }
+
+            node.terminal = true;
+        }
+
+        /**
+         * Determines whether the given string starts (or ends) with any of the strings in the trie.
+         *
+         * @param text the text to match.
+         * @return true if the text is matched.
+         */
+        boolean matches(final String text)
+        {
+            Node node = root;
+
+            for (int i = 0; node != null; i++)
+            {
+                if (node.terminal)
+                {
+                    return true;
+                }
+
+                if (i == text.length())
+                {
+                    break;
+                }
+
+                node = node.children.get(text.charAt(reverse ? text.length() - 1 - i : i));
+            }
+
+            return false;
+        }
+
+        /**
+         * A node in the trie.
+         */
+        private static final class Node
+        {
+            /** The child nodes, keyed by the next character. */
+            private final Map<Character, Node> children = new HashMap<Character, Node>();
+
+            /** Whether a prefix (or suffix) ends at this node. */
+            private boolean terminal;
+        }
+    }
+}
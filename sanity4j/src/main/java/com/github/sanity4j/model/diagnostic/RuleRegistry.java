@@ -0,0 +1,325 @@
+package com.github.sanity4j.model.diagnostic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.sanity4j.util.QaLogger;
+
+/**
+ * <p>RuleRegistry holds the metadata for each rule: its severity, categories and include/exclude
+ * filter. The metadata is read from the Diagnostic.properties entries, which are of the form
+ * <code>&lt;source&gt;.&lt;ruleName&gt;.&lt;option&gt;=&lt;value&gt;</code>.</p>
+ *
+ * <p>A registry is built once from a set of properties and is not modified afterwards, so it
+ * may be read from many threads. Each rule is assigned a dense id, so that diagnostics can refer
+ * to their rule without repeating the property lookups.</p>
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class RuleRegistry
+{
+    /** The severity of a rule which does not define one. */
+    public static final int UNDEFINED_SEVERITY = -1;
+
+    /** The properties which the registry was built from. */
+    private final Map<String, String> properties;
+
+    /** The rules, indexed by id. */
+    private final Rule[] rules;
+
+    /** The rules, keyed by source description and then rule name. */
+    private final Map<String, Map<String, Rule>> rulesBySource = new HashMap<String, Map<String, Rule>>();
+
+    /** The keys of the missing severities which have already been reported. */
+    private final ConcurrentMap<String, Boolean> reportedSeverities = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * Creates a RuleRegistry.
+     *
+     * @param properties the rule properties.
+     */
+    RuleRegistry(final Properties properties)
+    {
+        this(toMap(properties));
+    }
+
+    /**
+     * Creates a RuleRegistry.
+     *
+     * @param properties the rule properties, which must not be modified afterwards.
+     */
+    private RuleRegistry(final Map<String, String> properties)
+    {
+        this.properties = properties;
+
+        // Group the options by rule. The rules are sorted so that ids don't depend on hashing order.
+        Map<String, Map<String, Map<String, String>>> options = new TreeMap<String, Map<String, Map<String, String>>>();
+
+        for (Map.Entry<String, String> entry : properties.entrySet())
+        {
+            String key = entry.getKey();
+            int firstDot = key.indexOf('.');
+            int lastDot = key.lastIndexOf('.');
+
+            if (firstDot != -1 && lastDot > firstDot)
+            {
+                String sourceName = key.substring(0, firstDot);
+                String ruleName = key.substring(firstDot + 1, lastDot);
+
+                Map<String, Map<String, String>> optionsForSource = options.get(sourceName);
+
+                if (optionsForSource == null)
+                {
+                    optionsForSource = new TreeMap<String, Map<String, String>>();
+                    options.put(sourceName, optionsForSource);
+                }
+
+                Map<String, String> optionsForRule = optionsForSource.get(ruleName);
+
+                if (optionsForRule == null)
+                {
+                    optionsForRule = new HashMap<String, String>();
+                    optionsForSource.put(ruleName, optionsForRule);
+                }
+
+                optionsForRule.put(key.substring(lastDot + 1), entry.getValue());
+            }
+        }
+
+        List<Rule> ruleList = new ArrayList<Rule>();
+
+        for (Map.Entry<String, Map<String, Map<String, String>>> sourceEntry : options.entrySet())
+        {
+            Map<String, Rule> rulesForSource = new HashMap<String, Rule>();
+            rulesBySource.put(sourceEntry.getKey(), rulesForSource);
+
+            for (Map.Entry<String, Map<String, String>> ruleEntry : sourceEntry.getValue().entrySet())
+            {
+                Rule rule = new Rule(ruleList.size(), sourceEntry.getKey(), ruleEntry.getKey(), ruleEntry.getValue());
+                ruleList.add(rule);
+                rulesForSource.put(rule.getName(), rule);
+            }
+        }
+
+        rules = ruleList.toArray(new Rule[ruleList.size()]);
+    }
+
+    /**
+     * Copies a set of properties to a map.
+     *
+     * @param properties the properties to copy, may be null.
+     * @return an unmodifiable copy of the properties.
+     */
+    private static Map<String, String> toMap(final Properties properties)
+    {
+        Map<String, String> map = new HashMap<String, String>();
+
+        if (properties != null)
+        {
+            for (String key : properties.stringPropertyNames())
+            {
+                map.put(key, properties.getProperty(key));
+            }
+        }
+
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Creates a new registry from this registry's properties, overlaid with the given properties.
+     *
+     * @param overlay the properties which override this registry's properties.
+     * @return a new registry.
+     */
+    RuleRegistry withOverlay(final Properties overlay)
+    {
+        Map<String, String> merged = new HashMap<String, String>(properties);
+        merged.putAll(toMap(overlay));
+
+        return new RuleRegistry(Collections.unmodifiableMap(merged));
+    }
+
+    /**
+     * Retrieves a property which the registry was built from.
+     *
+     * @param key the property key.
+     * @return the property value, or null if the property is not defined.
+     */
+    public String getProperty(final String key)
+    {
+        return properties.get(key);
+    }
+
+    /**
+     * @return the number of rules in the registry.
+     */
+    public int getRuleCount()
+    {
+        return rules.length;
+    }
+
+    /**
+     * Retrieves a rule by id.
+     *
+     * @param id the rule id, from 0 to {@link #getRuleCount()} - 1.
+     * @return the rule.
+     */
+    public Rule getRule(final int id)
+    {
+        return rules[id];
+    }
+
+    /**
+     * Retrieves a rule by name.
+     *
+     * @param sourceName the source description of the rule, see {@link Diagnostic#getSourceDescription()}.
+     * @param ruleName the rule name.
+     * @return the rule, or null if there are no properties for the rule.
+     */
+    public Rule getRule(final String sourceName, final String ruleName)
+    {
+        Map<String, Rule> rulesForSource = rulesBySource.get(sourceName);
+        return rulesForSource == null ? null : rulesForSource.get(String.valueOf(ruleName));
+    }
+
+    /**
+     * Records that a rule's severity is missing, so that it is only reported once.
+     *
+     * @param key the property key of the missing severity.
+     * @return true if the missing severity has not already been reported.
+     */
+    boolean reportMissingSeverity(final String key)
+    {
+        return reportedSeverities.putIfAbsent(key, Boolean.TRUE) == null;
+    }
+
+    /**
+     * The metadata for a single rule.
+     */
+    public static final class Rule
+    {
+        /** The rule id. */
+        private final int id;
+
+        /** The source description of the rule. */
+        private final String sourceName;
+
+        /** The rule name. */
+        private final String name;
+
+        /** The rule severity, or {@link RuleRegistry#UNDEFINED_SEVERITY}. */
+        private final int severity;
+
+        /** The category paths for the rule. */
+        private final String[] categories;
+
+        /** The include/exclude filter for the rule. */
+        private final RuleFilter filter;
+
+        /**
+         * Creates a Rule.
+         *
+         * @param id the rule id.
+         * @param sourceName the source description of the rule.
+         * @param name the rule name.
+         * @param options the rule's options, keyed by option name.
+         */
+        private Rule(final int id, final String sourceName, final String name, final Map<String, String> options)
+        {
+            this.id = id;
+            this.sourceName = sourceName;
+            this.name = name;
+
+            severity = parseSeverity(options.get("severity"));
+
+            String categoryValue = options.get("category");
+            categories = categoryValue == null ? new String[0] : categoryValue.split(",");
+
+            String includes = options.get("includes");
+            String excludes = options.get("excludes");
+            filter = (includes == null && excludes == null) ? RuleFilter.NONE : new RuleFilter(includes, excludes);
+        }
+
+        /**
+         * Parses a rule's severity. A malformed severity is reported and treated as undefined,
+         * rather than preventing the rest of the rules from being read.
+         *
+         * @param severityValue the severity property value, may be null.
+         * @return the severity, or {@link RuleRegistry#UNDEFINED_SEVERITY}.
+         */
+        private int parseSeverity(final String severityValue)
+        {
+            if (severityValue == null)
+            {
+                return UNDEFINED_SEVERITY;
+            }
+
+            try
+            {
+                return Integer.parseInt(severityValue.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                QaLogger.getInstance().warn("Invalid severity [" + severityValue + "] for rule "
+                                            + sourceName + "." + name + ", treating it as undefined");
+                return UNDEFINED_SEVERITY;
+            }
+        }
+
+        /**
+         * @return the rule id.
+         */
+        public int getId()
+        {
+            return id;
+        }
+
+        /**
+         * @return the source description of the rule.
+         */
+        public String getSourceName()
+        {
+            return sourceName;
+        }
+
+        /**
+         * @return the rule name.
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return the rule severity, or {@link RuleRegistry#UNDEFINED_SEVERITY} if the rule does not define one.
+         */
+        public int getSeverity()
+        {
+            return severity;
+        }
+
+        /**
+         * @return the category paths for the rule.
+         */
+        public String[] getCategories()
+        {
+            return categories.clone();
+        }
+
+        /**
+         * @return the include/exclude filter for the rule.
+         */
+        RuleFilter getFilter()
+        {
+            return filter;
+        }
+    }
+}
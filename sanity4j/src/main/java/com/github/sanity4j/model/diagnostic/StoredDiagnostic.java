@@ -0,0 +1,200 @@
+package com.github.sanity4j.model.diagnostic;
+
+/**
+ * A lightweight view of a row in a {@link DiagnosticStore}. All fields are read from,
+ * and written to, the store, so several views of the same row may exist at once.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+final class StoredDiagnostic extends Diagnostic
+{
+    /** The store containing the diagnostic. */
+    private final DiagnosticStore store;
+
+    /** The row of the diagnostic in the store. */
+    private final int row;
+
+    /**
+     * Creates a StoredDiagnostic.
+     *
+     * @param store the store containing the diagnostic.
+     * @param row the row of the diagnostic in the store.
+     * @param diagnosticFactory the factory which created the diagnostic.
+     * @param identifier the id of the diagnostic.
+     */
+    StoredDiagnostic(final DiagnosticStore store, final int row, final DiagnosticFactory diagnosticFactory,
+                     final int identifier)
+    {
+        super(diagnosticFactory, identifier);
+        this.store = store;
+        this.row = row;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getClassName()
+    {
+        return store.getClassName(row);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setClassName(final String className)
+    {
+        store.setClassName(row, className);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEndColumn()
+    {
+        return store.getEndColumn(row);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setEndColumn(final int endColumn)
+    {
+        store.setEndColumn(row, endColumn);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEndLine()
+    {
+        return store.getEndLine(row);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setEndLine(final int endLine)
+    {
+        store.setEndLine(row, endLine);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getFileName()
+    {
+        return store.getFileName(row);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setFileName(final String fileName)
+    {
+        store.setFileName(row, fileName);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getMessage()
+    {
+        return store.getMessage(row);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setMessage(final String message)
+    {
+        store.setMessage(row, message);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSeverity()
+    {
+        return store.getSeverity(row);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setSeverity(final int severity)
+    {
+        store.setSeverity(row, severity);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSource()
+    {
+        return store.getSource(row);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setSource(final int source)
+    {
+        store.setSource(row, source);
+        invalidateRule();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getRuleName()
+    {
+        return store.getRuleName(row);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setRuleName(final String ruleName)
+    {
+        store.setRuleName(row, ruleName);
+        invalidateRule();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getStartColumn()
+    {
+        return store.getStartColumn(row);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setStartColumn(final int startColumn)
+    {
+        store.setStartColumn(row, startColumn);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getStartLine()
+    {
+        return store.getStartLine(row);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setStartLine(final int startLine)
+    {
+        store.setStartLine(row, startLine);
+    }
+
+    /**
+     * Views are equal if they are for the same row of the same store.
+     *
+     * @param obj the object to compare against.
+     * @return true if the object is a view of the same row.
+     */
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if (!(obj instanceof StoredDiagnostic))
+        {
+            return false;
+        }
+
+        StoredDiagnostic other = (StoredDiagnostic) obj;
+        return store == other.store && row == other.row;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode()
+    {
+        return row;
+    }
+}
@@ -14,7 +14,6 @@ import com.github.sanity4j.model.diagnostic.Diagnostic;
 import com.github.sanity4j.model.diagnostic.DiagnosticCategory;
 import com.github.sanity4j.model.diagnostic.DiagnosticSet;
 import com.github.sanity4j.util.ExtractStats;
-import com.github.sanity4j.util.FileUtil;
 import com.github.sanity4j.util.StringUtil;
 import com.github.sanity4j.workflow.QAProcessor;
 
@@ -65,25 +64,32 @@ public class CategoryWriter
             fileName = buf.toString();  
         }
 
-        String summary = generateCategoryPage(packageName);       
-        FileUtil.writeToFile(summary, new File(reportDir, fileName));
+        XmlWriter xml = new XmlWriter(new File(reportDir, fileName));
+        
+        try
+        {
+            generateCategoryPage(packageName, xml);
+            xml.close();
+        }
+        finally
+        {
+            xml.discard();
+        }
     }       
     
     /**
      * Generates the category XML.
      * 
      * @param packageName the package name, or null to create a summary for all packages.
-     * @return the generated XML
+     * @param xml the writer to write the XML to
      */
-    private String generateCategoryPage(final String packageName)
+    private void generateCategoryPage(final String packageName, final XmlWriter xml)
     {
         // For the package name com.bar.foo, we need "../../../"
         String pathToRoot = StringUtil.empty(packageName) 
                           ? "" 
                           : (packageName.replaceAll("[^\\.]", "").replaceAll("\\.", "../") + "../");
         
-        StringBuilder xml = new StringBuilder();
-
         // Write top-level package summary info        
         xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
            .append("<?xml-stylesheet type=\"text/xsl\" href=\"").append(pathToRoot).append("xslt/package-by-category.xsl\"?>\n")        
@@ -110,18 +116,16 @@ public class CategoryWriter
         generateCategoryDetails(category, xml);
         
         xml.append("</packageByCategory>\n"); 
-
-        return xml.toString();
     }
     
     /**
      * Generates category details XML.
      * 
      * @param category the Diagnostic category
-     * @param xml the string buffer to append the XML output to
+     * @param xml the writer to write the XML output to
      */
     private void generateCategoryDetails(final DiagnosticCategory category, 
-                                          final StringBuilder xml)
+                                          final XmlWriter xml)
     {
         xml.append("<category name=\"").append(category.getName()).append("\">\n");
                 
@@ -59,15 +59,15 @@ public final class ChartFactory
         TimeSeries branchCoverage = new TimeSeries("Branch coverage", Second.class);
         TimeSeries quality = new TimeSeries("Quality", Second.class);
 
+        double[] qualityValues = ReportUtil.evaluateMetric("quality", summaries);
+
         for (int i = 0; i < summaries.length; i++)
         {
             Second second = new Second(summaries[i].getRunDate());
             
             lineCoverage.addOrUpdate(second, HUNDRED * summaries[i].getLineCoverage());
             branchCoverage.addOrUpdate(second, HUNDRED * summaries[i].getBranchCoverage());
-            
-            double qualityValue = ReportUtil.evaluateMetric("quality", summaries[i]);
-            quality.addOrUpdate(second, HUNDRED * qualityValue);
+            quality.addOrUpdate(second, HUNDRED * qualityValues[i]);
         }
         
         TimeSeriesCollection dataset = new TimeSeriesCollection();
@@ -108,6 +108,7 @@ public final class CrossProjectChartCreator
             TimeSeries lineCoverageForProject = new TimeSeries(projectName, Second.class);
             TimeSeries branchCoverageForProject = new TimeSeries(projectName, Second.class);
             TimeSeries qualityForProject = new TimeSeries(projectName, Second.class);
+            double[] qualityValues = ReportUtil.evaluateMetric("quality", summaries[i]);
 
             for (int j = 0; j < summaries[i].length; j++)
             {
@@ -119,8 +120,7 @@ public final class CrossProjectChartCreator
                     lineCoverageForProject.addOrUpdate(second, HUNDRED * summaries[i][j].getLineCoverage());
                     branchCoverageForProject.addOrUpdate(second, HUNDRED * summaries[i][j].getBranchCoverage());
 
-                    double qualityValue = ReportUtil.evaluateMetric("quality", summaries[i][j]);
-                    qualityForProject.addOrUpdate(second, HUNDRED * qualityValue);
+                    qualityForProject.addOrUpdate(second, HUNDRED * qualityValues[j]);
                 }
             }
 
@@ -2,7 +2,6 @@ package com.github.sanity4j.report;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -11,8 +10,7 @@ import com.github.sanity4j.model.coverage.CoverageItf;
 import com.github.sanity4j.model.diagnostic.Diagnostic;
 import com.github.sanity4j.model.diagnostic.DiagnosticSet;
 import com.github.sanity4j.util.ExtractStats;
-import com.github.sanity4j.util.FileUtil;
-import com.github.sanity4j.util.StringUtil;
+import com.github.sanity4j.util.PackageTree;
 import com.github.sanity4j.workflow.QAProcessor;
 
 
@@ -61,29 +59,36 @@ public class ExportWriter
 	 */
 	public void writeExport() throws IOException
 	{
-        StringBuilder xml = new StringBuilder();
+        // The export covers the whole project, so is written out as it is generated
+        XmlWriter xml = new XmlWriter(new File(reportDir, "export.xml"));
 
-        // Write top-level package summary info        
-        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
-            .append("<?xml-stylesheet type=\"text/xsl\" href=\"xslt/package-frame.xsl\"?>\n")        
-            .append("<export qaVersion=\"").append(QAProcessor.QA_VERSION)
-            .append("\" runDate=\"").append(new Date()).append("\">\n");
-
-        // Recursively write all packages
-        writePackage("", xml);
-        
-        xml.append("</export>\n");
-        
-        FileUtil.writeToFile(xml.toString(), new File(reportDir, "export.xml"));
+        try
+        {
+            // Write top-level package summary info        
+            xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<?xml-stylesheet type=\"text/xsl\" href=\"xslt/package-frame.xsl\"?>\n")        
+                .append("<export qaVersion=\"").append(QAProcessor.QA_VERSION)
+                .append("\" runDate=\"").append(new Date()).append("\">\n");
+    
+            // Recursively write all packages
+            writePackage("", xml);
+            
+            xml.append("</export>\n");
+            xml.close();
+        }
+        finally
+        {
+            xml.discard();
+        }
 	}
 	
 	/**
 	 * Writes out the findings for a single package.
 	 * 
 	 * @param packageName the name of the package to write
-	 * @param xml the StringBuilder to write the XML to.
+	 * @param xml the writer to write the XML to.
 	 */
-	private void writePackage(final String packageName, final StringBuilder xml)
+	private void writePackage(final String packageName, final XmlWriter xml)
 	{
         boolean allPackages = "".equals(packageName);
 
@@ -102,8 +107,8 @@ public class ExportWriter
         {
             coverage = stats.getCoverage();
             diags = stats.getDiagnostics();
-            numLines = stats.getLineCount();
-            classCount = stats.getClassCount();
+            numLines = stats.getPackageTree().getRoot().getLineCount(true);
+            classCount = stats.getPackageTree().getRoot().getClassCount(true);
         }
         else
         {
@@ -159,49 +164,46 @@ public class ExportWriter
             writePackageClasses(packageName, xml);        
         }
 
-        // Sub-packages
-        String packagePrefix = StringUtil.empty(packageName) ? "" : packageName + '.';
-        List<String> allSubPackages = new ArrayList<String>();
+        // Only write sub-packages without any intermediate packages between them and this package.
+        PackageTree.Node node = stats.getPackageTree().getNode(packageName);
         
-        for (String otherPackageName : sourcesByPackage.keySet())
+        if (node != null)
         {
-            // Find all sub-packages.
-            if (!otherPackageName.equals(packageName) && otherPackageName.startsWith(packagePrefix))
-            {
-                allSubPackages.add(otherPackageName);
-            }
+            writeSubPackages(node.getChildren(), xml);
         }
         
-        // Only write sub-packages without any intermediate packages between them and this package.
-        for (String subPackage : allSubPackages)
+        xml.append("</package>\n");
+	}
+	
+    /**
+     * Writes out the findings for the given packages. Packages without any classes
+     * are skipped, and their sub-packages written instead.
+     * 
+     * @param nodes the packages to write
+     * @param xml the writer to write the XML to.
+     */
+    private void writeSubPackages(final List<PackageTree.Node> nodes, final XmlWriter xml)
+    {
+        for (PackageTree.Node node : nodes)
         {
-            boolean hasIntermediatePackage = false;
-            
-            for (String otherSubPackage : allSubPackages)
+            if (sourcesByPackage.containsKey(node.getName()))
             {
-                if (!subPackage.equals(otherSubPackage) && subPackage.startsWith(otherSubPackage))
-                {
-                    hasIntermediatePackage = true;
-                    break;
-                }   
+                writePackage(node.getName(), xml);
             }
-            
-            if (!hasIntermediatePackage)
+            else
             {
-                writePackage(subPackage, xml);
+                writeSubPackages(node.getChildren(), xml);
             }
         }
-        
-        xml.append("</package>\n");
-	}
-	
+    }
+    
     /**
      * Writes out the findings for the classes in a single package.
      * 
      * @param packageName the name of the package to write
-     * @param xml the StringBuilder to write the XML to.
+     * @param xml the writer to write the XML to.
      */
-    private void writePackageClasses(final String packageName, final StringBuilder xml)
+    private void writePackageClasses(final String packageName, final XmlWriter xml)
     {
         List<String> packageSources = sourcesByPackage.get(packageName);
         
@@ -266,7 +268,7 @@ public class ExportWriter
 
                 if (diagnostic.getMessage() != null)
                 {
-                    xml.append(ReportUtil.htmlEscape(diagnostic.getMessage().trim()));
+                    xml.appendEscaped(diagnostic.getMessage().trim());
                 }
 
                 xml.append("</diag>\n");
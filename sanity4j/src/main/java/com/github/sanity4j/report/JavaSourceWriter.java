@@ -5,10 +5,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 
@@ -16,7 +12,6 @@ import com.github.sanity4j.model.coverage.ClassCoverage;
 import com.github.sanity4j.model.diagnostic.Diagnostic;
 import com.github.sanity4j.model.diagnostic.DiagnosticSet;
 import com.github.sanity4j.util.ExtractStats;
-import com.github.sanity4j.util.FileUtil;
 import com.github.sanity4j.util.QaUtil;
 import com.github.sanity4j.util.StringUtil;
 import com.github.sanity4j.workflow.QAProcessor;
@@ -72,60 +67,65 @@ public class JavaSourceWriter
         String pathToRoot = ReportUtil.getHtmlPathToRoot(relativeDestPath);
         File destFile = new File(reportDir, relativeDestPath);
 
-        // Buffer and diagnostics for this source file
-        StringBuilder html = new StringBuilder((int) sourceFile.length());
+        // Diagnostics for this source file
         DiagnosticSet diags = stats.getDiagnostics().getDiagnosticsForFile(sourcePath);
-        List<Diagnostic> orderedDiags = sortDiags(diags);
 
         // We always use the enclosing class's name for coverage
         String className = stats.getClassNameForSourcePath(sourcePath);
         ClassCoverage coverage = stats.getCoverage().getClassCoverage(className);
+        LineAnnotations annotations = new LineAnnotations(diags, coverage);
 
         int lineCount = stats.getClassLineCount(className);
 
-        // Write Header        
-        html.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        html.append("<?xml-stylesheet type=\"text/xsl\" href=\"").append(pathToRoot).append("xslt/source-code.xsl\"?>\n");        
-        html.append("<classDetails className=\"").append(className).append("\" pathToRoot=\"")
-            .append(pathToRoot).append("\" qaVersion=\"").append(QAProcessor.QA_VERSION)
-            .append("\" runDate=\"").append(new Date()).append("\">\n");
+        // Write to file "com/foo/FooBar.xml"
+        XmlWriter html = new XmlWriter(destFile);
+
+        try
+        {
+            // Write Header        
+            html.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            html.append("<?xml-stylesheet type=\"text/xsl\" href=\"").append(pathToRoot).append("xslt/source-code.xsl\"?>\n");        
+            html.append("<classDetails className=\"").append(className).append("\" pathToRoot=\"")
+                .append(pathToRoot).append("\" qaVersion=\"").append(QAProcessor.QA_VERSION)
+                .append("\" runDate=\"").append(new Date()).append("\">\n");
         
-        html.append("<summary high=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_HIGH))
-            .append("\" significant=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_SIGNIFICANT))
-            .append("\" moderate=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_MODERATE))
-            .append("\" low=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_LOW))
-            .append("\" info=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_INFO));
+            html.append("<summary high=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_HIGH))
+                .append("\" significant=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_SIGNIFICANT))
+                .append("\" moderate=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_MODERATE))
+                .append("\" low=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_LOW))
+                .append("\" info=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_INFO));
         
-        if (coverage != null)
-        {
-            html.append("\" lineCoverage=\"").append((int) (ONE_HUNDRED * coverage.getLineCoverage()))
-                .append("\" branchCoverage=\"").append((int) (ONE_HUNDRED * coverage.getBranchCoverage()));
-        }
+            if (coverage != null)
+            {
+                html.append("\" lineCoverage=\"").append((int) (ONE_HUNDRED * coverage.getLineCoverage()))
+                    .append("\" branchCoverage=\"").append((int) (ONE_HUNDRED * coverage.getBranchCoverage()));
+            }
         
-        html.append("\" quality=\"").append((int) (ReportUtil.evaluateMetric("quality", diags, lineCount) * HUNDRED))
-            .append("\"/>\n");
+            html.append("\" quality=\"").append((int) (ReportUtil.evaluateMetric("quality", diags, lineCount) * HUNDRED))
+                .append("\"/>\n");
         
-        writeSourceLines(sourceFile, diags, orderedDiags, coverage, html);
-        writeErrorsSummary(orderedDiags, diagnosticsFirst, html);
+            writeSourceLines(sourceFile, annotations, html);
+            writeErrorsSummary(annotations.getDiagnostics(), diagnosticsFirst, html);
 
-        html.append("</classDetails>\n");
-        
-        // Write to file "com/foo/FooBar.xml"
-        FileUtil.writeToFile(html.toString(), destFile);
+            html.append("</classDetails>\n");
+            html.close();
+        }
+        finally
+        {
+            html.discard();
+        }
     }
 
     /**
      * Writes the source code information.
      * 
      * @param sourceFile the source file
-     * @param diags the set of diagnostics for the file
-     * @param orderedDiags the diagnostics for the file, sorted by line number
-     * @param coverage the coverage statistics for the file
-     * @param html the buffer to write the output to.
+     * @param annotations the diagnostics and coverage for each line of the file
+     * @param html the writer to write the output to.
      * 
      * @throws IOException if there is an error reading from the source file
      */
-    private void writeSourceLines(final File sourceFile, final DiagnosticSet diags, final List<Diagnostic> orderedDiags, final ClassCoverage coverage, final StringBuilder html) throws IOException
+    private void writeSourceLines(final File sourceFile, final LineAnnotations annotations, final XmlWriter html) throws IOException
     {
         FileInputStream fis = new FileInputStream(sourceFile);
         
@@ -133,7 +133,6 @@ public class JavaSourceWriter
         {
             BufferedReader reader = new BufferedReader(new InputStreamReader(fis));
             int lineNum = 1;
-            int orderedDiagPos = 0;
             
             html.append("<source>\n");
     
@@ -141,15 +140,7 @@ public class JavaSourceWriter
             for (String line = reader.readLine(); line != null; line = reader.readLine())
             {
                 // Max severity for this line
-                int maxSev = -1;
-    
-                for (Diagnostic diagnostic : diags)
-                {
-                    if (diagnostic.getStartLine() <= lineNum && diagnostic.getEndLine() >= lineNum)
-                    {
-                        maxSev = Math.max(maxSev, diagnostic.getSeverity());
-                    }
-                }
+                int maxSev = annotations.getMaxSeverity(lineNum);
                 
                 html.append("<line");
                 
@@ -158,50 +149,39 @@ public class JavaSourceWriter
                     html.append(" sev=\"").append(maxSev).append('"');
                 }
                 
-                if (coverage != null && coverage.getInvocationsForLine(lineNum) >= 0)
+                switch (annotations.getCoverage(lineNum))
                 {
-                    int invocations = coverage.getInvocationsForLine(lineNum);
-                    double branchCoverage = coverage.getBranchCoverageForLine(lineNum);
-                    
-                    if (invocations == 0)
-                    {
+                    case LineAnnotations.COVERAGE_NO:
                         // Not covered at all
                         html.append(" covered=\"no\"");
-                    }
-                    else if (branchCoverage == -1.0 || branchCoverage == 1.0)
-                    {
+                        break;
+                        
+                    case LineAnnotations.COVERAGE_YES:
                         // Not a branch, or branch covered 100%
                         html.append(" covered=\"yes\"");
-                    }
-                    else
-                    {
+                        break;
+                        
+                    case LineAnnotations.COVERAGE_PARTIAL:
                         // Partially covered
                         html.append(" covered=\"partial\"");
-                    }
+                        break;
+                        
+                    default:
+                        // Not analysed
+                        break;
                 }
                 
                 boolean hasContent = false;
                 
-                for (int i = orderedDiagPos; i < orderedDiags.size(); i++)
+                for (Diagnostic diagnostic : annotations.getDiagnosticsStartingAt(lineNum))
                 {
-                    Diagnostic diagnostic = orderedDiags.get(i);
-    
-                    if (lineNum == diagnostic.getStartLine())
-                    {
-                        if (!hasContent)
-                        {
-                            html.append('>');
-                            hasContent = true;
-                        }
-                        
-                        html.append("<diag id=\"").append(diagnostic.getId()).append("\"/>");
-                        orderedDiagPos++;
-                    }
-                    else
+                    if (!hasContent)
                     {
-                        // Since the list is ordered, the next diagnostic won't match either
-                        break;
+                        html.append('>');
+                        hasContent = true;
                     }
+                    
+                    html.append("<diag id=\"").append(diagnostic.getId()).append("\"/>");
                 }
                 
                 if (!StringUtil.empty(line))
@@ -212,7 +192,7 @@ public class JavaSourceWriter
                         hasContent = true;
                     }
                     
-                    html.append(ReportUtil.htmlEscape(line));
+                    html.appendEscaped(line);
                 }
                 
                 html.append(hasContent ? "</line>\n" : "/>\n");
@@ -232,11 +212,11 @@ public class JavaSourceWriter
      * 
      * @param orderedDiags a list of diagnostics for the file, in line number order.
      * @param diagsFirst a flag indicating whether the diagnostics should be printed first or last.
-     * @param html the buffer to write the HTML output to.
+     * @param html the writer to write the HTML output to.
      */
     private void writeErrorsSummary(final List<Diagnostic> orderedDiags, 
                                     final boolean diagsFirst,
-                                    final StringBuilder html)
+                                    final XmlWriter html)
     {
         if (orderedDiags != null && !orderedDiags.isEmpty())
         {
@@ -250,7 +230,7 @@ public class JavaSourceWriter
                                           .append("\" rule=\"").append(diagnostic.getRuleName())
                                           .append("\">");
 
-                html.append(ReportUtil.htmlEscape(diagnostic.getMessage()));
+                html.appendEscaped(diagnostic.getMessage());
 
                 html.append("</diag>\n");
             }
@@ -258,51 +238,4 @@ public class JavaSourceWriter
             html.append("</diags>\n");
         }
     }
-    
-    /**
-     * Sorts the diagnostics by starting line number.
-     * 
-     * @param diags the diagnostics to sort
-     * @return a list containing the diagnostics, sorted by ascending start line
-     */
-    private List<Diagnostic> sortDiags(final DiagnosticSet diags)
-    {
-        List<Diagnostic> sortedDiags = new ArrayList<Diagnostic>(diags.size());
-        
-        for (Diagnostic diag : diags)
-        {
-            sortedDiags.add(diag);
-        }
-        
-        Collections.sort(sortedDiags, new DiagnosticStartLineComparator());
-        return sortedDiags;
-    }
-
-    /**
-     * A comparator to sort Diagnostics based on their start line.
-     */
-    private static final class DiagnosticStartLineComparator implements Comparator<Diagnostic>, Serializable 
-    {
-        /**
-         * Compares its two arguments for order.  Returns a negative integer,
-         * zero, or a positive integer as the first argument is less than, equal
-         * to, or greater than the second.<p>
-         *
-         * @param diag1 the first object to be compared.
-         * @param diag2 the second object to be compared.
-         * @return a negative integer, zero, or a positive integer as the
-         *         first argument is less than, equal to, or greater than the
-         *         second. 
-         */
-        @Override
-        public int compare(final Diagnostic diag1, final Diagnostic diag2)
-        {
-            if (diag1 == null)
-            {
-                return diag2 == null ? 0 : -1;
-            }
-            
-            return diag1.getStartLine() - diag2.getStartLine();
-        }
-    }
 }
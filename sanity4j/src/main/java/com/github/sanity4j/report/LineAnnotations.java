@@ -0,0 +1,249 @@
+package com.github.sanity4j.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.sanity4j.model.coverage.ClassCoverage;
+import com.github.sanity4j.model.diagnostic.Diagnostic;
+
+/**
+ * LineAnnotations holds the annotations for each line of a source file: the highest severity of
+ * the diagnostics which span the line, the line's coverage, and the diagnostics which start on the line.
+ * The annotations are calculated once for the whole file, so that the file can then be written out
+ * in a single pass, rather than searching the diagnostics and coverage for each line.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class LineAnnotations
+{
+    /** The line was not analysed for coverage. */
+    public static final byte COVERAGE_NONE = 0;
+
+    /** The line was not covered at all. */
+    public static final byte COVERAGE_NO = 1;
+
+    /** The line was covered, and is not a branch or all branches were covered. */
+    public static final byte COVERAGE_YES = 2;
+
+    /** The line was covered, but not all branches were covered. */
+    public static final byte COVERAGE_PARTIAL = 3;
+
+    /** The diagnostics, sorted by ascending start line. */
+    private final List<Diagnostic> diagnostics;
+
+    /** The highest severity by line number, or -1 if there are no diagnostics for the line. */
+    private final int[] maxSeverity;
+
+    /** The coverage by line number, see the COVERAGE_* constants. */
+    private final byte[] coverage;
+
+    /** The index in {@link #diagnostics} of the first diagnostic starting on each line, with an extra entry at the end. */
+    private final int[] lineStart;
+
+    /**
+     * Calculates the annotations for a file.
+     *
+     * @param diags the diagnostics for the file.
+     * @param classCoverage the coverage for the file, may be null.
+     */
+    public LineAnnotations(final Iterable<Diagnostic> diags, final ClassCoverage classCoverage)
+    {
+        List<Diagnostic> unsorted = new ArrayList<Diagnostic>();
+        int lastLine = 0;
+        int highestSeverity = -1;
+
+        for (Diagnostic diagnostic : diags)
+        {
+            unsorted.add(diagnostic);
+            lastLine = Math.max(lastLine, Math.max(diagnostic.getStartLine(), diagnostic.getEndLine()));
+            highestSeverity = Math.max(highestSeverity, diagnostic.getSeverity());
+        }
+
+        if (classCoverage != null)
+        {
+            lastLine = Math.max(lastLine, classCoverage.getLastLine());
+        }
+
+        maxSeverity = new int[lastLine + 1];
+        coverage = new byte[lastLine + 1];
+        lineStart = new int[lastLine + 2];
+
+        diagnostics = sortByStartLine(unsorted);
+        sweepSeverities(highestSeverity);
+
+        if (classCoverage != null)
+        {
+            addCoverage(classCoverage);
+        }
+    }
+
+    /**
+     * Sorts the diagnostics by start line with a counting sort, recording where each line's diagnostics start.
+     * Diagnostics without a start line are sorted first. The sort is stable.
+     *
+     * @param unsorted the diagnostics to sort.
+     * @return the sorted diagnostics.
+     */
+    private List<Diagnostic> sortByStartLine(final List<Diagnostic> unsorted)
+    {
+        for (Diagnostic diagnostic : unsorted)
+        {
+            lineStart[Math.max(0, diagnostic.getStartLine()) + 1]++;
+        }
+
+        for (int line = 1; line < lineStart.length; line++)
+        {
+            lineStart[line] += lineStart[line - 1];
+        }
+
+        Diagnostic[] sorted = new Diagnostic[unsorted.size()];
+        int[] next = lineStart.clone();
+
+        for (Diagnostic diagnostic : unsorted)
+        {
+            sorted[next[Math.max(0, diagnostic.getStartLine())]++] = diagnostic;
+        }
+
+        List<Diagnostic> list = new ArrayList<Diagnostic>(sorted.length);
+        Collections.addAll(list, sorted);
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Calculates the highest severity for each line, by sweeping over the lines and keeping count of
+     * the diagnostics of each severity which span the current line.
+     *
+     * @param highestSeverity the highest severity of all the diagnostics.
+     */
+    private void sweepSeverities(final int highestSeverity)
+    {
+        // changes[s][line] is the change in the number of diagnostics with severity s which span the line
+        int[][] changes = new int[highestSeverity + 1][];
+
+        for (Diagnostic diagnostic : diagnostics)
+        {
+            int severity = diagnostic.getSeverity();
+
+            if (severity < 0)
+            {
+                continue;
+            }
+
+            if (changes[severity] == null)
+            {
+                changes[severity] = new int[maxSeverity.length + 1];
+            }
+
+            int first = Math.max(1, diagnostic.getStartLine());
+            int last = diagnostic.getEndLine();
+
+            if (first <= last)
+            {
+                changes[severity][first]++;
+                changes[severity][last + 1]--;
+            }
+        }
+
+        int[] spanning = new int[changes.length];
+
+        for (int line = 0; line < maxSeverity.length; line++)
+        {
+            maxSeverity[line] = -1;
+
+            for (int severity = 0; severity < changes.length; severity++)
+            {
+                if (changes[severity] != null)
+                {
+                    spanning[severity] += changes[severity][line];
+
+                    if (spanning[severity] > 0)
+                    {
+                        maxSeverity[line] = severity;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the coverage for each line.
+     *
+     * @param classCoverage the coverage for the file.
+     */
+    private void addCoverage(final ClassCoverage classCoverage)
+    {
+        for (int line = Math.max(0, classCoverage.getFirstLine()); line <= classCoverage.getLastLine(); line++)
+        {
+            int invocations = classCoverage.getInvocationsForLine(line);
+
+            if (invocations < 0)
+            {
+                continue;
+            }
+
+            double branchCoverage = classCoverage.getBranchCoverageForLine(line);
+
+            if (invocations == 0)
+            {
+                coverage[line] = COVERAGE_NO;
+            }
+            else if (branchCoverage == -1.0 || branchCoverage == 1.0)
+            {
+                // Not a branch, or branch covered 100%
+                coverage[line] = COVERAGE_YES;
+            }
+            else
+            {
+                coverage[line] = COVERAGE_PARTIAL;
+            }
+        }
+    }
+
+    /**
+     * @return the diagnostics, sorted by ascending start line.
+     */
+    public List<Diagnostic> getDiagnostics()
+    {
+        return diagnostics;
+    }
+
+    /**
+     * Returns the highest severity of the diagnostics which span the given line.
+     *
+     * @param line the line number, starting at 1.
+     * @return the highest severity for the line, or -1 if there are no diagnostics for the line.
+     */
+    public int getMaxSeverity(final int line)
+    {
+        return line < maxSeverity.length ? maxSeverity[line] : -1;
+    }
+
+    /**
+     * Returns the coverage of the given line.
+     *
+     * @param line the line number, starting at 1.
+     * @return the coverage for the line, one of the COVERAGE_* constants.
+     */
+    public byte getCoverage(final int line)
+    {
+        return line < coverage.length ? coverage[line] : COVERAGE_NONE;
+    }
+
+    /**
+     * Returns the diagnostics which start on the given line.
+     *
+     * @param line the line number, starting at 1.
+     * @return the diagnostics which start on the line, may be empty.
+     */
+    public List<Diagnostic> getDiagnosticsStartingAt(final int line)
+    {
+        if (line < 1 || line + 1 >= lineStart.length)
+        {
+            return Collections.emptyList();
+        }
+
+        return diagnostics.subList(lineStart[line], lineStart[line + 1]);
+    }
+}
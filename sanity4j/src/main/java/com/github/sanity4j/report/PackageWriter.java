@@ -22,7 +22,7 @@ import com.github.sanity4j.model.diagnostic.DiagnosticCategory;
 import com.github.sanity4j.model.diagnostic.DiagnosticSet;
 import com.github.sanity4j.model.summary.PackageSummary;
 import com.github.sanity4j.util.ExtractStats;
-import com.github.sanity4j.util.FileUtil;
+import com.github.sanity4j.util.PackageTree;
 import com.github.sanity4j.util.QaLogger;
 import com.github.sanity4j.util.StringUtil;
 import com.github.sanity4j.workflow.QAProcessor;
@@ -89,40 +89,64 @@ public class PackageWriter
      */
     public void writePackage(final String packageName) throws IOException
     {
+        String frameFileName;
+        String summaryFileName;
+        String byRuleFileName;
+        
         if (StringUtil.empty(packageName))
         {
-            // Write package frame to : "allclasses-frame.xml"
-            String fileName = "allclasses-frame.xml";                            
-            String xml = generatePackageFrame("");
-            FileUtil.writeToFile(xml, new File(reportDir, fileName));
-            
-            // Write package overview
-            fileName = "overview-summary.xml";          
-            xml = generateSummaryPageForPackage("", fileName);
-            FileUtil.writeToFile(xml, new File(reportDir, fileName));
-            
-            // Write package by rule
-            fileName = "package-by-rule.xml";          
-            xml = generatePackageByRule("");
-            FileUtil.writeToFile(xml, new File(reportDir, fileName));
+            frameFileName = "allclasses-frame.xml";
+            summaryFileName = "overview-summary.xml";
+            byRuleFileName = "package-by-rule.xml";
         }
         else
         {
-            // Write package frame to : "com/foobar/mypackage/package-frame.xml"
-            String fileName = packageName.replace('.', File.separatorChar) + "/package-frame.xml";                            
-            String xml = generatePackageFrame(packageName);
-            FileUtil.writeToFile(xml, new File(reportDir, fileName));
-            
-            // Write package summary to "com/foobar/mypackage/package-summary.xml"
-            fileName = packageName.replace('.', File.separatorChar) + "/package-summary.xml";           
-            xml = generateSummaryPageForPackage(packageName, fileName);
-            FileUtil.writeToFile(xml, new File(reportDir, fileName));
-            
-            // Write package by rule
-            fileName = packageName.replace('.', File.separatorChar) + "/package-by-rule.xml";           
-            xml = generatePackageByRule(packageName);
-            FileUtil.writeToFile(xml, new File(reportDir, fileName));
-        }       
+            String packageDir = packageName.replace('.', File.separatorChar) + '/';
+            frameFileName = packageDir + "package-frame.xml";
+            summaryFileName = packageDir + "package-summary.xml";
+            byRuleFileName = packageDir + "package-by-rule.xml";
+        }
+        
+        String name = StringUtil.empty(packageName) ? "" : packageName;
+        
+        // Write package frame to : "com/foobar/mypackage/package-frame.xml"
+        XmlWriter xml = new XmlWriter(new File(reportDir, frameFileName));
+        
+        try
+        {
+            generatePackageFrame(name, xml);
+            xml.close();
+        }
+        finally
+        {
+            xml.discard();
+        }
+        
+        // Write package summary to "com/foobar/mypackage/package-summary.xml"
+        xml = new XmlWriter(new File(reportDir, summaryFileName));
+        
+        try
+        {
+            generateSummaryPageForPackage(name, summaryFileName, xml);
+            xml.close();
+        }
+        finally
+        {
+            xml.discard();
+        }
+        
+        // Write package by rule
+        xml = new XmlWriter(new File(reportDir, byRuleFileName));
+        
+        try
+        {
+            generatePackageByRule(name, xml);
+            xml.close();
+        }
+        finally
+        {
+            xml.discard();
+        }
         
         // Write categories
         CategoryWriter categoryWriter = new CategoryWriter(stats, reportDir);
@@ -134,17 +158,15 @@ public class PackageWriter
      * com/foobar/mypackage/package-frame.xml .
      *  
      * @param packageName the name of the package to create the frame for
-     * @return the frame page XML
+     * @param html the writer to write the frame page XML to
      */
-    private String generatePackageFrame(final String packageName)
+    private void generatePackageFrame(final String packageName, final XmlWriter html)
     {
         // For the package name com.bar.foo, we need "../../../"
         String pathToRoot = StringUtil.empty(packageName) 
                           ? "" 
                           : (packageName.replaceAll("[^\\.]", "").replaceAll("\\.", "../") + "../");
         
-        StringBuilder html = new StringBuilder();
-
         // Write top-level package summary info        
         html.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
             .append("<?xml-stylesheet type=\"text/xsl\" href=\"").append(pathToRoot).append("xslt/package-frame.xsl\"?>\n")        
@@ -199,8 +221,6 @@ public class PackageWriter
         }
         
         html.append("</packageClasses>\n");
-        
-        return html.toString();
     }
     
     /**
@@ -208,9 +228,9 @@ public class PackageWriter
      * com/foobar/mypackage/package-by-rule.xml .
      *  
      * @param packageName the name of the package to create the frame for
-     * @return the export XML
+     * @param html the writer to write the XML to
      */
-    private String generatePackageByRule(final String packageName) 
+    private void generatePackageByRule(final String packageName, final XmlWriter html) 
     {
         // For the package name com.bar.foo, we need "../../../"
         String pathToRoot = StringUtil.empty(packageName) 
@@ -221,8 +241,6 @@ public class PackageWriter
                               ? stats.getDiagnostics()
                               : stats.getDiagnostics().getDiagnosticsForPackage(packageName);
         
-        StringBuilder html = new StringBuilder();
-
         // Write top-level package summary info        
         html.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
             .append("<?xml-stylesheet type=\"text/xsl\" href=\"").append(pathToRoot).append("xslt/package-by-rule.xsl\"?>\n")        
@@ -288,8 +306,6 @@ public class PackageWriter
         
         
         html.append("</packageByRule>\n");
-        
-        return html.toString();
     }
     
     /**
@@ -297,10 +313,11 @@ public class PackageWriter
      * 
      * @param packageName the package name, or null to create a summary for all packages
      * @param relativeFileName the name of the file being written to, used to create relative hyperlinks 
-     * @return the generated page in a String
+     * @param html the writer to write the page to
      */
-    private String generateSummaryPageForPackage(final String packageName, 
-                                                 final String relativeFileName)
+    private void generateSummaryPageForPackage(final String packageName, 
+                                               final String relativeFileName,
+                                               final XmlWriter html)
     {
         String pathToRoot = ReportUtil.getHtmlPathToRoot(relativeFileName);
         
@@ -308,7 +325,6 @@ public class PackageWriter
                               ? stats.getDiagnostics()
                               : stats.getDiagnostics().getDiagnosticsForPackage(packageName);
 
-        StringBuilder html = new StringBuilder();
                               
         // Write top-level package summary info        
         html.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
@@ -352,8 +368,6 @@ public class PackageWriter
         html.append("</graphs>\n");
         
         html.append("</packageSummary>\n");
-        
-        return html.toString();
     }
     
     /**
@@ -361,9 +375,9 @@ public class PackageWriter
      * 
      * @param tool the tool to output the information for.
      * @param diags the full list of diagnostics for the package being written.
-     * @param html the StringBuilder to append XML output to.
+     * @param html the writer to append XML output to.
      */
-    private void outputTool(final int tool, final DiagnosticSet diags, final StringBuilder html)
+    private void outputTool(final int tool, final DiagnosticSet diags, final XmlWriter html)
     {
         DiagnosticSet toolDiags = diags.getDiagnosticsForTool(tool);
         
@@ -384,25 +398,31 @@ public class PackageWriter
      * Outputs category information, recursing for sub-categories.
      * 
      * @param category the DiagnosticCategory to output.
-     * @param html the StringBuilder to append XML output to.
+     * @param html the writer to append XML output to.
      */
-    private void outputCategory(final DiagnosticCategory category, final StringBuilder html)
+    private void outputCategory(final DiagnosticCategory category, final XmlWriter html)
     {
-        DiagnosticSet diags = new DiagnosticSet();
+        // Count the category's own diagnostics by severity, without indexing them
+        int[] counts = new int[Diagnostic.SEVERITY_HIGH + 1];
         
         for (Diagnostic diag : category.getDiagnostics())
         {
-            diags.add(diag);
+            int severity = diag.getSeverity();
+            
+            if (severity >= 0 && severity < counts.length)
+            {
+                counts[severity]++;
+            }
         }
         
         // Output category
         html.append("<category name=\"").append(category.getName());          
         
-        html.append("\" high=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_HIGH))
-            .append("\" significant=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_SIGNIFICANT))
-            .append("\" moderate=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_MODERATE))
-            .append("\" low=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_LOW))
-            .append("\" info=\"").append(diags.getCountForSeverity(Diagnostic.SEVERITY_INFO)).append('"');
+        html.append("\" high=\"").append(counts[Diagnostic.SEVERITY_HIGH])
+            .append("\" significant=\"").append(counts[Diagnostic.SEVERITY_SIGNIFICANT])
+            .append("\" moderate=\"").append(counts[Diagnostic.SEVERITY_MODERATE])
+            .append("\" low=\"").append(counts[Diagnostic.SEVERITY_LOW])
+            .append("\" info=\"").append(counts[Diagnostic.SEVERITY_INFO]).append('"');
  
         if (category.getSubCategories().isEmpty())
         {
@@ -424,12 +444,12 @@ public class PackageWriter
     
     /**
      * If there is sufficient data available, 
-     * append a summary image to the given HTML StringBuilder.
+     * append a summary image to the given HTML writer.
      * 
      * @param packageName the package name
-     * @param html the string buffer to append the image tag to
+     * @param html the writer to append the image tag to
      */
-    private void appendSummaryImage(final String packageName, final StringBuilder html)
+    private void appendSummaryImage(final String packageName, final XmlWriter html)
     {
         String nonNullPackageName = StringUtil.empty(packageName) ? "" : packageName;
         PackageSummary[] summaries = stats.getPackageSummary(nonNullPackageName);
@@ -460,30 +480,34 @@ public class PackageWriter
      * Generates the quality summary table HTML.
      * 
      * @param packageName the package name to create the tables for
-     * @param html the StringBuilder to append XML output to.
+     * @param html the writer to append XML output to.
      */
-    private void outputQualitySummary(final String packageName, final StringBuilder html)
+    private void outputQualitySummary(final String packageName, final XmlWriter html)
     {
         // Display package and subpackages first
-        Set<String> packageNames = new TreeSet<String>(sourcesByPackage.keySet());
+        Set<String> packageNames = new TreeSet<String>();
         
-        // Output summary for all classes
         if (StringUtil.empty(packageName))
         {
+            // Output summary for all classes, then all packages
             appendPackageQualityStatsRow("", "", html);
+            packageNames.addAll(sourcesByPackage.keySet());
         }
-        
-        String packageNamePlusDot = packageName + '.';
-        
-        for (String otherPackageName : packageNames)
+        else
         {
-            if (StringUtil.empty(packageName) || otherPackageName.equals(packageName) 
-                || otherPackageName.startsWith(packageNamePlusDot))
+            PackageTree.Node node = stats.getPackageTree().getNode(packageName);
+            
+            if (node != null)
             {
-                appendPackageQualityStatsRow(StringUtil.empty(packageName) ? "" : packageName, otherPackageName, html);
+                addPackageNames(node, packageNames);
             }
         }
         
+        for (String otherPackageName : packageNames)
+        {
+            appendPackageQualityStatsRow(StringUtil.empty(packageName) ? "" : packageName, otherPackageName, html);
+        }
+        
         // Display classes in package
         List<String> packageSources = sourcesByPackage.get(packageName);
         
@@ -501,15 +525,34 @@ public class PackageWriter
     }
     
     /**
-     * Appends a package quality statistics row to the given string buffer.
+     * Adds the names of the given package and its sub-packages which contain classes.
+     * 
+     * @param node the package to add
+     * @param packageNames the set to add the package names to
+     */
+    private void addPackageNames(final PackageTree.Node node, final Set<String> packageNames)
+    {
+        if (sourcesByPackage.containsKey(node.getName()))
+        {
+            packageNames.add(node.getName());
+        }
+        
+        for (PackageTree.Node child : node.getChildren())
+        {
+            addPackageNames(child, packageNames);
+        }
+    }
+    
+    /**
+     * Appends a package quality statistics row to the given writer.
      * 
      * @param currentPackageName the current package name
      * @param packageName the package name to write the stats for, may be a sub-package
-     * @param html the string buffer to append to
+     * @param html the writer to append to
      */
     private void appendPackageQualityStatsRow(final String currentPackageName, 
                                               final String packageName, 
-                                              final StringBuilder html)
+                                              final XmlWriter html)
     {
         boolean allPackages = "".equals(packageName);
 
@@ -528,8 +571,8 @@ public class PackageWriter
         {
             coverage = stats.getCoverage();
             diags = stats.getDiagnostics();
-            numLines = stats.getLineCount();
-            classCount = stats.getClassCount();
+            numLines = stats.getPackageTree().getRoot().getLineCount(true);
+            classCount = stats.getPackageTree().getRoot().getClassCount(true);
         }
         else
         {
@@ -598,12 +641,12 @@ public class PackageWriter
     }
     
     /**
-     * Appends a class quality statistics row to the given string buffer.
+     * Appends a class quality statistics row to the given writer.
      * 
      * @param sourcePath the source file to write the stats for
-     * @param html the string buffer to append to
+     * @param html the writer to append to
      */
-    private void appendClassQualityStatsRow(final String sourcePath, final StringBuilder html)
+    private void appendClassQualityStatsRow(final String sourcePath, final XmlWriter html)
     {
         if (sourcePath != null)
         {       
@@ -1,17 +1,21 @@
 package com.github.sanity4j.report; 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.github.sanity4j.model.diagnostic.Diagnostic;
 import com.github.sanity4j.model.diagnostic.DiagnosticSet;
 import com.github.sanity4j.model.summary.PackageSummary;
 import com.github.sanity4j.util.QaLogger;
 import com.github.sanity4j.util.QaUtil;
+import com.github.sanity4j.util.math.CompiledExpression;
 import com.github.sanity4j.util.math.InfixExpression;
 import com.github.sanity4j.util.math.SyntaxException;
 
@@ -27,6 +31,15 @@ public final class ReportUtil
     /** The reporting properties, such as metrics. */
     private static Properties properties = QaUtil.getProperties("/com/github/sanity4j/report/report.properties");
     
+    /** The variables which may be used in metric expressions, in slot order. */
+    private static final String[] METRIC_VARIABLES = 
+    {
+        "highCount", "significantCount", "moderateCount", "lowCount", "infoCount", "linesOfCode" 
+    };
+    
+    /** The compiled metric expressions, keyed by metric name. */
+    private static final ConcurrentMap<String, CompiledExpression> METRICS = new ConcurrentHashMap<String, CompiledExpression>();
+    
     /** ReportUtil should not be instantiated. */
     private ReportUtil()
     {
@@ -95,6 +108,49 @@ public final class ReportUtil
         
         return out.toString();
     }
+
+    /**
+     * Escapes the characters in a string which are special in HTML/XML, writing the result
+     * directly to the given output. Unescaped runs of characters are written without copying.
+     * 
+     * @param text the text to escape.
+     * @param out the output to write the escaped text to.
+     */
+    public static void htmlEscape(final String text, final XmlWriter out)
+    {
+        final int len = text.length();
+        int runStart = 0;
+        
+        for (int i = 0; i < len; i++)
+        {
+            String entity;
+            
+            switch (text.charAt(i))
+            {
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '"':
+                    entity = "&quot;";
+                    break;
+                case '&':
+                    entity = "&amp;";
+                    break;
+                
+                default:
+                    continue;
+            }
+            
+            out.write(text, runStart, i - runStart);
+            out.append(entity);
+            runStart = i + 1;
+        }
+        
+        out.write(text, runStart, len - runStart);
+    }
     
     /**
      * Produces a Map of Diagnostic lists, keyed by class name.
@@ -150,58 +206,103 @@ public final class ReportUtil
      */
     public static double evaluateMetric(final String metric, final DiagnosticSet diagnostics, final int linesOfCode)
     {
-        Map<String, Object> variables = new HashMap<String, Object>();
-        variables.put("highCount", diagnostics.getCountForSeverity(Diagnostic.SEVERITY_HIGH));
-        variables.put("significantCount", diagnostics.getCountForSeverity(Diagnostic.SEVERITY_SIGNIFICANT));        
-        variables.put("moderateCount", diagnostics.getCountForSeverity(Diagnostic.SEVERITY_MODERATE));
-        variables.put("lowCount", diagnostics.getCountForSeverity(Diagnostic.SEVERITY_LOW));
-        variables.put("infoCount", diagnostics.getCountForSeverity(Diagnostic.SEVERITY_INFO));
-        variables.put("linesOfCode", linesOfCode);
+        CompiledExpression expression = getMetricExpression(metric);
+        
+        if (expression == null)
+        {
+            return -1.0;
+        }
+        
+        double[] values = 
+        {
+            diagnostics.getCountForSeverity(Diagnostic.SEVERITY_HIGH),
+            diagnostics.getCountForSeverity(Diagnostic.SEVERITY_SIGNIFICANT),
+            diagnostics.getCountForSeverity(Diagnostic.SEVERITY_MODERATE),
+            diagnostics.getCountForSeverity(Diagnostic.SEVERITY_LOW),
+            diagnostics.getCountForSeverity(Diagnostic.SEVERITY_INFO),
+            linesOfCode
+        };
 
-        return evaluateMetric(metric, variables);
+        return Math.max(0.0, expression.evaluate(values));
     }
     
     /**
-     * Evaluates the given metric for a package/class with the given set of diagnostics.
+     * Evaluates the given metric for a package summary.
      * 
      * @param metric the metric name, as defined in report.properties
-     * @param summary the summary for the package
+     * @param summary the package summary
      * @return the value of the given metric, or -1 on error.
      */
     public static double evaluateMetric(final String metric, final PackageSummary summary)
     {
-        Map<String, Object> variables = new HashMap<String, Object>();
-        variables.put("highCount", summary.getHighCount());
-        variables.put("significantCount", summary.getSignificantCount());        
-        variables.put("moderateCount", summary.getModerateCount());
-        variables.put("lowCount", summary.getLowCount());
-        variables.put("infoCount", summary.getInfoCount());
-        variables.put("linesOfCode", summary.getLineCount());
-
-        return evaluateMetric(metric, variables);
+        return evaluateMetric(metric, new PackageSummary[] { summary })[0];
     }
     
     /**
-     * Evaluates the given metric for a package/class with the given set of diagnostics.
-     * This version is used by the other <code>evaluateMetric</code> methods in this class,
-     * which build up the <code>variables</code> map depending on the data they have.
+     * Evaluates the given metric for each of the given package summaries.
      * 
-     * @param metric the metric name, as defined in report.properties.
-     * @param variables the map of variables to substitute.
-     * @return the value of the given metric, or -1 on error.
+     * @param metric the metric name, as defined in report.properties
+     * @param summaries the package summaries
+     * @return the value of the given metric for each summary, or -1 on error.
      */
-    private static double evaluateMetric(final String metric, final Map<String, Object> variables)
+    public static double[] evaluateMetric(final String metric, final PackageSummary[] summaries)
     {
-        String expression = (String) properties.get("sanity4j.report.metric." + metric + ".expression");
+        CompiledExpression expression = getMetricExpression(metric);
+        double[] results = new double[summaries.length];
         
-        try
+        if (expression == null)
         {
-            return Math.max(0.0, new InfixExpression(expression).evaluate(variables));
+            Arrays.fill(results, -1.0);
+            return results;
         }
-        catch (SyntaxException e)
+        
+        double[] values = new double[summaries.length * METRIC_VARIABLES.length];
+        
+        for (int i = 0, offset = 0; i < summaries.length; i++, offset += METRIC_VARIABLES.length)
         {
-            QaLogger.getInstance().error("Syntax exception running: " + expression, e);
-            return -1.0;
+            values[offset] = summaries[i].getHighCount();
+            values[offset + 1] = summaries[i].getSignificantCount();
+            values[offset + 2] = summaries[i].getModerateCount();
+            values[offset + 3] = summaries[i].getLowCount();
+            values[offset + 4] = summaries[i].getInfoCount();
+            values[offset + 5] = summaries[i].getLineCount();
+        }
+        
+        expression.evaluate(values, results);
+        
+        for (int i = 0; i < results.length; i++)
+        {
+            results[i] = Math.max(0.0, results[i]);
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Retrieves the compiled expression for the given metric, compiling it on first use.
+     * 
+     * @param metric the metric name, as defined in report.properties.
+     * @return the compiled expression, or null if the expression is invalid.
+     */
+    private static CompiledExpression getMetricExpression(final String metric)
+    {
+        CompiledExpression compiled = METRICS.get(metric);
+        
+        if (compiled == null)
+        {
+            String expression = properties.getProperty("sanity4j.report.metric." + metric + ".expression");
+            
+            try
+            {
+                compiled = new InfixExpression(expression).compile(METRIC_VARIABLES);
+                METRICS.putIfAbsent(metric, compiled);
+            }
+            catch (SyntaxException e)
+            {
+                QaLogger.getInstance().error("Syntax exception running: " + expression, e);
+            }
         }
+        
+        return compiled;
     }
 }
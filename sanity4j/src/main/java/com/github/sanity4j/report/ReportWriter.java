@@ -12,11 +12,12 @@ import java.util.Map;
 import com.github.sanity4j.model.diagnostic.Diagnostic;
 import com.github.sanity4j.model.diagnostic.DiagnosticSet;
 import com.github.sanity4j.util.ExtractStats;
-import com.github.sanity4j.util.FileUtil;
 import com.github.sanity4j.util.QAException;
 import com.github.sanity4j.util.QaLogger;
 import com.github.sanity4j.workflow.QAConfig;
 import com.github.sanity4j.workflow.QAProcessor;
+import com.github.sanity4j.workflow.WorkUnit;
+import com.github.sanity4j.workflow.WorkUnitGroup;
 
 
 /**
@@ -60,7 +61,8 @@ public class ReportWriter
     }
     
     /**
-     * Produces the combined report in the given directory.
+     * Produces the combined report in the given directory. The package and source pages are
+     * written in parallel, using up to {@link QAConfig#getNumThreads()} threads.
      * 
      * @param config The configuration object for the Sanity4J tool.
      * @throws IOException if there is an error writing any file.
@@ -98,29 +100,97 @@ public class ReportWriter
         CategoryWriter categoryWriter = new CategoryWriter(stats, reportDir);
         categoryWriter.writeCategories(null);
 
-        // Write packages
-        QaLogger.getInstance().debug("Writing top-level package summary");
+        // Write packages and sources. Each page only reads the stats, and is written 
+        // to its own file, so the pages can be written in parallel.
+        WorkUnitGroup pages = new WorkUnitGroup(true, "Writing package and source pages");
         PackageWriter packageWriter = new PackageWriter(stats, reportDir, sourcesByPackage);
-        packageWriter.writePackage(""); // write top-level package
+        JavaSourceWriter sourceWriter = new JavaSourceWriter(stats, diagnosticsFirst, reportDir);
+
+        pages.add(createPackageWork(packageWriter, "")); // write top-level package
 
         for (String packageName : packages)
         {
-            QaLogger.getInstance().debug("Writing package " + packageName);
-            packageWriter.writePackage(packageName);
+            pages.add(createPackageWork(packageWriter, packageName));
         }
         
-        // Write sources
-        JavaSourceWriter sourceWriter = new JavaSourceWriter(stats, diagnosticsFirst, reportDir);
-
         for (String sourceName : sources)
         {
-            QaLogger.getInstance().debug("Writing source for " + sourceName);
-            sourceWriter.writeSourceFile(sourceName);
+            pages.add(createSourceWork(sourceWriter, sourceName));
         }
         
+        pages.run();
+        
         QaLogger.getInstance().info("Report generated successfully in " + reportDir);
     }
 
+    /**
+     * Creates a WorkUnit which writes the pages for a package.
+     * 
+     * @param packageWriter the writer to write the package with
+     * @param packageName the package name, or an empty string for the top-level package
+     * @return a WorkUnit which writes the package
+     */
+    private static WorkUnit createPackageWork(final PackageWriter packageWriter, final String packageName)
+    {
+        final String description = packageName.length() == 0 
+                                 ? "Writing top-level package summary" 
+                                 : "Writing package " + packageName;
+        
+        return new WorkUnit()
+        {
+            public String getDescription()
+            {
+                return description;
+            }
+
+            public void run()
+            {
+                QaLogger.getInstance().debug(description);
+                
+                try
+                {
+                    packageWriter.writePackage(packageName);
+                }
+                catch (IOException e)
+                {
+                    throw new QAException("Failed to write package " + packageName, e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates a WorkUnit which writes the page for a source file.
+     * 
+     * @param sourceWriter the writer to write the source file with
+     * @param sourceName the path of the source file
+     * @return a WorkUnit which writes the source file
+     */
+    private static WorkUnit createSourceWork(final JavaSourceWriter sourceWriter, final String sourceName)
+    {
+        return new WorkUnit()
+        {
+            public String getDescription()
+            {
+                return "Writing source for " + sourceName;
+            }
+
+            public void run()
+            {
+                QaLogger.getInstance().debug(getDescription());
+                
+                try
+                {
+                    sourceWriter.writeSourceFile(sourceName);
+                }
+                catch (IOException e)
+                {
+                    throw new QAException("Failed to write source for " + sourceName, e);
+                }
+            }
+        };
+    }
+
     /** 
      * Build up the list of packages, source files and 
      * source files by package.
@@ -152,7 +222,7 @@ public class ReportWriter
 
                     try
                     {
-                        filePath = files[i].getCanonicalPath();
+                        filePath = stats.getCanonicalPath(files[i].getPath());
                     }
                     catch (IOException e)
                     {
@@ -188,31 +258,35 @@ public class ReportWriter
      */
     private void writePackagesFrame() throws IOException
     {
-        StringBuilder html = new StringBuilder();
+        XmlWriter html = new XmlWriter(new File(reportDir, "overview-frame.xml"));
 
-        // Write top-level package summary info        
-        html.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
-                  + "<?xml-stylesheet type=\"text/xsl\" href=\"xslt/overview-frame.xsl\"?>\n"        
-                  + "<packages qaVersion=\"").append(QAProcessor.QA_VERSION)
-            .append("\" runDate=\"").append(new Date()).append("\">\n");
-        
-        for (String packageName : packages)
+        try
         {
-            DiagnosticSet diagsForPackage = stats.getDiagnostics().getDiagnosticsForPackage(packageName);
-
-            html.append("<package name=\"").append(packageName)
-                .append("\" high=\"").append(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_HIGH))
-                .append("\" significant=\"").append(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_SIGNIFICANT))
-                .append("\" moderate=\"").append(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_MODERATE))
-                .append("\" low=\"").append(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_LOW))
-                .append("\" info=\"").append(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_INFO))
-                .append("\"/>\n");
-        }
-        
-        html.append("</packages>\n");
+            // Write top-level package summary info        
+            html.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                      + "<?xml-stylesheet type=\"text/xsl\" href=\"xslt/overview-frame.xsl\"?>\n"        
+                      + "<packages qaVersion=\"").append(QAProcessor.QA_VERSION)
+                .append("\" runDate=\"").append(new Date()).append("\">\n");
         
-        File destFile = new File(reportDir, "overview-frame.xml");
-        FileUtil.writeToFile(html.toString(), destFile);
+            for (String packageName : packages)
+            {
+                DiagnosticSet diagsForPackage = stats.getDiagnostics().getDiagnosticsForPackage(packageName);
 
+                html.append("<package name=\"").append(packageName)
+                    .append("\" high=\"").append(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_HIGH))
+                    .append("\" significant=\"").append(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_SIGNIFICANT))
+                    .append("\" moderate=\"").append(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_MODERATE))
+                    .append("\" low=\"").append(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_LOW))
+                    .append("\" info=\"").append(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_INFO))
+                    .append("\"/>\n");
+            }
+        
+            html.append("</packages>\n");
+            html.close();
+        }
+        finally
+        {
+            html.discard();
+        }
     }
 }
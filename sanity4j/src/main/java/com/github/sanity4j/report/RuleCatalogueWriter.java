@@ -15,7 +15,6 @@ import java.util.Properties;
 
 import com.github.sanity4j.model.diagnostic.Diagnostic;
 import com.github.sanity4j.model.diagnostic.DiagnosticFactory;
-import com.github.sanity4j.util.FileUtil;
 import com.github.sanity4j.workflow.QAProcessor;
 
 /**
@@ -28,9 +27,6 @@ public class RuleCatalogueWriter
 {
     /** The destination directory. */
     private final File reportDir;
-
-    /** Initial buffer size. */
-    private static final int INITIAL_BUF_SIZE = 256;
     
     /**
      * Creates a RuleCatalogueWriter.
@@ -49,37 +45,43 @@ public class RuleCatalogueWriter
      */
     public void writeRuleCatalogue() throws IOException
     {
-        StringBuilder xml = new StringBuilder(INITIAL_BUF_SIZE);
+        XmlWriter xml = new XmlWriter(new File(reportDir, "rule-catalogue.xml"));
 
-        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
-                       + "<?xml-stylesheet type=\"text/xsl\" href=\"xslt/rule-catalogue.xsl\"?>\n"
-                       + "<rules qaVersion=\"").append(QAProcessor.QA_VERSION).append("\" runDate=\"")
-            .append(new Date()).append("\">\n");
+        try
+        {
+            xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                           + "<?xml-stylesheet type=\"text/xsl\" href=\"xslt/rule-catalogue.xsl\"?>\n"
+                           + "<rules qaVersion=\"").append(QAProcessor.QA_VERSION).append("\" runDate=\"")
+                .append(new Date()).append("\">\n");
 
-        DiagnosticFactory diagnosticFactory = DiagnosticFactory.getInstance();
+            DiagnosticFactory diagnosticFactory = DiagnosticFactory.getInstance();
 
-        List<DiagnosticProperty> diagnosticProperties = getDiagnosticProperties();
+            List<DiagnosticProperty> diagnosticProperties = getDiagnosticProperties();
 
-        for (DiagnosticProperty property : diagnosticProperties)
-        {
-            // Create a diagnostic, to get e.g. default severities.
-            Diagnostic diag = diagnosticFactory.getDiagnostic();
+            for (DiagnosticProperty property : diagnosticProperties)
+            {
+                // Create a diagnostic, to get e.g. default severities.
+                Diagnostic diag = diagnosticFactory.getDiagnostic();
 
-            diag.setSource(getDiagnosticSource(property.getTool()));
-            diag.setRuleName(property.getRule());
-            diag.setSeverity(property.getSeverity());
+                diag.setSource(getDiagnosticSource(property.getTool()));
+                diag.setRuleName(property.getRule());
+                diag.setSeverity(property.getSeverity());
 
-            if (diag.getSeverity() >= Diagnostic.SEVERITY_INFO && diag.getSeverity() <= Diagnostic.SEVERITY_HIGH)
-            {
-                xml.append("<rule name=\"").append(diag.getRuleName()).append("\" tool=\"")
-                    .append(diag.getSourceDescription()).append("\" severity=\"").append(diag.getSeverity())
-                    .append("\"/>\n");
+                if (diag.getSeverity() >= Diagnostic.SEVERITY_INFO && diag.getSeverity() <= Diagnostic.SEVERITY_HIGH)
+                {
+                    xml.append("<rule name=\"").append(diag.getRuleName()).append("\" tool=\"")
+                        .append(diag.getSourceDescription()).append("\" severity=\"").append(diag.getSeverity())
+                        .append("\"/>\n");
+                }
             }
-        }
-
-        xml.append("</rules>");
 
-        FileUtil.writeToFile(xml.toString(), new File(reportDir, "rule-catalogue.xml"));
+            xml.append("</rules>");
+            xml.close();
+        }
+        finally
+        {
+            xml.discard();
+        }
     }
 
     /**
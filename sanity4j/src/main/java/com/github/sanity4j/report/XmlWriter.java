@@ -0,0 +1,283 @@
+package com.github.sanity4j.report;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import com.github.sanity4j.util.QaLogger;
+
+/**
+ * XmlWriter writes a report page straight to a buffered UTF-8 file, rather than building the page up
+ * in memory first. It has the same append methods as a StringBuilder, so that pages can be written
+ * in the same way, and can escape text directly into the output, see {@link #appendEscaped(String)}.
+ *
+ * <p>So that calls can be chained, the append methods do not throw IOExceptions. As with a PrintWriter,
+ * output stops after the first error, and the error is thrown when the writer is {@link #close() closed}.</p>
+ *
+ * <p>A page should only be closed once it has been written in full. If writing the page fails, the writer
+ * should be {@link #discard() discarded} instead, which removes the partially written file without hiding
+ * the original failure:</p>
+ *
+ * <pre>
+ * XmlWriter xml = new XmlWriter(file);
+ *
+ * try
+ * {
+ *     ... write the page ...
+ *     xml.close();
+ * }
+ * finally
+ * {
+ *     xml.discard();
+ * }
+ * </pre>
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class XmlWriter implements Closeable
+{
+    /** The size of the output buffer. */
+    private static final int BUFFER_SIZE = 65536;
+
+    /** The output. */
+    private final Writer out;
+
+    /** The file being written, or null if writing to a writer. */
+    private final File file;
+
+    /** The first error which occurred while writing, if any. */
+    private IOException error;
+
+    /** True once the output has been closed successfully. */
+    private boolean complete;
+
+    /**
+     * Creates an XmlWriter which writes to the given file, creating the parent directory if necessary.
+     *
+     * @param file the file to write to.
+     * @throws IOException if the file can not be created.
+     */
+    public XmlWriter(final File file) throws IOException
+    {
+        // Pages may be written in parallel, so another thread may create the directory at the same time.
+        if (!file.getParentFile().mkdirs() && !file.getParentFile().isDirectory())
+        {
+            throw new IOException("Failed to create parent directory for " + file);
+        }
+
+        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), BUFFER_SIZE);
+        this.file = file;
+    }
+
+    /**
+     * Creates an XmlWriter which writes to the given writer.
+     *
+     * @param out the writer to write to.
+     */
+    public XmlWriter(final Writer out)
+    {
+        this.out = out;
+        this.file = null;
+    }
+
+    /**
+     * Appends a string.
+     *
+     * @param str the string to append, "null" is appended if the string is null.
+     * @return this writer.
+     */
+    public XmlWriter append(final String str)
+    {
+        return write(str == null ? "null" : str, 0, str == null ? 4 : str.length());
+    }
+
+    /**
+     * Appends the string representation of an object.
+     *
+     * @param obj the object to append.
+     * @return this writer.
+     */
+    public XmlWriter append(final Object obj)
+    {
+        return append(String.valueOf(obj));
+    }
+
+    /**
+     * Appends a character.
+     *
+     * @param chr the character to append.
+     * @return this writer.
+     */
+    public XmlWriter append(final char chr)
+    {
+        if (error == null)
+        {
+            try
+            {
+                out.write(chr);
+            }
+            catch (IOException e)
+            {
+                error = e;
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends an int.
+     *
+     * @param value the value to append.
+     * @return this writer.
+     */
+    public XmlWriter append(final int value)
+    {
+        return append(String.valueOf(value));
+    }
+
+    /**
+     * Appends a long.
+     *
+     * @param value the value to append.
+     * @return this writer.
+     */
+    public XmlWriter append(final long value)
+    {
+        return append(String.valueOf(value));
+    }
+
+    /**
+     * Appends a float.
+     *
+     * @param value the value to append.
+     * @return this writer.
+     */
+    public XmlWriter append(final float value)
+    {
+        return append(String.valueOf(value));
+    }
+
+    /**
+     * Appends a double.
+     *
+     * @param value the value to append.
+     * @return this writer.
+     */
+    public XmlWriter append(final double value)
+    {
+        return append(String.valueOf(value));
+    }
+
+    /**
+     * Appends a boolean.
+     *
+     * @param value the value to append.
+     * @return this writer.
+     */
+    public XmlWriter append(final boolean value)
+    {
+        return append(String.valueOf(value));
+    }
+
+    /**
+     * Appends text, escaping the characters which are special in XML, see {@link ReportUtil#htmlEscape(String)}.
+     *
+     * @param text the text to append, "null" is appended if the text is null.
+     * @return this writer.
+     */
+    public XmlWriter appendEscaped(final String text)
+    {
+        if (text == null)
+        {
+            return append(text);
+        }
+
+        ReportUtil.htmlEscape(text, this);
+        return this;
+    }
+
+    /**
+     * Writes part of a string.
+     *
+     * @param str the string to write.
+     * @param off the offset of the first character to write.
+     * @param len the number of characters to write.
+     * @return this writer.
+     */
+    XmlWriter write(final String str, final int off, final int len)
+    {
+        if (error == null && len > 0)
+        {
+            try
+            {
+                out.write(str, off, len);
+            }
+            catch (IOException e)
+            {
+                error = e;
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Flushes and closes the output.
+     *
+     * @throws IOException if there was an error writing the output.
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            out.close();
+        }
+        catch (IOException e)
+        {
+            if (error == null)
+            {
+                error = e;
+            }
+        }
+
+        if (error != null)
+        {
+            throw error;
+        }
+
+        complete = true;
+    }
+
+    /**
+     * Discards the output, unless it has already been {@link #close() closed} successfully. The output is closed
+     * without reporting any further errors, so that they do not replace the error which caused the output to be
+     * discarded, and the partially written file is deleted.
+     */
+    public void discard()
+    {
+        if (complete)
+        {
+            return;
+        }
+
+        try
+        {
+            out.close();
+        }
+        catch (IOException e)
+        {
+            QaLogger.getInstance().debug("Failed to close " + (file == null ? "output" : file.getPath()) + ": " + e.getMessage());
+        }
+
+        if (file != null && file.exists() && !file.delete())
+        {
+            QaLogger.getInstance().warn("Failed to delete partially written report page " + file);
+        }
+    }
+}
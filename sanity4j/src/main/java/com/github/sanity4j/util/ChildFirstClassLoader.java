@@ -0,0 +1,113 @@
+package com.github.sanity4j.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * ChildFirstClassLoader is a URLClassLoader which looks for classes and resources in its own
+ * URLs before asking its parent. This is used to isolate the tools run in-process from the
+ * versions of libraries which Sanity4J itself (or the build tool running Sanity4J) uses.
+ * Classes from the Java runtime are always loaded by the parent.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class ChildFirstClassLoader extends URLClassLoader
+{
+    /** Package prefixes which must always come from the parent, as they are part of the Java runtime. */
+    private static final String[] PARENT_FIRST_PREFIXES =
+    {
+        "java.", "javax.", "sun.", "com.sun.", "jdk.", "org.w3c.dom.", "org.xml.sax."
+    };
+
+    /**
+     * Creates a ChildFirstClassLoader.
+     *
+     * @param urls the URLs to load classes and resources from.
+     * @param parent the parent class loader.
+     */
+    public ChildFirstClassLoader(final URL[] urls, final ClassLoader parent)
+    {
+        super(urls, parent);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException
+    {
+        if (isParentFirst(name))
+        {
+            return super.loadClass(name, resolve);
+        }
+
+        synchronized (getClassLoadingLock(name))
+        {
+            Class<?> loadedClass = findLoadedClass(name);
+
+            if (loadedClass == null)
+            {
+                try
+                {
+                    loadedClass = findClass(name);
+                }
+                catch (ClassNotFoundException e)
+                {
+                    loadedClass = super.loadClass(name, false);
+                }
+            }
+
+            if (resolve)
+            {
+                resolveClass(loadedClass);
+            }
+
+            return loadedClass;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public URL getResource(final String name)
+    {
+        URL url = findResource(name);
+        return url == null ? super.getResource(name) : url;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Enumeration<URL> getResources(final String name) throws IOException
+    {
+        List<URL> urls = new ArrayList<URL>(Collections.list(findResources(name)));
+
+        if (getParent() != null)
+        {
+            urls.addAll(Collections.list(getParent().getResources(name)));
+        }
+
+        return Collections.enumeration(urls);
+    }
+
+    /**
+     * Determines whether a class must be loaded by the parent class loader.
+     *
+     * @param className the name of the class.
+     * @return true if the class must be loaded by the parent, false if this class loader should try first.
+     */
+    private static boolean isParentFirst(final String className)
+    {
+        for (String prefix : PARENT_FIRST_PREFIXES)
+        {
+            if (className.startsWith(prefix))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -17,6 +17,12 @@ public final class ExternalProcessRunner
     
     /** Number of times to sleep. */
     private static final int SLEEP_COUNT = 10;
+
+    /**
+     * Splits a command line into arguments at spaces which are not within quotes.
+     * See http://stackoverflow.com/questions/5946471/splitting-at-space-if-not-between-quotes
+     */
+    static final String ARGUMENT_SEPARATOR = "[ ]+(?=([^\"]*\"[^\"]*\")*[^\"]*$)";
     
     /** ExternalProcessRunner should not be instantiated. */
     private ExternalProcessRunner() 
@@ -80,8 +86,7 @@ public final class ExternalProcessRunner
             
         try
         {
-            // http://stackoverflow.com/questions/5946471/splitting-at-space-if-not-between-quotes
-            String[] cmdArray = cmdLine.split("[ ]+(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
+            String[] cmdArray = cmdLine.split(ARGUMENT_SEPARATOR);
 
             StringBuilder cmdBuf = new StringBuilder();
             for (int index = 0; index < cmdArray.length; index++)
@@ -126,7 +131,19 @@ public final class ExternalProcessRunner
             stdout.start();
             stderr.start();
             
-            int result = process.waitFor();
+            int result;
+            
+            try
+            {
+                result = process.waitFor();
+            }
+            catch (InterruptedException e)
+            {
+                // The work has been cancelled, don't leave the process running.
+                process.destroy();
+                Thread.currentThread().interrupt();
+                throw new QAException("Interrupted while running external process", e);
+            }
             
             // Allow some more time for all output to be written
             for (int i = 0; i < SLEEP_COUNT && (stdout.isRunning() || stderr.isRunning()); i++)
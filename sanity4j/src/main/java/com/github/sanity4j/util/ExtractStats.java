@@ -1,17 +1,17 @@
 package com.github.sanity4j.util;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.github.sanity4j.model.coverage.Coverage;
-import com.github.sanity4j.model.coverage.PackageCoverage;
+import com.github.sanity4j.model.coverage.CoverageItf;
 import com.github.sanity4j.model.diagnostic.Diagnostic;
 import com.github.sanity4j.model.diagnostic.DiagnosticSet;
 import com.github.sanity4j.model.summary.PackageSummary;
@@ -32,7 +32,7 @@ public final class ExtractStats
     private final String sourceDirectory;
     
     /** The set of diagnostics for the current run. */
-    private final DiagnosticSet diagnostics = new DiagnosticSet();
+    private final DiagnosticSet diagnostics;
     
     /** Top-level Unit test coverage. */
     private final Coverage coverage = new Coverage();
@@ -51,9 +51,18 @@ public final class ExtractStats
     
     /** Summarised data for the current run. */
     private PackageSummary[] currentRunSummary;
-    
-    /** A default size for a buffer. */
-    private static final int BUF_SIZE = 4096;
+
+    /** The statistics for each package, built on first use. */
+    private PackageTree packageTree;
+
+    /** The resolved source paths, keyed by the path as given by the tools. */
+    private final ConcurrentMap<String, SourcePath> sourcePathsByToolPath = new ConcurrentHashMap<String, SourcePath>();
+
+    /** The resolved source paths, keyed by path. Each distinct path is held once, and shared by all readers. */
+    private final ConcurrentMap<String, SourcePath> sourcePaths = new ConcurrentHashMap<String, SourcePath>();
+
+    /** Reads the source files for the current run. */
+    private final SourceScanner sourceScanner;
 	
 	/**
      * Creates an ExtractStats.
@@ -63,7 +72,35 @@ public final class ExtractStats
      */
     public ExtractStats(final String sourceDirectory) throws IOException
     {
-        this.sourceDirectory = getCanonicalPath(sourceDirectory);
+        this(sourceDirectory, new DiagnosticSet());
+    }
+
+    /**
+     * Creates an ExtractStats.
+     * 
+     * @param sourceDirectory the source directory
+     * @param diagnostics the set to add the diagnostics for the current run to
+     * @throws IOException if there is an error determining the canonical path of the source directory
+     */
+    public ExtractStats(final String sourceDirectory, final DiagnosticSet diagnostics) throws IOException
+    {
+        this(sourceDirectory, diagnostics, new SourceScanner(false));
+    }
+
+    /**
+     * Creates an ExtractStats.
+     * 
+     * @param sourceDirectory the source directory
+     * @param diagnostics the set to add the diagnostics for the current run to
+     * @param sourceScanner the scanner to read the source files for the current run with
+     * @throws IOException if there is an error determining the canonical path of the source directory
+     */
+    public ExtractStats(final String sourceDirectory, final DiagnosticSet diagnostics,
+                        final SourceScanner sourceScanner) throws IOException
+    {
+        this.sourceDirectory = resolveCanonicalPath(sourceDirectory);
+        this.diagnostics = diagnostics;
+        this.sourceScanner = sourceScanner;
     }
 	
 	/**
@@ -85,23 +122,38 @@ public final class ExtractStats
     {
         return coverage;
     }
+
+    /** @return the scanner which reads the source files for the current run */
+    public SourceScanner getSourceScanner()
+    {
+        return sourceScanner;
+    }
 	
 	/**
-	 * Extracts source file line counts for all source files .
+	 * Extracts source file line counts for all source files. The files are scanned in parallel
+	 * by the run's {@link SourceScanner}, so files which have already been scanned are not read again.
      * @throws IOException if there is an error reading from a file
 	 */
 	public void extractLineCounts() throws IOException
 	{
-	    extractLineCounts(new File(sourceDirectory));
+	    List<File> files = new ArrayList<File>();
+	    findFiles(new File(sourceDirectory), files);
+
+	    sourceScanner.scanAll(files);
+
+	    for (File file : files)
+	    {
+	        extractLineCount(file);
+	    }
 	}
 
 	/**
-     * Extract source file line counts.
+     * Finds all the files in a directory tree.
      * 
-     * @param file the file to count lines for
-     * @throws IOException if there is an error reading from a file
+     * @param file the file or directory to search
+     * @param files the list to add the files to
      */
-    private void extractLineCounts(final File file) throws IOException
+    private static void findFiles(final File file, final List<File> files)
     {
         if (file.isDirectory())
         {
@@ -109,97 +161,114 @@ public final class ExtractStats
 
             for (int i = 0; i < children.length; i++)
             {
-                extractLineCounts(children[i]);
+                findFiles(children[i], files);
             }
         }
         else
         {
-            int lineCount = countLines(file);
-            String path = file.getCanonicalPath();
-            String className = getClassNameForSourcePath(path);
-            String packageName = getPackageName(path);
+            files.add(file);
+        }
+    }
 
-            if ("".equals(packageName))
-            {
-                packageName = "default";
-            }
+	/**
+     * Extract the line count for a source file.
+     * 
+     * @param file the file to count lines for
+     * @throws IOException if there is an error reading from a file
+     */
+    private void extractLineCount(final File file) throws IOException
+    {
+        int lineCount = sourceScanner.scan(file).getLineCount();
+        String path = getCanonicalPath(file.getPath());
+        String className = getClassNameForSourcePath(path);
+        String packageName = getPackageName(path);
 
-            lineCountByClass.put(className, lineCount);
+        if ("".equals(packageName))
+        {
+            packageName = "default";
+        }
 
-            Integer packageLineCount = lineCountByPackage.get(packageName);
+        lineCountByClass.put(className, lineCount);
 
-            if (packageLineCount == null)
-            {
-                lineCountByPackage.put(packageName, lineCount);
-            }
-            else
-            {
-                packageLineCount = packageLineCount.intValue() + lineCount;
-                lineCountByPackage.put(packageName, packageLineCount);
-            }
+        Integer packageLineCount = lineCountByPackage.get(packageName);
+
+        if (packageLineCount == null)
+        {
+            lineCountByPackage.put(packageName, lineCount);
+        }
+        else
+        {
+            packageLineCount = packageLineCount.intValue() + lineCount;
+            lineCountByPackage.put(packageName, packageLineCount);
+        }
 
-            Integer packageClassCount = classCountByPackage.get(packageName);
+        Integer packageClassCount = classCountByPackage.get(packageName);
 
-            if (packageClassCount == null)
-            {
-                classCountByPackage.put(packageName, 1);
-            }
-            else
-            {
-                packageClassCount = packageClassCount.intValue() + 1;
-                classCountByPackage.put(packageName, packageClassCount);
-            }
+        if (packageClassCount == null)
+        {
+            classCountByPackage.put(packageName, 1);
+        }
+        else
+        {
+            packageClassCount = packageClassCount.intValue() + 1;
+            classCountByPackage.put(packageName, packageClassCount);
         }
     }
 	
 	/**
-     * Counts the number of lines in a file.
+     * Returns the canonical (unique) version of the given path. See File.getCanonicalPath().
+     * Paths are only resolved once, as the tools report many diagnostics for each file.
      * 
-     * @param file the text file to count lines for
-     * @return the number of lines in the file
-     * @throws IOException if there is an error reading from the file
+     * @param path the path
+     * @return the canonical version of the path
+     * @throws IOException if there is a problem retrieving the path
      */
-    private int countLines(final File file) throws IOException
+    public String getCanonicalPath(final String path) throws IOException
     {
-        int count = file.length() == 0 ? 0 : 1;
+        SourcePath sourcePath = sourcePathsByToolPath.get(path);
 
-        if (file.length() > 0)
+        if (sourcePath == null)
         {
-            byte[] buf = new byte[BUF_SIZE];
-            FileInputStream fis = null;
+            String canonicalPath = resolveCanonicalPath(path);
+            sourcePath = canonicalPath == null ? SourcePath.NONE : getSourcePath(canonicalPath);
+            sourcePathsByToolPath.putIfAbsent(path, sourcePath);
+        }
 
-            try
-            {
-                fis = new FileInputStream(file);
-
-                for (int len = fis.read(buf); len != -1; len = fis.read(buf))
-                {
-                    for (int i = 0; i < len; i++)
-                    {
-                        if (buf[i] == '\n')
-                        {
-                            count++;
-                        }
-                    }
-                }
-            }
-            finally
+        return sourcePath.path;
+    }
+
+    /**
+     * Retrieves the shared entry for a path.
+     * 
+     * @param path the path
+     * @return the entry for the path
+     */
+    private SourcePath getSourcePath(final String path)
+    {
+        SourcePath sourcePath = sourcePaths.get(path);
+
+        if (sourcePath == null)
+        {
+            sourcePath = new SourcePath(path);
+            SourcePath existing = sourcePaths.putIfAbsent(path, sourcePath);
+
+            if (existing != null)
             {
-                QaUtil.safeClose(fis);
+                sourcePath = existing;
             }
         }
 
-        return count;
+        return sourcePath;
     }
-	
+
 	/**
-     * Returns the canonical (unique) version of the given path. See File.getCanonicalPath().
+     * Resolves the canonical (unique) version of the given path, without using the cache.
      * 
      * @param path the path
-     * @return the canonical version of the path
+     * @return the canonical version of the path, or null if the file does not exist
      * @throws IOException if there is a problem retrieving the path
      */
-    public String getCanonicalPath(final String path) throws IOException
+    private String resolveCanonicalPath(final String path) throws IOException
     {
         File file = new File(path);
 
@@ -227,6 +296,31 @@ public final class ExtractStats
      * @return the class name, or "unknown" if not a class
      */
     public String getClassNameForSourcePath(final String sourcePath)
+    {
+        if (sourcePath == null)
+        {
+            return "unknown";
+        }
+
+        SourcePath entry = getSourcePath(sourcePath);
+        String className = entry.className;
+
+        if (className == null)
+        {
+            className = resolveClassName(sourcePath);
+            entry.className = className;
+        }
+
+        return className;
+    }
+
+	/**
+     * Determines the class name for the given source path, without using the cache.
+     * 
+     * @param sourcePath the source path
+     * @return the class name, or "unknown" if not a class
+     */
+    private String resolveClassName(final String sourcePath)
     {
         String className = "unknown";
 
@@ -258,6 +352,26 @@ public final class ExtractStats
      * @return the package name for the given source file.
      */
     public String getPackageName(final String sourceFilePath)
+    {
+        SourcePath entry = getSourcePath(sourceFilePath);
+        String packageName = entry.packageName;
+
+        if (packageName == null)
+        {
+            packageName = resolvePackageName(sourceFilePath);
+            entry.packageName = packageName;
+        }
+
+        return packageName;
+    }
+
+	/**
+     * Determines the package name for a java source file, without using the cache.
+     * 
+     * @param sourceFilePath the full path to the source file
+     * @return the package name for the given source file.
+     */
+    private String resolvePackageName(final String sourceFilePath)
     {
     	// Find the directory containing for the given sourceFilePath.
     	String sourceDir = sourceFilePath;
@@ -348,13 +462,29 @@ public final class ExtractStats
 	    return count == null ? 0 : count.intValue();
 	}
 	
+	/**
+	 * Returns the statistics for each package, arranged in a tree. The tree is built on first use,
+	 * so must not be requested until the line counts, coverage and diagnostics have been read.
+	 * 
+	 * @return the package tree
+	 */
+	public synchronized PackageTree getPackageTree()
+	{
+	    if (packageTree == null)
+	    {
+	        packageTree = new PackageTree(lineCountByPackage, classCountByPackage, coverage, diagnostics);
+	    }
+	    
+	    return packageTree;
+	}
+	
 	/**
      * Reads the historical summary information.
      * 
      * @param summaryFile the file to read from
      * @throws IOException if there is an error reading from the summary file 
      */
-	public void extractHistoricalSummary(final File summaryFile) throws IOException
+	public synchronized void extractHistoricalSummary(final File summaryFile) throws IOException
 	{
 	    // Retrieve the summaries
 	    SummaryCsvMarshaller marshaller = new SummaryCsvMarshaller();
@@ -370,7 +500,7 @@ public final class ExtractStats
      * @param packageName the package name
 	 * @return a summary of the package quality over time, may be empty
 	 */
-	public PackageSummary[] getPackageSummary(final String packageName)
+	public synchronized PackageSummary[] getPackageSummary(final String packageName)
 	{
 	    if (currentRunSummary == null)
 	    {
@@ -392,7 +522,7 @@ public final class ExtractStats
 	/**
 	 * @return a summary of the quality for this run
 	 */
-	public PackageSummary[] getRunSummary()
+	public synchronized PackageSummary[] getRunSummary()
 	{
 	    if (currentRunSummary == null)
 	    {
@@ -408,61 +538,14 @@ public final class ExtractStats
 	private void summariseCurrentRun()
 	{
         List<PackageSummary> entries = new ArrayList<PackageSummary>();
-        Set<String> packageNames = classCountByPackage.keySet();
         Date currentDate = new Date();
+        PackageTree.Node root = getPackageTree().getRoot();
         
         // Summary for all packages
-	    PackageSummary rootEntry = new PackageSummary();
-	    rootEntry.setPackageName("");
-	    rootEntry.setRunDate(currentDate);
-	    rootEntry.setLineCoverage(coverage.getLineCoverage());
-	    rootEntry.setBranchCoverage(coverage.getBranchCoverage());
-	    rootEntry.setInfoCount(diagnostics.getCountForSeverity(Diagnostic.SEVERITY_INFO));
-        rootEntry.setLowCount(diagnostics.getCountForSeverity(Diagnostic.SEVERITY_LOW));
-        rootEntry.setModerateCount(diagnostics.getCountForSeverity(Diagnostic.SEVERITY_MODERATE));
-        rootEntry.setSignificantCount(diagnostics.getCountForSeverity(Diagnostic.SEVERITY_SIGNIFICANT));
-        rootEntry.setHighCount(diagnostics.getCountForSeverity(Diagnostic.SEVERITY_HIGH));
-        rootEntry.setLineCount(getLineCount());
-        entries.add(rootEntry);
+        entries.add(summarise(root, currentDate));
         
-        // For each package
-    	for (String packageName : packageNames)
-    	{
-    	    PackageSummary entry = new PackageSummary();
-            entry.setPackageName(packageName);
-    	    entry.setRunDate(currentDate);
-            
-            PackageCoverage packageCoverage = coverage.getPackageCoverage(packageName);
-            
-            if (packageCoverage != null)
-            {
-	            entry.setLineCoverage(packageCoverage.getLineCoverage());
-	            entry.setBranchCoverage(packageCoverage.getBranchCoverage());
-            }
-            
-            // Diagnostics & line-counts for this package and sub-packages
-            DiagnosticSet diagsForPackage = diagnostics.getDiagnosticsForPackage(packageName);
-            int lineCountForPackage = (lineCountByPackage.get(packageName)).intValue();
-            String packageNamePlusDot = packageName + '.';
-            
-            for (String otherPackageName : lineCountByPackage.keySet())
-            {
-                if (otherPackageName.startsWith(packageNamePlusDot))
-                {
-                    Integer lineCount = (lineCountByPackage.get(otherPackageName));
-                    lineCountForPackage += lineCount.intValue();
-                }
-            }
-            
-            entry.setInfoCount(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_INFO));
-            entry.setLowCount(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_LOW));
-            entry.setModerateCount(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_MODERATE));
-            entry.setSignificantCount(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_SIGNIFICANT));
-            entry.setHighCount(diagsForPackage.getCountForSeverity(Diagnostic.SEVERITY_HIGH));
-            entry.setLineCount(lineCountForPackage);
-            
-            entries.add(entry);
-    	}        
+        // Summaries for each package, including sub-packages
+        addSummaries(root.getChildren(), currentDate, entries);
 
     	currentRunSummary = entries.toArray(new PackageSummary[entries.size()]);
     	
@@ -470,6 +553,57 @@ public final class ExtractStats
     	addSummariesToSummaryMap(currentRunSummary);
 	}
 	
+	/**
+	 * Adds a summary for each of the given packages which contain classes, and their sub-packages.
+	 * 
+	 * @param nodes the packages to summarise
+	 * @param runDate the date of the current run
+	 * @param entries the list to add the summaries to
+	 */
+	private static void addSummaries(final List<PackageTree.Node> nodes, final Date runDate, final List<PackageSummary> entries)
+	{
+	    for (PackageTree.Node node : nodes)
+	    {
+	        if (node.getClassCount(false) > 0)
+	        {
+	            entries.add(summarise(node, runDate));
+	        }
+	        
+	        addSummaries(node.getChildren(), runDate, entries);
+	    }
+	}
+	
+	/**
+	 * Summarises the current run for a package, including its sub-packages.
+	 * 
+	 * @param node the package to summarise
+	 * @param runDate the date of the current run
+	 * @return the summary for the package
+	 */
+	private static PackageSummary summarise(final PackageTree.Node node, final Date runDate)
+	{
+	    PackageSummary entry = new PackageSummary();
+	    entry.setPackageName(node.getName());
+	    entry.setRunDate(runDate);
+	    
+	    CoverageItf packageCoverage = node.getCoverage();
+	    
+	    if (packageCoverage != null)
+	    {
+	        entry.setLineCoverage(packageCoverage.getLineCoverage());
+	        entry.setBranchCoverage(packageCoverage.getBranchCoverage());
+	    }
+	    
+	    entry.setInfoCount(node.getCountForSeverity(Diagnostic.SEVERITY_INFO, true));
+	    entry.setLowCount(node.getCountForSeverity(Diagnostic.SEVERITY_LOW, true));
+	    entry.setModerateCount(node.getCountForSeverity(Diagnostic.SEVERITY_MODERATE, true));
+	    entry.setSignificantCount(node.getCountForSeverity(Diagnostic.SEVERITY_SIGNIFICANT, true));
+	    entry.setHighCount(node.getCountForSeverity(Diagnostic.SEVERITY_HIGH, true));
+	    entry.setLineCount(node.getLineCount(true));
+	    
+	    return entry;
+	}
+	
 	/**
 	 * Adds the given package summaries to the summary by package map.
 	 * @param summaries the summaries to add
@@ -490,4 +624,33 @@ public final class ExtractStats
 	        summariesForPackage.add(summary);
 	    }	    
 	}	
+
+    /**
+     * A source path, with its class and package names. The names are determined on first use;
+     * as they are immutable Strings, a name may be determined twice but is never seen half-built.
+     */
+    private static final class SourcePath
+    {
+        /** The entry for tool paths which do not exist. */
+        private static final SourcePath NONE = new SourcePath(null);
+
+        /** The path. */
+        private final String path;
+
+        /** The class name for the path, or null if not yet determined. */
+        private String className;
+
+        /** The package name for the path, or null if not yet determined. */
+        private String packageName;
+
+        /**
+         * Creates a SourcePath.
+         *
+         * @param path the path.
+         */
+        private SourcePath(final String path)
+        {
+            this.path = path;
+        }
+    }
 }
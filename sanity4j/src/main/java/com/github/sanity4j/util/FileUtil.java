@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.util.List;
 
 
@@ -15,9 +17,6 @@ import java.util.List;
  */
 public final class FileUtil
 {
-    /** The buffer size to use for copy operations. */
-    private static final int BUFFER_SIZE = 4096;
-    
     /** No instance methods here. */
     private FileUtil()
     {
@@ -94,7 +93,9 @@ public final class FileUtil
     }
 
     /**
-     * Copies a file.
+     * Copies a file. The data is transferred directly between the files where the platform allows,
+     * rather than through a buffer. If the destination exists, it is replaced rather than overwritten,
+     * so that files which the destination is linked to are not modified.
      * 
      * @param source the source file
      * @param dest the destination file
@@ -117,6 +118,9 @@ public final class FileUtil
             throw new IOException("Unable to create parent directory" + dest.getParentFile().getPath());
         }
         
+        // Also removes broken symbolic links, which would otherwise be written through
+        Files.deleteIfExists(dest.toPath());
+        
         FileInputStream inStream = null;
         FileOutputStream outStream = null;
         
@@ -125,16 +129,15 @@ public final class FileUtil
             inStream = new FileInputStream(source);
             outStream = new FileOutputStream(dest);
             
-            final byte[] buf = new byte[BUFFER_SIZE];
-            int bytesRead = inStream.read(buf);
+            FileChannel in = inStream.getChannel();
+            FileChannel out = outStream.getChannel();
+            long size = in.size();
             
-            while (bytesRead != -1)
+            // transferTo may transfer fewer bytes than requested, and none if the file has been truncated
+            for (long position = 0, count = 1; position < size && count > 0; position += count)
             {
-                outStream.write(buf, 0, bytesRead);
-                bytesRead = inStream.read(buf);
+                count = in.transferTo(position, size - position, out);
             }
-            
-            outStream.flush();
         }
         finally
         {
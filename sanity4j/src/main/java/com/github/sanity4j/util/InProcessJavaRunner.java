@@ -0,0 +1,611 @@
+package com.github.sanity4j.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Runs a Java program within the current VM, rather than starting a new VM as
+ * {@link ExternalProcessRunner} does. This avoids the cost of starting and warming up
+ * a VM for each tool.</p>
+ *
+ * <p>The program is loaded by its own {@link ChildFirstClassLoader}, so that it is isolated
+ * from Sanity4J's own dependencies, and its main method is invoked on the calling thread.
+ * Anything the program (or any threads it starts) writes to System.out and System.err while
+ * it runs is piped to the given streams, and calls to System.exit() end the program rather than
+ * the VM. Threads which the program leaves running afterwards revert to the VM's own streams.</p>
+ *
+ * <p>Trapping System.exit() requires a SecurityManager to be installed. The SecurityManager and
+ * the System.out/err redirection are only installed while programs are running in-process, and the
+ * VM's own are restored once the last program completes. If they can not be installed, e.g. because
+ * the host application has installed its own SecurityManager, or the VM no longer allows one to be set,
+ * an {@link UnavailableException} is thrown, and programs should be run using {@link ExternalProcessRunner}
+ * instead. The same applies to a program whose system properties conflict with those already set,
+ * as system properties are shared by everything running in the VM.</p>
+ *
+ * <p>The SecurityManager is deprecated for removal from Java 17, which prints a warning whenever one is
+ * installed, and it can not be installed by default from Java 18. Programs are therefore never run
+ * in-process on Java 18 and later, and are always run as an external process instead.</p>
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class InProcessJavaRunner
+{
+    /** The exit code reported when the program's main method throws an exception. */
+    private static final int EXCEPTION_EXIT_CODE = 1;
+
+    /** The first Java version which does not allow a SecurityManager to be installed by default. */
+    private static final int NO_SECURITY_MANAGER_VERSION = 18;
+
+    /**
+     * The program which the current thread (or the thread which started it) is running in-process.
+     * Threads started by a program inherit its run, which is ended once the program completes.
+     */
+    private static final InheritableThreadLocal<Run> CURRENT_RUN = new InheritableThreadLocal<Run>();
+
+    /** The system properties set for the programs running in-process, keyed by property name. */
+    private static final Map<String, PropertyUse> PROPERTIES_IN_USE = new HashMap<String, PropertyUse>();
+
+    /** Whether the SecurityManager could be installed when first checked; null if not yet checked. */
+    private static Boolean available;
+
+    /** The number of programs currently running in-process. */
+    private static int activeRuns;
+
+    /** The SecurityManager installed while programs are running in-process. */
+    @SuppressWarnings("removal")
+    private static SecurityManager securityManager;
+
+    /** The VM's System.out, restored when no programs are running in-process. */
+    private static PrintStream originalOut;
+
+    /** The VM's System.err, restored when no programs are running in-process. */
+    private static PrintStream originalErr;
+
+    /** InProcessJavaRunner should not be instantiated. */
+    private InProcessJavaRunner()
+    {
+        // InProcessJavaRunner should not be instantiated.
+    }
+
+    /**
+     * Determines whether programs can be run in-process. The first call checks that the SecurityManager
+     * can be installed, by installing it and restoring the VM's own straight away. If it can not, the
+     * reason is logged once, and programs must be run as an external process from then on.
+     *
+     * @return true if programs can be run in-process, false if they must be run as an external process.
+     */
+    public static synchronized boolean isAvailable()
+    {
+        if (available == null)
+        {
+            try
+            {
+                if (getJavaVersion() >= NO_SECURITY_MANAGER_VERSION)
+                {
+                    throw new UnavailableException("A SecurityManager can not be installed on Java "
+                                                   + System.getProperty("java.specification.version"));
+                }
+
+                install();
+                uninstall();
+                available = Boolean.TRUE;
+            }
+            catch (UnavailableException e)
+            {
+                QaLogger.getInstance().info(e.getMessage() + ", tools will be run as external processes instead");
+                available = Boolean.FALSE;
+            }
+        }
+
+        return available.booleanValue();
+    }
+
+    /**
+     * @return the major version of the Java specification which the VM implements, e.g. 8 for 1.8.
+     */
+    private static int getJavaVersion()
+    {
+        String version = System.getProperty("java.specification.version", "");
+
+        if (version.startsWith("1."))
+        {
+            version = version.substring(2);
+        }
+
+        try
+        {
+            return Integer.parseInt(version.split("\\.")[0]);
+        }
+        catch (NumberFormatException e)
+        {
+            QaLogger.getInstance().debug("Unknown Java version " + version);
+            return 0;
+        }
+    }
+
+    /**
+     * Runs a program in-process, given the command line which would have been used to run it as an external process.
+     * The command line is expected to be of the form <code>java [vm options] main.Class [arguments]</code>.
+     * VM options other than system properties are ignored. The system properties are set for the duration of
+     * the program, and cleared afterwards.
+     *
+     * @param cmdLine the command line to run.
+     * @param classpath the class path for the program.
+     * @param out where to pipe System.out to.
+     * @param err where to pipe System.err to.
+     *
+     * @return the exit code of the program.
+     * @throws UnavailableException if the program can not be run in-process, and must be run as an external process.
+     */
+    public static int runCommandLine(final String cmdLine, final List<String> classpath,
+        final OutputStream out, final OutputStream err)
+    {
+        JavaCommandLine javaCommandLine = JavaCommandLine.parse(cmdLine);
+        Map<String, String> systemProperties = javaCommandLine.getSystemProperties();
+
+        acquireSystemProperties(systemProperties);
+
+        try
+        {
+            QaLogger.getInstance().info("In-process: " + cmdLine);
+            return runMain(classpath, javaCommandLine.getMainClass(), javaCommandLine.getArguments(), out, err);
+        }
+        finally
+        {
+            releaseSystemProperties(systemProperties);
+        }
+    }
+
+    /**
+     * Sets system properties for a program which is about to be run in-process. Properties which are not
+     * already set are set until they are {@link #releaseSystemProperties(Map) released} by every program
+     * using them. Properties which are already set to the same value are left as is.
+     *
+     * @param systemProperties the system properties for the program.
+     * @throws UnavailableException if any of the properties is already set to a different value.
+     */
+    public static synchronized void acquireSystemProperties(final Map<String, String> systemProperties)
+    {
+        // Check everything first, so that nothing needs to be undone
+        for (Map.Entry<String, String> entry : systemProperties.entrySet())
+        {
+            String existing = System.getProperty(entry.getKey());
+
+            if (existing != null && !existing.equals(entry.getValue()))
+            {
+                throw new UnavailableException("System property " + entry.getKey() + "=" + entry.getValue()
+                                               + " conflicts with the current value " + existing);
+            }
+        }
+
+        for (Map.Entry<String, String> entry : systemProperties.entrySet())
+        {
+            PropertyUse use = PROPERTIES_IN_USE.get(entry.getKey());
+
+            if (use != null)
+            {
+                use.count++;
+            }
+            else if (System.getProperty(entry.getKey()) == null)
+            {
+                System.setProperty(entry.getKey(), entry.getValue());
+                PROPERTIES_IN_USE.put(entry.getKey(), new PropertyUse());
+            }
+        }
+    }
+
+    /**
+     * Releases the system properties set by {@link #acquireSystemProperties(Map)}, once a program has completed.
+     * Properties are cleared once no programs are using them.
+     *
+     * @param systemProperties the system properties for the program.
+     */
+    public static synchronized void releaseSystemProperties(final Map<String, String> systemProperties)
+    {
+        for (String key : systemProperties.keySet())
+        {
+            PropertyUse use = PROPERTIES_IN_USE.get(key);
+
+            if (use != null && --use.count == 0)
+            {
+                PROPERTIES_IN_USE.remove(key);
+                System.clearProperty(key);
+            }
+        }
+    }
+
+    /**
+     * Installs the SecurityManager and System.out/err redirection, if no other programs are running in-process.
+     *
+     * @throws UnavailableException if the SecurityManager can not be installed.
+     */
+    @SuppressWarnings("removal")
+    private static synchronized void install()
+    {
+        if (activeRuns == 0)
+        {
+            if (System.getSecurityManager() != null)
+            {
+                throw new UnavailableException("A SecurityManager is already installed");
+            }
+
+            try
+            {
+                securityManager = new ExitTrappingSecurityManager();
+                System.setSecurityManager(securityManager);
+            }
+            catch (UnsupportedOperationException e)
+            {
+                throw new UnavailableException("Unable to install a SecurityManager", e);
+            }
+            catch (SecurityException e)
+            {
+                throw new UnavailableException("Unable to install a SecurityManager", e);
+            }
+
+            originalOut = System.out;
+            originalErr = System.err;
+            System.setOut(new PrintStream(new RunOutputStream(originalOut, false), true));
+            System.setErr(new PrintStream(new RunOutputStream(originalErr, true), true));
+        }
+
+        activeRuns++;
+    }
+
+    /**
+     * Restores the VM's SecurityManager and System.out/err, once no programs are running in-process.
+     */
+    @SuppressWarnings("removal")
+    private static synchronized void uninstall()
+    {
+        if (--activeRuns == 0)
+        {
+            System.out.flush();
+            System.err.flush();
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+            originalOut = null;
+            originalErr = null;
+
+            // Leave alone any SecurityManager which a program has installed in place of ours
+            if (System.getSecurityManager() == securityManager)
+            {
+                System.setSecurityManager(null);
+            }
+
+            securityManager = null;
+        }
+    }
+
+    /**
+     * Runs a program in-process.
+     *
+     * @param classpath the class path for the program.
+     * @param mainClass the name of the class containing the program's main method.
+     * @param args the program arguments.
+     * @param out where to pipe System.out to.
+     * @param err where to pipe System.err to.
+     *
+     * @return the exit code of the program.
+     * @throws UnavailableException if the program can not be run in-process, and must be run as an external process.
+     */
+    public static int runMain(final List<String> classpath, final String mainClass, final String[] args,
+        final OutputStream out, final OutputStream err)
+    {
+        ChildFirstClassLoader classLoader = createClassLoader(classpath);
+
+        try
+        {
+            return runMain(classLoader, mainClass, args, out, err);
+        }
+        finally
+        {
+            try
+            {
+                classLoader.close();
+            }
+            catch (IOException e)
+            {
+                QaLogger.getInstance().debug("Failed to close class loader for " + mainClass);
+            }
+        }
+    }
+
+    /**
+     * Runs a program in-process, using an existing class loader. Reusing a class loader avoids
+     * loading and warming up the program's classes again, but the program must then be able
+     * to cope with any static state left behind by previous runs.
+     *
+     * @param classLoader the class loader to load the program from.
+     * @param mainClass the name of the class containing the program's main method.
+     * @param args the program arguments.
+     * @param out where to pipe System.out to.
+     * @param err where to pipe System.err to.
+     *
+     * @return the exit code of the program.
+     * @throws UnavailableException if the program can not be run in-process, and must be run as an external process.
+     */
+    public static int runMain(final ClassLoader classLoader, final String mainClass, final String[] args,
+        final OutputStream out, final OutputStream err)
+    {
+        install();
+
+        Thread thread = Thread.currentThread();
+        ClassLoader oldContextClassLoader = thread.getContextClassLoader();
+
+        Run run = new Run(out, err);
+        CURRENT_RUN.set(run);
+        thread.setContextClassLoader(classLoader);
+
+        try
+        {
+            Method main = classLoader.loadClass(mainClass).getMethod("main", String[].class);
+            main.invoke(null, new Object[] { args });
+            return 0;
+        }
+        catch (InvocationTargetException e)
+        {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof ExitException)
+            {
+                return ((ExitException) cause).getStatus();
+            }
+
+            // Report the failure in the same way that the VM would for an uncaught exception.
+            PrintStream errStream = new PrintStream(err, true);
+            cause.printStackTrace(errStream);
+            errStream.flush();
+            return EXCEPTION_EXIT_CODE;
+        }
+        catch (ClassNotFoundException e)
+        {
+            throw new QAException("Main class " + mainClass + " not found", e);
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new QAException("No main method found in " + mainClass, e);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new QAException("Unable to invoke main method of " + mainClass, e);
+        }
+        finally
+        {
+            thread.setContextClassLoader(oldContextClassLoader);
+            // Threads which the program started still refer to the run, so it must be ended for them too
+            run.active = false;
+            CURRENT_RUN.remove();
+            uninstall();
+        }
+    }
+
+    /**
+     * Creates a class loader for running a program in-process.
+     *
+     * @param classpath the class path entries.
+     * @return a class loader which loads classes from the class path before asking Sanity4J's class loader.
+     */
+    public static ChildFirstClassLoader createClassLoader(final List<String> classpath)
+    {
+        List<URL> urls = new ArrayList<URL>(classpath.size());
+
+        for (String path : classpath)
+        {
+            try
+            {
+                urls.add(new File(path).toURI().toURL());
+            }
+            catch (MalformedURLException e)
+            {
+                throw new QAException("Invalid class path entry " + path, e);
+            }
+        }
+
+        return new ChildFirstClassLoader(urls.toArray(new URL[urls.size()]), InProcessJavaRunner.class.getClassLoader());
+    }
+
+    /**
+     * Thrown when a program can not be run in-process, and must be run as an external process instead.
+     */
+    public static final class UnavailableException extends QAException
+    {
+        /** Serialization version. */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates an UnavailableException.
+         * @param message the reason the program can not be run in-process.
+         */
+        UnavailableException(final String message)
+        {
+            super(message);
+        }
+
+        /**
+         * Creates an UnavailableException.
+         * @param message the reason the program can not be run in-process.
+         * @param cause the underlying cause.
+         */
+        UnavailableException(final String message, final Throwable cause)
+        {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * @return the program which the current thread is running in-process, or null if there is none.
+     */
+    private static Run getCurrentRun()
+    {
+        Run run = CURRENT_RUN.get();
+        return run != null && run.active ? run : null;
+    }
+
+    /**
+     * A program which is running in-process.
+     */
+    private static final class Run
+    {
+        /** Where the program's System.out is piped to. */
+        private final OutputStream out;
+
+        /** Where the program's System.err is piped to. */
+        private final OutputStream err;
+
+        /** Whether the program is still running. */
+        private volatile boolean active = true;
+
+        /**
+         * Creates a Run.
+         *
+         * @param out where to pipe System.out to.
+         * @param err where to pipe System.err to.
+         */
+        private Run(final OutputStream out, final OutputStream err)
+        {
+            this.out = out;
+            this.err = err;
+        }
+    }
+
+    /**
+     * Records how many programs running in-process are using a system property which was set for them.
+     */
+    private static final class PropertyUse
+    {
+        /** The number of programs using the property. */
+        private int count = 1;
+    }
+
+    /**
+     * Thrown in place of exiting the VM, when a program being run in-process calls System.exit().
+     */
+    private static final class ExitException extends SecurityException
+    {
+        /** Serialization version. */
+        private static final long serialVersionUID = 1L;
+
+        /** The exit status passed to System.exit(). */
+        private final int status;
+
+        /**
+         * Creates an ExitException.
+         * @param status the exit status passed to System.exit().
+         */
+        ExitException(final int status)
+        {
+            super("System.exit(" + status + ") called by in-process tool");
+            this.status = status;
+        }
+
+        /** @return the exit status passed to System.exit(). */
+        public int getStatus()
+        {
+            return status;
+        }
+    }
+
+    /**
+     * A SecurityManager which prevents programs being run in-process from exiting the VM.
+     * All other operations are permitted.
+     */
+    @SuppressWarnings("removal")
+    private static final class ExitTrappingSecurityManager extends SecurityManager
+    {
+        /** {@inheritDoc} */
+        @Override
+        public void checkExit(final int status)
+        {
+            if (getCurrentRun() != null)
+            {
+                throw new ExitException(status);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void checkPermission(final Permission perm)
+        {
+            // Everything else is allowed
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void checkPermission(final Permission perm, final Object context)
+        {
+            // Everything else is allowed
+        }
+    }
+
+    /**
+     * An OutputStream which writes to the stream of the program which the current thread is running in-process,
+     * or to a default stream if there is none.
+     */
+    private static final class RunOutputStream extends OutputStream
+    {
+        /** The stream to write to when the current thread is not running a program in-process. */
+        private final OutputStream defaultStream;
+
+        /** True to write to the program's System.err stream, false for its System.out stream. */
+        private final boolean error;
+
+        /**
+         * Creates a RunOutputStream.
+         *
+         * @param defaultStream the stream to write to when the current thread is not running a program in-process.
+         * @param error true to write to the program's System.err stream, false for its System.out stream.
+         */
+        RunOutputStream(final OutputStream defaultStream, final boolean error)
+        {
+            this.defaultStream = defaultStream;
+            this.error = error;
+        }
+
+        /** @return the stream to write to for the current thread. */
+        private OutputStream getStream()
+        {
+            Run run = getCurrentRun();
+
+            if (run == null)
+            {
+                return defaultStream;
+            }
+
+            return error ? run.err : run.out;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final int b) throws IOException
+        {
+            getStream().write(b);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException
+        {
+            getStream().write(b, off, len);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void flush() throws IOException
+        {
+            getStream().flush();
+        }
+    }
+}
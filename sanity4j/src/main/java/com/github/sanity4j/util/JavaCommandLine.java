@@ -0,0 +1,127 @@
+package com.github.sanity4j.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JavaCommandLine splits a command line of the form <code>java [vm options] main.Class [arguments]</code>
+ * into its parts, so that the program can be run without starting a new VM.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class JavaCommandLine
+{
+    /** The name of the class containing the program's main method. */
+    private final String mainClass;
+
+    /** The program arguments. */
+    private final String[] arguments;
+
+    /** The system properties set using -D options. */
+    private final Map<String, String> systemProperties;
+
+    /**
+     * Creates a JavaCommandLine.
+     *
+     * @param mainClass the name of the class containing the program's main method.
+     * @param arguments the program arguments.
+     * @param systemProperties the system properties set using -D options.
+     */
+    public JavaCommandLine(final String mainClass, final String[] arguments, final Map<String, String> systemProperties)
+    {
+        this.mainClass = mainClass;
+        this.arguments = arguments;
+        this.systemProperties = systemProperties;
+    }
+
+    /**
+     * Parses a command line. VM options other than system properties (e.g. the class path) are ignored.
+     *
+     * @param cmdLine the command line to parse.
+     * @return the parsed command line.
+     */
+    public static JavaCommandLine parse(final String cmdLine)
+    {
+        String[] cmdArray = splitArguments(cmdLine);
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+
+        // Skip the java executable and VM options.
+        int index = 1;
+
+        for (; index < cmdArray.length && cmdArray[index].startsWith("-"); index++)
+        {
+            String option = cmdArray[index];
+
+            if ("-cp".equals(option) || "-classpath".equals(option))
+            {
+                index++;
+            }
+            else if (option.startsWith("-D"))
+            {
+                int separator = option.indexOf('=');
+
+                if (separator == -1)
+                {
+                    properties.put(option.substring(2), "");
+                }
+                else
+                {
+                    properties.put(option.substring(2, separator), option.substring(separator + 1));
+                }
+            }
+        }
+
+        if (index >= cmdArray.length)
+        {
+            throw new QAException("No main class found in command line [" + cmdLine + "]");
+        }
+
+        return new JavaCommandLine(cmdArray[index], Arrays.copyOfRange(cmdArray, index + 1, cmdArray.length), properties);
+    }
+
+    /**
+     * Splits a command line (or part of one) into arguments at spaces which are not within quotes,
+     * in the same way as {@link ExternalProcessRunner}. The quotes are removed from the arguments.
+     *
+     * @param cmdLine the command line to split.
+     * @return the arguments, or an empty array if there are none.
+     */
+    public static String[] splitArguments(final String cmdLine)
+    {
+        String trimmed = cmdLine.trim();
+
+        if (trimmed.length() == 0)
+        {
+            return new String[0];
+        }
+
+        String[] cmdArray = trimmed.split(ExternalProcessRunner.ARGUMENT_SEPARATOR);
+
+        for (int i = 0; i < cmdArray.length; i++)
+        {
+            cmdArray[i] = cmdArray[i].replace("\"", "");
+        }
+
+        return cmdArray;
+    }
+
+    /** @return the name of the class containing the program's main method. */
+    public String getMainClass()
+    {
+        return mainClass;
+    }
+
+    /** @return the program arguments. */
+    public String[] getArguments()
+    {
+        return arguments;
+    }
+
+    /** @return the system properties set using -D options. */
+    public Map<String, String> getSystemProperties()
+    {
+        return systemProperties;
+    }
+}
@@ -0,0 +1,190 @@
+package com.github.sanity4j.util;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * JaxbContextRegistry - a process-wide cache of JAXB contexts, keyed by package and class loader.
+ * Creating a context reflects over the whole generated package, so each context is only created
+ * once, when it is first needed. Unmarshallers are not thread-safe, so a pool of unmarshallers
+ * is kept for each context, allowing readers to run in parallel without creating a new unmarshaller
+ * for each document.
+ *
+ * Contexts are kept for the life of the class loader which loaded this class, so repeated runs
+ * within the same JVM (e.g. a Maven build of many modules) reuse them.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class JaxbContextRegistry
+{
+    /** The contexts, keyed by class loader then package. */
+    private static final Map<ClassLoader, ConcurrentMap<String, Entry>> ENTRIES = new IdentityHashMap<ClassLoader, ConcurrentMap<String, Entry>>();
+
+    /** No instance methods here. */
+    private JaxbContextRegistry()
+    {
+    }
+
+    /**
+     * Retrieves the JAXB context for the given package, creating it if necessary.
+     * If another thread is already creating the context, this method waits for it to finish.
+     *
+     * @param pkg the package containing the JAXB generated classes.
+     * @param loader the class loader to load the generated classes from.
+     * @return the JAXB context for the package.
+     * @throws JAXBException if the context could not be created.
+     */
+    public static JAXBContext getContext(final String pkg, final ClassLoader loader) throws JAXBException
+    {
+        return getEntry(pkg, loader).getContext();
+    }
+
+    /**
+     * Obtains an unmarshaller for the given package from the pool. 
+     * The unmarshaller must be {@link #releaseUnmarshaller released} once it is no longer being used.
+     *
+     * @param pkg the package containing the JAXB generated classes.
+     * @param loader the class loader to load the generated classes from.
+     * @return an unmarshaller for the package.
+     * @throws JAXBException if the unmarshaller could not be created.
+     */
+    public static Unmarshaller acquireUnmarshaller(final String pkg, final ClassLoader loader) throws JAXBException
+    {
+        Entry entry = getEntry(pkg, loader);
+        Unmarshaller unmarshaller = entry.unmarshallers.poll();
+        return unmarshaller == null ? entry.getContext().createUnmarshaller() : unmarshaller;
+    }
+
+    /**
+     * Returns an unmarshaller to the pool.
+     *
+     * @param pkg the package containing the JAXB generated classes.
+     * @param loader the class loader to load the generated classes from.
+     * @param unmarshaller the unmarshaller, which must have been obtained from {@link #acquireUnmarshaller}.
+     */
+    public static void releaseUnmarshaller(final String pkg, final ClassLoader loader, final Unmarshaller unmarshaller)
+    {
+        getEntry(pkg, loader).unmarshallers.offer(unmarshaller);
+    }
+
+    /**
+     * Creates the contexts for the given packages in the background, so that they are
+     * ready by the time they are needed. Each context is created in its own thread.
+     *
+     * @param packages the packages containing the JAXB generated classes.
+     * @param loader the class loader to load the generated classes from.
+     */
+    public static void prewarm(final Collection<String> packages, final ClassLoader loader)
+    {
+        for (final String pkg : packages)
+        {
+            Thread thread = new Thread("Sanity4J JAXB prewarm " + pkg)
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        getContext(pkg, loader);
+                    }
+                    catch (Exception e)
+                    {
+                        // The error will be reported when the context is used
+                        QaLogger.getInstance().debug("Failed to create JAXB context for " + pkg + ": " + e);
+                    }
+                }
+            };
+
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Retrieves the entry for the given package and class loader, creating it if necessary.
+     *
+     * @param pkg the package containing the JAXB generated classes.
+     * @param loader the class loader to load the generated classes from.
+     * @return the entry for the package.
+     */
+    private static Entry getEntry(final String pkg, final ClassLoader loader)
+    {
+        ConcurrentMap<String, Entry> entries;
+
+        synchronized (ENTRIES)
+        {
+            entries = ENTRIES.get(loader);
+
+            if (entries == null)
+            {
+                entries = new ConcurrentHashMap<String, Entry>();
+                ENTRIES.put(loader, entries);
+            }
+        }
+
+        Entry entry = entries.get(pkg);
+
+        if (entry == null)
+        {
+            entry = new Entry(pkg, loader);
+            Entry existing = entries.putIfAbsent(pkg, entry);
+            entry = existing == null ? entry : existing;
+        }
+
+        return entry;
+    }
+
+    /**
+     * The context and unmarshallers for a single package.
+     */
+    private static final class Entry
+    {
+        /** The package containing the JAXB generated classes. */
+        private final String pkg;
+
+        /** The class loader to load the generated classes from. */
+        private final ClassLoader loader;
+
+        /** The unmarshallers which are not currently in use. */
+        private final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<Unmarshaller>();
+
+        /** The context, created on first use. */
+        private JAXBContext context;
+
+        /**
+         * Creates an Entry.
+         *
+         * @param pkg the package containing the JAXB generated classes.
+         * @param loader the class loader to load the generated classes from.
+         */
+        private Entry(final String pkg, final ClassLoader loader)
+        {
+            this.pkg = pkg;
+            this.loader = loader;
+        }
+
+        /**
+         * @return the context, which is created if necessary.
+         * @throws JAXBException if the context could not be created.
+         */
+        private synchronized JAXBContext getContext() throws JAXBException
+        {
+            if (context == null)
+            {
+                context = JAXBContext.newInstance(pkg, loader);
+            }
+
+            return context;
+        }
+    }
+}
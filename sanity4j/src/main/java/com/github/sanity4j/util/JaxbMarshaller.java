@@ -4,13 +4,13 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
 import javax.xml.transform.sax.SAXSource;
@@ -53,11 +53,15 @@ public final class JaxbMarshaller
         try
         {
             fis = new FileInputStream(file);
-            InputStream stream = namespace == null ? fis : new RegexpReplaceInputStream(fis, "<([^!?])([^>]*)>", "<$1$2 xmlns=\"" + namespace + "\">");
 
-            // Create an XMLReader to use with our filter
+            // Create an XMLReader, filtered to apply the namespace if necessary
             XMLReader reader = XMLReaderFactory.createXMLReader();
 
+            if (namespace != null)
+            {
+                reader = new NamespaceFilter(reader, namespace);
+            }
+
             // Since DNS can be be flaky (or disabled in some organisations), we want to ignore all DTDs etc.        
             reader.setEntityResolver(new EntityResolver() 
             {
@@ -70,12 +74,19 @@ public final class JaxbMarshaller
             });               
 
             // Create a SAXSource specifying the filter
-            SAXSource source = new SAXSource(reader, new InputSource(stream));
+            SAXSource source = new SAXSource(reader, new InputSource(fis));
 
             // Do unmarshalling
-            JAXBContext jaxbContext = JAXBContext.newInstance(pkg, JaxbMarshaller.class.getClassLoader());              
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-            return unmarshaller.unmarshal(source);
+            Unmarshaller unmarshaller = JaxbContextRegistry.acquireUnmarshaller(pkg, getClassLoader());
+
+            try
+            {
+                return unmarshaller.unmarshal(source);
+            }
+            finally
+            {
+                JaxbContextRegistry.releaseUnmarshaller(pkg, getClassLoader(), unmarshaller);
+            }
         }
         catch (SAXParseException e)
         {
@@ -119,42 +130,54 @@ public final class JaxbMarshaller
         try
         {
             fis = new FileInputStream(file);
-            InputStream stream = namespace == null ? fis : new RegexpReplaceInputStream(fis, "<([^!?])([^>]*)>", "<$1$2 xmlns=\"" + namespace + "\">");
             
             XMLInputFactory xmlif = XMLInputFactory.newInstance();
             xmlif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
-            XMLEventReader eventReader = xmlif.createXMLEventReader(stream);    
+            XMLStreamReader streamReader = xmlif.createXMLStreamReader(fis);
+
+            if (namespace != null)
+            {
+                streamReader = new NamespaceStreamReader(streamReader, namespace);
+            }
+
+            XMLEventReader eventReader = xmlif.createXMLEventReader(streamReader);    
             
             // Iterate through all the StartElement events in the filtered event reader
-            JAXBContext jaxbContext = JAXBContext.newInstance(pkg, JaxbMarshaller.class.getClassLoader());
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+            Unmarshaller unmarshaller = JaxbContextRegistry.acquireUnmarshaller(pkg, getClassLoader());
 
-            for (XMLEvent currentEvent = eventReader.peek(); currentEvent != null; currentEvent = eventReader.peek())
+            try
             {
-                // We can't use a filter on the reader, as JAXB needs all events
-                if (currentEvent.isStartElement())
+                for (XMLEvent currentEvent = eventReader.peek(); currentEvent != null; currentEvent = eventReader.peek())
                 {
-                    StartElement element = currentEvent.asStartElement();
-                    listener.foundElement(element, eventReader, unmarshaller);
+                    // We can't use a filter on the reader, as JAXB needs all events
+                    if (currentEvent.isStartElement())
+                    {
+                        StartElement element = currentEvent.asStartElement();
+                        listener.foundElement(element, eventReader, unmarshaller);
 
-                    // If the event has not been 'consumed' by the listener, move on to the next event
-                    XMLEvent nextEvent = eventReader.peek();
+                        // If the event has not been 'consumed' by the listener, move on to the next event
+                        XMLEvent nextEvent = eventReader.peek();
 
-                    if (nextEvent == currentEvent)
-                    {
-                        eventReader.nextEvent();
+                        if (nextEvent == currentEvent)
+                        {
+                            eventReader.nextEvent();
+                        }
                     }
-                }
-                else
-                {
-                    if (!eventReader.hasNext())
+                    else
                     {
-                        break;
-                    }
+                        if (!eventReader.hasNext())
+                        {
+                            break;
+                        }
 
-                    eventReader.nextEvent();
+                        eventReader.nextEvent();
+                    }
                 }
             }
+            finally
+            {
+                JaxbContextRegistry.releaseUnmarshaller(pkg, getClassLoader(), unmarshaller);
+            }
 
             eventReader.close();
         }
@@ -171,4 +194,23 @@ public final class JaxbMarshaller
             QaUtil.safeClose(fis);      
         }
     }
+
+    /**
+     * Creates the JAXB contexts for the given packages in the background, 
+     * so that they are ready by the time the tool results are read.
+     * 
+     * @param packages the packages containing the JAXB generated classes.
+     */
+    public static void prewarm(final Collection<String> packages)
+    {
+        JaxbContextRegistry.prewarm(packages, getClassLoader());
+    }
+
+    /**
+     * @return the class loader used to load the JAXB generated classes.
+     */
+    private static ClassLoader getClassLoader()
+    {
+        return JaxbMarshaller.class.getClassLoader();
+    }
 }
@@ -0,0 +1,46 @@
+package com.github.sanity4j.util;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * NamespaceFilter - a SAX filter which places elements without a namespace into the given namespace.
+ * The tools often don't use namespaces, but the JAXB generated classes require one. Unlike rewriting
+ * the document text, this doesn't require any extra processing of the bytes being parsed.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+final class NamespaceFilter extends XMLFilterImpl
+{
+    /** The namespace to place elements into. */
+    private final String namespace;
+
+    /**
+     * Creates a NamespaceFilter.
+     *
+     * @param parent the reader to filter.
+     * @param namespace the namespace to place elements into.
+     */
+    NamespaceFilter(final XMLReader parent, final String namespace)
+    {
+        super(parent);
+        this.namespace = namespace;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts) throws SAXException
+    {
+        super.startElement(uri.length() == 0 ? namespace : uri, localName, qName, atts);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException
+    {
+        super.endElement(uri.length() == 0 ? namespace : uri, localName, qName);
+    }
+}
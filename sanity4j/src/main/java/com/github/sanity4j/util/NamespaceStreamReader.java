@@ -0,0 +1,71 @@
+package com.github.sanity4j.util;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ * NamespaceStreamReader - a StAX reader which places elements without a namespace into the given namespace.
+ * This is the StAX equivalent of {@link NamespaceFilter}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+final class NamespaceStreamReader extends StreamReaderDelegate
+{
+    /** The namespace to place elements into. */
+    private final String namespace;
+
+    /**
+     * Creates a NamespaceStreamReader.
+     *
+     * @param reader the reader to filter.
+     * @param namespace the namespace to place elements into.
+     */
+    NamespaceStreamReader(final XMLStreamReader reader, final String namespace)
+    {
+        super(reader);
+        this.namespace = namespace;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getNamespaceURI()
+    {
+        String uri = super.getNamespaceURI();
+        return isUnqualifiedElement(uri) ? namespace : uri;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getNamespaceURI(final String prefix)
+    {
+        String uri = super.getNamespaceURI(prefix);
+        return prefix.length() == 0 && (uri == null || uri.length() == 0) ? namespace : uri;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public QName getName()
+    {
+        QName name = super.getName();
+
+        if (isUnqualifiedElement(name.getNamespaceURI()))
+        {
+            return new QName(namespace, name.getLocalPart(), name.getPrefix());
+        }
+
+        return name;
+    }
+
+    /**
+     * Determines whether the reader is positioned on an element which has no namespace.
+     *
+     * @param uri the namespace URI of the current event.
+     * @return true if the current event is for an element without a namespace.
+     */
+    private boolean isUnqualifiedElement(final String uri)
+    {
+        return (uri == null || uri.length() == 0) && (isStartElement() || isEndElement());
+    }
+}
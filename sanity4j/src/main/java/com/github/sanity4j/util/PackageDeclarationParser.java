@@ -0,0 +1,101 @@
+package com.github.sanity4j.util;
+
+/**
+ * PackageDeclarationParser finds the package declaration in Java source code. The source is
+ * fed to the parser a byte at a time, so that it can be used while the source is being read
+ * for other purposes. Comments are skipped, so a package name in a comment is not matched.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+final class PackageDeclarationParser
+{
+    /** The token which starts a package declaration. */
+    private static final String TOKEN = "package ";
+
+    /** The package name read so far. */
+    private final StringBuilder packageName = new StringBuilder();
+
+    /** Whether the parser is inside a block comment. */
+    private boolean inComment;
+
+    /** Whether the parser is inside a line comment. */
+    private boolean lineComment;
+
+    /** The number of characters of the token which have been matched. */
+    private int tokenPos;
+
+    /** The previous byte. */
+    private int last;
+
+    /** Whether the end of the package declaration has been reached. */
+    private boolean complete;
+
+    /**
+     * Parses the next byte of the source.
+     *
+     * @param read the next byte, from 0 to 255.
+     * @return true if the end of the package declaration has been reached, false if more input is needed.
+     */
+    boolean parse(final int read)
+    {
+        if (complete)
+        {
+            return true;
+        }
+
+        if (inComment)
+        {
+            if (last == '*' && read == '/')
+            {
+                inComment = false;
+            }
+        }
+        else if (lineComment)
+        {
+            if (read == '\n' || read == '\r')
+            {
+                lineComment = false;
+            }
+        }
+        else
+        {
+            if (last == '/' && read == '/')
+            {
+                lineComment = true;
+            }
+            else if (last == '/' && read == '*')
+            {
+                inComment = true;
+            }
+            else if (tokenPos < TOKEN.length())
+            {
+                tokenPos = (read == TOKEN.charAt(tokenPos)) ? tokenPos + 1 : 0;
+            }
+            else
+            {
+                if (read == ';')
+                {
+                    complete = true;
+                    return true;
+                }
+
+                if (Character.isLetterOrDigit(read) || read == '.' || read == '_')
+                {
+                    packageName.append((char) read);
+                }
+            }
+        }
+
+        last = read;
+        return false;
+    }
+
+    /**
+     * @return the package name, or null if no package declaration has been found.
+     */
+    String getPackageName()
+    {
+        return (!complete || packageName.length() == 0) ? null : packageName.toString();
+    }
+}
@@ -0,0 +1,295 @@
+package com.github.sanity4j.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.sanity4j.workflow.WorkUnit;
+import com.github.sanity4j.workflow.WorkUnitGroup;
+
+/**
+ * PackageResolver determines which package a source or class file belongs to, reading only as much
+ * of the file as is necessary: source files are scanned up to the package declaration, and only the
+ * constant pool of class files is read. Results are cached by path, size and modification time,
+ * so files which are collected again (e.g. by a daemon, or for another module) are not read again.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class PackageResolver
+{
+    /** The size of the buffer used to read files. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The number of files to resolve in each parallel work unit. */
+    private static final int BATCH_SIZE = 256;
+
+    /** Class file magic number. */
+    private static final int CLASS_MAGIC = 0xCAFEBABE;
+
+    /** Constant pool tags, see the JVM specification section 4.4. */
+    private static final int CONSTANT_UTF8 = 1, CONSTANT_INTEGER = 3, CONSTANT_FLOAT = 4, CONSTANT_LONG = 5,
+        CONSTANT_DOUBLE = 6, CONSTANT_CLASS = 7, CONSTANT_STRING = 8, CONSTANT_FIELDREF = 9,
+        CONSTANT_METHODREF = 10, CONSTANT_INTERFACE_METHODREF = 11, CONSTANT_NAME_AND_TYPE = 12,
+        CONSTANT_METHOD_HANDLE = 15, CONSTANT_METHOD_TYPE = 16, CONSTANT_DYNAMIC = 17,
+        CONSTANT_INVOKE_DYNAMIC = 18, CONSTANT_MODULE = 19, CONSTANT_PACKAGE = 20;
+
+    /** The cached results, keyed by file path. */
+    private static final Map<String, CacheEntry> CACHE = new ConcurrentHashMap<String, CacheEntry>();
+
+    /** No instance methods here. */
+    private PackageResolver()
+    {
+    }
+
+    /**
+     * Determines the package for a source or class file.
+     *
+     * @param file the file.
+     * @return the package name for the given file, or null if it could not be determined.
+     */
+    public static String getPackage(final File file)
+    {
+        String name = file.getName().toLowerCase();
+        boolean source = name.endsWith(".java");
+
+        if (!source && !name.endsWith(".class"))
+        {
+            return null;
+        }
+
+        long length = file.length();
+        long lastModified = file.lastModified();
+        CacheEntry entry = CACHE.get(file.getPath());
+
+        if (entry == null || entry.length != length || entry.lastModified != lastModified)
+        {
+            String packageName = source ? getPackageForSourceFile(file) : getPackageForClassFile(file);
+            entry = new CacheEntry(length, lastModified, packageName);
+            CACHE.put(file.getPath(), entry);
+        }
+
+        return entry.packageName;
+    }
+
+    /**
+     * Determines the packages for the given files in parallel, so that later calls to
+     * {@link #getPackage(File)} for the files are answered from the cache. Files which
+     * are not source or class files are ignored.
+     *
+     * @param files the files to resolve.
+     */
+    public static void resolveAll(final List<File> files)
+    {
+        WorkUnitGroup group = new WorkUnitGroup(true, "Resolving packages");
+
+        for (int start = 0; start < files.size(); start += BATCH_SIZE)
+        {
+            final List<File> batch = files.subList(start, Math.min(start + BATCH_SIZE, files.size()));
+
+            group.add(new WorkUnit()
+            {
+                public String getDescription()
+                {
+                    return "Resolving packages";
+                }
+
+                public void run()
+                {
+                    for (File file : batch)
+                    {
+                        getPackage(file);
+                    }
+                }
+            });
+        }
+
+        group.run();
+    }
+
+    /**
+     * Determines the package for a source file, by scanning the source code up to the package declaration.
+     *
+     * @param file the source file
+     * @return the package name for the given source file, or null if there is no package declaration or on error.
+     */
+    public static String getPackageForSourceFile(final File file)
+    {
+        PackageDeclarationParser parser = new PackageDeclarationParser();
+        InputStream in = null;
+
+        try
+        {
+            in = new FileInputStream(file);
+            byte[] buf = new byte[BUFFER_SIZE];
+
+            for (int len = in.read(buf); len != -1; len = in.read(buf))
+            {
+                for (int i = 0; i < len; i++)
+                {
+                    if (parser.parse(buf[i] & 0xFF))
+                    {
+                        return parser.getPackageName();
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            QaLogger.getInstance().error("Error reading source " + file.getPath(), e);
+        }
+        finally
+        {
+            QaUtil.safeClose(in);
+        }
+
+        return null;
+    }
+
+    /**
+     * Determines the package for a class file, by reading the class name from the constant pool.
+     *
+     * @param file the class file
+     * @return the package name for the given class file ("" for the default package), or null on error.
+     */
+    public static String getPackageForClassFile(final File file)
+    {
+        DataInputStream in = null;
+
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+
+            if (in.readInt() != CLASS_MAGIC)
+            {
+                throw new IOException("Not a class file");
+            }
+
+            in.readUnsignedShort(); // minor version
+            in.readUnsignedShort(); // major version
+
+            int constantPoolCount = in.readUnsignedShort();
+            String[] utf8 = new String[constantPoolCount];
+            int[] classNameIndex = new int[constantPoolCount];
+
+            for (int i = 1; i < constantPoolCount; i++)
+            {
+                int tag = in.readUnsignedByte();
+
+                switch (tag)
+                {
+                    case CONSTANT_UTF8:
+                        utf8[i] = in.readUTF();
+                        break;
+
+                    case CONSTANT_CLASS:
+                        classNameIndex[i] = in.readUnsignedShort();
+                        break;
+
+                    case CONSTANT_STRING:
+                    case CONSTANT_METHOD_TYPE:
+                    case CONSTANT_MODULE:
+                    case CONSTANT_PACKAGE:
+                        skip(in, 2);
+                        break;
+
+                    case CONSTANT_METHOD_HANDLE:
+                        skip(in, 3);
+                        break;
+
+                    case CONSTANT_INTEGER:
+                    case CONSTANT_FLOAT:
+                    case CONSTANT_FIELDREF:
+                    case CONSTANT_METHODREF:
+                    case CONSTANT_INTERFACE_METHODREF:
+                    case CONSTANT_NAME_AND_TYPE:
+                    case CONSTANT_DYNAMIC:
+                    case CONSTANT_INVOKE_DYNAMIC:
+                        skip(in, 4);
+                        break;
+
+                    case CONSTANT_LONG:
+                    case CONSTANT_DOUBLE:
+                        // Eight byte constants take up two entries
+                        skip(in, 8);
+                        i++;
+                        break;
+
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+
+            in.readUnsignedShort(); // access flags
+            String className = utf8[classNameIndex[in.readUnsignedShort()]];
+            int lastSlash = className.lastIndexOf('/');
+
+            return lastSlash == -1 ? "" : className.substring(0, lastSlash).replace('/', '.');
+        }
+        catch (Exception e)
+        {
+            QaLogger.getInstance().error("Error reading class " + file.getPath(), e);
+        }
+        finally
+        {
+            QaUtil.safeClose(in);
+        }
+
+        return null;
+    }
+
+    /**
+     * Skips bytes in a stream.
+     *
+     * @param in the stream.
+     * @param count the number of bytes to skip.
+     * @throws IOException if there is an error reading from the stream.
+     */
+    private static void skip(final DataInputStream in, final int count) throws IOException
+    {
+        in.readFully(new byte[count]);
+    }
+
+    /**
+     * Clears the cached results.
+     */
+    public static void clearCache()
+    {
+        CACHE.clear();
+    }
+
+    /**
+     * A cached package name.
+     */
+    private static final class CacheEntry
+    {
+        /** The size of the file when the package was determined. */
+        private final long length;
+
+        /** The modification time of the file when the package was determined. */
+        private final long lastModified;
+
+        /** The package name, or null if it could not be determined. */
+        private final String packageName;
+
+        /**
+         * Creates a CacheEntry.
+         *
+         * @param length the size of the file.
+         * @param lastModified the modification time of the file.
+         * @param packageName the package name.
+         */
+        private CacheEntry(final long length, final long lastModified, final String packageName)
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.packageName = packageName;
+        }
+    }
+}
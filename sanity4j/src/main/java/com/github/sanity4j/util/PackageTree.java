@@ -0,0 +1,364 @@
+package com.github.sanity4j.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.sanity4j.model.coverage.Coverage;
+import com.github.sanity4j.model.coverage.CoverageItf;
+import com.github.sanity4j.model.coverage.PackageCoverage;
+import com.github.sanity4j.model.diagnostic.Diagnostic;
+import com.github.sanity4j.model.diagnostic.DiagnosticSet;
+
+/**
+ * <p>PackageTree holds the statistics for each package, arranged in a tree by package name.
+ * Each {@link Node} holds the statistics for its own package, and the statistics rolled up
+ * over the package and all its sub-packages, so that either can be looked up without having
+ * to search the other packages.</p>
+ *
+ * <p>The tree is built once all the line counts, coverage and diagnostics have been read,
+ * and is not modified afterwards.</p>
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class PackageTree
+{
+    /** Index of the executable line count in the coverage counts. */
+    private static final int EXECUTABLE_LINES = 0;
+
+    /** Index of the covered line count in the coverage counts. */
+    private static final int COVERED_LINES = 1;
+
+    /** Index of the branch count in the coverage counts. */
+    private static final int BRANCHES = 2;
+
+    /** Index of the covered branch count in the coverage counts. */
+    private static final int COVERED_BRANCHES = 3;
+
+    /** The number of coverage counts. */
+    private static final int COVERAGE_COUNTS = 4;
+
+    /** The number of severities. */
+    private static final int SEVERITIES = Diagnostic.SEVERITY_HIGH + 1;
+
+    /** Orders nodes by name. */
+    private static final Comparator<Node> NAME_ORDER = new Comparator<Node>()
+    {
+        public int compare(final Node node1, final Node node2)
+        {
+            return node1.getName().compareTo(node2.getName());
+        }
+    };
+
+    /** The root of the tree, for the unnamed top-level package. */
+    private final Node root = new Node("", null);
+
+    /** The nodes, keyed by package name. */
+    private final Map<String, Node> nodesByName = new HashMap<String, Node>();
+
+    /**
+     * Builds a PackageTree.
+     *
+     * @param lineCountByPackage the line count for each package.
+     * @param classCountByPackage the class count for each package.
+     * @param coverage the coverage for the current run.
+     * @param diagnostics the diagnostics for the current run.
+     */
+    PackageTree(final Map<String, Integer> lineCountByPackage, final Map<String, Integer> classCountByPackage,
+                final Coverage coverage, final DiagnosticSet diagnostics)
+    {
+        nodesByName.put("", root);
+
+        for (Map.Entry<String, Integer> entry : lineCountByPackage.entrySet())
+        {
+            getOrCreateNode(entry.getKey()).directLineCount = entry.getValue();
+        }
+
+        for (Map.Entry<String, Integer> entry : classCountByPackage.entrySet())
+        {
+            getOrCreateNode(entry.getKey()).directClassCount = entry.getValue();
+        }
+
+        for (String packageName : coverage.getPackageNames())
+        {
+            PackageCoverage packageCoverage = coverage.getPackageCoverage(packageName);
+            Node node = getOrCreateNode(packageName == null ? "" : packageName);
+
+            node.coverage = packageCoverage;
+            node.directCoverageCounts[EXECUTABLE_LINES] = packageCoverage.getLineCount();
+            node.directCoverageCounts[COVERED_LINES] = packageCoverage.getCoveredLineCount();
+            node.directCoverageCounts[BRANCHES] = packageCoverage.getBranchCount();
+            node.directCoverageCounts[COVERED_BRANCHES] = packageCoverage.getCoveredBranchCount();
+        }
+
+        for (Node node : nodesByName.values())
+        {
+            DiagnosticSet direct = diagnostics.getDiagnosticsForPackage(node.getName(), false);
+
+            // The diagnostics for a package and its sub-packages are already indexed,
+            // which also picks up sub-packages which only have diagnostics.
+            DiagnosticSet total = node == root ? diagnostics : diagnostics.getDiagnosticsForPackage(node.getName());
+
+            for (int severity = 0; severity < SEVERITIES; severity++)
+            {
+                node.directSeverityCounts[severity] = direct.getCountForSeverity(severity);
+                node.severityCounts[severity] = total.getCountForSeverity(severity);
+            }
+        }
+
+        root.coverage = coverage;
+        rollUp(root);
+    }
+
+    /**
+     * Retrieves the node for the given package, creating it and any missing parent nodes if necessary.
+     *
+     * @param packageName the package name.
+     * @return the node for the package.
+     */
+    private Node getOrCreateNode(final String packageName)
+    {
+        Node node = nodesByName.get(packageName);
+
+        if (node == null)
+        {
+            int dotIndex = packageName.lastIndexOf('.');
+            Node parent = dotIndex == -1 ? root : getOrCreateNode(packageName.substring(0, dotIndex));
+
+            node = new Node(packageName, parent);
+            parent.children.add(node);
+            nodesByName.put(packageName, node);
+        }
+
+        return node;
+    }
+
+    /**
+     * Rolls up the line, class and coverage counts for the given node and its descendants,
+     * and sorts the children of each node by name.
+     *
+     * @param node the node to roll up.
+     */
+    private static void rollUp(final Node node)
+    {
+        node.lineCount = node.directLineCount;
+        node.classCount = node.directClassCount;
+        System.arraycopy(node.directCoverageCounts, 0, node.coverageCounts, 0, COVERAGE_COUNTS);
+
+        Collections.sort(node.children, NAME_ORDER);
+
+        for (Node child : node.children)
+        {
+            rollUp(child);
+
+            node.lineCount += child.lineCount;
+            node.classCount += child.classCount;
+
+            for (int i = 0; i < COVERAGE_COUNTS; i++)
+            {
+                node.coverageCounts[i] += child.coverageCounts[i];
+            }
+        }
+    }
+
+    /**
+     * @return the root of the tree, for the unnamed top-level package.
+     */
+    public Node getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * Retrieves the node for the given package.
+     *
+     * @param packageName the package name, or an empty string for the root.
+     * @return the node for the package, or null if there are no statistics for the package.
+     */
+    public Node getNode(final String packageName)
+    {
+        return nodesByName.get(packageName);
+    }
+
+    /**
+     * A node in the package tree, holding the statistics for a single package.
+     */
+    public static final class Node
+    {
+        /** The package name. */
+        private final String name;
+
+        /** The parent node, null for the root. */
+        private final Node parent;
+
+        /** The child nodes, sorted by name. */
+        private final List<Node> children = new ArrayList<Node>();
+
+        /** The number of lines in the package. */
+        private int directLineCount;
+
+        /** The number of lines in the package and its sub-packages. */
+        private int lineCount;
+
+        /** The number of classes in the package. */
+        private int directClassCount;
+
+        /** The number of classes in the package and its sub-packages. */
+        private int classCount;
+
+        /** The number of diagnostics in the package, by severity. */
+        private final int[] directSeverityCounts = new int[SEVERITIES];
+
+        /** The number of diagnostics in the package and its sub-packages, by severity. */
+        private final int[] severityCounts = new int[SEVERITIES];
+
+        /** The coverage counts for the package. */
+        private final int[] directCoverageCounts = new int[COVERAGE_COUNTS];
+
+        /** The coverage counts for the package and its sub-packages. */
+        private final int[] coverageCounts = new int[COVERAGE_COUNTS];
+
+        /** The coverage for the package, may be null. */
+        private CoverageItf coverage;
+
+        /**
+         * Creates a Node.
+         *
+         * @param name the package name.
+         * @param parent the parent node, null for the root.
+         */
+        private Node(final String name, final Node parent)
+        {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        /**
+         * @return the package name.
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return the parent node, or null for the root.
+         */
+        public Node getParent()
+        {
+            return parent;
+        }
+
+        /**
+         * @return the child nodes, sorted by name.
+         */
+        public List<Node> getChildren()
+        {
+            return Collections.unmodifiableList(children);
+        }
+
+        /**
+         * Retrieves the line count for the package.
+         *
+         * @param includeSubpackages if true, also include the lines in sub-packages.
+         * @return the line count.
+         */
+        public int getLineCount(final boolean includeSubpackages)
+        {
+            return includeSubpackages ? lineCount : directLineCount;
+        }
+
+        /**
+         * Retrieves the class count for the package.
+         *
+         * @param includeSubpackages if true, also include the classes in sub-packages.
+         * @return the class count.
+         */
+        public int getClassCount(final boolean includeSubpackages)
+        {
+            return includeSubpackages ? classCount : directClassCount;
+        }
+
+        /**
+         * Retrieves the number of diagnostics for the package with the given severity.
+         *
+         * @param severity the severity, see the Diagnostic.SEVERITY_* constants.
+         * @param includeSubpackages if true, also include the diagnostics for sub-packages.
+         * @return the number of diagnostics with the given severity.
+         */
+        public int getCountForSeverity(final int severity, final boolean includeSubpackages)
+        {
+            if (severity == Diagnostic.SEVERITY_ALL)
+            {
+                int count = 0;
+
+                for (int i = 0; i < SEVERITIES; i++)
+                {
+                    count += getCountForSeverity(i, includeSubpackages);
+                }
+
+                return count;
+            }
+
+            return includeSubpackages ? severityCounts[severity] : directSeverityCounts[severity];
+        }
+
+        /**
+         * Retrieves the coverage for the package itself. For the root, this is the coverage for the whole run.
+         *
+         * @return the coverage for the package, or null if there isn't any.
+         */
+        public CoverageItf getCoverage()
+        {
+            return coverage;
+        }
+
+        /**
+         * Retrieves the number of executable lines in the package.
+         *
+         * @param includeSubpackages if true, also include the lines in sub-packages.
+         * @return the number of executable lines.
+         */
+        public int getExecutableLineCount(final boolean includeSubpackages)
+        {
+            return (includeSubpackages ? coverageCounts : directCoverageCounts)[EXECUTABLE_LINES];
+        }
+
+        /**
+         * Retrieves the number of covered lines in the package.
+         *
+         * @param includeSubpackages if true, also include the lines in sub-packages.
+         * @return the number of covered lines.
+         */
+        public int getCoveredLineCount(final boolean includeSubpackages)
+        {
+            return (includeSubpackages ? coverageCounts : directCoverageCounts)[COVERED_LINES];
+        }
+
+        /**
+         * Retrieves the number of branches in the package.
+         *
+         * @param includeSubpackages if true, also include the branches in sub-packages.
+         * @return the number of branches.
+         */
+        public int getBranchCount(final boolean includeSubpackages)
+        {
+            return (includeSubpackages ? coverageCounts : directCoverageCounts)[BRANCHES];
+        }
+
+        /**
+         * Retrieves the number of covered branches in the package.
+         *
+         * @param includeSubpackages if true, also include the branches in sub-packages.
+         * @return the number of covered branches.
+         */
+        public int getCoveredBranchCount(final boolean includeSubpackages)
+        {
+            return (includeSubpackages ? coverageCounts : directCoverageCounts)[COVERED_BRANCHES];
+        }
+    }
+}
@@ -17,9 +17,6 @@ import java.util.StringTokenizer;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 
-import org.apache.bcel.classfile.ClassParser;
-import org.apache.bcel.classfile.JavaClass;
-
 import com.github.sanity4j.report.ExtractStaticContent;
 import com.github.sanity4j.workflow.QAConfig;
 
@@ -339,121 +336,33 @@ public final class QaUtil
      * 
      * @param file the file
      * @return the package name for the given file, or null if it could not be determined.
+     * @see PackageResolver#getPackage(File)
      */
     public static String getPackageForFile(final File file)
     {
-        String name = file.getName().toLowerCase();
-
-        if (name.endsWith(".java"))
-        {
-            return getPackageForSourceFile(file);
-        }
-        else if (name.endsWith(".class"))
-        {
-            return getPackageForClassFile(file);
-        }
-
-        return null;
+        return PackageResolver.getPackage(file);
     }
 
     /**
-     * Determines the package for a class file, by parsing the source code.
+     * Determines the package for a source file, by scanning the source code.
      * 
      * @param file the source file
      * @return the package name for the given source file, or null on error.
      */
     public static String getPackageForSourceFile(final File file)
     {
-        final String token = "package ";
-        StringBuilder packageName = new StringBuilder();
-        FileInputStream fis = null;
-
-        try
-        {
-            fis = new FileInputStream(file);
-            boolean inComment = false;
-            boolean lineComment = false;
-            int tokenPos = 0;
-            int last = 0;
-
-            for (int read = fis.read(); read != -1; read = fis.read())
-            {
-                if (inComment)
-                {
-                    if (last == '*' && read == '/')
-                    {
-                        inComment = false;
-                    }
-                }
-                else if (lineComment)
-                {
-                    if (read == '\n' || read == '\r')
-                    {
-                        lineComment = false;
-                    }
-                }
-                else
-                {
-                    if (last == '/' && read == '/')
-                    {
-                        lineComment = true;
-                    }
-                    else if (last == '/' && read == '*')
-                    {
-                        inComment = true;
-                    }
-                    else if (tokenPos < token.length())
-                    {
-                        tokenPos = (read == token.charAt(tokenPos)) ? tokenPos + 1 : 0;
-                    }
-                    else
-                    {
-                        if (read == ';')
-                        {
-                            return packageName.length() == 0 ? null : packageName.toString();
-                        }
-
-                        if (Character.isLetterOrDigit(read) || read == '.' || read == '_')
-                        {
-                            packageName.append((char) read);
-                        }
-                    }
-                }
-
-                last = read;
-            }
-        }
-        catch (IOException e)
-        {
-            QaLogger.getInstance().error("Error reading source " + file.getPath(), e);
-        }
-        finally
-        {
-            safeClose(fis);
-        }
-
-        return null;
+        return PackageResolver.getPackageForSourceFile(file);
     }
 
     /**
-     * Determines the package for a class file, by parsing the bytecode.
+     * Determines the package for a class file, by reading the class file's constant pool.
      * 
      * @param file the class file
      * @return the package name for the given class file, or null on error.
      */
     public static String getPackageForClassFile(final File file)
     {
-        try
-        {
-            JavaClass javaClass = new ClassParser(file.getPath()).parse();
-            return javaClass.getPackageName();
-        }
-        catch (Exception e)
-        {
-            QaLogger.getInstance().error("Error reading class " + file.getPath(), e);
-        }
-
-        return null;
+        return PackageResolver.getPackageForClassFile(file);
     }
 
     /**
@@ -0,0 +1,94 @@
+package com.github.sanity4j.util;
+
+/**
+ * SourceMetadata holds the information gathered from a single read of a source file:
+ * its line count, declared package and content hash. Instances are created by
+ * {@link SourceScanner}, and are not modified afterwards.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class SourceMetadata
+{
+    /** The size of the file when it was scanned. */
+    private final long length;
+
+    /** The modification time of the file when it was scanned. */
+    private final long lastModified;
+
+    /** The package declared in the source, may be null. */
+    private final String packageName;
+
+    /** The hash of the file contents, in hexadecimal, or null if the contents were not hashed. */
+    private final String hash;
+
+    /** The number of lines in the file. */
+    private final int lineCount;
+
+    /**
+     * Creates a SourceMetadata.
+     *
+     * @param length the size of the file.
+     * @param lastModified the modification time of the file.
+     * @param packageName the package declared in the source, may be null.
+     * @param hash the hash of the file contents, in hexadecimal, may be null.
+     * @param lineCount the number of lines in the file.
+     */
+    SourceMetadata(final long length, final long lastModified, final String packageName, final String hash,
+                   final int lineCount)
+    {
+        this.length = length;
+        this.lastModified = lastModified;
+        this.packageName = packageName;
+        this.hash = hash;
+        this.lineCount = lineCount;
+    }
+
+    /**
+     * Creates a copy of this metadata for another file with the same contents.
+     *
+     * @param otherLength the size of the other file.
+     * @param otherLastModified the modification time of the other file.
+     * @return the metadata for the other file.
+     */
+    SourceMetadata forFile(final long otherLength, final long otherLastModified)
+    {
+        return new SourceMetadata(otherLength, otherLastModified, packageName, hash, lineCount);
+    }
+
+    /**
+     * Determines whether this metadata is still current for a file.
+     *
+     * @param fileLength the current size of the file.
+     * @param fileLastModified the current modification time of the file.
+     * @return true if the file has not changed since it was scanned.
+     */
+    boolean isCurrent(final long fileLength, final long fileLastModified)
+    {
+        return length == fileLength && lastModified == fileLastModified;
+    }
+
+    /**
+     * @return the number of lines in the file. A non-empty file without a trailing newline still has a last line.
+     */
+    public int getLineCount()
+    {
+        return lineCount;
+    }
+
+    /**
+     * @return the package declared in the source, or null if there is no package declaration.
+     */
+    public String getPackageName()
+    {
+        return packageName;
+    }
+
+    /**
+     * @return the hash of the file contents, in hexadecimal, or null if the scanner did not hash the contents.
+     */
+    public String getHash()
+    {
+        return hash;
+    }
+}
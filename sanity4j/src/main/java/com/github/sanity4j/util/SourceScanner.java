@@ -0,0 +1,236 @@
+package com.github.sanity4j.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.sanity4j.workflow.WorkUnit;
+import com.github.sanity4j.workflow.WorkUnitGroup;
+
+/**
+ * <p>SourceScanner reads each source file once, and gathers everything the later stages need
+ * from it in the same pass: the line count, the declared package and, if requested, a hash of
+ * the contents. Files are streamed through a small buffer, so no file is held in memory.</p>
+ *
+ * <p>A scanner belongs to a single run, see {@link ExtractStats#getSourceScanner()}, and its results
+ * are cached by path, size and modification time for the lifetime of the run. When a file is collected
+ * into the analysis directory, the metadata is also recorded for the copy, so that it is not read again.</p>
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class SourceScanner
+{
+    /** The algorithm used to hash the file contents. */
+    private static final String ALGORITHM = "SHA-1";
+
+    /** Hex digits, for formatting hashes. */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** The size of the buffer used to read files. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The number of files to scan in each parallel work unit. */
+    private static final int BATCH_SIZE = 256;
+
+    /** If true, the contents of each file are hashed while it is read. */
+    private final boolean hashContents;
+
+    /** The cached metadata, keyed by absolute file path. */
+    private final Map<String, SourceMetadata> cache = new ConcurrentHashMap<String, SourceMetadata>();
+
+    /**
+     * Creates a SourceScanner.
+     *
+     * @param hashContents true to hash the contents of each file, e.g. for an incremental run.
+     */
+    public SourceScanner(final boolean hashContents)
+    {
+        this.hashContents = hashContents;
+    }
+
+    /**
+     * Retrieves the metadata for a source file, scanning the file if it has not already been scanned.
+     *
+     * @param file the source file.
+     * @return the metadata for the file.
+     * @throws IOException if there is an error reading the file.
+     */
+    public SourceMetadata scan(final File file) throws IOException
+    {
+        String path = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        SourceMetadata metadata = cache.get(path);
+
+        if (metadata == null || !metadata.isCurrent(length, lastModified))
+        {
+            metadata = read(file, length, lastModified);
+            cache.put(path, metadata);
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Scans the given files in parallel, so that later calls to {@link #scan(File)} for the files
+     * are answered from the cache.
+     *
+     * @param files the files to scan.
+     * @throws QAException if there is an error reading a file.
+     */
+    public void scanAll(final List<File> files)
+    {
+        WorkUnitGroup group = new WorkUnitGroup(true, "Scanning sources");
+
+        for (int start = 0; start < files.size(); start += BATCH_SIZE)
+        {
+            final List<File> batch = files.subList(start, Math.min(start + BATCH_SIZE, files.size()));
+
+            group.add(new WorkUnit()
+            {
+                public String getDescription()
+                {
+                    return "Scanning sources";
+                }
+
+                public void run()
+                {
+                    for (File file : batch)
+                    {
+                        try
+                        {
+                            scan(file);
+                        }
+                        catch (IOException e)
+                        {
+                            throw new QAException("Error reading source " + file.getPath(), e);
+                        }
+                    }
+                }
+            });
+        }
+
+        group.run();
+    }
+
+    /**
+     * Records that a file has been copied (or linked), so that the copy shares the original's metadata.
+     * Nothing is recorded if the original has not been scanned, or has changed since.
+     *
+     * @param source the original file.
+     * @param dest the copy of the file.
+     */
+    public void copied(final File source, final File dest)
+    {
+        SourceMetadata metadata = cache.get(source.getAbsolutePath());
+
+        if (metadata != null && metadata.isCurrent(source.length(), source.lastModified()))
+        {
+            cache.put(dest.getAbsolutePath(), metadata.forFile(dest.length(), dest.lastModified()));
+        }
+    }
+
+    /**
+     * Reads a source file.
+     *
+     * @param file the source file.
+     * @param length the size of the file.
+     * @param lastModified the modification time of the file.
+     * @return the metadata for the file.
+     * @throws IOException if there is an error reading the file.
+     */
+    private SourceMetadata read(final File file, final long length, final long lastModified) throws IOException
+    {
+        MessageDigest digest = hashContents ? getDigest() : null;
+        PackageDeclarationParser parser = new PackageDeclarationParser();
+        boolean parsing = true;
+        boolean empty = true;
+        int lineCount = 0;
+        InputStream in = null;
+
+        try
+        {
+            in = new FileInputStream(file);
+            byte[] buf = new byte[BUFFER_SIZE];
+
+            for (int len = in.read(buf); len != -1; len = in.read(buf))
+            {
+                empty = false;
+
+                if (digest != null)
+                {
+                    digest.update(buf, 0, len);
+                }
+
+                for (int i = 0; i < len; i++)
+                {
+                    int read = buf[i] & 0xFF;
+
+                    if (parsing)
+                    {
+                        parsing = !parser.parse(read);
+                    }
+
+                    if (read == '\n')
+                    {
+                        lineCount++;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            QaUtil.safeClose(in);
+        }
+
+        // A non-empty file has one more line than it has line breaks
+        if (!empty)
+        {
+            lineCount++;
+        }
+
+        return new SourceMetadata(length, lastModified, parser.getPackageName(),
+                                  digest == null ? null : toHex(digest.digest()), lineCount);
+    }
+
+    /**
+     * @return a new digest for hashing file contents.
+     */
+    private static MessageDigest getDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new QAException(ALGORITHM + " is not supported", e);
+        }
+    }
+
+    /**
+     * Formats a hash in hexadecimal.
+     *
+     * @param hash the hash to format.
+     * @return the hash, in hexadecimal.
+     */
+    private static String toHex(final byte[] hash)
+    {
+        char[] hex = new char[hash.length * 2];
+
+        for (int i = 0; i < hash.length; i++)
+        {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+
+        return new String(hex);
+    }
+}
@@ -0,0 +1,268 @@
+package com.github.sanity4j.util.math;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CompiledExpression - a postfix expression which has been compiled for repeated evaluation.
+ * Numbers are parsed once, and variables are resolved to slots in an array of values, so that
+ * evaluating the expression does not create any objects.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class CompiledExpression
+{
+    /** Pushes a constant onto the stack. */
+    private static final int PUSH_CONSTANT = 0;
+
+    /** Pushes the value of a variable onto the stack. */
+    private static final int PUSH_VARIABLE = 1;
+
+    /** Adds the top two values on the stack. */
+    private static final int ADD = 2;
+
+    /** Subtracts the top value on the stack from the value below it. */
+    private static final int SUBTRACT = 3;
+
+    /** Multiplies the top two values on the stack. */
+    private static final int MULTIPLY = 4;
+
+    /** Divides the value below the top of the stack by the top value. */
+    private static final int DIVIDE = 5;
+
+    /** Raises the value below the top of the stack to the power of the top value. */
+    private static final int POWER = 6;
+
+    /** Negates the top value on the stack. */
+    private static final int NEGATE = 7;
+
+    /** The instructions, in evaluation order. */
+    private final int[] instructions;
+
+    /** The operand for each instruction, i.e. the constant index or variable slot. */
+    private final int[] operands;
+
+    /** The constants used by the expression. */
+    private final double[] constants;
+
+    /** The number of variable slots. */
+    private final int variableCount;
+
+    /** The maximum depth of the stack during evaluation. */
+    private final int maxStackDepth;
+
+    /**
+     * Compiles a postfix expression.
+     *
+     * @param terms a String array containing operators &amp; operands as strings, in postfix evaluation order.
+     *              It can also contain variables (string keys prefixed by a hash sign "#").
+     * @param variables the names of the variables which may be used, in slot order.
+     * @throws SyntaxException if the expression is invalid or uses an unknown variable.
+     */
+    CompiledExpression(final String[] terms, final String[] variables) throws SyntaxException
+    {
+        Map<String, Integer> slots = new HashMap<String, Integer>();
+
+        for (int i = 0; i < variables.length; i++)
+        {
+            slots.put(variables[i], i);
+        }
+
+        instructions = new int[terms.length];
+        operands = new int[terms.length];
+        double[] constantPool = new double[terms.length];
+        int constantCount = 0;
+        int depth = 0;
+        int maxDepth = 0;
+
+        for (int i = 0; i < terms.length; i++)
+        {
+            String term = terms[i];
+            int instruction = term.length() == 1 ? getOperator(term.charAt(0)) : -1;
+
+            if (instruction == NEGATE)
+            {
+                if (depth < 1)
+                {
+                    throw new SyntaxException("Stack underflow");
+                }
+            }
+            else if (instruction != -1)
+            {
+                if (depth < 2)
+                {
+                    throw new SyntaxException("Stack underflow");
+                }
+
+                depth--;
+            }
+            else if (term.charAt(0) == '#')
+            {
+                Integer slot = slots.get(term.substring(1));
+
+                if (slot == null)
+                {
+                    throw new SyntaxException("Bad variable id: " + term.substring(1));
+                }
+
+                instruction = PUSH_VARIABLE;
+                operands[i] = slot;
+                depth++;
+            }
+            else
+            {
+                try
+                {
+                    constantPool[constantCount] = Double.parseDouble(term);
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new SyntaxException("Number format exception / Illegal operator", e);
+                }
+
+                instruction = PUSH_CONSTANT;
+                operands[i] = constantCount++;
+                depth++;
+            }
+
+            instructions[i] = instruction;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        if (depth == 0)
+        {
+            throw new SyntaxException("Stack underflow");
+        }
+        else if (depth != 1)
+        {
+            throw new SyntaxException("Expression incomplete");
+        }
+
+        constants = new double[constantCount];
+        System.arraycopy(constantPool, 0, constants, 0, constantCount);
+        variableCount = variables.length;
+        maxStackDepth = maxDepth;
+    }
+
+    /**
+     * Determines the instruction for an operator.
+     *
+     * @param operator the operator character.
+     * @return the instruction for the operator, or -1 if the character is not an operator.
+     */
+    private static int getOperator(final char operator)
+    {
+        switch (operator)
+        {
+            case '+':
+                return ADD;
+            case '-':
+                return SUBTRACT;
+            case '*':
+                return MULTIPLY;
+            case '/':
+                return DIVIDE;
+            case '^':
+                return POWER;
+            case '~':
+                return NEGATE;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return the number of variable slots which must be supplied when evaluating the expression.
+     */
+    public int getVariableCount()
+    {
+        return variableCount;
+    }
+
+    /**
+     * Evaluates the expression.
+     *
+     * @param values the values of the variables, indexed by slot.
+     * @return the result of the expression.
+     */
+    public double evaluate(final double[] values)
+    {
+        return evaluate(values, 0, new double[maxStackDepth]);
+    }
+
+    /**
+     * Evaluates the expression for a batch of rows of variable values. The values for row
+     * <code>n</code> are held in <code>values[n * getVariableCount()]</code> onwards.
+     *
+     * @param values the values of the variables for each row.
+     * @param results receives the result of the expression for each row.
+     */
+    public void evaluate(final double[] values, final double[] results)
+    {
+        double[] stack = new double[maxStackDepth];
+
+        for (int row = 0; row < results.length; row++)
+        {
+            results[row] = evaluate(values, row * variableCount, stack);
+        }
+    }
+
+    /**
+     * Evaluates the expression.
+     *
+     * @param values the values of the variables.
+     * @param offset the index in <code>values</code> of the value for the first slot.
+     * @param stack the stack to use for evaluation.
+     * @return the result of the expression.
+     */
+    private double evaluate(final double[] values, final int offset, final double[] stack)
+    {
+        int top = -1;
+
+        for (int i = 0; i < instructions.length; i++)
+        {
+            switch (instructions[i])
+            {
+                case PUSH_CONSTANT:
+                    stack[++top] = constants[operands[i]];
+                    break;
+
+                case PUSH_VARIABLE:
+                    stack[++top] = values[offset + operands[i]];
+                    break;
+
+                case ADD:
+                    top--;
+                    stack[top] = stack[top] + stack[top + 1];
+                    break;
+
+                case SUBTRACT:
+                    top--;
+                    stack[top] = stack[top] - stack[top + 1];
+                    break;
+
+                case MULTIPLY:
+                    top--;
+                    stack[top] = stack[top] * stack[top + 1];
+                    break;
+
+                case DIVIDE:
+                    top--;
+                    stack[top] = stack[top] / stack[top + 1];
+                    break;
+
+                case POWER:
+                    top--;
+                    stack[top] = Math.pow(stack[top], stack[top + 1]);
+                    break;
+
+                default: // NEGATE
+                    stack[top] = -stack[top];
+                    break;
+            }
+        }
+
+        return stack[0];
+    }
+}
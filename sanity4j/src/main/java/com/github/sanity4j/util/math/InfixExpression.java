@@ -53,6 +53,19 @@ public final class InfixExpression
         return postFix.evaluate(values);
     }
     
+    /**
+     * Compiles this infix expression for repeated evaluation.
+     * 
+     * @param variables the names of the variables which may be used, in slot order.
+     * @return the compiled expression.
+     * 
+     * @throws SyntaxException if the expression is invalid or uses an unknown variable.
+     */
+    public CompiledExpression compile(final String... variables) throws SyntaxException
+    {
+        return postFix.compile(variables);
+    }
+    
     /** 
      * Convenience method to see if an operator belongs to a certain set of operators.
      * 
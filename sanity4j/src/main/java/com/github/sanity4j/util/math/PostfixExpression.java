@@ -184,4 +184,17 @@ public class PostfixExpression
     {
         return evaluatePostfixWithVariables(terms, values);
     }
+
+    /**
+     * Compiles this postfix expression for repeated evaluation.
+     * 
+     * @param variables the names of the variables which may be used, in slot order.
+     * @return the compiled expression.
+     * 
+     * @throws SyntaxException if the expression is invalid or uses an unknown variable.
+     */
+    public CompiledExpression compile(final String... variables) throws SyntaxException
+    {
+        return new CompiledExpression(terms, variables);
+    }
 }
@@ -2,16 +2,20 @@ package com.github.sanity4j.workflow;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
 import com.github.sanity4j.util.FileUtil;
+import com.github.sanity4j.util.PackageResolver;
 import com.github.sanity4j.util.QAException;
 import com.github.sanity4j.util.QaLogger;
 import com.github.sanity4j.util.QaUtil;
+import com.github.sanity4j.util.SourceScanner;
 
 /** 
  * AbstractFileCollector collects files from multiple directory 
@@ -32,6 +36,30 @@ public abstract class AbstractFileCollector implements WorkUnit
     
     /** The source directories. */
     private final List<File> sourceDirs;
+
+    /** Where to record the fingerprints of the collected files, may be null. */
+    private FileFingerprints fingerprints;
+
+    /** The scanner to read the collected files with, may be null. */
+    private SourceScanner sourceScanner;
+
+    /** If true, files are linked into the destination directory rather than copied, where possible. */
+    private boolean linkFiles;
+
+    /** Whether hard links can be created in the destination directory, cleared after the first failure. */
+    private boolean hardLinksSupported = true;
+
+    /** Whether symbolic links can be created in the destination directory, cleared after the first failure. */
+    private boolean symbolicLinksSupported = true;
+
+    /** If true, the destination directory is kept between runs, and only updated where necessary. */
+    private boolean synchronize;
+
+    /** The paths of the files which have been collected into the destination directory by the current run. */
+    private final Set<String> collected = new HashSet<String>();
+
+    /** The number of files which were already up to date in the destination directory. */
+    private int unchangedCount;
     
     /**
      * Creates a AbstractFileCollector.
@@ -52,6 +80,69 @@ public abstract class AbstractFileCollector implements WorkUnit
         }
     }
     
+    /**
+     * Sets where to record the fingerprints of the collected files. By default, no fingerprints are recorded.
+     *
+     * @param fingerprints where to record the file fingerprints.
+     */
+    public void setFingerprints(final FileFingerprints fingerprints)
+    {
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * Sets the scanner to read the collected files with, so that the metadata the run needs is gathered
+     * when the files are collected. By default, only the packages of the files are read.
+     *
+     * @param sourceScanner the scanner to read the collected files with.
+     */
+    public void setSourceScanner(final SourceScanner sourceScanner)
+    {
+        this.sourceScanner = sourceScanner;
+    }
+
+    /**
+     * Sets whether files should be linked into the destination directory rather than copied. Hard links are
+     * used where the file system allows, then {@link #isSymbolicLinkAllowed() symbolic links}. Files are
+     * copied if neither can be created.
+     *
+     * @param linkFiles true to link files, false to copy them.
+     */
+    public void setLinkFiles(final boolean linkFiles)
+    {
+        this.linkFiles = linkFiles;
+    }
+
+    /**
+     * Sets whether the destination directory should be synchronised with the source directories, rather than
+     * being populated from scratch. Files which are already up to date (by size and modification time, or link
+     * target for symbolic links) are left alone, and files which are no longer present in the source
+     * directories are removed.
+     *
+     * @param synchronize true to synchronise an existing destination directory.
+     */
+    public void setSynchronize(final boolean synchronize)
+    {
+        this.synchronize = synchronize;
+    }
+
+    /** @return true if the files should be linked into the destination directory rather than copied, where possible. */
+    protected boolean isLinkFiles()
+    {
+        return linkFiles;
+    }
+
+    /**
+     * Indicates whether files can be symbolically linked into the destination directory.
+     * This default implementation returns true. 
+     * 
+     * @return true
+     */
+    protected boolean isSymbolicLinkAllowed()
+    {
+        return true;
+    }
+
     /**
      * Indicates whether at least one file must be copied. 
      * This default implementation returns false. 
@@ -71,10 +162,18 @@ public abstract class AbstractFileCollector implements WorkUnit
     {
         QaLogger.getInstance().info("Creating combined " + getItemType() + " directory.");        
         FileUtil.createDir(destDir.getPath());
+        collected.clear();
+        unchangedCount = 0;
         
         int count = copyFiles(sourceDirs, destDir);        
         QaLogger.getInstance().info("Copied " + count + " files.");
         
+        if (synchronize)
+        {
+            int removedCount = removeStaleFiles(destDir);
+            QaLogger.getInstance().info(unchangedCount + " files were up to date, " + removedCount + " stale files removed.");
+        }
+        
         if (count == 0 && isMandatory())
         {
             throw new QAException("\"" + getItemDescription() + "\" are required, but none were found.");
@@ -92,7 +191,8 @@ public abstract class AbstractFileCollector implements WorkUnit
      * along the way. Optionally copies all files with the given extension.
      * 
      * The root packages is set to be the top level of the destination directory, 
-     * regardless of where the file originated from.
+     * regardless of where the file originated from. The packages of the files
+     * are determined in parallel before any files are copied.
      * 
      * @param filePaths the files to copy
      * @param destDir the destination directory
@@ -101,8 +201,34 @@ public abstract class AbstractFileCollector implements WorkUnit
      */
     private int copyFiles(final List<File> filePaths, final File destDir)
     {
-        int count = 0;
+        List<File> files = new ArrayList<File>();
+        findFiles(filePaths, files);
+
+        if (sourceScanner == null)
+        {
+            PackageResolver.resolveAll(files);
+        }
+        else
+        {
+            sourceScanner.scanAll(files);
+        }
 
+        for (File file : files)
+        {
+            copyFile(file, destDir);
+        }
+
+        return files.size();
+    }
+
+    /**
+     * Finds the files which should be copied.
+     * 
+     * @param filePaths the files and directories to search.
+     * @param files the files which should be copied are added to this list.
+     */
+    private void findFiles(final List<File> filePaths, final List<File> files)
+    {
         // We want to copy files from arbitrary subdirectories,
         // while maintaining the package structure
         for (Iterator<File> i = filePaths.iterator(); i.hasNext();)
@@ -120,7 +246,7 @@ public abstract class AbstractFileCollector implements WorkUnit
                     containedFiles[j] = new File(source, containedNames[j]);
                 }
                 
-                count += copyFiles(Arrays.asList(containedFiles), destDir);
+                findFiles(Arrays.asList(containedFiles), files);
             }           
             else
             {
@@ -129,13 +255,10 @@ public abstract class AbstractFileCollector implements WorkUnit
                 
                 if (includedFileExtensions.contains(fileExt.toLowerCase()))
                 {
-                    copyFile(source, destDir);
-                    count++;
+                    files.add(source);
                 }
             }
         }
-        
-        return count;       
     }
     
     /**
@@ -147,7 +270,7 @@ public abstract class AbstractFileCollector implements WorkUnit
     {
         try
         {
-            String packageName = QaUtil.getPackageForFile(file);
+            String packageName = getPackage(file);
             
             if (packageName == null)
             {
@@ -161,7 +284,7 @@ public abstract class AbstractFileCollector implements WorkUnit
                     {
                         // We've hit one of the top-level dirs, so copy using the relative path from this dir
                         File dest = new File(destDir, relativePath.toString());
-                        FileUtil.copy(file, dest);
+                        copy(file, dest);
                         break;
                     }
                     else
@@ -176,7 +299,7 @@ public abstract class AbstractFileCollector implements WorkUnit
                 if (parent == null)
                 {
                     File dest = new File(destDir, file.getName());
-                    FileUtil.copy(file, dest);
+                    copy(file, dest);
                 }
             }
             else
@@ -184,14 +307,14 @@ public abstract class AbstractFileCollector implements WorkUnit
                 String destPath = packageName.replace('.', File.separatorChar) + File.separatorChar + file.getName();
                 File destFile = new File(destDir, destPath);
                 
-                if (destFile.exists())
+                if (isCollected(destFile))
                 {
                     String msg = "Duplicate file, analysis may be innaccurate: " + destPath;
                     QaLogger.getInstance().warn(msg); 
                 }
                 else
                 {
-                    FileUtil.copy(file, destFile);
+                    copy(file, destFile);
                 }
             }
         }
@@ -200,4 +323,175 @@ public abstract class AbstractFileCollector implements WorkUnit
             throw new QAException("Failed to copy file", e);
         }           
     }
+
+    /**
+     * Determines the package for a file, from the scanner's metadata for source files if there is a scanner.
+     *
+     * @param file the file.
+     * @return the package name for the file, or null if it could not be determined.
+     * @throws IOException if there is an error reading the file.
+     */
+    private String getPackage(final File file) throws IOException
+    {
+        if (sourceScanner != null && file.getName().toLowerCase().endsWith(".java"))
+        {
+            return sourceScanner.scan(file).getPackageName();
+        }
+
+        return QaUtil.getPackageForFile(file);
+    }
+
+    /**
+     * Copies (or links) a single file to the destination directory, recording its fingerprint if necessary.
+     *
+     * @param file the file to copy.
+     * @param dest the destination file, which must be within the destination directory.
+     * @throws IOException if there is an error copying the file.
+     */
+    protected void copy(final File file, final File dest) throws IOException
+    {
+        collected.add(dest.getPath());
+
+        if (synchronize && isUpToDate(file, dest))
+        {
+            unchangedCount++;
+        }
+        else if (!linkFiles || !link(file, dest))
+        {
+            FileUtil.copy(file, dest);
+
+            // Keep the modification time, so that the copy is seen to be up to date on the next run.
+            if (synchronize)
+            {
+                dest.setLastModified(file.lastModified());
+            }
+        }
+
+        if (sourceScanner != null)
+        {
+            sourceScanner.copied(file, dest);
+        }
+
+        if (fingerprints != null)
+        {
+            fingerprints.record(dest.getPath().substring(destDir.getPath().length() + 1), dest);
+        }
+    }
+
+    /**
+     * Indicates whether a file has already been collected to the given destination by the current run.
+     *
+     * @param dest the destination file.
+     * @return true if a file has already been collected to the destination.
+     */
+    protected boolean isCollected(final File dest)
+    {
+        return collected.contains(dest.getPath());
+    }
+
+    /**
+     * Determines whether a file from a previous run is an up to date copy of (or link to) a source file.
+     *
+     * @param file the source file.
+     * @param dest the file in the destination directory.
+     * @return true if the destination is up to date.
+     * @throws IOException if there is an error reading a symbolic link.
+     */
+    private static boolean isUpToDate(final File file, final File dest) throws IOException
+    {
+        if (!dest.exists())
+        {
+            return false;
+        }
+
+        if (Files.isSymbolicLink(dest.toPath()))
+        {
+            return Files.readSymbolicLink(dest.toPath()).equals(file.getAbsoluteFile().toPath());
+        }
+
+        return dest.length() == file.length() && dest.lastModified() == file.lastModified();
+    }
+
+    /**
+     * Removes the files from a previous run which were not collected by the current run,
+     * along with any directories which are left empty.
+     *
+     * @param dir the directory to remove stale files from.
+     * @return the number of files removed.
+     */
+    private int removeStaleFiles(final File dir)
+    {
+        int count = 0;
+        File[] children = dir.listFiles();
+
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                if (child.isDirectory() && !Files.isSymbolicLink(child.toPath()))
+                {
+                    count += removeStaleFiles(child);
+
+                    String[] remaining = child.list();
+
+                    if (remaining != null && remaining.length == 0)
+                    {
+                        child.delete();
+                    }
+                }
+                else if (!collected.contains(child.getPath()) && child.delete())
+                {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Links a single file into the destination directory.
+     *
+     * @param file the file to link to.
+     * @param dest the link to create.
+     * @return true if the link was created, false if the file system does not support links.
+     * @throws IOException if the destination exists and can not be replaced.
+     */
+    private boolean link(final File file, final File dest) throws IOException
+    {
+        // Also removes broken symbolic links from a previous run
+        Files.deleteIfExists(dest.toPath());
+        FileUtil.createDir(dest.getParent());
+
+        if (hardLinksSupported)
+        {
+            try
+            {
+                Files.createLink(dest.toPath(), file.toPath());
+                return true;
+            }
+            catch (Exception e)
+            {
+                // e.g. the files are on different file systems
+                QaLogger.getInstance().debug("Unable to create hard links in " + destDir + ": " + e.getMessage());
+                hardLinksSupported = false;
+            }
+        }
+
+        if (symbolicLinksSupported && isSymbolicLinkAllowed())
+        {
+            try
+            {
+                Files.createSymbolicLink(dest.toPath(), file.getAbsoluteFile().toPath());
+                return true;
+            }
+            catch (Exception e)
+            {
+                QaLogger.getInstance().debug("Unable to create symbolic links in " + destDir + ": " + e.getMessage());
+                symbolicLinksSupported = false;
+            }
+        }
+
+        return false;
+    }
 }
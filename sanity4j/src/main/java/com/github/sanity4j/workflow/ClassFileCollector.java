@@ -6,7 +6,6 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
-import com.github.sanity4j.util.FileUtil;
 import com.github.sanity4j.util.QAException;
 import com.github.sanity4j.util.QaLogger;
 
@@ -32,6 +31,8 @@ public class ClassFileCollector extends AbstractFileCollector
     public ClassFileCollector(final QAConfig config)
     {
         super(FILE_EXTS, config.getClassDirs(), config.getCombinedClassDir());
+        setLinkFiles(config.isLinkWorkspace());
+        setSynchronize(config.isPersistentWorkspace());
     }
     
     /** {@inheritDoc} */
@@ -72,7 +73,7 @@ public class ClassFileCollector extends AbstractFileCollector
         {
             File dest = new File(destDir, source.getName());
             
-            if (dest.exists())
+            if (isCollected(dest))
             {
                 String msg = "Duplicate file, analysis may be innaccurate: " + dest;
                 QaLogger.getInstance().warn(msg); 
@@ -81,7 +82,7 @@ public class ClassFileCollector extends AbstractFileCollector
             {
                 try
                 {
-                    FileUtil.copy(source, dest);
+                    copy(source, dest);
                 }
                 catch (IOException e)
                 {
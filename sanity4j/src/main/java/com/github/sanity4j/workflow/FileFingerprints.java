@@ -0,0 +1,113 @@
+package com.github.sanity4j.workflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.sanity4j.util.QAException;
+import com.github.sanity4j.util.SourceScanner;
+
+/**
+ * FileFingerprints records a hash of the contents of each file collected by an
+ * {@link AbstractFileCollector}, so that files which have changed since a previous
+ * run can be identified. Files are identified by their path relative to the
+ * collector's destination directory, using '/' as the separator. Files are hashed
+ * by the run's {@link SourceScanner}, so a file which has already been scanned is not read again.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class FileFingerprints
+{
+    /** The algorithm used to hash the file contents. */
+    private static final String ALGORITHM = "SHA-1";
+
+    /** The character set used to hash strings. */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Hex digits, for formatting hashes. */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** The file hashes, keyed by relative path. */
+    private final Map<String, String> hashes = new ConcurrentHashMap<String, String>();
+
+    /** The scanner which hashes the files. */
+    private final SourceScanner scanner;
+
+    /**
+     * Creates a FileFingerprints.
+     *
+     * @param scanner the scanner which hashes the files, which must have been created to hash file contents.
+     */
+    public FileFingerprints(final SourceScanner scanner)
+    {
+        this.scanner = scanner;
+    }
+
+    /**
+     * Records the fingerprint of a collected file.
+     *
+     * @param relativePath the path of the file, relative to the collection directory.
+     * @param file the collected file.
+     * @throws IOException if there is an error reading the file.
+     */
+    public void record(final String relativePath, final File file) throws IOException
+    {
+        hashes.put(relativePath.replace(File.separatorChar, '/'), scanner.scan(file).getHash());
+    }
+
+    /**
+     * @return the file hashes, keyed and sorted by relative path.
+     */
+    public Map<String, String> getHashes()
+    {
+        return new TreeMap<String, String>(hashes);
+    }
+
+    /**
+     * Calculates the hash of the given data.
+     *
+     * @param data the data to hash.
+     * @return the hash of the data, in hexadecimal.
+     */
+    public static String hash(final byte[] data)
+    {
+        MessageDigest digest;
+
+        try
+        {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new QAException(ALGORITHM + " is not supported", e);
+        }
+
+        byte[] hash = digest.digest(data);
+        char[] hex = new char[hash.length * 2];
+
+        for (int i = 0; i < hash.length; i++)
+        {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+
+        return new String(hex);
+    }
+
+    /**
+     * Calculates the hash of the given string.
+     *
+     * @param string the string to hash.
+     * @return the hash of the string, in hexadecimal.
+     */
+    public static String hash(final String string)
+    {
+        return hash(string.getBytes(UTF8));
+    }
+}
@@ -6,7 +6,6 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
-import com.github.sanity4j.util.FileUtil;
 import com.github.sanity4j.util.QAException;
 import com.github.sanity4j.util.QaLogger;
 
@@ -32,6 +31,8 @@ public class LibraryFileCollector extends AbstractFileCollector
     public LibraryFileCollector(final QAConfig config)
     {
         super(FILE_EXTS, config.getLibraryDirs(), config.getCombinedLibraryDir());
+        setLinkFiles(config.isLinkWorkspace());
+        setSynchronize(config.isPersistentWorkspace());
     }
     
     /** {@inheritDoc} */
@@ -62,17 +63,23 @@ public class LibraryFileCollector extends AbstractFileCollector
 
     /**
      * Copies a single file, placing it in the correct package.
+     * When linking files, jar archives are left where they are, as the tools are given their original location.
      * @param file the source file
      * @param destDir the destination directory root.
      */
     protected void copyFile(final File file, final File destDir)
     {
+        if (file.getName().endsWith(".jar") && isLinkFiles())
+        {
+            return;
+        }
+
         // Just copy jar archives to the top level
         if (file.getName().endsWith(".jar"))
         {
             File dest = new File(destDir, file.getName());
             
-            if (dest.exists())
+            if (isCollected(dest))
             {
                 String msg = "Duplicate file, analysis may be innaccurate: " + dest;
                 QaLogger.getInstance().warn(msg); 
@@ -81,7 +88,7 @@ public class LibraryFileCollector extends AbstractFileCollector
             {
                 try
                 {
-                    FileUtil.copy(file, dest);
+                    copy(file, dest);
                 }
                 catch (IOException e)
                 {
@@ -33,6 +33,12 @@ public final class QAConfig
     /** Prefix used within properties for QA tool properties. */
     private static final String QA_TOOL_PREFIX = "sanity4j.tool.";
 
+    /** The name of the directory within the workspace directory which holds Sanity4J's files. */
+    private static final String WORKSPACE_SUBDIR = "sanity4j-workspace";
+
+    /** The name of the file which marks a directory as holding Sanity4J's workspace files. */
+    private static final String WORKSPACE_MARKER = ".sanity4j-workspace";
+
     /**
      * A list of source file paths.
      */
@@ -83,6 +89,11 @@ public final class QAConfig
      */
     private String summaryDataFile;
 
+    /**
+     * The file used to record how long each WorkUnit took, if set.
+     */
+    private String timingsDataFile;
+
     /**
      * The temporary directory.
      */
@@ -108,10 +119,56 @@ public final class QAConfig
      */
     private boolean includeToolOutput = false;
 
+    /**
+     * If true, the tools are run within the current VM where possible, rather than in a new VM.
+     */
+    private boolean runToolsInProcess = false;
+
+    /**
+     * If true, the tools are run by a long-running daemon, which keeps them loaded between runs.
+     */
+    private boolean useDaemon = false;
+
+    /**
+     * If true, per-file tools are only run on files which have changed since the previous run.
+     */
+    private boolean incremental = false;
+
+    /**
+     * The directory used to cache tool results between incremental runs, if set.
+     */
+    private String resultCacheDir;
+
     /**
      * The number of threads to use to run the tools and produce the report output.
      */
-    private int numThreads = 1; // TODO: Add support for concurrent tasks (Note: some tasks can not be run in parallel).
+    private int numThreads = 1;
+
+    /**
+     * The number of shards to split the sources into for tools which analyse each source file independently.
+     */
+    private int toolShards = 1;
+
+    /**
+     * If true, collected files are linked into the temporary directory rather than copied, where possible.
+     */
+    private boolean linkWorkspace = false;
+
+    /**
+     * The directory used instead of the temporary directory, which is kept between runs, if set.
+     */
+    private String workspaceDir;
+
+    /**
+     * If true, the JAXB contexts used to read the tool results are created in the background at the start of the run.
+     */
+    private boolean prewarmJaxbContexts = false;
+
+    /**
+     * The type of {@link com.github.sanity4j.model.diagnostic.DiagnosticStore} to hold the diagnostics in,
+     * or null to hold the diagnostics as objects.
+     */
+    private String diagnosticStore;
 
     /**
      * The configuration properties. This is a combination of the internal defaults {@link #TOOL_PROPERTIES}
@@ -398,6 +455,31 @@ public final class QAConfig
         return summaryDataFile;
     }
 
+    /**
+     * @param timingsDataFile The timingsDataFile to set.
+     */
+    public void setTimingsDataFile(final String timingsDataFile)
+    {
+        this.timingsDataFile = timingsDataFile;
+    }
+
+    /**
+     * Returns the file used to record how long each WorkUnit took, which is used to schedule
+     * the longest work first on later runs. If not set explicitly, the timings are kept in the
+     * {@link #getWorkspaceDir() workspace}, if there is one, so that they are not published with the report.
+     *
+     * @return Returns the timingsDataFile, or null if there is nowhere to keep the timings.
+     */
+    public String getTimingsDataFile()
+    {
+        if (timingsDataFile == null && workspaceDir != null)
+        {
+            return new File(getTempDir(), "sanity4j-timings.properties").getPath();
+        }
+
+        return timingsDataFile;
+    }
+
     /**
      * @return Returns the includeToolOutput.
      */
@@ -414,6 +496,99 @@ public final class QAConfig
         this.includeToolOutput = includeToolOutput;
     }
 
+    /**
+     * @return Returns the runToolsInProcess.
+     */
+    public boolean isRunToolsInProcess()
+    {
+        return runToolsInProcess;
+    }
+
+    /**
+     * Sets whether the tools should be run within the current VM. Tools are still run in a new VM
+     * if they can not be run in-process, e.g. if a SecurityManager has already been installed.
+     *
+     * @param runToolsInProcess The runToolsInProcess to set.
+     */
+    public void setRunToolsInProcess(final boolean runToolsInProcess)
+    {
+        this.runToolsInProcess = runToolsInProcess;
+    }
+
+    /**
+     * @return Returns the useDaemon.
+     */
+    public boolean isUseDaemon()
+    {
+        return useDaemon;
+    }
+
+    /**
+     * Sets whether the tools should be run by a long-running daemon. A daemon is started if there is not
+     * already one running. If the daemon can not be used, the tools are run as if this was not set.
+     *
+     * @param useDaemon The useDaemon to set.
+     */
+    public void setUseDaemon(final boolean useDaemon)
+    {
+        this.useDaemon = useDaemon;
+    }
+
+    /**
+     * @return Returns the incremental.
+     */
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    /**
+     * Sets whether the analysis should be incremental. Per-file tools (e.g. Checkstyle and PMD) are then
+     * only run on the source files which have changed since the previous run, and the cached results
+     * are used for the remaining files.
+     *
+     * @param incremental The incremental to set.
+     */
+    public void setIncremental(final boolean incremental)
+    {
+        this.incremental = incremental;
+    }
+
+    /**
+     * @param resultCacheDir The resultCacheDir to set.
+     */
+    public void setResultCacheDir(final String resultCacheDir)
+    {
+        this.resultCacheDir = resultCacheDir;
+    }
+
+    /**
+     * Returns the directory used to cache tool results between incremental runs. If not set explicitly,
+     * the results are cached in the {@link #getWorkspaceDir() workspace}, if there is one,
+     * or otherwise in a directory under the user's home directory named after the report directory.
+     * The cache is never kept with the report, where it would be published, nor in the shared
+     * system temporary directory, where other users could tamper with it.
+     *
+     * @return Returns the resultCacheDir, or null if there is nowhere to cache the results.
+     */
+    public String getResultCacheDir()
+    {
+        if (resultCacheDir == null)
+        {
+            if (workspaceDir != null)
+            {
+                return new File(getTempDir(), "sanity4j-cache").getPath();
+            }
+            else if (reportDir != null)
+            {
+                File userCacheDir = new File(System.getProperty("user.home"), ".sanity4j" + File.separatorChar + "cache");
+                return new File(userCacheDir, FileFingerprints.hash(new File(reportDir).getAbsolutePath())).getPath();
+            }
+        }
+
+        return resultCacheDir;
+    }
+
     /**
      * Sets the maximum number of WorkUnits which can be run concurrently.
      *
@@ -433,11 +608,132 @@ public final class QAConfig
     }
 
     /**
-     * @return the temporary directory used during analysis.
+     * Sets the number of shards to split the sources into for tools which analyse each source file
+     * independently (e.g. Checkstyle and PMD). The shards are analysed concurrently, each by a
+     * separate instance of the tool, subject to the {@link #getNumThreads() number of threads}.
+     *
+     * @param toolShards the number of shards, 1 to analyse all the sources together.
+     */
+    public void setToolShards(final int toolShards)
+    {
+        this.toolShards = toolShards;
+    }
+
+    /**
+     * @return the number of shards to split the sources into for tools which analyse each source file independently.
+     */
+    public int getToolShards()
+    {
+        return toolShards;
+    }
+
+    /**
+     * @return Returns the linkWorkspace.
+     */
+    public boolean isLinkWorkspace()
+    {
+        return linkWorkspace;
+    }
+
+    /**
+     * Sets whether collected files should be linked into the temporary directory rather than copied.
+     * Hard links are used where the file system allows, then symbolic links (except for source files),
+     * and files are only copied if neither can be created. Library jars are not collected at all,
+     * but given to the tools in their original location.
+     *
+     * @param linkWorkspace The linkWorkspace to set.
+     */
+    public void setLinkWorkspace(final boolean linkWorkspace)
+    {
+        this.linkWorkspace = linkWorkspace;
+    }
+
+    /**
+     * @return Returns the workspaceDir.
+     */
+    public String getWorkspaceDir()
+    {
+        return workspaceDir;
+    }
+
+    /**
+     * Sets a directory which is kept between runs, to use instead of the temporary directory. The combined
+     * source, class and library directories are then only updated where the collected files have changed,
+     * rather than being rebuilt for every run, and the tools see the same paths on each run.
+     * Sanity4J's files are kept in a "sanity4j-workspace" subdirectory, and nothing else in the directory
+     * is modified. The workspace must not be shared by runs which may execute at the same time.
+     *
+     * @param workspaceDir The workspaceDir to set, or null to use a new temporary directory for each run.
+     */
+    public void setWorkspaceDir(final String workspaceDir)
+    {
+        this.workspaceDir = workspaceDir;
+    }
+
+    /**
+     * @return Returns the prewarmJaxbContexts.
+     */
+    public boolean isPrewarmJaxbContexts()
+    {
+        return prewarmJaxbContexts;
+    }
+
+    /**
+     * Sets whether the JAXB contexts used to read the tool results should be created in the background
+     * at the start of the run, while the files are collected and the tools are run, rather than when
+     * each tool's results are first read. Contexts are cached for the life of the JVM either way.
+     *
+     * @param prewarmJaxbContexts The prewarmJaxbContexts to set.
+     */
+    public void setPrewarmJaxbContexts(final boolean prewarmJaxbContexts)
+    {
+        this.prewarmJaxbContexts = prewarmJaxbContexts;
+    }
+
+    /**
+     * @return Returns the diagnosticStore.
+     */
+    public String getDiagnosticStore()
+    {
+        return diagnosticStore;
+    }
+
+    /**
+     * Sets where the diagnostics are held. By default, each diagnostic is held as an object, but runs which
+     * produce millions of diagnostics can hold them in columns instead, with the messages on the heap ("heap"),
+     * in direct memory ("direct") or in a memory-mapped file in the temporary directory ("mapped").
+     *
+     * @param diagnosticStore The diagnosticStore to set, one of "heap", "direct" or "mapped", or null to hold
+     *        diagnostics as objects.
+     */
+    public void setDiagnosticStore(final String diagnosticStore)
+    {
+        this.diagnosticStore = StringUtil.empty(diagnosticStore) ? null : diagnosticStore;
+    }
+
+    /**
+     * @return true if the {@link #getTempDir() temporary directory} is kept between runs.
+     */
+    public boolean isPersistentWorkspace()
+    {
+        return workspaceDir != null;
+    }
+
+    /**
+     * @return the temporary directory used during analysis, which is within the workspace directory if there is one.
      */
     public File getTempDir()
     {
-        return tempDir;
+        return workspaceDir == null ? tempDir : new File(workspaceDir, WORKSPACE_SUBDIR);
+    }
+
+    /**
+     * @return the file which marks the {@link #getTempDir() temporary directory} as belonging to a persistent
+     *         workspace, so that it is only cleaned up once it is known to hold Sanity4J's files.
+     */
+    public File getWorkspaceMarker()
+    {
+        return new File(getTempDir(), WORKSPACE_MARKER);
     }
 
     /**
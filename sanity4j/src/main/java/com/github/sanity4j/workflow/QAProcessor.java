@@ -5,10 +5,14 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
+import com.github.sanity4j.model.diagnostic.DiagnosticSet;
+import com.github.sanity4j.model.diagnostic.DiagnosticStore;
 import com.github.sanity4j.util.ExtractStats;
 import com.github.sanity4j.util.FileUtil;
+import com.github.sanity4j.util.JaxbMarshaller;
 import com.github.sanity4j.util.QAException;
 import com.github.sanity4j.util.QaLogger;
+import com.github.sanity4j.util.SourceScanner;
 import com.github.sanity4j.util.StringUtil;
 import com.github.sanity4j.workflow.tool.ToolRunnerGroup;
 
@@ -42,6 +46,11 @@ public class QAProcessor implements Runnable
      */
     private ExtractStats stats;
 
+    /**
+     * The store holding the diagnostics for the current run, or null if the diagnostics are held as objects.
+     */
+    private DiagnosticStore diagnosticStore;
+
     /** @return the QA configuration for the current run. */
     public QAConfig getConfig()
     {
@@ -101,13 +110,29 @@ public class QAProcessor implements Runnable
         }
 
         FileUtil.createDir(config.getTempDir().getPath());
-        config.getTempDir().deleteOnExit();
+
+        if (config.isPersistentWorkspace())
+        {
+            initWorkspace();
+        }
+        else
+        {
+            config.getTempDir().deleteOnExit();
+        }
 
         try
         {
             String combinedSourcePath = config.getCombinedSourceDir().getPath();
             FileUtil.createDir(combinedSourcePath);
-            stats = new ExtractStats(combinedSourcePath);
+
+            if (config.getDiagnosticStore() != null)
+            {
+                diagnosticStore = new DiagnosticStore(config.getDiagnosticStore(), config.getTempDir());
+            }
+
+            // Sources are only hashed when an incremental run needs their fingerprints
+            SourceScanner sourceScanner = new SourceScanner(config.isIncremental());
+            stats = new ExtractStats(combinedSourcePath, new DiagnosticSet(diagnosticStore), sourceScanner);
         }
         catch (IOException e)
         {
@@ -116,52 +141,92 @@ public class QAProcessor implements Runnable
     }
 
     /**
-     * Cleans up after the task has executed.
-     * Currently, only the temporary directory is deleted.
+     * Marks the persistent workspace as holding Sanity4J's files, so that it can be cleaned up after the run.
+     * A directory which already holds other files is not used, as they would be deleted by the clean-up.
      */
-    private void cleanUp()
+    private void initWorkspace()
     {
-        File tempDir = config.getTempDir();
+        File marker = config.getWorkspaceMarker();
 
-        if (tempDir != null && tempDir.exists())
+        if (!marker.exists())
         {
+            String[] existing = config.getTempDir().list();
+
+            if (existing != null && existing.length > 0)
+            {
+                throw new QAException("Workspace directory " + config.getTempDir() + " holds files which were not created by Sanity4J");
+            }
+
             try
             {
-                FileUtil.delete(new File(tempDir.getPath()));
-                tempDir = null;
+                marker.createNewFile();
             }
             catch (IOException e)
             {
-                QaLogger.getInstance().warn("Failed to delete temp dir", e);
+                throw new QAException("Unable to create workspace marker " + marker, e);
             }
         }
     }
 
     /**
-     * Creates the work unit which runs the tools against the combined
-     * source/class/library directories.
-     *
-     * @param stats the stats which will hold the analysis results.
-     * @return a WorkUnit which will run the analysis tools.
+     * Cleans up after the task has executed.
+     * Currently, only the temporary directory is deleted. For a persistent workspace, everything
+     * except the combined directories, the timings and the result cache is deleted, but only if
+     * the workspace has been marked as holding Sanity4J's files.
      */
-    private WorkUnit getToolsWork(final ExtractStats stats)
+    private void cleanUp()
     {
-        WorkUnitGroup tools = new WorkUnitGroup(true, "Performing analysis")
+        if (diagnosticStore != null)
         {
-            @Override
-            public void run()
-            {
-                long start = System.currentTimeMillis();
+            diagnosticStore.close();
+            diagnosticStore = null;
+        }
 
-                super.run();
+        File tempDir = config.getTempDir();
 
-                long elapsed = System.currentTimeMillis() - start;
-                QaLogger.getInstance().info("Combined analysis completed in " + (elapsed / MILLIS) + "s.");
+        if (config.isPersistentWorkspace())
+        {
+            if (!config.getWorkspaceMarker().exists())
+            {
+                return;
             }
-        };
 
-        tools.add(new ToolRunnerGroup(config, stats));
-        return tools;
+            List<File> keep = Arrays.asList(new File[]
+            {
+                config.getWorkspaceMarker(),
+                config.getCombinedSourceDir(), config.getCombinedClassDir(), config.getCombinedLibraryDir(),
+                new File(config.getTimingsDataFile()), new File(config.getResultCacheDir())
+            });
+
+            File[] children = tempDir.listFiles();
+
+            for (int i = 0; children != null && i < children.length; i++)
+            {
+                if (!keep.contains(children[i]))
+                {
+                    try
+                    {
+                        FileUtil.delete(children[i]);
+                    }
+                    catch (IOException e)
+                    {
+                        QaLogger.getInstance().warn("Failed to delete " + children[i], e);
+                    }
+                }
+            }
+        }
+        else if (tempDir != null && tempDir.exists())
+        {
+            try
+            {
+                FileUtil.delete(new File(tempDir.getPath()));
+                tempDir = null;
+            }
+            catch (IOException e)
+            {
+                QaLogger.getInstance().warn("Failed to delete temp dir", e);
+            }
+        }
     }
 
     /**
@@ -173,18 +238,48 @@ public class QAProcessor implements Runnable
         QaLogger.getInstance().info("Sanity4J version " + QA_VERSION);
         long start = System.currentTimeMillis();
 
-        WorkUnitGroup work = new WorkUnitGroup("Performing analysis");
+        WorkUnitGroup.setMaxThreads(config.getNumThreads());
+
+        // Timings from previous runs are used to start the longest work first
+        String timingsDataFile = config.getTimingsDataFile();
+        WorkUnitTimings timings = new WorkUnitTimings();
+
+        if (!StringUtil.empty(timingsDataFile))
+        {
+            timings.load(new File(timingsDataFile));
+        }
+
+        // Each WorkUnit is started as soon as the WorkUnits it depends on have completed
+        WorkUnitGraph work = new WorkUnitGraph("Performing analysis");
+        work.setTimings(timings);
 
         // Collect the various files necessary for analysis
-        work.add(new SourceFileCollector(config));
-        work.add(new ClassFileCollector(config));
-        work.add(new LibraryFileCollector(config));
+        SourceFileCollector sourceCollector = new SourceFileCollector(config);
+        sourceCollector.setSourceScanner(stats.getSourceScanner());
+        FileFingerprints sourceFingerprints = null;
+
+        if (config.isIncremental())
+        {
+            sourceFingerprints = new FileFingerprints(stats.getSourceScanner());
+            sourceCollector.setFingerprints(sourceFingerprints);
+        }
+
+        work.add(sourceCollector, null, new String[] { WorkProduct.SOURCES });
+        work.add(new ClassFileCollector(config), null, new String[] { WorkProduct.CLASSES });
+        work.add(new LibraryFileCollector(config), null, new String[] { WorkProduct.LIBRARIES });
 
         // Run the various tools
-        work.add(getToolsWork(stats));
+        ToolRunnerGroup toolRunners = new ToolRunnerGroup(config, stats, sourceFingerprints);
+        work.addAll(toolRunners);
+
+        // The JAXB contexts for the tool results can be created while the tools are running
+        if (config.isPrewarmJaxbContexts())
+        {
+            JaxbMarshaller.prewarm(toolRunners.getJaxbPackages());
+        }
 
         // Determine line counts (for quality metric).
-        work.add(new WorkUnit()
+        WorkUnit lineCounts = new WorkUnit()
         {
             @Override
             public String getDescription()
@@ -204,20 +299,48 @@ public class QAProcessor implements Runnable
                     throw new QAException("Unable to determine line counts", e);
                 }
             }
-        });
+        };
+
+        work.add(lineCounts, new String[] { WorkProduct.SOURCES }, new String[] { WorkProduct.LINE_COUNTS });
+
+        // Once all the results have been read, the diagnostics can be indexed for reporting
+        WorkUnit sealDiagnostics = new WorkUnit()
+        {
+            @Override
+            public String getDescription()
+            {
+                return "Indexing diagnostics";
+            }
+
+            @Override
+            public void run()
+            {
+                stats.getDiagnostics().seal();
+            }
+        };
+
+        work.add(sealDiagnostics, new String[] { WorkProduct.RESULTS }, new String[] { WorkProduct.DIAGNOSTICS });
 
         // Summarise run (if applicable)
+        String[] summaryInputs = { WorkProduct.RESULTS, WorkProduct.DIAGNOSTICS, WorkProduct.LINE_COUNTS };
+
         if (!StringUtil.empty(config.getSummaryDataFile()))
         {
-            work.add(new SummariseRun(stats, config));
+            work.add(new SummariseRun(stats, config), summaryInputs, new String[] { WorkProduct.SUMMARY });
         }
 
         // Produce the report
-        work.add(new ReportProducer(config, stats));
+        String[] reportInputs = { WorkProduct.RESULTS, WorkProduct.DIAGNOSTICS, WorkProduct.LINE_COUNTS, WorkProduct.SUMMARY };
+        work.add(new ReportProducer(config, stats), reportInputs, null);
 
         // RunWork is called rather than work.run so that we can indicate progress
         runWork(Arrays.asList(new WorkUnit[]{work}));
 
+        if (!StringUtil.empty(timingsDataFile))
+        {
+            timings.save(new File(timingsDataFile));
+        }
+
         long elapsed = System.currentTimeMillis() - start;
         QaLogger.getInstance().info("Analysis completed in " + (elapsed / MILLIS) + "s.");
         QaLogger.getInstance().info("Done!");
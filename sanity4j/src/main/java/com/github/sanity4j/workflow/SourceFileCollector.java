@@ -25,6 +25,8 @@ public class SourceFileCollector extends AbstractFileCollector
     public SourceFileCollector(final QAConfig config)
     {
         super(FILE_EXTS, config.getSourceDirs(), config.getCombinedSourceDir());
+        setLinkFiles(config.isLinkWorkspace());
+        setSynchronize(config.isPersistentWorkspace());
     }
     
     /**
@@ -53,6 +55,18 @@ public class SourceFileCollector extends AbstractFileCollector
         return "Collecting source files";
     }
     
+    /**
+     * Source files must not be symbolically linked, as the diagnostics are mapped back to
+     * classes using the canonical paths of the files in the combined source directory.
+     * 
+     * @return false
+     */
+    @Override
+    protected boolean isSymbolicLinkAllowed()
+    {
+        return false;
+    }
+    
     /** @return true, at least one source file must exist. */
     @Override
     protected boolean isMandatory()
@@ -0,0 +1,50 @@
+package com.github.sanity4j.workflow;
+
+import com.github.sanity4j.util.Tool;
+
+/**
+ * WorkProduct contains the names of the things which {@link WorkUnit}s produce and consume
+ * during a run. These are used to declare the dependencies between WorkUnits in a {@link WorkUnitGraph}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class WorkProduct
+{
+    /** The combined source directory. */
+    public static final String SOURCES = "sources";
+
+    /** The combined class directory. */
+    public static final String CLASSES = "classes";
+
+    /** The combined library directory. */
+    public static final String LIBRARIES = "libraries";
+
+    /** The diagnostics and coverage read from the tool results. */
+    public static final String RESULTS = "results";
+
+    /** The diagnostics, once all the results have been read and the diagnostics have been indexed. */
+    public static final String DIAGNOSTICS = "diagnostics";
+
+    /** The line counts for the source files. */
+    public static final String LINE_COUNTS = "lineCounts";
+
+    /** The run summary. */
+    public static final String SUMMARY = "summary";
+
+    /** No instance methods here. */
+    private WorkProduct()
+    {
+    }
+
+    /**
+     * Returns the name of the raw result produced by the given tool.
+     *
+     * @param tool the tool.
+     * @return the name of the tool's result.
+     */
+    public static String getToolResult(final Tool tool)
+    {
+        return tool.getId() + ".result";
+    }
+}
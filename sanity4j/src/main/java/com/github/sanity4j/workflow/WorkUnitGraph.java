@@ -0,0 +1,510 @@
+package com.github.sanity4j.workflow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.github.sanity4j.util.QAException;
+import com.github.sanity4j.util.QaLogger;
+
+/**
+ * <p>WorkUnitGraph runs {@link WorkUnit}s according to the dependencies between them.
+ * Each WorkUnit declares the {@link WorkProduct}s it needs (its inputs) and the
+ * WorkProducts it produces (its outputs). A WorkUnit is started as soon as all the
+ * WorkUnits producing its inputs have completed, rather than when everything added
+ * before it has completed. Inputs which are not produced by any WorkUnit in the
+ * graph are assumed to already be available.</p>
+ *
+ * <p>WorkUnits are run using the same bounded worker pool as {@link WorkUnitGroup},
+ * with the calling thread taking part in the work. When more WorkUnits are ready
+ * than there are threads to run them, the WorkUnits at the head of the longest
+ * remaining chain of work are started first. The length of a chain is estimated
+ * using the durations recorded by {@link WorkUnitTimings} on earlier runs, if available.</p>
+ *
+ * <p>As with WorkUnitGroup, the first failure stops any further WorkUnits from being started,
+ * cancels the WorkUnits which are still running, and is propagated to the caller.</p>
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class WorkUnitGraph implements WorkUnit
+{
+    /** A short description of this WorkUnitGraph. */
+    private final String description;
+
+    /** The nodes in the graph, in the order they were added. */
+    private final List<Node> nodes = new ArrayList<Node>();
+
+    /** The timings used to prioritise work, and to record how long each WorkUnit took. May be null. */
+    private WorkUnitTimings timings;
+
+    /**
+     * Creates a WorkUnitGraph.
+     * @param description a short textual description of the WorkUnitGraph's purpose.
+     */
+    public WorkUnitGraph(final String description)
+    {
+        this.description = description;
+    }
+
+    /** {@inheritDoc} */
+    public String getDescription()
+    {
+        return description;
+    }
+
+    /**
+     * Sets the timings used to prioritise the work. The time taken by each WorkUnit
+     * which is run will also be recorded in the timings.
+     *
+     * @param timings the timings to use, may be null.
+     */
+    public void setTimings(final WorkUnitTimings timings)
+    {
+        this.timings = timings;
+    }
+
+    /**
+     * Adds a unit of work to this graph.
+     *
+     * @param workUnit the work unit to add.
+     * @param inputs the WorkProducts which must be available before the work unit is run, may be null.
+     * @param outputs the WorkProducts which are available once the work unit has completed, may be null.
+     */
+    public void add(final WorkUnit workUnit, final String[] inputs, final String[] outputs)
+    {
+        nodes.add(new Node(nodes.size(), workUnit, inputs == null ? new String[0] : inputs, outputs == null ? new String[0] : outputs));
+    }
+
+    /**
+     * Adds all the work from another graph to this graph, so that it can be scheduled together with this graph's work.
+     *
+     * @param graph the graph to add the work from.
+     */
+    public void addAll(final WorkUnitGraph graph)
+    {
+        for (Node node : graph.nodes)
+        {
+            nodes.add(new Node(nodes.size(), node.workUnit, node.inputs, node.outputs));
+        }
+    }
+
+    /**
+     * Executes all the WorkUnits in this graph.
+     */
+    public void run()
+    {
+        link();
+        prioritise();
+        new Execution().run();
+    }
+
+    /**
+     * Determines the successors of each node in the graph.
+     */
+    private void link()
+    {
+        Map<String, List<Node>> producers = new HashMap<String, List<Node>>();
+
+        for (Node node : nodes)
+        {
+            node.successors.clear();
+            node.predecessorCount = 0;
+
+            for (String output : node.outputs)
+            {
+                List<Node> producerList = producers.get(output);
+
+                if (producerList == null)
+                {
+                    producerList = new ArrayList<Node>();
+                    producers.put(output, producerList);
+                }
+
+                producerList.add(node);
+            }
+        }
+
+        for (Node node : nodes)
+        {
+            Set<Node> predecessors = new LinkedHashSet<Node>();
+
+            for (String input : node.inputs)
+            {
+                List<Node> producerList = producers.get(input);
+
+                if (producerList != null)
+                {
+                    predecessors.addAll(producerList);
+                }
+            }
+
+            predecessors.remove(node);
+
+            for (Node predecessor : predecessors)
+            {
+                predecessor.successors.add(node);
+            }
+
+            node.predecessorCount = predecessors.size();
+        }
+    }
+
+    /**
+     * Calculates the priority of each node, which is the estimated duration of the
+     * longest chain of work starting at that node.
+     */
+    private void prioritise()
+    {
+        // Determine a topological order, to calculate priorities from the end of the graph backwards.
+        Map<Node, Integer> remaining = new HashMap<Node, Integer>();
+        List<Node> order = new ArrayList<Node>(nodes.size());
+
+        for (Node node : nodes)
+        {
+            remaining.put(node, node.predecessorCount);
+
+            if (node.predecessorCount == 0)
+            {
+                order.add(node);
+            }
+        }
+
+        for (int i = 0; i < order.size(); i++)
+        {
+            for (Node successor : order.get(i).successors)
+            {
+                int count = remaining.get(successor) - 1;
+                remaining.put(successor, count);
+
+                if (count == 0)
+                {
+                    order.add(successor);
+                }
+            }
+        }
+
+        if (order.size() != nodes.size())
+        {
+            throw new QAException(description + " contains cyclic dependencies");
+        }
+
+        Collections.reverse(order);
+
+        for (Node node : order)
+        {
+            long longestSuccessor = 0L;
+
+            for (Node successor : node.successors)
+            {
+                longestSuccessor = Math.max(longestSuccessor, successor.priority);
+            }
+
+            long duration = timings == null ? -1L : timings.getDuration(node.workUnit);
+            node.priority = Math.max(1L, duration) + longestSuccessor;
+        }
+    }
+
+    /**
+     * A single execution of the graph. This holds the state which changes while the graph is being run.
+     */
+    private final class Execution
+    {
+        /** The futures for the WorkUnits handed to the worker pool. Also used as the lock for the execution state. */
+        private final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+        /** The nodes which are ready to run, longest chain first. */
+        private final PriorityQueue<Node> ready = new PriorityQueue<Node>(Math.max(1, nodes.size()), new NodeComparator());
+
+        /** The number of outstanding predecessors for each node. */
+        private final Map<Node, Integer> pending = new HashMap<Node, Integer>();
+
+        /** The number of nodes which have been started but not yet completed. */
+        private int running;
+
+        /** The first failure, if any. */
+        private Throwable failure;
+
+        /**
+         * Runs the graph, using the calling thread to run work whenever no worker is free.
+         */
+        public void run()
+        {
+            for (Node node : nodes)
+            {
+                pending.put(node, node.predecessorCount);
+
+                if (node.predecessorCount == 0)
+                {
+                    ready.add(node);
+                }
+            }
+
+            while (true)
+            {
+                Node next = null;
+
+                synchronized (futures)
+                {
+                    while (failure == null && ready.isEmpty() && running > 0)
+                    {
+                        try
+                        {
+                            futures.wait();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            WorkerPool.cancelAll(futures);
+                            Thread.currentThread().interrupt();
+                            throw new QAException(description + " was interrupted", e);
+                        }
+                    }
+
+                    if (failure != null || ready.isEmpty())
+                    {
+                        break;
+                    }
+
+                    next = dispatch();
+                }
+
+                if (next != null)
+                {
+                    execute(next);
+                }
+            }
+
+            awaitCompletion();
+
+            if (failure instanceof QAException)
+            {
+                throw (QAException) failure;
+            }
+            else if (failure instanceof Error)
+            {
+                throw (Error) failure;
+            }
+            else if (failure != null)
+            {
+                throw new QAException(description + " failed", failure);
+            }
+        }
+
+        /**
+         * Hands the ready nodes to the worker pool, until there are no more free workers.
+         * Must be called while holding the lock.
+         *
+         * @return the node which the calling thread should run, or null if all the ready nodes were handed out.
+         */
+        private Node dispatch()
+        {
+            while (!ready.isEmpty())
+            {
+                final Node node = ready.poll();
+                running++;
+
+                Future<?> future = WorkerPool.trySubmit(new Runnable()
+                {
+                    public void run()
+                    {
+                        // Keep the worker busy with any other ready work, rather than waiting for it to be dispatched.
+                        for (Node current = node; current != null; current = takeNext())
+                        {
+                            QaLogger.getInstance().debug(current.workUnit.getDescription());
+                            execute(current);
+                        }
+                    }
+                });
+
+                if (future == null)
+                {
+                    return node;
+                }
+
+                futures.add(future);
+            }
+
+            return null;
+        }
+
+        /**
+         * Takes the next ready node to run on a worker thread which has just completed a node.
+         *
+         * @return the next node to run, or null if there is nothing ready to run.
+         */
+        private Node takeNext()
+        {
+            synchronized (futures)
+            {
+                if (failure != null || ready.isEmpty())
+                {
+                    return null;
+                }
+
+                running++;
+                return ready.poll();
+            }
+        }
+
+        /**
+         * Runs the WorkUnit for a node, and makes its successors ready to run once it has completed.
+         *
+         * @param node the node to run.
+         */
+        private void execute(final Node node)
+        {
+            long start = System.currentTimeMillis();
+            Throwable nodeFailure = null;
+
+            try
+            {
+                node.workUnit.run();
+
+                if (timings != null)
+                {
+                    timings.record(node.workUnit, System.currentTimeMillis() - start);
+                }
+            }
+            catch (Throwable t)
+            {
+                nodeFailure = t;
+            }
+
+            synchronized (futures)
+            {
+                running--;
+
+                if (nodeFailure != null)
+                {
+                    if (failure == null)
+                    {
+                        failure = nodeFailure;
+                        WorkerPool.cancelAll(futures);
+                    }
+                }
+                else
+                {
+                    for (Node successor : node.successors)
+                    {
+                        int count = pending.get(successor) - 1;
+                        pending.put(successor, count);
+
+                        if (count == 0)
+                        {
+                            ready.add(successor);
+                        }
+                    }
+                }
+
+                futures.notifyAll();
+            }
+        }
+
+        /**
+         * Waits for all the WorkUnits which have been handed to the worker pool to complete.
+         */
+        private void awaitCompletion()
+        {
+            List<Future<?>> started;
+
+            synchronized (futures)
+            {
+                started = new ArrayList<Future<?>>(futures);
+            }
+
+            for (Future<?> future : started)
+            {
+                try
+                {
+                    // A cancelled node may still be running, so wait for its worker to finish with it
+                    WorkerPool.awaitFinished(future);
+                    future.get();
+                }
+                catch (CancellationException ignored)
+                {
+                    // Cancelled due to a failure elsewhere in the graph, which will be reported.
+                }
+                catch (ExecutionException e)
+                {
+                    // Should not occur, as execute records all failures.
+                    throw new QAException(description + " failed", e.getCause());
+                }
+                catch (InterruptedException e)
+                {
+                    WorkerPool.cancelAll(futures);
+                    Thread.currentThread().interrupt();
+                    throw new QAException(description + " was interrupted", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Orders nodes by priority (highest first), then by the order in which they were added.
+     */
+    private static final class NodeComparator implements Comparator<Node>
+    {
+        /** {@inheritDoc} */
+        public int compare(final Node node1, final Node node2)
+        {
+            if (node1.priority != node2.priority)
+            {
+                return node1.priority > node2.priority ? -1 : 1;
+            }
+
+            return node1.index - node2.index;
+        }
+    }
+
+    /**
+     * A WorkUnit in the graph, along with its dependencies.
+     */
+    private static final class Node
+    {
+        /** The position of the node in the graph, used to keep the order stable. */
+        private final int index;
+
+        /** The WorkUnit to run. */
+        private final WorkUnit workUnit;
+
+        /** The WorkProducts needed by the WorkUnit. */
+        private final String[] inputs;
+
+        /** The WorkProducts produced by the WorkUnit. */
+        private final String[] outputs;
+
+        /** The nodes which depend on this node. */
+        private final List<Node> successors = new ArrayList<Node>();
+
+        /** The number of nodes which this node depends on. */
+        private int predecessorCount;
+
+        /** The estimated duration of the longest chain of work starting at this node. */
+        private long priority;
+
+        /**
+         * Creates a Node.
+         *
+         * @param index the position of the node in the graph.
+         * @param workUnit the WorkUnit to run.
+         * @param inputs the WorkProducts needed by the WorkUnit.
+         * @param outputs the WorkProducts produced by the WorkUnit.
+         */
+        Node(final int index, final WorkUnit workUnit, final String[] inputs, final String[] outputs)
+        {
+            this.index = index;
+            this.workUnit = workUnit;
+            this.inputs = inputs;
+            this.outputs = outputs;
+        }
+    }
+}
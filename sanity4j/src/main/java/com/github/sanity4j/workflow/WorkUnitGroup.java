@@ -1,11 +1,29 @@
-package com.github.sanity4j.workflow; 
+package com.github.sanity4j.workflow;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
-/** 
- * WorkUnitGroup provides a way to group {@link WorkUnit}s. 
- * 
+import com.github.sanity4j.util.QAException;
+import com.github.sanity4j.util.QaLogger;
+
+/**
+ * <p>WorkUnitGroup provides a way to group {@link WorkUnit}s.</p>
+ *
+ * <p>If a group allows concurrent execution, its WorkUnits are handed to a shared
+ * pool of worker threads, bounded for each run by {@link #setMaxThreads(int)}. The thread
+ * calling {@link #run()} also takes part in the work, running a WorkUnit itself
+ * whenever no worker is free. This means that nested groups can never dead-lock
+ * waiting for a thread, and that with the default of a single thread, all work
+ * is executed sequentially on the calling thread.</p>
+ *
+ * <p>If a WorkUnit fails, no further WorkUnits in the group are started, the
+ * WorkUnits which are still running are cancelled, and the first failure
+ * is propagated to the caller.</p>
+ *
  * @author Yiannis Paschalidis
  * @since Sanity4J 1.0
  */
@@ -13,7 +31,10 @@ public class WorkUnitGroup implements WorkUnit
 {
     /** A short description of this WorkUnitGroup. */
     private final String description;
-    
+
+    /** Whether the WorkUnits in this group can be run in parallel. */
+    private final boolean allowConcurrent;
+
     /** The WorkUnits contained in this group. */
     private final List<WorkUnit> work = new ArrayList<WorkUnit>();
 
@@ -25,55 +46,197 @@ public class WorkUnitGroup implements WorkUnit
     {
         this(false, description);
     }
-    
+
     /**
      * Creates a WorkUnitGroup where parallel work unit execution is allowed.
-     * 
+     *
      * @param allowConcurrent true if WorkUnits in this group can be executed in parallel, false if not.
      * @param description a short textual description of the WorkUnitGroup's purpose.
      */
     public WorkUnitGroup(final boolean allowConcurrent, final String description)
     {
-        // TODO: this.allowConcurrent = allowConcurrent;
+        this.allowConcurrent = allowConcurrent;
         this.description = description;
     }
-    
+
     /** {@inheritDoc} */
     public String getDescription()
     {
         return description;
     }
 
+    /**
+     * @return true if WorkUnits in this group can be executed in parallel, false if not.
+     */
+    public boolean isAllowConcurrent()
+    {
+        return allowConcurrent;
+    }
+
+    /**
+     * @return the WorkUnits contained in this group, in the order they were added.
+     */
+    protected List<WorkUnit> getWork()
+    {
+        return work;
+    }
+
     /**
      * Executes all the WorkUnits in this group.
+     * WorkUnits in non-concurrent groups are always executed in the order they were added.
      */
     public void run()
     {
-        // TODO: Implement threading
-        
-        for (WorkUnit workUnit : work)
+        if (!allowConcurrent || work.size() < 2)
+        {
+            for (WorkUnit workUnit : work)
+            {
+                workUnit.run();
+            }
+        }
+        else
+        {
+            runConcurrently();
+        }
+    }
+
+    /**
+     * Executes the WorkUnits in this group using the shared worker pool.
+     * The calling thread runs any WorkUnits for which there are no free workers.
+     */
+    private void runConcurrently()
+    {
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final List<Future<?>> futures = new ArrayList<Future<?>>(work.size());
+
+        for (final WorkUnit workUnit : work)
+        {
+            if (failure.get() != null)
+            {
+                break;
+            }
+
+            Runnable task = new Runnable()
+            {
+                public void run()
+                {
+                    QaLogger.getInstance().debug(workUnit.getDescription());
+                    runUnit(workUnit, failure, futures);
+                }
+            };
+
+            synchronized (futures)
+            {
+                Future<?> future = WorkerPool.trySubmit(task);
+
+                if (future != null)
+                {
+                    futures.add(future);
+                    continue;
+                }
+            }
+            runUnit(workUnit, failure, futures);
+        }
+
+        awaitCompletion(futures);
+
+        Throwable cause = failure.get();
+
+        if (cause instanceof QAException)
+        {
+            throw (QAException) cause;
+        }
+        else if (cause instanceof Error)
+        {
+            throw (Error) cause;
+        }
+        else if (cause != null)
+        {
+            throw new QAException(description + " failed", cause);
+        }
+    }
+
+    /**
+     * Runs a single WorkUnit, recording the failure and cancelling the rest of the group's work if it fails.
+     *
+     * @param workUnit the WorkUnit to run.
+     * @param failure holds the first failure for the group.
+     * @param futures the WorkUnits which have been handed to the worker pool.
+     */
+    private static void runUnit(final WorkUnit workUnit, final AtomicReference<Throwable> failure, final List<Future<?>> futures)
+    {
+        try
         {
             workUnit.run();
         }
+        catch (Throwable t)
+        {
+            if (failure.compareAndSet(null, t))
+            {
+                WorkerPool.cancelAll(futures);
+            }
+        }
+    }
+
+    /**
+     * Waits for all the WorkUnits which have been handed to the worker pool to complete.
+     *
+     * @param futures the WorkUnits which have been handed to the worker pool.
+     */
+    private void awaitCompletion(final List<Future<?>> futures)
+    {
+        List<Future<?>> pending;
+
+        synchronized (futures)
+        {
+            pending = new ArrayList<Future<?>>(futures);
+        }
+
+        for (Future<?> future : pending)
+        {
+            try
+            {
+                // A cancelled unit may still be running, so wait for its worker to finish with it
+                WorkerPool.awaitFinished(future);
+                future.get();
+            }
+            catch (CancellationException ignored)
+            {
+                // Cancelled due to a failure elsewhere in the group, which will be reported.
+            }
+            catch (ExecutionException e)
+            {
+                // Should not occur, as runUnit records all failures.
+                throw new QAException(description + " failed", e.getCause());
+            }
+            catch (InterruptedException e)
+            {
+                WorkerPool.cancelAll(futures);
+                Thread.currentThread().interrupt();
+                throw new QAException(description + " was interrupted", e);
+            }
+        }
     }
 
     /**
      * Adds a unit of work to this work group.
      * @param workUnit the work unit to add.
      */
-    public void add(final WorkUnit workUnit) 
+    public void add(final WorkUnit workUnit)
     {
         work.add(workUnit);
     }
-    
+
     /**
-     * Sets the maximum number of threads which are allowed globally for WorkUnitGroups.
-     * This effectively controls how many WorkUnits can be run in parallel.
-     * 
+     * Sets the maximum number of threads which are allowed for WorkUnitGroups run by the calling thread,
+     * including any groups which are nested within them. This effectively controls how many WorkUnits
+     * can be run in parallel by a run, without affecting other runs in the same VM.
+     * This should be called before any WorkUnitGroups are run.
+     *
      * @param maxThreads the maximum number of threads allowed.
      */
     public static final void setMaxThreads(final int maxThreads)
     {
-        // TODO: set up thread pool.
-    }    
+        WorkerPool.setMaxThreads(maxThreads);
+    }
 }
@@ -0,0 +1,117 @@
+package com.github.sanity4j.workflow;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import com.github.sanity4j.util.QaLogger;
+import com.github.sanity4j.util.QaUtil;
+
+/**
+ * WorkUnitTimings records how long each {@link WorkUnit} took to run, keyed by the
+ * WorkUnit's description. The timings from a previous run are used by {@link WorkUnitGraph}
+ * to start the longest chains of work first.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public final class WorkUnitTimings
+{
+    /** The recorded durations, in milliseconds. */
+    private final Properties durations = new Properties();
+
+    /**
+     * Reads previously recorded timings from the given file.
+     * A missing or unreadable file is not an error, as the timings are only a scheduling hint.
+     *
+     * @param file the file to read from.
+     */
+    public synchronized void load(final File file)
+    {
+        if (!file.exists())
+        {
+            return;
+        }
+
+        InputStream inputStream = null;
+
+        try
+        {
+            inputStream = new FileInputStream(file);
+            durations.load(inputStream);
+        }
+        catch (IOException e)
+        {
+            QaLogger.getInstance().warn("Unable to read timings from " + file, e);
+        }
+        finally
+        {
+            QaUtil.safeClose(inputStream);
+        }
+    }
+
+    /**
+     * Writes the timings to the given file.
+     * Failure to write the file is logged, but is not an error.
+     *
+     * @param file the file to write to.
+     */
+    public synchronized void save(final File file)
+    {
+        OutputStream outputStream = null;
+
+        try
+        {
+            outputStream = new FileOutputStream(file);
+            durations.store(outputStream, "Sanity4J WorkUnit durations (ms)");
+        }
+        catch (IOException e)
+        {
+            QaLogger.getInstance().warn("Unable to save timings to " + file, e);
+        }
+        finally
+        {
+            QaUtil.safeClose(outputStream);
+        }
+    }
+
+    /**
+     * Retrieves the recorded duration for a WorkUnit.
+     *
+     * @param workUnit the WorkUnit.
+     * @return the recorded duration in milliseconds, or -1 if the WorkUnit's duration is unknown.
+     */
+    public synchronized long getDuration(final WorkUnit workUnit)
+    {
+        String duration = durations.getProperty(workUnit.getDescription());
+
+        if (duration != null)
+        {
+            try
+            {
+                return Long.parseLong(duration);
+            }
+            catch (NumberFormatException ignored)
+            {
+                // Treat as unknown
+            }
+        }
+
+        return -1L;
+    }
+
+    /**
+     * Records the duration of a WorkUnit.
+     *
+     * @param workUnit the WorkUnit.
+     * @param millis the time the WorkUnit took to run, in milliseconds.
+     */
+    public synchronized void record(final WorkUnit workUnit, final long millis)
+    {
+        durations.setProperty(workUnit.getDescription(), String.valueOf(millis));
+    }
+}
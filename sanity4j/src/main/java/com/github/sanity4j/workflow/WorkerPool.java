@@ -0,0 +1,189 @@
+package com.github.sanity4j.workflow;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>WorkerPool is the pool of worker threads shared by {@link WorkUnitGroup}s and
+ * {@link WorkUnitGraph}s. The worker threads themselves are shared by the whole VM, but
+ * the number of workers which may be busy at any one time is bounded per run: a pool set by
+ * {@link #setMaxThreads(int)} applies to the calling thread, and to the work which that
+ * thread's tasks hand to workers. Concurrent runs in the same VM (e.g. a parallel build)
+ * therefore each keep their own limit.</p>
+ *
+ * <p>Callers are expected to take part in the work themselves, running a task on
+ * their own thread whenever {@link #trySubmit(Runnable)} indicates that no worker is free.
+ * This means that nested groups can never dead-lock waiting for a thread.</p>
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+final class WorkerPool
+{
+    /** The pool of worker threads, created as necessary. Idle threads are discarded after a while. */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new WorkerThreadFactory());
+
+    /** The pool used by threads which have not set one, which runs all work on the calling thread. */
+    private static final WorkerPool SEQUENTIAL = new WorkerPool(1);
+
+    /** The pool which work submitted by the current thread is limited by. */
+    private static final ThreadLocal<WorkerPool> CURRENT = new ThreadLocal<WorkerPool>();
+
+    /** The number of worker threads which are available in addition to the calling thread. */
+    private final Semaphore workerPermits;
+
+    /**
+     * Creates a WorkerPool.
+     *
+     * @param maxThreads the maximum number of threads allowed, including the calling thread.
+     */
+    private WorkerPool(final int maxThreads)
+    {
+        // The calling thread always participates, so only (maxThreads - 1) workers are needed.
+        workerPermits = new Semaphore(Math.max(0, maxThreads - 1));
+    }
+
+    /**
+     * Sets the maximum number of threads which may be used to execute work submitted by the calling thread,
+     * including work which is submitted in turn by that work. This should be called before any work is run.
+     *
+     * @param maxThreads the maximum number of threads allowed, including the calling thread.
+     */
+    static void setMaxThreads(final int maxThreads)
+    {
+        CURRENT.set(new WorkerPool(maxThreads));
+    }
+
+    /**
+     * @return the pool which work submitted by the calling thread is limited by.
+     */
+    private static WorkerPool getCurrent()
+    {
+        WorkerPool pool = CURRENT.get();
+        return pool == null ? SEQUENTIAL : pool;
+    }
+
+    /**
+     * Hands the given task to a worker thread, if one of the calling thread's pool is free.
+     *
+     * @param task the task to run.
+     * @return a Future for the task, or null if no worker is free and the caller must run the task itself.
+     */
+    static Future<?> trySubmit(final Runnable task)
+    {
+        final WorkerPool pool = getCurrent();
+        final Semaphore permits = pool.workerPermits;
+
+        if (!permits.tryAcquire())
+        {
+            return null;
+        }
+
+        final Task future = new Task(task);
+
+        // The permit is released even if the task is cancelled before it starts,
+        // as FutureTask.run() returns immediately for a cancelled task.
+        EXECUTOR.execute(new Runnable()
+        {
+            public void run()
+            {
+                // Work which the task submits is limited by the same pool
+                CURRENT.set(pool);
+
+                try
+                {
+                    future.worker = Thread.currentThread();
+                    future.run();
+                }
+                finally
+                {
+                    CURRENT.remove();
+                    permits.release();
+                    future.finished.countDown();
+                }
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Waits for a worker to finish with a task. Unlike {@link Future#get()}, this does not return
+     * as soon as a task is cancelled, but waits until the task has actually stopped running.
+     *
+     * @param future a task returned by {@link #trySubmit(Runnable)}.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    static void awaitFinished(final Future<?> future) throws InterruptedException
+    {
+        ((Task) future).finished.await();
+    }
+
+    /**
+     * Cancels the given tasks, interrupting them if they are running. A task running on the
+     * calling thread is not cancelled, so that a failing task does not interrupt itself.
+     *
+     * @param futures the tasks to cancel. Access to the list is synchronized on the list.
+     */
+    static void cancelAll(final List<Future<?>> futures)
+    {
+        Thread current = Thread.currentThread();
+
+        synchronized (futures)
+        {
+            for (Future<?> future : futures)
+            {
+                if (((Task) future).worker != current)
+                {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * A task which has been handed to a worker thread.
+     */
+    private static final class Task extends FutureTask<Object>
+    {
+        /** Counted down once the worker has finished with the task, whether it ran, failed or was cancelled. */
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        /** The worker thread which the task was handed to, null until the worker picks it up. */
+        private volatile Thread worker;
+
+        /**
+         * Creates a Task.
+         *
+         * @param task the task to run.
+         */
+        private Task(final Runnable task)
+        {
+            super(task, null);
+        }
+    }
+
+    /**
+     * Creates daemon threads for the worker pool, so that the pool does not prevent the VM from exiting.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory
+    {
+        /** The number of threads created so far, used in thread names. */
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        /** {@inheritDoc} */
+        public Thread newThread(final Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "sanity4j-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
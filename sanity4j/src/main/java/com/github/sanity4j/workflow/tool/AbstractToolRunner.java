@@ -4,17 +4,28 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.github.sanity4j.daemon.DaemonClient;
+import com.github.sanity4j.util.ExternalProcessRunner;
 import com.github.sanity4j.util.FileUtil;
+import com.github.sanity4j.util.InProcessJavaRunner;
 import com.github.sanity4j.util.QAException;
+import com.github.sanity4j.util.QaLogger;
 import com.github.sanity4j.util.QaUtil;
 import com.github.sanity4j.util.StringUtil;
 import com.github.sanity4j.util.Tool;
+import com.github.sanity4j.workflow.AbstractFileCollector;
 import com.github.sanity4j.workflow.QAConfig;
+import com.github.sanity4j.workflow.WorkProduct;
 import com.github.sanity4j.workflow.WorkUnit;
+import com.github.sanity4j.workflow.WorkUnitGroup;
 
 /**
  * AbstractToolRunner provides a properties-driven way of running external tools.
@@ -33,6 +44,18 @@ public abstract class AbstractToolRunner implements WorkUnit
     /** The tool version that was found. */
     private String toolVersion;
 
+    /** The source directory to analyse, if not the combined source directory. */
+    private File sourceDir;
+
+    /** The file path where the tool should place it's output, if not the default. */
+    private String resultFile;
+
+    /** True if this runner is analysing one shard of the sources for another runner. */
+    private boolean shard;
+
+    /** The runners for each shard of the sources, if the sources were sharded. */
+    private final List<AbstractToolRunner> shards = new ArrayList<AbstractToolRunner>();
+
     /**
      * Creates an AbstractToolRunner.
      * 
@@ -109,9 +132,58 @@ public abstract class AbstractToolRunner implements WorkUnit
      */
     protected String getToolResultFile()
     {
+        if (resultFile != null)
+        {
+            return resultFile;
+        }
+
         return config.getTempDir().getPath() + File.separatorChar + tool + "_result.xml";
     }
 
+    /**
+     * Subclasses may override this method if the tool analyses each source file independently,
+     * so that the sources can be split into shards which are analysed concurrently.
+     *
+     * @return false, by default tools analyse all the files together.
+     */
+    protected boolean isShardable()
+    {
+        return false;
+    }
+
+    /**
+     * @return true if the sources will be split into shards which are analysed concurrently.
+     */
+    boolean isSharded()
+    {
+        return !shard && isShardable() && config.getToolShards() > 1;
+    }
+
+    /**
+     * @return the runners for each shard from the last run, or an empty list if the sources were not sharded.
+     */
+    List<AbstractToolRunner> getShards()
+    {
+        return shards;
+    }
+
+    /**
+     * Subclasses may override this method if the tool does not need all of the collected files,
+     * so that it can be started before the remaining files have been collected.
+     *
+     * @return the {@link WorkProduct}s which must be available before the tool is run.
+     */
+    protected String[] getInputs()
+    {
+        return new String[] { WorkProduct.SOURCES, WorkProduct.CLASSES, WorkProduct.LIBRARIES };
+    }
+
+    /** @return the source directory to analyse. */
+    protected File getSourceDir()
+    {
+        return sourceDir == null ? config.getCombinedSourceDir() : sourceDir;
+    }
+
     /** @return the QA configuration for the current run. */
     protected QAConfig getConfig()
     {
@@ -126,6 +198,7 @@ public abstract class AbstractToolRunner implements WorkUnit
     protected Map<String, String> getParameterMap()
     {
         Map<String, String> paramMap = config.asParameterMap();
+        paramMap.put("source", getSourceDir().getPath());
 
         String outputFile = getToolResultFile();
         String toolHome = getToolHome();
@@ -191,6 +264,46 @@ public abstract class AbstractToolRunner implements WorkUnit
         return paramMap;
     }
 
+    /**
+     * Runs the tool's Java command line, piping stdout/stderr to out/err. If {@link QAConfig#isUseDaemon()}
+     * is set, the tool is run by the analysis daemon. If {@link QAConfig#isRunToolsInProcess()} is set,
+     * the tool is run within the current VM using the jars from {@link #getToolJars()}. Otherwise (or if
+     * neither is possible) the command line is run as an external process.
+     *
+     * @param commandLine the tool command line.
+     * @param out where to pipe System.out to.
+     * @param err where to pipe System.err to.
+     * @return the exit code of the tool.
+     */
+    protected int runJava(final String commandLine, final OutputStream out, final OutputStream err)
+    {
+        if (config.isUseDaemon())
+        {
+            try
+            {
+                return new DaemonClient(config).runCommandLine(commandLine, getToolJars(), out, err);
+            }
+            catch (IOException e)
+            {
+                QaLogger.getInstance().warn("Unable to use the Sanity4J daemon to run " + tool.getName(), e);
+            }
+        }
+
+        if (config.isRunToolsInProcess() && InProcessJavaRunner.isAvailable())
+        {
+            try
+            {
+                return InProcessJavaRunner.runCommandLine(commandLine, getToolJars(), out, err);
+            }
+            catch (InProcessJavaRunner.UnavailableException e)
+            {
+                QaLogger.getInstance().debug("Unable to run " + tool.getName() + " in-process: " + e.getMessage());
+            }
+        }
+
+        return ExternalProcessRunner.runProcess(commandLine, out, err);
+    }
+
     /**
      * Subclasses must implement this method to actually run the tool.
      * 
@@ -200,11 +313,19 @@ public abstract class AbstractToolRunner implements WorkUnit
 
     /**
      * The entry point for the work unit. This implementation looks up the command line necessary to run the tool, then
-     * calls {@link #runTool(String)}.
+     * calls {@link #runTool(String)}. If {@link #isSharded()}, the tool is run concurrently on each shard of the sources.
      */
     @Override
     public void run()
     {
+        shards.clear();
+
+        if (isSharded())
+        {
+            runShards();
+            return;
+        }
+
         Map<String, String> params = getParameterMap();
         String auxClasspath = params.get("auxClasspath");
         String toolCommandLine = config.getToolCommandLine(tool.getId(), toolVersion);
@@ -212,6 +333,170 @@ public abstract class AbstractToolRunner implements WorkUnit
         runTool(toolCommandLine);
     }
 
+    /**
+     * Splits the sources into shards of roughly equal size, then runs the tool concurrently on each shard.
+     * Each shard's files are linked (or copied) to a separate directory by the shard's runner, and each
+     * shard has its own result file.
+     * All the files in a package are kept in the same shard, as some checks look at the package as a whole
+     * (e.g. for the package description).
+     */
+    private void runShards()
+    {
+        List<List<File>> packages = new ArrayList<List<File>>();
+        findPackages(getSourceDir(), packages);
+
+        final Map<List<File>, Long> packageSizes = new IdentityHashMap<List<File>, Long>();
+
+        for (List<File> files : packages)
+        {
+            packageSizes.put(files, getSize(files));
+        }
+
+        // Assign the largest packages first, each to the shard with the fewest bytes so far
+        Collections.sort(packages, new Comparator<List<File>>()
+        {
+            public int compare(final List<File> package1, final List<File> package2)
+            {
+                return packageSizes.get(package2).compareTo(packageSizes.get(package1));
+            }
+        });
+
+        int shardCount = Math.max(1, Math.min(config.getToolShards(), packages.size()));
+        long[] shardSizes = new long[shardCount];
+        List<List<File>> shardFiles = new ArrayList<List<File>>(shardCount);
+
+        for (int i = 0; i < shardCount; i++)
+        {
+            shardFiles.add(new ArrayList<File>());
+        }
+
+        for (List<File> files : packages)
+        {
+            int smallest = 0;
+
+            for (int i = 1; i < shardCount; i++)
+            {
+                if (shardSizes[i] < shardSizes[smallest])
+                {
+                    smallest = i;
+                }
+            }
+
+            shardSizes[smallest] += packageSizes.get(files);
+            shardFiles.get(smallest).addAll(files);
+        }
+
+        WorkUnitGroup group = new WorkUnitGroup(true, getDescription());
+
+        for (int i = 0; i < shardCount; i++)
+        {
+            final AbstractToolRunner shardRunner = createShard(i);
+            final ShardFileCollector collector = new ShardFileCollector(config, getSourceDir(), shardFiles.get(i),
+                                                                        shardRunner.getSourceDir());
+            shards.add(shardRunner);
+
+            // Each shard collects its own files, so that the shards are collected concurrently
+            group.add(new WorkUnit()
+            {
+                @Override
+                public String getDescription()
+                {
+                    return shardRunner.getDescription();
+                }
+
+                @Override
+                public void run()
+                {
+                    collector.run();
+                    shardRunner.run();
+                }
+            });
+        }
+
+        QaLogger.getInstance().info(getDescription() + " on " + packages.size() + " packages in " + shardCount + " shards.");
+        group.run();
+    }
+
+    /**
+     * Creates a runner for one shard of the sources.
+     *
+     * @param index the index of the shard.
+     * @return the runner for the shard.
+     */
+    private AbstractToolRunner createShard(final int index)
+    {
+        File shardDir = new File(config.getTempDir(), tool.getId() + "-shard-" + index);
+        AbstractToolRunner shardRunner;
+
+        try
+        {
+            shardRunner = getClass().getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new QAException("Error instantiating runner " + getClass().getName(), e);
+        }
+
+        shardRunner.setConfig(config);
+        shardRunner.setToolVersion(toolVersion);
+        shardRunner.setSourceDir(shardDir);
+        shardRunner.resultFile = new File(config.getTempDir(), tool + "_result_" + index + ".xml").getPath();
+        shardRunner.shard = true;
+
+        return shardRunner;
+    }
+
+    /**
+     * Finds the files in each directory of a directory tree.
+     *
+     * @param dir the directory to search.
+     * @param packages the list to add the files in each non-empty directory to.
+     */
+    private static void findPackages(final File dir, final List<List<File>> packages)
+    {
+        File[] children = dir.listFiles();
+
+        if (children != null)
+        {
+            List<File> files = new ArrayList<File>();
+
+            for (File child : children)
+            {
+                if (child.isDirectory())
+                {
+                    findPackages(child, packages);
+                }
+                else
+                {
+                    files.add(child);
+                }
+            }
+
+            if (!files.isEmpty())
+            {
+                packages.add(files);
+            }
+        }
+    }
+
+    /**
+     * Calculates the total size of a list of files.
+     *
+     * @param files the files.
+     * @return the total size of the files, in bytes.
+     */
+    private static long getSize(final List<File> files)
+    {
+        long size = 0;
+
+        for (File file : files)
+        {
+            size += file.length();
+        }
+
+        return size;
+    }
+
     /**
      * Sets the QA configuration for the current run.
      * 
@@ -231,4 +516,103 @@ public abstract class AbstractToolRunner implements WorkUnit
     {
         this.toolVersion = toolVersion;
     }
+
+    /**
+     * Sets the source directory to analyse. By default, the combined source directory is analysed.
+     *
+     * @param sourceDir the source directory to analyse.
+     */
+    public void setSourceDir(final File sourceDir)
+    {
+        this.sourceDir = sourceDir;
+    }
+
+    /**
+     * Collects the files for one shard of the sources into the shard's directory. The files are linked
+     * or copied in the same way as the sources are collected into the combined source directory.
+     */
+    private static final class ShardFileCollector extends AbstractFileCollector
+    {
+        /** The directory which the shard's files are relative to. */
+        private final File sourceDir;
+
+        /** The files in the shard. */
+        private final List<File> files;
+
+        /** The directory to collect the shard's files into. */
+        private final File shardDir;
+
+        /**
+         * Creates a ShardFileCollector.
+         *
+         * @param config the current QA run's configuration.
+         * @param sourceDir the directory which the shard's files are relative to.
+         * @param files the files in the shard.
+         * @param shardDir the directory to collect the shard's files into.
+         */
+        ShardFileCollector(final QAConfig config, final File sourceDir, final List<File> files, final File shardDir)
+        {
+            super(Collections.<String>emptySet(), Collections.<String>emptyList(), shardDir);
+            setLinkFiles(config.isLinkWorkspace());
+
+            this.sourceDir = sourceDir;
+            this.files = files;
+            this.shardDir = shardDir;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void run()
+        {
+            String sourcePath = sourceDir.getPath();
+
+            try
+            {
+                if (shardDir.exists())
+                {
+                    FileUtil.delete(shardDir);
+                }
+
+                for (File file : files)
+                {
+                    copy(file, new File(shardDir, file.getPath().substring(sourcePath.length() + 1)));
+                }
+            }
+            catch (IOException e)
+            {
+                throw new QAException("Unable to collect files into " + shardDir, e);
+            }
+        }
+
+        /** {@inheritDoc} */
+        public String getDescription()
+        {
+            return "Collecting shard files";
+        }
+
+        /** @return "shard" */
+        @Override
+        protected String getItemType()
+        {
+            return "shard";
+        }
+
+        /** @return "shard sources" */
+        @Override
+        protected String getItemDescription()
+        {
+            return "shard sources";
+        }
+
+        /**
+         * Shard files must not be symbolically linked, for the same reasons as the combined sources.
+         *
+         * @return false
+         */
+        @Override
+        protected boolean isSymbolicLinkAllowed()
+        {
+            return false;
+        }
+    }
 }
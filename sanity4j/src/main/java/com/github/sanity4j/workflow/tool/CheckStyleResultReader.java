@@ -3,17 +3,22 @@ package com.github.sanity4j.workflow.tool;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.List;
 import java.util.Properties;
 
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.events.StartElement;
+
 import com.github.sanity4j.model.diagnostic.Diagnostic;
 import com.github.sanity4j.model.diagnostic.DiagnosticFactory;
 import com.github.sanity4j.model.diagnostic.DiagnosticSet;
 import com.github.sanity4j.util.ExtractStats;
 import com.github.sanity4j.util.JaxbMarshaller;
 import com.github.sanity4j.util.QAException;
+import com.github.sanity4j.util.StartElementListener;
 
-import com.github.sanity4j.gen.checkstyle_4_4.Checkstyle;
 import com.github.sanity4j.gen.checkstyle_4_4.Error;
 
 /**
@@ -24,6 +29,12 @@ import com.github.sanity4j.gen.checkstyle_4_4.Error;
  */
 public final class CheckStyleResultReader implements ResultReader
 {
+    /** The package containing the JAXB classes for the CheckStyle results. */
+    static final String JAXB_PACKAGE = "com.github.sanity4j.gen.checkstyle_4_4";
+
+    /** The name of the attribute containing a file's name. */
+    private static final QName NAME_ATTRIBUTE = new QName("name");
+
     /** The properties used to configure the {@link CheckStyleResultReader}. */
     private final Properties properties = new Properties();
 
@@ -52,78 +63,98 @@ public final class CheckStyleResultReader implements ResultReader
     }
 
     /**
-     * Extracts CheckStyle statistics from the given file.
+     * Extracts CheckStyle statistics from the given file. The results are read one
+     * error at a time, so that memory use does not depend on the size of the file.
      */
     public void run()
     {
-        DiagnosticFactory diagnosticFactory = DiagnosticFactory.getInstance(properties);
-        DiagnosticSet diagnostics = stats.getDiagnostics();
-
-        Checkstyle result = (Checkstyle) JaxbMarshaller.unmarshal(checkStyleResultFile,
-                                                                  "com.github.sanity4j.gen.checkstyle_4_4",
-                                                                  "http://com.github.sanity4j/namespace/checkstyle-4.4");
-
-        List<com.github.sanity4j.gen.checkstyle_4_4.File> files = result.getFile();
+        final DiagnosticFactory diagnosticFactory = DiagnosticFactory.getInstance(properties);
+        final DiagnosticSet diagnostics = stats.getDiagnostics();
 
-        for (com.github.sanity4j.gen.checkstyle_4_4.File file : files)
-        {
-            List<Object> errors = file.getContent();
-
-            for (Object obj : errors)
+        JaxbMarshaller.traverse(checkStyleResultFile, JAXB_PACKAGE, "http://com.github.sanity4j/namespace/checkstyle-4.4",
+            new StartElementListener()
             {
-                if (obj instanceof Error)
+                /** The name of the file currently being read. */
+                private String fileName;
+
+                public void foundElement(final StartElement element, final XMLEventReader reader, final Unmarshaller unmarshaller) throws JAXBException
                 {
-                    Error error = (Error) obj;
+                    String name = element.getName().getLocalPart();
 
-                    // Work-around for Checkstyle bugs
-                    if (error.getLine().intValue() == 0)
+                    if ("file".equals(name))
                     {
-                        if (error.getMessage().startsWith("Got an exception - java.lang.RuntimeException:"))
-                        {
-                            // Checkstyle fails on methods that throw custom exception types
-                            // http://sourceforge.net/tracker/index.php?func=detail&aid=1462282&group_id=29721&atid=397078
-                            continue;
-                        }
-                        else
+                        fileName = element.getAttributeByName(NAME_ATTRIBUTE).getValue();
+                    }
+                    else if ("error".equals(name))
+                    {
+                        Error error = unmarshaller.unmarshal(reader, Error.class).getValue();
+                        Diagnostic diagnostic = createDiagnostic(diagnosticFactory, fileName, error);
+
+                        if (diagnostic != null)
                         {
-                            // Some findings are reported as line 0, so change this
-                            // to line 1 so that they appear on reports
-                            error.setLine(BigInteger.ONE);
+                            diagnostics.add(diagnostic);
                         }
                     }
+                }
+            });
+    }
 
-                    Diagnostic diagnostic = diagnosticFactory.getDiagnostic();
-                    diagnostic.setSource(Diagnostic.SOURCE_CHECKSTYLE);
-
-                    try
-                    {
-                        diagnostic.setFileName(stats.getCanonicalPath(file.getName()));
-                    }
-                    catch (IOException e)
-                    {
-                        throw new QAException("Failed to get canonicalPath for " + file.getName(), e);
-                    }
+    /**
+     * Creates a diagnostic for a CheckStyle error.
+     *
+     * @param diagnosticFactory the factory to create the diagnostic with.
+     * @param fileName the name of the file containing the error.
+     * @param error the error.
+     * @return a diagnostic for the error, or null if the error should be ignored.
+     */
+    private Diagnostic createDiagnostic(final DiagnosticFactory diagnosticFactory, final String fileName, final Error error)
+    {
+        // Work-around for Checkstyle bugs
+        if (error.getLine().intValue() == 0)
+        {
+            if (error.getMessage().startsWith("Got an exception - java.lang.RuntimeException:"))
+            {
+                // Checkstyle fails on methods that throw custom exception types
+                // http://sourceforge.net/tracker/index.php?func=detail&aid=1462282&group_id=29721&atid=397078
+                return null;
+            }
+            else
+            {
+                // Some findings are reported as line 0, so change this
+                // to line 1 so that they appear on reports
+                error.setLine(BigInteger.ONE);
+            }
+        }
 
-                    diagnostic.setStartLine(error.getLine().intValue());
-                    diagnostic.setMessage(error.getMessage());
+        Diagnostic diagnostic = diagnosticFactory.getDiagnostic();
+        diagnostic.setSource(Diagnostic.SOURCE_CHECKSTYLE);
 
-                    String ruleName = error.getSource();
-                    ruleName = ruleName.substring(ruleName.lastIndexOf('.') + 1);
-                    diagnostic.setRuleName(ruleName);
-                    diagnostic.calcSeverity();
+        try
+        {
+            diagnostic.setFileName(stats.getCanonicalPath(fileName));
+        }
+        catch (IOException e)
+        {
+            throw new QAException("Failed to get canonicalPath for " + fileName, e);
+        }
 
-                    if (error.getColumn() != null)
-                    {
-                        diagnostic.setStartColumn(error.getColumn().intValue());
-                    }
+        diagnostic.setStartLine(error.getLine().intValue());
+        diagnostic.setMessage(error.getMessage());
 
-                    // Checkstyle is source file based, so guess the class name
-                    diagnostic.setClassName(stats.getClassNameForSourcePath(diagnostic.getFileName()));
+        String ruleName = error.getSource();
+        ruleName = ruleName.substring(ruleName.lastIndexOf('.') + 1);
+        diagnostic.setRuleName(ruleName);
+        diagnostic.calcSeverity();
 
-                    diagnostics.add(diagnostic);
-                }
-            }
+        if (error.getColumn() != null)
+        {
+            diagnostic.setStartColumn(error.getColumn().intValue());
         }
+
+        // Checkstyle is source file based, so guess the class name
+        diagnostic.setClassName(stats.getClassNameForSourcePath(diagnostic.getFileName()));
+
+        return diagnostic;
     }
 
     /** {@inheritDoc} */
@@ -4,13 +4,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.nio.charset.Charset;
 
-import com.github.sanity4j.util.ExternalProcessRunner;
 import com.github.sanity4j.util.FileUtil;
 import com.github.sanity4j.util.QAException;
 import com.github.sanity4j.util.QaLogger;
 import com.github.sanity4j.util.QaUtil;
 import com.github.sanity4j.util.StringUtil;
 import com.github.sanity4j.util.Tool;
+import com.github.sanity4j.workflow.WorkProduct;
 
 /**
  * CheckStyleRunner - a work unit that runs CheckStyle.
@@ -35,7 +35,7 @@ public class CheckStyleRunner extends AbstractToolRunner
     @Override
     protected void runTool(final String commandLine)
     {
-        File resultFile = getConfig().getToolResultFile(Tool.CHECKSTYLE);
+        File resultFile = new File(getToolResultFile());
         FileUtil.createDir(resultFile.getParentFile().getPath());
 
         // Run the process
@@ -47,7 +47,7 @@ public class CheckStyleRunner extends AbstractToolRunner
             stdout = new ByteArrayOutputStream();
             stderr = new ByteArrayOutputStream();
             
-            ExternalProcessRunner.runProcess(commandLine, stdout, stderr);
+            runJava(commandLine, stdout, stderr);
             
             String stdoutString = new String(stdout.toByteArray(), Charset.defaultCharset());
 
@@ -80,6 +80,28 @@ public class CheckStyleRunner extends AbstractToolRunner
         }
     }
 
+    /**
+     * CheckStyle analyses each source file independently, so the sources can be sharded.
+     *
+     * @return true
+     */
+    @Override
+    protected boolean isShardable()
+    {
+        return true;
+    }
+
+    /**
+     * CheckStyle only analyses the source files.
+     *
+     * @return the {@link WorkProduct}s which must be available before the tool is run.
+     */
+    @Override
+    protected String[] getInputs()
+    {
+        return new String[] { WorkProduct.SOURCES };
+    }
+
     /**
      * @return the description of this WorkUnit
      */
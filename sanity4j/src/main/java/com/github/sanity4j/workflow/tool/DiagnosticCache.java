@@ -0,0 +1,290 @@
+package com.github.sanity4j.workflow.tool;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.github.sanity4j.model.diagnostic.Diagnostic;
+import com.github.sanity4j.model.diagnostic.DiagnosticFactory;
+import com.github.sanity4j.util.QaLogger;
+import com.github.sanity4j.util.QaUtil;
+
+/**
+ * DiagnosticCache holds the diagnostics produced by a tool for each source file, along with
+ * the fingerprint of the file which the diagnostics were produced for. The cache is only valid
+ * for the tool configuration identified by its key.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+final class DiagnosticCache
+{
+    /** Identifies the format of the cache file, changed whenever the format changes. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The character set used to encode strings. */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Identifies the tool configuration which produced the diagnostics. */
+    private final String key;
+
+    /** The cached files, keyed by path relative to the source directory. */
+    private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+    /**
+     * Creates an empty DiagnosticCache.
+     *
+     * @param key identifies the tool configuration which produced the diagnostics.
+     */
+    DiagnosticCache(final String key)
+    {
+        this.key = key;
+    }
+
+    /**
+     * Adds the diagnostics for a file to the cache.
+     *
+     * @param path the path of the file, relative to the source directory.
+     * @param hash the fingerprint of the file.
+     * @param diagnostics the diagnostics for the file.
+     */
+    void put(final String path, final String hash, final List<Diagnostic> diagnostics)
+    {
+        entries.put(path, new Entry(hash, diagnostics));
+    }
+
+    /**
+     * Returns the fingerprint of a cached file.
+     *
+     * @param path the path of the file, relative to the source directory.
+     * @return the fingerprint of the file, or null if the file is not cached.
+     */
+    String getHash(final String path)
+    {
+        Entry entry = entries.get(path);
+        return entry == null ? null : entry.hash;
+    }
+
+    /**
+     * Returns the cached diagnostics for a file.
+     *
+     * @param path the path of the file, relative to the source directory.
+     * @return the diagnostics for the file, or an empty list if the file is not cached.
+     */
+    List<Diagnostic> getDiagnostics(final String path)
+    {
+        Entry entry = entries.get(path);
+        return entry == null ? Collections.<Diagnostic>emptyList() : entry.diagnostics;
+    }
+
+    /**
+     * @return the paths of the cached files.
+     */
+    Set<String> getPaths()
+    {
+        return entries.keySet();
+    }
+
+    /**
+     * Loads a cache. An empty cache is returned if the file does not exist, can not be read,
+     * or was written for a different key.
+     *
+     * @param file the file to read from.
+     * @param key identifies the current tool configuration.
+     * @param sourceDir the source directory, used to resolve the file names of the diagnostics.
+     * @param factory the factory used to create the diagnostics.
+     * @return the cache.
+     */
+    static DiagnosticCache load(final File file, final String key, final String sourceDir, final DiagnosticFactory factory)
+    {
+        DiagnosticCache cache = new DiagnosticCache(key);
+
+        if (!file.exists())
+        {
+            return cache;
+        }
+
+        DataInputStream in = null;
+
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            if (in.readInt() != FORMAT_VERSION || !key.equals(readString(in)))
+            {
+                QaLogger.getInstance().info("Discarding out of date results cache " + file);
+                return cache;
+            }
+
+            for (int fileCount = in.readInt(); fileCount > 0; fileCount--)
+            {
+                String path = readString(in);
+                String hash = readString(in);
+                String fileName = new File(sourceDir, path.replace('/', File.separatorChar)).getPath();
+                int diagnosticCount = in.readInt();
+                List<Diagnostic> diagnostics = new ArrayList<Diagnostic>(diagnosticCount);
+
+                for (int i = 0; i < diagnosticCount; i++)
+                {
+                    Diagnostic diagnostic = factory.getDiagnostic();
+                    diagnostic.setFileName(fileName);
+                    diagnostic.setClassName(readString(in));
+                    diagnostic.setStartLine(in.readInt());
+                    diagnostic.setEndLine(in.readInt());
+                    diagnostic.setStartColumn(in.readInt());
+                    diagnostic.setEndColumn(in.readInt());
+                    diagnostic.setSeverity(in.readInt());
+                    diagnostic.setSource(in.readInt());
+                    diagnostic.setRuleName(readString(in));
+                    diagnostic.setMessage(readString(in));
+                    diagnostics.add(diagnostic);
+                }
+
+                cache.put(path, hash, diagnostics);
+            }
+        }
+        catch (IOException e)
+        {
+            QaLogger.getInstance().warn("Unable to read results cache " + file, e);
+            return new DiagnosticCache(key);
+        }
+        finally
+        {
+            QaUtil.safeClose(in);
+        }
+
+        return cache;
+    }
+
+    /**
+     * Saves the cache. The cache is written to a temporary file first, so that an interrupted
+     * save does not leave a partially written cache behind.
+     *
+     * @param file the file to write to.
+     * @throws IOException if there is an error writing the file.
+     */
+    void save(final File file) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+
+        try
+        {
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, key);
+            out.writeInt(entries.size());
+
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet())
+            {
+                Entry entry = mapEntry.getValue();
+
+                writeString(out, mapEntry.getKey());
+                writeString(out, entry.hash);
+                out.writeInt(entry.diagnostics.size());
+
+                for (Diagnostic diagnostic : entry.diagnostics)
+                {
+                    writeString(out, diagnostic.getClassName());
+                    out.writeInt(diagnostic.getStartLine());
+                    out.writeInt(diagnostic.getEndLine());
+                    out.writeInt(diagnostic.getStartColumn());
+                    out.writeInt(diagnostic.getEndColumn());
+                    out.writeInt(diagnostic.getSeverity());
+                    out.writeInt(diagnostic.getSource());
+                    writeString(out, diagnostic.getRuleName());
+                    writeString(out, diagnostic.getMessage());
+                }
+            }
+        }
+        finally
+        {
+            QaUtil.safeClose(out);
+        }
+
+        file.delete();
+
+        if (!tempFile.renameTo(file))
+        {
+            throw new IOException("Unable to create " + file);
+        }
+    }
+
+    /**
+     * Writes a string, which may be null.
+     *
+     * @param out the stream to write to.
+     * @param string the string to write.
+     * @throws IOException if there is an error writing to the stream.
+     */
+    private static void writeString(final DataOutputStream out, final String string) throws IOException
+    {
+        if (string == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            byte[] bytes = string.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in the stream to read from.
+     * @return the string read, may be null.
+     * @throws IOException if there is an error reading from the stream.
+     */
+    private static String readString(final DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+
+        if (length == -1)
+        {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * The cached diagnostics for a single file.
+     */
+    private static final class Entry
+    {
+        /** The fingerprint of the file. */
+        private final String hash;
+
+        /** The diagnostics for the file. */
+        private final List<Diagnostic> diagnostics;
+
+        /**
+         * Creates an Entry.
+         *
+         * @param hash the fingerprint of the file.
+         * @param diagnostics the diagnostics for the file.
+         */
+        private Entry(final String hash, final List<Diagnostic> diagnostics)
+        {
+            this.hash = hash;
+            this.diagnostics = diagnostics;
+        }
+    }
+}
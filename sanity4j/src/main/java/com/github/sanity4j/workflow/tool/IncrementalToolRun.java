@@ -0,0 +1,443 @@
+package com.github.sanity4j.workflow.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.github.sanity4j.model.diagnostic.Diagnostic;
+import com.github.sanity4j.model.diagnostic.DiagnosticFactory;
+import com.github.sanity4j.model.diagnostic.DiagnosticSet;
+import com.github.sanity4j.util.ExtractStats;
+import com.github.sanity4j.util.FileUtil;
+import com.github.sanity4j.util.QAException;
+import com.github.sanity4j.util.QaLogger;
+import com.github.sanity4j.util.QaUtil;
+import com.github.sanity4j.util.StringUtil;
+import com.github.sanity4j.util.Tool;
+import com.github.sanity4j.workflow.FileFingerprints;
+import com.github.sanity4j.workflow.QAConfig;
+import com.github.sanity4j.workflow.QAProcessor;
+import com.github.sanity4j.workflow.WorkUnit;
+
+/**
+ * IncrementalToolRun runs a per-file tool (e.g. Checkstyle or PMD) only on the source files
+ * which have changed since the previous run. The diagnostics for the changed files are
+ * read as usual, and merged with the cached diagnostics for the unchanged files before
+ * they are added to the run's diagnostics.
+ *
+ * <p>The cache is keyed by the Sanity4J version, the tool version, the contents of the tool
+ * configuration file and any files it refers to (e.g. suppressions or included rule sets), the
+ * tool class path and the diagnostic properties, so a change to any of these causes all
+ * the files to be analysed again.</p>
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+final class IncrementalToolRun implements WorkUnit
+{
+    /** The resource containing the default diagnostic properties. */
+    private static final String DIAGNOSTIC_PROPERTIES = "/com/github/sanity4j/model/diagnostic/Diagnostic.properties";
+
+    /** Package descriptions are included when analysing changed files, as some checks look for them. */
+    private static final String PACKAGE_INFO = "package-info.java";
+
+    /** Matches quoted values in configuration files, which may refer to other files. */
+    private static final Pattern QUOTED_VALUE = Pattern.compile("[\"']([^\"'<>\r\n]+)[\"']");
+
+    /** Matches a leading property reference in a path, e.g. "${config_loc}/". */
+    private static final String PROPERTY_PREFIX = "^\\$\\{[^}]*\\}[/\\\\]?";
+
+    /** The configuration for the current run. */
+    private final QAConfig config;
+
+    /** The tool being run. */
+    private final Tool tool;
+
+    /** The tool version being run. */
+    private final String toolVersion;
+
+    /** Runs the tool. */
+    private final AbstractToolRunner runner;
+
+    /** Reads the tool results. */
+    private final ResultReader reader;
+
+    /** The stats to store the results in. */
+    private final ExtractStats stats;
+
+    /** The fingerprints of the collected source files. */
+    private final FileFingerprints fingerprints;
+
+    /**
+     * Creates an IncrementalToolRun.
+     *
+     * @param config the configuration for the current run.
+     * @param tool the tool being run.
+     * @param toolVersion the tool version being run.
+     * @param runner runs the tool.
+     * @param reader reads the tool results.
+     * @param stats the stats to store the results in.
+     * @param fingerprints the fingerprints of the collected source files.
+     */
+    IncrementalToolRun(final QAConfig config, final Tool tool, final String toolVersion,
+                       final AbstractToolRunner runner, final ResultReader reader,
+                       final ExtractStats stats, final FileFingerprints fingerprints)
+    {
+        this.config = config;
+        this.tool = tool;
+        this.toolVersion = toolVersion;
+        this.runner = runner;
+        this.reader = reader;
+        this.stats = stats;
+        this.fingerprints = fingerprints;
+    }
+
+    /** {@inheritDoc} */
+    public String getDescription()
+    {
+        return runner.getDescription();
+    }
+
+    /**
+     * Runs the tool on the changed files, and adds the fresh and cached diagnostics to the stats.
+     */
+    public void run()
+    {
+        DiagnosticFactory factory = DiagnosticFactory.getInstance(config.getToolProperties());
+        File cacheFile = new File(config.getResultCacheDir(), tool.getId() + ".cache");
+        String key = getCacheKey();
+
+        DiagnosticCache previous = DiagnosticCache.load(cacheFile, key, stats.getSourceDirectory(), factory);
+        DiagnosticCache current = new DiagnosticCache(key);
+        Map<String, String> hashes = fingerprints.getHashes();
+        List<String> changed = new ArrayList<String>();
+
+        for (Map.Entry<String, String> entry : hashes.entrySet())
+        {
+            if (entry.getValue().equals(previous.getHash(entry.getKey())))
+            {
+                current.put(entry.getKey(), entry.getValue(), previous.getDiagnostics(entry.getKey()));
+            }
+            else
+            {
+                changed.add(entry.getKey());
+            }
+        }
+
+        QaLogger.getInstance().info(tool.getName() + ": " + changed.size() + " of " + hashes.size()
+                                    + " files changed since the previous run.");
+
+        if (!changed.isEmpty())
+        {
+            analyse(changed, hashes, current);
+        }
+
+        DiagnosticSet diagnostics = stats.getDiagnostics();
+
+        for (String path : current.getPaths())
+        {
+            for (Diagnostic diagnostic : current.getDiagnostics(path))
+            {
+                diagnostics.add(diagnostic);
+            }
+        }
+
+        try
+        {
+            current.save(cacheFile);
+        }
+        catch (IOException e)
+        {
+            QaLogger.getInstance().warn("Unable to write results cache " + cacheFile, e);
+        }
+    }
+
+    /**
+     * Runs the tool on the changed files, and adds the diagnostics for those files to the cache.
+     *
+     * @param changed the paths of the changed files.
+     * @param hashes the fingerprints of all the source files, keyed by path.
+     * @param cache the cache to add the diagnostics to.
+     */
+    private void analyse(final List<String> changed, final Map<String, String> hashes, final DiagnosticCache cache)
+    {
+        File sourceDir = new File(stats.getSourceDirectory());
+        File analysisDir = sourceDir;
+
+        // Only the changed files are copied to the analysis directory, unless every file needs to be analysed anyway
+        if (changed.size() < hashes.size())
+        {
+            analysisDir = new File(config.getTempDir(), tool.getId() + "-incremental");
+            copyChangedFiles(changed, sourceDir, analysisDir);
+            runner.setSourceDir(analysisDir);
+        }
+
+        ExtractStats analysisStats;
+
+        try
+        {
+            analysisStats = new ExtractStats(analysisDir.getPath());
+        }
+        catch (IOException e)
+        {
+            throw new QAException("Unable to determine canonical path for " + analysisDir, e);
+        }
+
+        runner.run();
+        reader.setStats(analysisStats);
+        reader.run();
+
+        Map<String, List<Diagnostic>> diagnosticsByPath = new HashMap<String, List<Diagnostic>>();
+        String analysisPath = analysisStats.getSourceDirectory() + File.separatorChar;
+
+        for (Diagnostic diagnostic : analysisStats.getDiagnostics())
+        {
+            String fileName = diagnostic.getFileName();
+
+            if (fileName == null || !fileName.startsWith(analysisPath))
+            {
+                // Not attributable to a single source file, so can not be cached
+                stats.getDiagnostics().add(diagnostic);
+                continue;
+            }
+
+            String path = fileName.substring(analysisPath.length());
+            diagnostic.setFileName(new File(sourceDir, path).getPath());
+            path = path.replace(File.separatorChar, '/');
+
+            List<Diagnostic> fileDiagnostics = diagnosticsByPath.get(path);
+
+            if (fileDiagnostics == null)
+            {
+                fileDiagnostics = new ArrayList<Diagnostic>();
+                diagnosticsByPath.put(path, fileDiagnostics);
+            }
+
+            fileDiagnostics.add(diagnostic);
+        }
+
+        // Diagnostics for unchanged files which were only included to support the analysis are discarded
+        for (String path : changed)
+        {
+            List<Diagnostic> fileDiagnostics = diagnosticsByPath.get(path);
+            cache.put(path, hashes.get(path), fileDiagnostics == null ? new ArrayList<Diagnostic>() : fileDiagnostics);
+        }
+    }
+
+    /**
+     * Copies the changed files to the directory which the tool will analyse.
+     *
+     * @param changed the paths of the changed files.
+     * @param sourceDir the directory containing all the source files.
+     * @param analysisDir the directory to copy the changed files to.
+     */
+    private void copyChangedFiles(final List<String> changed, final File sourceDir, final File analysisDir)
+    {
+        try
+        {
+            if (analysisDir.exists())
+            {
+                FileUtil.delete(analysisDir);
+            }
+
+            for (String path : changed)
+            {
+                File source = new File(sourceDir, path.replace('/', File.separatorChar));
+                FileUtil.copy(source, new File(analysisDir, path.replace('/', File.separatorChar)));
+
+                File packageInfo = new File(source.getParentFile(), PACKAGE_INFO);
+                String packageInfoPath = path.substring(0, path.lastIndexOf('/') + 1) + PACKAGE_INFO;
+                File packageInfoCopy = new File(analysisDir, packageInfoPath.replace('/', File.separatorChar));
+
+                if (packageInfo.exists() && !packageInfoCopy.exists())
+                {
+                    FileUtil.copy(packageInfo, packageInfoCopy);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new QAException("Unable to copy changed files to " + analysisDir, e);
+        }
+    }
+
+    /**
+     * Calculates the cache key, which identifies everything apart from the source files which affects the results.
+     *
+     * @return the cache key.
+     */
+    private String getCacheKey()
+    {
+        StringBuilder key = new StringBuilder();
+        key.append(QAProcessor.QA_VERSION).append('|').append(tool.getId()).append('|').append(toolVersion);
+
+        try
+        {
+            // The tool configuration, which may be a file, a class path resource or a list of built-in rule sets
+            String toolConfig = config.getToolConfig(tool.getId(), toolVersion);
+
+            if (!StringUtil.empty(toolConfig))
+            {
+                File toolConfigFile = new File(toolConfig);
+
+                if (toolConfigFile.isFile())
+                {
+                    appendConfigFile(key, toolConfigFile, new HashSet<File>());
+                }
+                else
+                {
+                    key.append('|').append(FileFingerprints.hash(toolConfig));
+                    key.append('|').append(FileFingerprints.hash(readResource('/' + toolConfig)));
+                }
+            }
+
+            // The tool class path, which includes the tool's own rules and any configuration class path
+            StringBuilder classpath = new StringBuilder();
+
+            for (String path : runner.getToolJars())
+            {
+                appendStamp(classpath, new File(path));
+            }
+
+            key.append('|').append(FileFingerprints.hash(classpath.toString()));
+
+            // The external properties, which may override the diagnostic properties
+            String externalProperties = config.getExternalPropertiesPath();
+
+            if (!StringUtil.empty(externalProperties) && new File(externalProperties).isFile())
+            {
+                key.append('|').append(FileFingerprints.hash(FileUtil.read(new File(externalProperties))));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new QAException("Unable to read configuration for " + tool.getName(), e);
+        }
+
+        // The diagnostic properties, which control severities and exclusions
+        key.append('|').append(FileFingerprints.hash(readResource(DIAGNOSTIC_PROPERTIES)));
+
+        StringBuilder properties = new StringBuilder();
+
+        for (Map.Entry<Object, Object> entry : new TreeMap<Object, Object>(config.getToolProperties()).entrySet())
+        {
+            properties.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+
+        key.append('|').append(FileFingerprints.hash(properties.toString()));
+
+        return key.toString();
+    }
+
+    /**
+     * Adds the hash of a configuration file to the cache key, followed by the hashes of any other files
+     * which it refers to (e.g. Checkstyle suppression files or PMD rule sets), and so on. Any quoted value
+     * in the file which names an existing file is treated as a reference, relative to the configuration
+     * file's directory if it is not absolute. A leading property such as <code>${config_loc}</code> is
+     * taken to refer to the configuration file's directory.
+     *
+     * @param key the cache key to add to.
+     * @param configFile the configuration file.
+     * @param visited the canonical paths of the files which have already been added.
+     * @throws IOException if there is an error reading a file.
+     */
+    private static void appendConfigFile(final StringBuilder key, final File configFile, final Set<File> visited)
+        throws IOException
+    {
+        if (!visited.add(configFile.getCanonicalFile()))
+        {
+            return;
+        }
+
+        byte[] content = FileUtil.read(configFile);
+        key.append('|').append(FileFingerprints.hash(content));
+
+        Matcher matcher = QUOTED_VALUE.matcher(new String(content, "UTF-8"));
+
+        while (matcher.find())
+        {
+            String path = matcher.group(1).trim().replaceFirst(PROPERTY_PREFIX, "");
+            File referenced = new File(path);
+
+            if (!referenced.isAbsolute())
+            {
+                referenced = new File(configFile.getAbsoluteFile().getParentFile(), path);
+            }
+
+            if (path.length() > 0 && referenced.isFile())
+            {
+                appendConfigFile(key, referenced, visited);
+            }
+        }
+    }
+
+    /**
+     * Adds the size and modification time of a file to a key, or of every file within a directory.
+     *
+     * @param key the key to add to.
+     * @param file the file or directory.
+     */
+    private static void appendStamp(final StringBuilder key, final File file)
+    {
+        File[] children = file.listFiles();
+
+        if (children == null)
+        {
+            key.append(file.getAbsolutePath()).append(':').append(file.length()).append(':')
+               .append(file.lastModified()).append('\n');
+        }
+        else
+        {
+            Arrays.sort(children);
+
+            for (File child : children)
+            {
+                appendStamp(key, child);
+            }
+        }
+    }
+
+    /**
+     * Reads a class path resource.
+     *
+     * @param resourceName the name of the resource.
+     * @return the resource contents, or an empty array if the resource does not exist.
+     */
+    private static byte[] readResource(final String resourceName)
+    {
+        InputStream in = IncrementalToolRun.class.getResourceAsStream(resourceName);
+
+        if (in == null)
+        {
+            return new byte[0];
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try
+        {
+            QaUtil.copy(in, out);
+        }
+        catch (IOException e)
+        {
+            throw new QAException("Unable to read " + resourceName, e);
+        }
+        finally
+        {
+            QaUtil.safeClose(in);
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -38,6 +38,17 @@ public class JaCoCoMergeRunner extends AbstractToolRunner
         return null;
     }
 
+    /**
+     * The merge only needs the coverage data files, which are not collected.
+     *
+     * @return an empty array, as the merge does not need any collected files.
+     */
+    @Override
+    protected String[] getInputs()
+    {
+        return new String[0];
+    }
+
     /**
      * @return the description of this WorkUnit.
      */
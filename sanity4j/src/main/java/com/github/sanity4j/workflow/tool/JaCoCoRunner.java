@@ -1,6 +1,7 @@
 package com.github.sanity4j.workflow.tool;
 
 import com.github.sanity4j.util.Tool;
+import com.github.sanity4j.workflow.WorkProduct;
 
 /**
  * JaCoCoRunner - work unit which produces a JaCoCo report.
@@ -34,6 +35,21 @@ public class JaCoCoRunner extends AbstractToolRunner
       JaCoCoResultReader.setConfig(getConfig());
    }
    
+   /**
+    * The report needs the merged coverage data, if the coverage data files are being merged.
+    *
+    * @return the {@link WorkProduct}s which must be available before the tool is run.
+    */
+   @Override
+   protected String[] getInputs()
+   {
+       return new String[]
+       {
+           WorkProduct.SOURCES, WorkProduct.CLASSES, WorkProduct.LIBRARIES,
+           WorkProduct.getToolResult(Tool.JACOCO_MERGE)
+       };
+   }
+
    /**
     * @return the description of this WorkUnit.
     */
@@ -4,13 +4,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.nio.charset.Charset;
 
-import com.github.sanity4j.util.ExternalProcessRunner;
 import com.github.sanity4j.util.FileUtil;
 import com.github.sanity4j.util.QAException;
 import com.github.sanity4j.util.QaLogger;
 import com.github.sanity4j.util.QaUtil;
 import com.github.sanity4j.util.StringUtil;
 import com.github.sanity4j.util.Tool;
+import com.github.sanity4j.workflow.WorkProduct;
 
 /**
  * PmdRunner - a work unit that runs PMD 5.x.
@@ -35,7 +35,7 @@ public class Pmd5Runner extends AbstractToolRunner
     @Override
     public void runTool(final String commandLine)
     {
-        File resultFile = getConfig().getToolResultFile(Tool.PMD);
+        File resultFile = new File(getToolResultFile());
         FileUtil.createDir(resultFile.getParentFile().getPath());
 
         // Run the process
@@ -48,7 +48,7 @@ public class Pmd5Runner extends AbstractToolRunner
             stderr = new ByteArrayOutputStream();
 
             // Run the process
-            int result = ExternalProcessRunner.runProcess(commandLine, stdout, stderr);
+            int result = runJava(commandLine, stdout, stderr);
 
             String stderrString = new String(stderr.toByteArray(), Charset.defaultCharset());
             
@@ -70,6 +70,28 @@ public class Pmd5Runner extends AbstractToolRunner
         }
     }
 
+    /**
+     * PMD analyses each source file independently, so the sources can be sharded.
+     *
+     * @return true
+     */
+    @Override
+    protected boolean isShardable()
+    {
+        return true;
+    }
+
+    /**
+     * PMD only analyses the source files.
+     *
+     * @return the {@link WorkProduct}s which must be available before the tool is run.
+     */
+    @Override
+    protected String[] getInputs()
+    {
+        return new String[] { WorkProduct.SOURCES };
+    }
+
     /**
      * @return the description of this WorkUnit
      */
@@ -2,17 +2,21 @@ package com.github.sanity4j.workflow.tool;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
 import java.util.Properties;
 
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.events.StartElement;
+
 import com.github.sanity4j.gen.pmdcpd_4_2_1.Duplication;
-import com.github.sanity4j.gen.pmdcpd_4_2_1.PmdCpd;
 import com.github.sanity4j.model.diagnostic.Diagnostic;
 import com.github.sanity4j.model.diagnostic.DiagnosticFactory;
 import com.github.sanity4j.model.diagnostic.DiagnosticSet;
 import com.github.sanity4j.util.ExtractStats;
 import com.github.sanity4j.util.JaxbMarshaller;
 import com.github.sanity4j.util.QAException;
+import com.github.sanity4j.util.StartElementListener;
 
 /**
  * PmdCpdResultReader - Translates PMD CPD 5.x results into the common format used by the QA tool.
@@ -22,6 +26,9 @@ import com.github.sanity4j.util.QAException;
  */
 public final class PmdCpd5ResultReader implements ResultReader
 {
+   /** The package containing the JAXB classes for the PMD CPD results. */
+   static final String JAXB_PACKAGE = "com.github.sanity4j.gen.pmdcpd_4_2_1";
+
    /** The rule name to use for Diagnostics, as PMD-CPD doesn't have rules. */
    private static final String PMD_CPD_RULE_NAME = "DoNotCopyAndPasteCode";
 
@@ -69,69 +76,80 @@ public final class PmdCpd5ResultReader implements ResultReader
           // PMD-CPD 5.x doesn't output the empty <pmd-cpd> element if there are no results
           return;
        }
-
-       if (pmdCpdResultFile.exists() && pmdCpdResultFile.length() < 60)
-       {
-          // PMD-CPD 5.6.x outputs the empty <pmd-cpd> element as self-closing, which blows up jaxb with:
-          // SAXParseException pmd-cpd must be followed by either attribute specifications, ">" or "/>". 
-          return;
-       }
       
-       DiagnosticFactory diagnosticFactory = DiagnosticFactory.getInstance(properties);
-       DiagnosticSet diagnostics = stats.getDiagnostics();
+       final DiagnosticFactory diagnosticFactory = DiagnosticFactory.getInstance(properties);
+       final DiagnosticSet diagnostics = stats.getDiagnostics();
 
-       PmdCpd result = (PmdCpd)
-           JaxbMarshaller.unmarshal(pmdCpdResultFile, "com.github.sanity4j.gen.pmdcpd_4_2_1", "http://com.github.sanity4j/namespace/pmdcpd-4.2.1");
-
-       List<Duplication> duplications = result.getDuplication();
+       // The results are read one duplication at a time, so that memory use does not depend on the size of the file.
+       JaxbMarshaller.traverse(pmdCpdResultFile, JAXB_PACKAGE, "http://com.github.sanity4j/namespace/pmdcpd-4.2.1",
+           new StartElementListener()
+           {
+               @Override
+               public void foundElement(final StartElement element, final XMLEventReader reader, final Unmarshaller unmarshaller) throws JAXBException
+               {
+                   if ("duplication".equals(element.getName().getLocalPart()))
+                   {
+                       Duplication duplication = unmarshaller.unmarshal(reader, Duplication.class).getValue();
+                       addDiagnostics(diagnosticFactory, diagnostics, duplication);
+                   }
+               }
+           });
+   }
 
-       for (Duplication duplication : duplications)
+   /**
+    * Adds the diagnostics for a duplication, one for each copy of the code.
+    *
+    * @param diagnosticFactory the factory to create the diagnostics with.
+    * @param diagnostics the set to add the diagnostics to.
+    * @param duplication the duplication.
+    */
+   private void addDiagnostics(final DiagnosticFactory diagnosticFactory, final DiagnosticSet diagnostics,
+                               final Duplication duplication)
+   {
+       try
        {
-           try
-           {
-               com.github.sanity4j.gen.pmdcpd_4_2_1.File file1 = duplication.getFile().get(0);
-               com.github.sanity4j.gen.pmdcpd_4_2_1.File file2 = duplication.getFile().get(1);
-               String fileName1 = stats.getCanonicalPath(file1.getPath()).substring(stats.getSourceDirectory().length() + 1);
-               String fileName2 = stats.getCanonicalPath(file2.getPath()).substring(stats.getSourceDirectory().length() + 1);
-
-               // severity is based on the size of the duplication
-               int severity = duplication.getLines().intValue() < SEVERITY_THRESHOLD
-                              ? Diagnostic.SEVERITY_LOW
-                              : Diagnostic.SEVERITY_MODERATE;
-
-               Diagnostic diagnostic = diagnosticFactory.getDiagnostic();
-               diagnostic.setSource(Diagnostic.SOURCE_PMD_CPD);
-               diagnostic.setRuleName(PMD_CPD_RULE_NAME);
-               diagnostic.setSeverity(severity);
-               diagnostic.setFileName(stats.getCanonicalPath(file1.getPath()));
-               diagnostic.setStartLine(file1.getLine().intValue());
-               diagnostic.setEndLine(file1.getLine().intValue() + duplication.getLines().intValue());
-               diagnostic.setMessage("Duplicate of " + fileName2 + ":\n" + duplication.getCodefragment());
-
-               // CPD is source file based, so guess the class name
-               diagnostic.setClassName(stats.getClassNameForSourcePath(diagnostic.getFileName()));
-
-               diagnostics.add(diagnostic);
-
-               diagnostic = diagnosticFactory.getDiagnostic();
-               diagnostic.setSource(Diagnostic.SOURCE_PMD_CPD);
-               diagnostic.setRuleName(PMD_CPD_RULE_NAME);
-               diagnostic.setSeverity(severity);
-               diagnostic.setFileName(stats.getCanonicalPath(file2.getPath()));
-               diagnostic.setStartLine(file2.getLine().intValue());
-               diagnostic.setEndLine(file2.getLine().intValue() + duplication.getLines().intValue());
-               diagnostic.setMessage("Duplicate of " + fileName1 + ":\n" + duplication.getCodefragment());
-               diagnostic.setClassName(stats.getClassNameForSourcePath(diagnostic.getFileName()));
-
-               // CPD is source file based, so guess the class name
-               diagnostic.setClassName(stats.getClassNameForSourcePath(diagnostic.getFileName()));
-
-               diagnostics.add(diagnostic);
-           }
-           catch (IOException e)
-           {
-               throw new QAException("Failed to obtain canonical path", e);
-           }
+           com.github.sanity4j.gen.pmdcpd_4_2_1.File file1 = duplication.getFile().get(0);
+           com.github.sanity4j.gen.pmdcpd_4_2_1.File file2 = duplication.getFile().get(1);
+           String fileName1 = stats.getCanonicalPath(file1.getPath()).substring(stats.getSourceDirectory().length() + 1);
+           String fileName2 = stats.getCanonicalPath(file2.getPath()).substring(stats.getSourceDirectory().length() + 1);
+
+           // severity is based on the size of the duplication
+           int severity = duplication.getLines().intValue() < SEVERITY_THRESHOLD
+                          ? Diagnostic.SEVERITY_LOW
+                          : Diagnostic.SEVERITY_MODERATE;
+
+           Diagnostic diagnostic = diagnosticFactory.getDiagnostic();
+           diagnostic.setSource(Diagnostic.SOURCE_PMD_CPD);
+           diagnostic.setRuleName(PMD_CPD_RULE_NAME);
+           diagnostic.setSeverity(severity);
+           diagnostic.setFileName(stats.getCanonicalPath(file1.getPath()));
+           diagnostic.setStartLine(file1.getLine().intValue());
+           diagnostic.setEndLine(file1.getLine().intValue() + duplication.getLines().intValue());
+           diagnostic.setMessage("Duplicate of " + fileName2 + ":\n" + duplication.getCodefragment());
+
+           // CPD is source file based, so guess the class name
+           diagnostic.setClassName(stats.getClassNameForSourcePath(diagnostic.getFileName()));
+
+           diagnostics.add(diagnostic);
+
+           diagnostic = diagnosticFactory.getDiagnostic();
+           diagnostic.setSource(Diagnostic.SOURCE_PMD_CPD);
+           diagnostic.setRuleName(PMD_CPD_RULE_NAME);
+           diagnostic.setSeverity(severity);
+           diagnostic.setFileName(stats.getCanonicalPath(file2.getPath()));
+           diagnostic.setStartLine(file2.getLine().intValue());
+           diagnostic.setEndLine(file2.getLine().intValue() + duplication.getLines().intValue());
+           diagnostic.setMessage("Duplicate of " + fileName1 + ":\n" + duplication.getCodefragment());
+           diagnostic.setClassName(stats.getClassNameForSourcePath(diagnostic.getFileName()));
+
+           // CPD is source file based, so guess the class name
+           diagnostic.setClassName(stats.getClassNameForSourcePath(diagnostic.getFileName()));
+
+           diagnostics.add(diagnostic);
+       }
+       catch (IOException e)
+       {
+           throw new QAException("Failed to obtain canonical path", e);
        }
    }
 
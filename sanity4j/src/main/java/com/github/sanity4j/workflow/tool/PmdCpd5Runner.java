@@ -7,13 +7,13 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Map;
 
-import com.github.sanity4j.util.ExternalProcessRunner;
 import com.github.sanity4j.util.FileUtil;
 import com.github.sanity4j.util.QAException;
 import com.github.sanity4j.util.QaLogger;
 import com.github.sanity4j.util.QaUtil;
 import com.github.sanity4j.util.StringUtil;
 import com.github.sanity4j.util.Tool;
+import com.github.sanity4j.workflow.WorkProduct;
 
 /**
  * PmdCpdRunner - a work unit that runs PMD CPD 5.x.
@@ -50,7 +50,7 @@ public class PmdCpd5Runner extends AbstractToolRunner
             // PMD CPD sends its output to standard out, so we need to intercept it and write it to a file ourselves
             stdout = new FileOutputStream(pmdCpdXmlFile);
             
-            int result = ExternalProcessRunner.runProcess(commandLine, stdout, stderr);
+            int result = runJava(commandLine, stdout, stderr);
 
             // Result code 4 is "DUPLICATE_CODE_FOUND", and is ok.
             if (result != 0 && result != 4)
@@ -102,6 +102,17 @@ public class PmdCpd5Runner extends AbstractToolRunner
         return params;
     }
     
+    /**
+     * PMD CPD only analyses the source files.
+     *
+     * @return the {@link WorkProduct}s which must be available before the tool is run.
+     */
+    @Override
+    protected String[] getInputs()
+    {
+        return new String[] { WorkProduct.SOURCES };
+    }
+
     /**
      * @return the description of this WorkUnit.
      */
@@ -5,9 +5,14 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
-import java.util.List;
 import java.util.Properties;
 
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.events.StartElement;
+
 import com.github.sanity4j.model.diagnostic.Diagnostic;
 import com.github.sanity4j.model.diagnostic.DiagnosticFactory;
 import com.github.sanity4j.model.diagnostic.DiagnosticSet;
@@ -15,8 +20,8 @@ import com.github.sanity4j.util.ExtractStats;
 import com.github.sanity4j.util.FileUtil;
 import com.github.sanity4j.util.JaxbMarshaller;
 import com.github.sanity4j.util.QAException;
+import com.github.sanity4j.util.StartElementListener;
 
-import com.github.sanity4j.gen.pmd_4_2_1.Pmd;
 import com.github.sanity4j.gen.pmd_4_2_1.Suppressedviolation;
 import com.github.sanity4j.gen.pmd_4_2_1.Violation;
 
@@ -28,6 +33,12 @@ import com.github.sanity4j.gen.pmd_4_2_1.Violation;
  */
 public final class PmdResultReader implements ResultReader
 {
+    /** The package containing the JAXB classes for the PMD results. */
+    static final String JAXB_PACKAGE = "com.github.sanity4j.gen.pmd_4_2_1";
+
+    /** The name of the attribute containing a file's name. */
+    private static final QName NAME_ATTRIBUTE = new QName("name");
+
     /** The properties used to configure this {@link ResultReader}. */
     private final Properties properties = new Properties();
 
@@ -80,92 +91,125 @@ public final class PmdResultReader implements ResultReader
     }
 
     /**
-     * Extracts the PMD statistics from the pmdResultFile.
+     * Extracts the PMD statistics from the pmdResultFile. The results are read one
+     * violation at a time, so that memory use does not depend on the size of the file.
      */
     @Override
     public void run()
     {
-        Pmd result = null;
+        final DiagnosticFactory diagnosticFactory = DiagnosticFactory.getInstance(properties);
+        final DiagnosticSet diagnostics = stats.getDiagnostics();
         
         try
         {
-            result = (Pmd) JaxbMarshaller.unmarshal(pmdResultFile, "com.github.sanity4j.gen.pmd_4_2_1",
-                                                    "http://com.github.sanity4j/namespace/pmd-4.2.1");
+            JaxbMarshaller.traverse(pmdResultFile, JAXB_PACKAGE, "http://com.github.sanity4j/namespace/pmd-4.2.1",
+                new StartElementListener()
+                {
+                    /** The name of the file currently being read. */
+                    private String fileName;
+
+                    @Override
+                    public void foundElement(final StartElement element, final XMLEventReader reader, final Unmarshaller unmarshaller) throws JAXBException
+                    {
+                        String name = element.getName().getLocalPart();
+
+                        if ("file".equals(name))
+                        {
+                            fileName = element.getAttributeByName(NAME_ATTRIBUTE).getValue();
+                        }
+                        else if ("violation".equals(name))
+                        {
+                            Violation violation = unmarshaller.unmarshal(reader, Violation.class).getValue();
+                            diagnostics.add(createDiagnostic(diagnosticFactory, fileName, violation));
+                        }
+                        else if ("suppressedviolation".equals(name))
+                        {
+                            Suppressedviolation violation = unmarshaller.unmarshal(reader, Suppressedviolation.class).getValue();
+                            diagnostics.add(createDiagnostic(diagnosticFactory, violation));
+                        }
+                    }
+                });
         }
-        catch (Exception e)
+        catch (QAException e)
         {
             String content = fileToString(pmdResultFile);
             throw new QAException("Error parsing PMD Result file [" + pmdResultFile + "] [" + content + "]", e);
         }
-        
-        List<com.github.sanity4j.gen.pmd_4_2_1.File> files = result.getFile();
+    }
 
-        DiagnosticFactory diagnosticFactory = DiagnosticFactory.getInstance(properties);
-        DiagnosticSet diagnostics = stats.getDiagnostics();
-        
-        for (com.github.sanity4j.gen.pmd_4_2_1.File file : files)
-        {
-            for (Violation violation : file.getViolation())
-            {
-                Diagnostic diagnostic = diagnosticFactory.getDiagnostic();
-                diagnostic.setSource(Diagnostic.SOURCE_PMD);
+    /**
+     * Creates a diagnostic for a PMD violation.
+     *
+     * @param diagnosticFactory the factory to create the diagnostic with.
+     * @param fileName the name of the file containing the violation.
+     * @param violation the violation.
+     * @return a diagnostic for the violation.
+     */
+    private Diagnostic createDiagnostic(final DiagnosticFactory diagnosticFactory, final String fileName, final Violation violation)
+    {
+        Diagnostic diagnostic = diagnosticFactory.getDiagnostic();
+        diagnostic.setSource(Diagnostic.SOURCE_PMD);
 
-                try
-                {
-                    diagnostic.setFileName(stats.getCanonicalPath(file.getName()));
-                }
-                catch (IOException e)
-                {
-                    throw new QAException("Failed to obtain canonical path for " + file.getName(), e);
-                }
-
-                diagnostic.setStartLine(violation.getBeginline().intValue());
-                diagnostic.setEndLine(violation.getEndline().intValue());
-                diagnostic.setStartColumn(violation.getBegincolumn().intValue());
-                diagnostic.setEndColumn(violation.getEndcolumn().intValue());
-                diagnostic.setRuleName(violation.getRule());
-                diagnostic.setMessage(violation.getValue());
-                diagnostic.calcSeverity();
-
-                // Some diagnostics don't include the class name,
-                // but we can determine it from the source name.
-                if (violation.getClassName() == null)
-                {
-                    String className = stats.getClassNameForSourcePath(diagnostic.getFileName());
-                    diagnostic.setClassName(className);
-                }
-                else
-                {
-                    diagnostic.setClassName(violation.getPackage() + '.' + violation.getClassName());
-                }
+        try
+        {
+            diagnostic.setFileName(stats.getCanonicalPath(fileName));
+        }
+        catch (IOException e)
+        {
+            throw new QAException("Failed to obtain canonical path for " + fileName, e);
+        }
 
-                diagnostics.add(diagnostic);
-            }
+        diagnostic.setStartLine(violation.getBeginline().intValue());
+        diagnostic.setEndLine(violation.getEndline().intValue());
+        diagnostic.setStartColumn(violation.getBegincolumn().intValue());
+        diagnostic.setEndColumn(violation.getEndcolumn().intValue());
+        diagnostic.setRuleName(violation.getRule());
+        diagnostic.setMessage(violation.getValue());
+        diagnostic.calcSeverity();
+
+        // Some diagnostics don't include the class name,
+        // but we can determine it from the source name.
+        if (violation.getClassName() == null)
+        {
+            String className = stats.getClassNameForSourcePath(diagnostic.getFileName());
+            diagnostic.setClassName(className);
         }
+        else
+        {
+            diagnostic.setClassName(violation.getPackage() + '.' + violation.getClassName());
+        }
+
+        return diagnostic;
+    }
 
-        // Do not suppress violations
-        for (Suppressedviolation violation : result.getSuppressedviolation())
+    /**
+     * Creates a diagnostic for a suppressed PMD violation, as warnings should not be suppressed.
+     *
+     * @param diagnosticFactory the factory to create the diagnostic with.
+     * @param violation the suppressed violation.
+     * @return a diagnostic for the suppressed violation.
+     */
+    private Diagnostic createDiagnostic(final DiagnosticFactory diagnosticFactory, final Suppressedviolation violation)
+    {
+        Diagnostic diagnostic = diagnosticFactory.getDiagnostic();
+
+        try
+        {
+            diagnostic.setFileName(stats.getCanonicalPath(violation.getFilename()));
+        }
+        catch (IOException e)
         {
-            Diagnostic diagnostic = diagnosticFactory.getDiagnostic();
-
-            try
-            {
-                diagnostic.setFileName(stats.getCanonicalPath(violation.getFilename()));
-            }
-            catch (IOException e)
-            {
-                throw new QAException("Failed to obtain canonical path for " + violation.getFilename(), e);
-            }
-
-            diagnostic.setSource(Diagnostic.SOURCE_OTHER);
-            diagnostic.setRuleName("DoNotSuppressWarnings");
-            diagnostic.setMessage("Do not use the SuppressWarnings annotation");
-            diagnostic.setClassName(stats.getClassNameForSourcePath(diagnostic.getFileName()));
-            diagnostic.calcSeverity();
-            diagnostic.setStartLine(1);
-            diagnostic.setEndLine(1);
-            diagnostics.add(diagnostic);
+            throw new QAException("Failed to obtain canonical path for " + violation.getFilename(), e);
         }
+
+        diagnostic.setSource(Diagnostic.SOURCE_OTHER);
+        diagnostic.setRuleName("DoNotSuppressWarnings");
+        diagnostic.setMessage("Do not use the SuppressWarnings annotation");
+        diagnostic.setClassName(stats.getClassNameForSourcePath(diagnostic.getFileName()));
+        diagnostic.calcSeverity();
+        diagnostic.setStartLine(1);
+        diagnostic.setEndLine(1);
+        return diagnostic;
     }
 
     /**
@@ -0,0 +1,119 @@
+package com.github.sanity4j.workflow.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import com.github.sanity4j.model.diagnostic.Diagnostic;
+import com.github.sanity4j.model.diagnostic.DiagnosticSet;
+import com.github.sanity4j.util.ExtractStats;
+import com.github.sanity4j.util.QAException;
+
+/**
+ * ShardedResultReader reads the results of a tool which may have been run on several shards
+ * of the sources (see {@link AbstractToolRunner#isSharded()}). Each shard's result file is
+ * read by the tool's usual reader, and the diagnostics are mapped from the shard's directory
+ * back to the source directory.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+final class ShardedResultReader implements ResultReader
+{
+    /** The runner whose results are being read. */
+    private final AbstractToolRunner runner;
+
+    /** The reader for the tool's results. */
+    private final ResultReader reader;
+
+    /** The ExtractStats to add the results to. */
+    private ExtractStats stats;
+
+    /** The result file to read from, if the sources were not sharded. */
+    private File resultFile;
+
+    /**
+     * Creates a ShardedResultReader.
+     *
+     * @param runner the runner whose results are being read.
+     * @param reader the reader for the tool's results.
+     */
+    ShardedResultReader(final AbstractToolRunner runner, final ResultReader reader)
+    {
+        this.runner = runner;
+        this.reader = reader;
+    }
+
+    /** {@inheritDoc} */
+    public void setProperties(final Properties properties)
+    {
+        reader.setProperties(properties);
+    }
+
+    /** {@inheritDoc} */
+    public void setStats(final ExtractStats stats)
+    {
+        this.stats = stats;
+    }
+
+    /** {@inheritDoc} */
+    public void setResultFile(final File resultFile)
+    {
+        this.resultFile = resultFile;
+    }
+
+    /** {@inheritDoc} */
+    public String getDescription()
+    {
+        return reader.getDescription();
+    }
+
+    /**
+     * Reads the result file for each shard, or the single result file if the sources were not sharded.
+     */
+    public void run()
+    {
+        if (runner.getShards().isEmpty())
+        {
+            reader.setStats(stats);
+            reader.setResultFile(resultFile);
+            reader.run();
+            return;
+        }
+
+        DiagnosticSet diagnostics = stats.getDiagnostics();
+
+        for (AbstractToolRunner shard : runner.getShards())
+        {
+            ExtractStats shardStats;
+
+            try
+            {
+                shardStats = new ExtractStats(shard.getSourceDir().getPath());
+            }
+            catch (IOException e)
+            {
+                throw new QAException("Unable to determine canonical path for " + shard.getSourceDir(), e);
+            }
+
+            reader.setStats(shardStats);
+            reader.setResultFile(new File(shard.getToolResultFile()));
+            reader.run();
+
+            // The class names are the same, as they are relative to the shard directory.
+            String shardPath = shardStats.getSourceDirectory() + File.separatorChar;
+
+            for (Diagnostic diagnostic : shardStats.getDiagnostics())
+            {
+                String fileName = diagnostic.getFileName();
+
+                if (fileName != null && fileName.startsWith(shardPath))
+                {
+                    diagnostic.setFileName(new File(stats.getSourceDirectory(), fileName.substring(shardPath.length())).getPath());
+                }
+
+                diagnostics.add(diagnostic);
+            }
+        }
+    }
+}
@@ -5,7 +5,11 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Properties;
 
-import com.github.sanity4j.gen.spotbugs_3_1_6.BugCollection;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.events.StartElement;
+
 import com.github.sanity4j.gen.spotbugs_3_1_6.BugCollection.BugInstance;
 import com.github.sanity4j.gen.spotbugs_3_1_6.SourceLine;
 import com.github.sanity4j.model.diagnostic.Diagnostic;
@@ -14,6 +18,7 @@ import com.github.sanity4j.model.diagnostic.DiagnosticSet;
 import com.github.sanity4j.util.ExtractStats;
 import com.github.sanity4j.util.JaxbMarshaller;
 import com.github.sanity4j.util.QAException;
+import com.github.sanity4j.util.StartElementListener;
 
 /**
  * SpotBugsResultReader - Translates SpotBugs results into the common format used by the QA tool.
@@ -23,6 +28,9 @@ import com.github.sanity4j.util.QAException;
  */
 public final class SpotBugsResultReader implements ResultReader
 {
+    /** The package containing the JAXB classes for the SpotBugs results. */
+    static final String JAXB_PACKAGE = "com.github.sanity4j.gen.spotbugs_3_1_6";
+
     /** The properties used to configure this {@link ResultReader}. */
     private final Properties properties = new Properties();
     
@@ -54,89 +62,106 @@ public final class SpotBugsResultReader implements ResultReader
     }
 
     /**
-     * Extracts SpotBugs statistics from spotBugsResultFile.
+     * Extracts SpotBugs statistics from spotBugsResultFile. The results are read one
+     * BugInstance at a time, so that memory use does not depend on the size of the file.
      */
     @Override
     public void run()
     {
-        DiagnosticFactory diagnosticFactory = DiagnosticFactory.getInstance(properties);
-        DiagnosticSet diagnostics = stats.getDiagnostics();
-
-        BugCollection result = (BugCollection)
-        JaxbMarshaller.unmarshal(spotBugsResultFile, "com.github.sanity4j.gen.spotbugs_3_1_6", "http://com.github.sanity4j/namespace/spotbugs-3.1.6");
+        final DiagnosticFactory diagnosticFactory = DiagnosticFactory.getInstance(properties);
+        final DiagnosticSet diagnostics = stats.getDiagnostics();
 
-        List<BugInstance> bugs = result.getBugInstance();
+        JaxbMarshaller.traverse(spotBugsResultFile, JAXB_PACKAGE, "http://com.github.sanity4j/namespace/spotbugs-3.1.6",
+            new StartElementListener()
+            {
+                @Override
+                public void foundElement(final StartElement element, final XMLEventReader reader, final Unmarshaller unmarshaller) throws JAXBException
+                {
+                    if ("BugInstance".equals(element.getName().getLocalPart()))
+                    {
+                        BugInstance bug = unmarshaller.unmarshal(reader, BugInstance.class).getValue();
+                        diagnostics.add(createDiagnostic(diagnosticFactory, bug));
+                    }
+                }
+            });
+    }
 
-        for (BugInstance bug : bugs)
-        {
-            Diagnostic diagnostic = diagnosticFactory.getDiagnostic();
-            diagnostic.setSource(Diagnostic.SOURCE_SPOTBUGS);
-            diagnostic.setRuleName(bug.getType());
-            diagnostic.calcSeverity();
+    /**
+     * Creates a diagnostic for a SpotBugs bug instance.
+     *
+     * @param diagnosticFactory the factory to create the diagnostic with.
+     * @param bug the bug instance.
+     * @return a diagnostic for the bug instance.
+     */
+    private Diagnostic createDiagnostic(final DiagnosticFactory diagnosticFactory, final BugInstance bug)
+    {
+        Diagnostic diagnostic = diagnosticFactory.getDiagnostic();
+        diagnostic.setSource(Diagnostic.SOURCE_SPOTBUGS);
+        diagnostic.setRuleName(bug.getType());
+        diagnostic.calcSeverity();
 
-            // Unfortunately, there is a whole set of information that may or
-            // may not be present. We have to iterate through the whole list
-            // and pick out the summary information that we're interested in.
-            List<Object> details = bug.getClazzOrTypeOrMethod();
+        // Unfortunately, there is a whole set of information that may or
+        // may not be present. We have to iterate through the whole list
+        // and pick out the summary information that we're interested in.
+        List<Object> details = bug.getClazzOrTypeOrMethod();
 
-            for (Object detail : details)
+        for (Object detail : details)
+        {
+            if (detail instanceof BugInstance.Class)
             {
-                if (detail instanceof BugInstance.Class)
+                BugInstance.Class clazz = (BugInstance.Class) detail;
+
+                if (Boolean.TRUE.equals(clazz.getPrimary()))
                 {
-                    BugInstance.Class clazz = (BugInstance.Class) detail;
+                    diagnostic.setClassName(clazz.getClassname());
 
-                    if (Boolean.TRUE.equals(clazz.getPrimary()))
-                    {
-                        diagnostic.setClassName(clazz.getClassname());
+                    SourceLine sourceLine = clazz.getSourceLine();
 
-                        SourceLine sourceLine = clazz.getSourceLine();
+                    if (sourceLine != null && sourceLine.getSourcepath() != null)
+                    {
+                        try
+                        {
+                            diagnostic.setFileName(stats.getCanonicalPath(sourceLine.getSourcepath()));
+                        }
+                        catch (IOException e)
+                        {
+                            throw new QAException("Failed to get canonicalPath for "
+                                                     + sourceLine.getSourcepath(), e);
+                        }
 
-                        if (sourceLine != null && sourceLine.getSourcepath() != null)
+                        if (sourceLine.getStart() != null && sourceLine.getEnd() != 0
+                            && sourceLine.getStart() != 0 && sourceLine.getEnd() != 0)
                         {
-                            try
-                            {
-                                diagnostic.setFileName(stats.getCanonicalPath(sourceLine.getSourcepath()));
-                            }
-                            catch (IOException e)
-                            {
-                                throw new QAException("Failed to get canonicalPath for "
-                                                         + sourceLine.getSourcepath(), e);
-                            }
-
-                            if (sourceLine.getStart() != null && sourceLine.getEnd() != 0
-                                && sourceLine.getStart() != 0 && sourceLine.getEnd() != 0)
-                            {
-                                diagnostic.setStartLine(sourceLine.getStart());
-                                diagnostic.setEndLine(sourceLine.getEnd());
-                            }
+                            diagnostic.setStartLine(sourceLine.getStart());
+                            diagnostic.setEndLine(sourceLine.getEnd());
                         }
                     }
                 }
-                else if (detail instanceof SourceLine)
-                {
-                    // The SourceLine further narrows down where the problem is... in most cases
-                    SourceLine sourceLine = (SourceLine) detail;
+            }
+            else if (detail instanceof SourceLine)
+            {
+                // The SourceLine further narrows down where the problem is... in most cases
+                SourceLine sourceLine = (SourceLine) detail;
 
-                    if (sourceLine.getStart() != null && sourceLine.getEnd() != 0
-                        && sourceLine.getStart() != 0 && sourceLine.getEnd() != 0)
-                    {
-                        diagnostic.setStartLine(sourceLine.getStart());
-                        diagnostic.setEndLine(sourceLine.getEnd());
-                    }
+                if (sourceLine.getStart() != null && sourceLine.getEnd() != 0
+                    && sourceLine.getStart() != 0 && sourceLine.getEnd() != 0)
+                {
+                    diagnostic.setStartLine(sourceLine.getStart());
+                    diagnostic.setEndLine(sourceLine.getEnd());
                 }
             }
+        }
 
-            if (bug.getLongMessage() != null)
-            {
-               diagnostic.setMessage(bug.getLongMessage());
-            }
-            else
-            {
-               diagnostic.setMessage(bug.getShortMessage());
-            }
-            
-            diagnostics.add(diagnostic);
+        if (bug.getLongMessage() != null)
+        {
+           diagnostic.setMessage(bug.getLongMessage());
+        }
+        else
+        {
+           diagnostic.setMessage(bug.getShortMessage());
         }
+        
+        return diagnostic;
     }
 
     /** {@inheritDoc} */
@@ -9,7 +9,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import com.github.sanity4j.util.ExternalProcessRunner;
 import com.github.sanity4j.util.FileUtil;
 import com.github.sanity4j.util.QAException;
 import com.github.sanity4j.util.QaLogger;
@@ -57,7 +56,7 @@ public class SpotBugsRunner extends AbstractToolRunner
             stdout = new ByteArrayOutputStream();
             stderr = new ByteArrayOutputStream();
             
-            int result = ExternalProcessRunner.runProcess(commandLine, stdout, stderr);
+            int result = runJava(commandLine, stdout, stderr);
 
             String stdoutString = new String(stdout.toByteArray());
 
@@ -103,6 +102,24 @@ public class SpotBugsRunner extends AbstractToolRunner
         libraryPaths.add(config.getCombinedLibraryDir().getPath());
         FileUtil.findJars(config.getCombinedLibraryDir(), libraryPaths);
 
+        // Library jars are not collected when linking, so are used from their original location
+        if (config.isLinkWorkspace())
+        {
+            for (String libraryDir : config.getLibraryDirs())
+            {
+                File library = new File(libraryDir);
+
+                if (library.isFile() && library.getName().toLowerCase().endsWith(".jar"))
+                {
+                    libraryPaths.add(library.getPath());
+                }
+                else
+                {
+                    FileUtil.findJars(library, libraryPaths);
+                }
+            }
+        }
+
         String xml = generateSpotBugsProjectXml(sourcePaths, classPaths, libraryPaths);
 
         try
@@ -1,25 +1,52 @@
 package com.github.sanity4j.workflow.tool;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import com.github.sanity4j.util.ExtractStats;
 import com.github.sanity4j.util.QAException;
 import com.github.sanity4j.util.QaLogger;
 import com.github.sanity4j.util.Tool;
 import com.github.sanity4j.workflow.FileCopier;
+import com.github.sanity4j.workflow.FileFingerprints;
 import com.github.sanity4j.workflow.QAConfig;
-import com.github.sanity4j.workflow.WorkUnitGroup;
+import com.github.sanity4j.workflow.WorkProduct;
+import com.github.sanity4j.workflow.WorkUnitGraph;
 
 /**
  * ToolRunnerGroup is responsible for running the tools to be used in the analysis.
+ * Each tool's results are read as soon as that tool has finished, regardless of
+ * whether the other tools are still running.
  *
  * @author Yiannis Paschalidis
  * @since Sanity4J 1.0
  */
-public final class ToolRunnerGroup extends WorkUnitGroup
+public final class ToolRunnerGroup extends WorkUnitGraph
 {
+    /** The tools which analyse each source file independently, so can be run incrementally. */
+    private static final Set<Tool> INCREMENTAL_TOOLS = new HashSet<Tool>(Arrays.asList(new Tool[] { Tool.CHECKSTYLE, Tool.PMD }));
+
+    /** The packages containing the JAXB classes used by the built-in readers, keyed by reader class name. */
+    private static final Map<String, String> JAXB_PACKAGES = new HashMap<String, String>();
+
+    static
+    {
+        JAXB_PACKAGES.put(CheckStyleResultReader.class.getName(), CheckStyleResultReader.JAXB_PACKAGE);
+        JAXB_PACKAGES.put(PmdResultReader.class.getName(), PmdResultReader.JAXB_PACKAGE);
+        JAXB_PACKAGES.put(PmdCpd5ResultReader.class.getName(), PmdCpd5ResultReader.JAXB_PACKAGE);
+        JAXB_PACKAGES.put(SpotBugsResultReader.class.getName(), SpotBugsResultReader.JAXB_PACKAGE);
+    }
+
     /** The configuration for the current run. */
     private final QAConfig config;
+
+    /** The packages containing the JAXB classes which the readers in this group will use. */
+    private final Set<String> jaxbPackages = new TreeSet<String>();
     
     /** The stats to store the results in. */
     private final ExtractStats stats;
@@ -32,7 +59,20 @@ public final class ToolRunnerGroup extends WorkUnitGroup
      */
     public ToolRunnerGroup(final QAConfig config, final ExtractStats stats)
     {
-        super(config.getNumThreads() > 1, "Running tools");
+        this(config, stats, null);
+    }
+
+    /**
+     * Creates a ToolRunnerGroup. If the configuration is incremental, per-file tools are only run
+     * on the source files whose fingerprints have changed since the previous run.
+     * 
+     * @param config the configuration for the current run.
+     * @param stats the stats to store the results in.
+     * @param sourceFingerprints the fingerprints of the collected source files, may be null.
+     */
+    public ToolRunnerGroup(final QAConfig config, final ExtractStats stats, final FileFingerprints sourceFingerprints)
+    {
+        super("Running tools");
         this.config = config;
         this.stats = stats;
 
@@ -60,26 +100,54 @@ public final class ToolRunnerGroup extends WorkUnitGroup
 
             String version = config.getToolVersion(tool.getId());
             String runnerClassName = config.getToolRunner(tool.getId(), version);
+            String readerClassName = config.getToolReader(tool.getId(), version);
             AbstractToolRunner runner = createRunner(runnerClassName);
             runner.setToolVersion(version);
             
-            add(runner);
+            if (JAXB_PACKAGES.containsKey(readerClassName))
+            {
+                jaxbPackages.add(JAXB_PACKAGES.get(readerClassName));
+            }
+
+            // The tools can run in parallel, but each tool's output must be produced before it is read.
+            String[] toolResult = { WorkProduct.getToolResult(tool) };
+
+            if (config.isIncremental() && sourceFingerprints != null && config.getResultCacheDir() != null
+                && INCREMENTAL_TOOLS.contains(tool))
+            {
+                // The tool output only covers the changed files, so is not included in the report directory.
+                ResultReader reader = createReader(runner, readerClassName);
+                IncrementalToolRun incrementalRun = new IncrementalToolRun(config, tool, version, runner, reader, stats, sourceFingerprints);
+                add(incrementalRun, runner.getInputs(), new String[] { WorkProduct.getToolResult(tool), WorkProduct.RESULTS });
+                continue;
+            }
+
+            add(runner, runner.getInputs(), toolResult);
 
             if (runner.getToolResultFile() != null)
             {
-                if (config.isIncludeToolOutput())
+                // Sharded tools produce several result files, which are not included in the report directory.
+                if (config.isIncludeToolOutput() && !runner.isSharded())
                 {
                     File resultFile = new File(runner.getToolResultFile());
-                    add(new FileCopier(resultFile, new File(config.getReportDir(), resultFile.getName())));
+                    add(new FileCopier(resultFile, new File(config.getReportDir(), resultFile.getName())), toolResult, null);
                 }
     
-                String readerClassName = config.getToolReader(tool.getId(), version);
-                ResultReader reader = createReader(readerClassName, runner.getToolResultFile());
-                add(reader);
+                // Readers map diagnostics back to the source files, so also need the sources to be available.
+                ResultReader reader = createReader(runner, readerClassName);
+                add(reader, new String[] { WorkProduct.getToolResult(tool), WorkProduct.SOURCES }, new String[] { WorkProduct.RESULTS });
             }
         }
     }
 
+    /**
+     * @return the packages containing the JAXB classes which the readers in this group will use.
+     */
+    public Set<String> getJaxbPackages()
+    {
+        return jaxbPackages;
+    }
+
     /**
      * Instantiates and configures a runner of the given class.
      * @param className the runner class name.
@@ -109,6 +177,27 @@ public final class ToolRunnerGroup extends WorkUnitGroup
         return runner;
     }
 
+    /**
+     * Instantiates and configures a reader for the given runner's results.
+     * @param runner the runner whose results will be read.
+     * @param className the reader class name.
+     * @return a reader for the runner's results.
+     */
+    private ResultReader createReader(final AbstractToolRunner runner, final String className)
+    {
+        ResultReader reader = createReader(className, runner.getToolResultFile());
+
+        if (runner.isSharded())
+        {
+            ResultReader shardedReader = new ShardedResultReader(runner, reader);
+            shardedReader.setStats(stats);
+            shardedReader.setResultFile(new File(runner.getToolResultFile()));
+            return shardedReader;
+        }
+
+        return reader;
+    }
+
     /**
      * Instantiates and configures a reader of the given class.
      * @param className the reader class name.
@@ -3,22 +3,41 @@ package com.github.sanity4j;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import com.github.sanity4j.daemon.ToolDaemon_Test;
 import com.github.sanity4j.model.coverage.ClassCoverage_Test;
 import com.github.sanity4j.model.coverage.Coverage_Test;
 import com.github.sanity4j.model.coverage.PackageCoverage_Test;
 import com.github.sanity4j.model.diagnostic.DiagnosticCategory_Test;
 import com.github.sanity4j.model.diagnostic.DiagnosticSet_Test;
+import com.github.sanity4j.model.diagnostic.DiagnosticStore_Test;
 import com.github.sanity4j.model.diagnostic.Diagnostic_Test;
+import com.github.sanity4j.model.diagnostic.RuleFilter_Test;
+import com.github.sanity4j.model.diagnostic.RuleRegistry_Test;
 import com.github.sanity4j.model.summary.PackageSummary_Test;
 import com.github.sanity4j.model.summary.SummaryCsvMarshaller_Test;
 import com.github.sanity4j.report.ChartFactory_Test;
+import com.github.sanity4j.report.LineAnnotations_Test;
 import com.github.sanity4j.report.ReportUtil_Test;
+import com.github.sanity4j.report.ReportWriter_Test;
+import com.github.sanity4j.report.XmlWriter_Test;
 import com.github.sanity4j.util.ExternalProcessRunner_Test;
 import com.github.sanity4j.util.ExtractStats_Test;
 import com.github.sanity4j.util.FileUtil_Test;
+import com.github.sanity4j.util.InProcessJavaRunner_Test;
+import com.github.sanity4j.util.JavaCommandLine_Test;
+import com.github.sanity4j.util.JaxbContextRegistry_Test;
 import com.github.sanity4j.util.JaxbMarshaller_Test;
+import com.github.sanity4j.util.PackageResolver_Test;
+import com.github.sanity4j.util.PackageTree_Test;
 import com.github.sanity4j.util.PipeInputThread_Test;
+import com.github.sanity4j.util.SourceScanner_Test;
 import com.github.sanity4j.util.StringUtil_Test;
+import com.github.sanity4j.util.math.CompiledExpression_Test;
+import com.github.sanity4j.workflow.AbstractFileCollector_Test;
+import com.github.sanity4j.workflow.WorkUnitGraph_Test;
+import com.github.sanity4j.workflow.WorkUnitGroup_Test;
+import com.github.sanity4j.workflow.tool.IncrementalToolRun_Test;
+import com.github.sanity4j.workflow.tool.ShardedResultReader_Test;
 
 /**
  * This class is the <a href="http://www.junit.org">JUnit</a> TestSuite for the classes within
@@ -37,9 +56,15 @@ import com.github.sanity4j.util.StringUtil_Test;
    Diagnostic_Test.class,
    DiagnosticCategory_Test.class,
    DiagnosticSet_Test.class,
+   DiagnosticStore_Test.class,
+   RuleFilter_Test.class,
+   RuleRegistry_Test.class,
    
    ChartFactory_Test.class,
+   LineAnnotations_Test.class,
    ReportUtil_Test.class,
+   ReportWriter_Test.class,
+   XmlWriter_Test.class,
    
    SummaryCsvMarshaller_Test.class,
    PackageSummary_Test.class,
@@ -47,9 +72,23 @@ import com.github.sanity4j.util.StringUtil_Test;
    ExternalProcessRunner_Test.class,
    ExtractStats_Test.class,
    FileUtil_Test.class,
+   InProcessJavaRunner_Test.class,
+   JavaCommandLine_Test.class,
+   ToolDaemon_Test.class,
    PipeInputThread_Test.class,
    JaxbMarshaller_Test.class,
-   StringUtil_Test.class
+   JaxbContextRegistry_Test.class,
+   PackageResolver_Test.class,
+   PackageTree_Test.class,
+   SourceScanner_Test.class,
+   StringUtil_Test.class,
+   CompiledExpression_Test.class,
+   
+   WorkUnitGroup_Test.class,
+   WorkUnitGraph_Test.class,
+   AbstractFileCollector_Test.class,
+   IncrementalToolRun_Test.class,
+   ShardedResultReader_Test.class
 })
 public class Sanity4J_Suite
 {
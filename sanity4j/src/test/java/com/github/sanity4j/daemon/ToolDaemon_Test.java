@@ -0,0 +1,120 @@
+package com.github.sanity4j.daemon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.github.sanity4j.util.FileUtil;
+import com.github.sanity4j.util.InProcessJavaRunner;
+
+/**
+ * ToolDaemon_Test - unit tests for {@link ToolDaemon} and {@link DaemonClient}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class ToolDaemon_Test
+{
+    /** Maximum time to wait for the daemon to start or stop, in seconds. */
+    private static final int TIMEOUT = 10;
+
+    @Test
+    public void testRunTool() throws Exception
+    {
+        Assume.assumeTrue(InProcessJavaRunner.isAvailable());
+
+        File stateDir = new File(System.getProperty("java.io.tmpdir"), "sanity4j-daemon-test-" + System.currentTimeMillis());
+        final String fingerprint = DaemonProtocol.getFingerprint("java", "", DaemonProtocol.getWorkingDirectory());
+        final DaemonClient client = new DaemonClient(stateDir, "java", "");
+        final ToolDaemon daemon = new ToolDaemon(stateDir, fingerprint, TimeUnit.MINUTES.toMillis(1));
+
+        Thread daemonThread = new Thread("test daemon")
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    daemon.serve();
+                }
+                catch (IOException e)
+                {
+                    e.printStackTrace();
+                }
+            }
+        };
+
+        daemonThread.setDaemon(true);
+        daemonThread.start();
+
+        try
+        {
+            File stateFile = DaemonProtocol.getStateFile(stateDir, fingerprint);
+
+            for (int i = 0; i < TIMEOUT * 10 && !stateFile.exists(); i++)
+            {
+                Thread.sleep(100);
+            }
+
+            File testClasses = new File(ToolDaemon_Test.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            List<String> classpath = Arrays.asList(new String[] { testClasses.getPath() });
+            String cmdLine = "java -cp x " + TestProgram.class.getName() + " \"hello world\"";
+
+            // The second run should reuse the class loader from the first
+            for (int run = 1; run <= 2; run++)
+            {
+                ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+                ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+                int result = client.runCommandLine(cmdLine, classpath, stdout, stderr);
+
+                Assert.assertEquals("Incorrect exit code", 2, result);
+                Assert.assertEquals("Incorrect stdout", "hello world", stdout.toString().trim());
+                Assert.assertEquals("Incorrect run count", String.valueOf(run), stderr.toString().trim());
+            }
+
+            client.stopDaemon();
+            daemonThread.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+
+            Assert.assertFalse("Daemon should have stopped", daemonThread.isAlive());
+            Assert.assertFalse("State file should have been removed", stateFile.exists());
+        }
+        finally
+        {
+            FileUtil.delete(stateDir);
+        }
+    }
+
+    /**
+     * A program which prints its first argument to stdout and the number of times it has been run
+     * to stderr, then exits with status 2.
+     */
+    public static final class TestProgram
+    {
+        /** The number of times the program has been run. */
+        private static int runCount;
+
+        /** Only the main method is used. */
+        private TestProgram()
+        {
+        }
+
+        /**
+         * Runs the test program.
+         * @param args the program arguments.
+         */
+        public static void main(final String[] args)
+        {
+            System.out.println(args[0]);
+            System.err.println(++runCount);
+            System.exit(2);
+        }
+    }
+}
@@ -115,4 +115,26 @@ public class ClassCoverage_Test
         Assert.assertEquals("Incorrect covered branch count returned", 
                      1, coverage.getCoveredBranchCount());
     }    
+    
+    @Test
+    public void testLinesOutOfOrder()
+    {
+        ClassCoverage classCoverage = new ClassCoverage(DUMMY_STRING);
+        classCoverage.addLineCoverage(500, 3, false);
+        classCoverage.addLineCoverage(2, 0, true);
+        classCoverage.addBranchCoverage(2, 0.5);
+        classCoverage.addLineCoverage(1000, 1, false);
+        
+        Assert.assertEquals("Incorrect line count", 3, classCoverage.getLineCount());
+        Assert.assertEquals("Incorrect first line", 2, classCoverage.getFirstLine());
+        Assert.assertEquals("Incorrect last line", 1000, classCoverage.getLastLine());
+        Assert.assertEquals("Incorrect invocations", 3, classCoverage.getInvocationsForLine(500));
+        Assert.assertEquals("Incorrect invocations", 0, classCoverage.getInvocationsForLine(2));
+        Assert.assertEquals("Line should not be analysed", -1, classCoverage.getInvocationsForLine(3));
+        Assert.assertEquals("Line should not be analysed", -1, classCoverage.getInvocationsForLine(2000));
+        Assert.assertEquals("Incorrect branch coverage", 0.5, classCoverage.getBranchCoverageForLine(2), 0.0);
+        Assert.assertEquals("Line should not be a branch", -1.0, classCoverage.getBranchCoverageForLine(500), 0.0);
+        Assert.assertEquals("Incorrect invocations map", 3, classCoverage.getInvocationsByLine().size());
+        Assert.assertEquals("Incorrect branch coverage map", 1, classCoverage.getBranchCoverageByLine().size());
+    }
 }
@@ -133,4 +133,22 @@ public class Coverage_Test
         Assert.assertNull("Class coverage returned for incorrect class name", 
                    coverage.getClassCoverage(CLASS_NAME_1 + CLASS_NAME_2));
     }
+
+    @Test
+    public void testCountsRolledUp()
+    {
+        ClassCoverage classCoverage = coverage.getClassCoverage(CLASS_NAME_1);
+        classCoverage.addLineCoverage(125, 1, true);
+
+        Assert.assertEquals("Line added to class should be rolled up", 5, coverage.getLineCount());
+        Assert.assertEquals("Covered branch added to class should be rolled up", 2, coverage.getCoveredBranchCount());
+        Assert.assertEquals("Incorrect package line count", 3, coverage.getPackageCoverage(PACKAGE_NAME_1).getLineCount());
+
+        PackageCoverage packageCoverage = new PackageCoverage(PACKAGE_NAME_1);
+        coverage.addPackage(packageCoverage);
+        Assert.assertEquals("Replaced package should be removed from counts", 2, coverage.getLineCount());
+
+        classCoverage.addLineCoverage(126, 1, false);
+        Assert.assertEquals("Removed class should not be rolled up", 2, coverage.getLineCount());
+    }
 }
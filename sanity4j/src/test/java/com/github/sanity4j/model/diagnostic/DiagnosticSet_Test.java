@@ -1,10 +1,12 @@
 package com.github.sanity4j.model.diagnostic; 
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -692,4 +694,157 @@ public class DiagnosticSet_Test
             Assert.assertFalse("hasNext should still return false", iterator.hasNext());
         }
     }
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException
+    {
+        final DiagnosticSet diagnosticSet = new DiagnosticSet();
+        final int diagnosticsPerThread = 1000;
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < 4; i++)
+        {
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < diagnosticsPerThread; j++)
+                    {
+                        Diagnostic diagnostic = new Diagnostic();
+                        diagnostic.setSeverity(j % 2);
+                        diagnosticSet.add(diagnostic);
+                    }
+                }
+            };
+
+            thread.start();
+            threads.add(thread);
+        }
+
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        diagnosticSet.seal();
+        Assert.assertTrue("Set should be sealed", diagnosticSet.isSealed());
+        Assert.assertEquals("Incorrect size", 4 * diagnosticsPerThread, diagnosticSet.size());
+        Assert.assertEquals("Incorrect count for severity", 2 * diagnosticsPerThread, diagnosticSet.getCountForSeverity(1));
+
+        Set<Integer> ids = new HashSet<Integer>();
+
+        for (Diagnostic diagnostic : diagnosticSet)
+        {
+            ids.add(diagnostic.getId());
+        }
+
+        Assert.assertEquals("Ids should be unique", 4 * diagnosticsPerThread, ids.size());
+
+        try
+        {
+            diagnosticSet.add(new Diagnostic());
+            Assert.fail("Should not be able to add to a sealed set");
+        }
+        catch (IllegalStateException expected)
+        {
+            Assert.assertEquals("Diagnostic should not have been added", 4 * diagnosticsPerThread, diagnosticSet.size());
+        }
+    }
+
+    @Test
+    public void testSubsetViews()
+    {
+        DiagnosticSet diagnosticSet = new DiagnosticSet();
+        diagnosticSet.add(createDiagnostic("a.b.c.D", Diagnostic.SOURCE_PMD, Diagnostic.SEVERITY_HIGH));
+        diagnosticSet.add(createDiagnostic("a.bc.D", Diagnostic.SOURCE_PMD, Diagnostic.SEVERITY_LOW));
+        diagnosticSet.add(createDiagnostic("a.b.C", Diagnostic.SOURCE_CHECKSTYLE, Diagnostic.SEVERITY_LOW));
+        diagnosticSet.add(createDiagnostic("a.b$c.D", Diagnostic.SOURCE_PMD, Diagnostic.SEVERITY_INFO));
+        diagnosticSet.add(createDiagnostic("a.b.C", Diagnostic.SOURCE_PMD, Diagnostic.SEVERITY_HIGH));
+        diagnosticSet.add(createDiagnostic("a.b.E", Diagnostic.SOURCE_PMD, Diagnostic.SEVERITY_LOW));
+        diagnosticSet.add(createDiagnostic(null, Diagnostic.SOURCE_SPOTBUGS, Diagnostic.SEVERITY_LOW));
+
+        DiagnosticSet packageB = diagnosticSet.getDiagnosticsForPackage("a.b");
+        Assert.assertEquals("Incorrect package size", 4, packageB.size());
+        Assert.assertEquals("Incorrect package count", 2, packageB.getCountForSeverity(Diagnostic.SEVERITY_HIGH));
+        Assert.assertEquals("Incorrect package count", 2, packageB.getCountForSeverity(Diagnostic.SEVERITY_LOW));
+        Assert.assertEquals("Incorrect package count", 0, packageB.getCountForSeverity(Diagnostic.SEVERITY_INFO));
+        Assert.assertEquals("Incorrect direct package size", 3, diagnosticSet.getDiagnosticsForPackage("a.b", false).size());
+        Assert.assertEquals("Incorrect root package size", 6, diagnosticSet.getDiagnosticsForPackage("a").size());
+        Assert.assertTrue("Unknown package should be empty", diagnosticSet.getDiagnosticsForPackage("x").isEmpty());
+
+        // Subsets of subsets
+        DiagnosticSet pmd = packageB.getDiagnosticsForTool(Diagnostic.SOURCE_PMD);
+        Assert.assertEquals("Incorrect tool size", 3, pmd.size());
+        Assert.assertEquals("Incorrect tool count", 2, pmd.getCountForSeverity(Diagnostic.SEVERITY_HIGH));
+        Assert.assertEquals("Incorrect tool count", 1, pmd.getCountForSeverity(Diagnostic.SEVERITY_LOW));
+
+        DiagnosticSet fileC = pmd.getDiagnosticsForFile("a/b/C.java");
+        Assert.assertEquals("Incorrect file size", 1, fileC.size());
+        Assert.assertEquals("Incorrect file count", 1, fileC.getCountForSeverity(Diagnostic.SEVERITY_HIGH));
+        Assert.assertEquals("Incorrect file count", 0, fileC.getCountForSeverity(Diagnostic.SEVERITY_LOW));
+        Assert.assertEquals("Incorrect package of file", 1, fileC.getDiagnosticsForPackage("a.b", false).size());
+        Assert.assertTrue("Incorrect package of file", fileC.getDiagnosticsForPackage("a.bc").isEmpty());
+        DiagnosticSet allFileC = diagnosticSet.getDiagnosticsForFile("a/b/C.java");
+        Assert.assertEquals("Incorrect file size", 2, allFileC.size());
+        Assert.assertEquals("Incorrect severity size", 1, allFileC.getDiagnosticsForSeverity(Diagnostic.SEVERITY_LOW).size());
+
+        try
+        {
+            packageB.add(new Diagnostic());
+            Assert.fail("Should not be able to add to a subset");
+        }
+        catch (IllegalStateException expected)
+        {
+            Assert.assertEquals("Diagnostic should not have been added", 4, packageB.size());
+        }
+    }
+
+    @Test
+    public void testCountsAcrossCheckpoints()
+    {
+        DiagnosticSet diagnosticSet = new DiagnosticSet();
+        int[] expectedHigh = new int[3];
+
+        // Enough diagnostics for the package ranges to start and end between the running total checkpoints
+        for (int i = 0; i < 500; i++)
+        {
+            int pkg = i % 3;
+            int severity = i % 7 == 0 ? Diagnostic.SEVERITY_HIGH : Diagnostic.SEVERITY_LOW;
+            diagnosticSet.add(createDiagnostic("p" + pkg + ".C", Diagnostic.SOURCE_PMD, severity));
+
+            if (severity == Diagnostic.SEVERITY_HIGH)
+            {
+                expectedHigh[pkg]++;
+            }
+        }
+
+        for (int pkg = 0; pkg < 3; pkg++)
+        {
+            DiagnosticSet packageSet = diagnosticSet.getDiagnosticsForPackage("p" + pkg);
+            Assert.assertEquals("Incorrect count", expectedHigh[pkg], packageSet.getCountForSeverity(Diagnostic.SEVERITY_HIGH));
+            Assert.assertEquals("Incorrect count", packageSet.size() - expectedHigh[pkg],
+                                packageSet.getCountForSeverity(Diagnostic.SEVERITY_LOW));
+            Assert.assertEquals("Incorrect selection", expectedHigh[pkg],
+                                packageSet.getDiagnosticsForSeverity(Diagnostic.SEVERITY_HIGH).size());
+        }
+    }
+
+    /**
+     * Creates a diagnostic for testing.
+     *
+     * @param className the class name, may be null.
+     * @param source the tool which produced the diagnostic.
+     * @param severity the severity of the diagnostic.
+     * @return a new diagnostic.
+     */
+    private static Diagnostic createDiagnostic(final String className, final int source, final int severity)
+    {
+        Diagnostic diagnostic = new Diagnostic();
+        diagnostic.setClassName(className);
+        diagnostic.setFileName(className == null ? null : className.replace('.', '/') + ".java");
+        diagnostic.setSource(source);
+        diagnostic.setSeverity(severity);
+        return diagnostic;
+    }
 }
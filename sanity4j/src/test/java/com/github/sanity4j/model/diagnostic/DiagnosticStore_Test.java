@@ -0,0 +1,136 @@
+package com.github.sanity4j.model.diagnostic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.sanity4j.util.FileUtil;
+
+/**
+ * DiagnosticStore_Test - unit tests for {@link DiagnosticStore}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class DiagnosticStore_Test
+{
+    /** The directory for memory-mapped files. */
+    private File tempDir;
+
+    @Before
+    public void setUp()
+    {
+        tempDir = new File(System.getProperty("java.io.tmpdir"), "sanity4j-store-test-" + System.currentTimeMillis());
+        tempDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtil.delete(tempDir);
+    }
+
+    @Test
+    public void testHeapStore()
+    {
+        checkStore(new DiagnosticStore(DiagnosticStore.HEAP, tempDir));
+    }
+
+    @Test
+    public void testDirectStore()
+    {
+        checkStore(new DiagnosticStore(DiagnosticStore.DIRECT, tempDir));
+    }
+
+    @Test
+    public void testMappedStore()
+    {
+        checkStore(new DiagnosticStore(DiagnosticStore.MAPPED, tempDir));
+    }
+
+    /**
+     * Adds diagnostics to a set backed by the given store, and checks that they can be read back.
+     *
+     * @param store the store to test.
+     */
+    private void checkStore(final DiagnosticStore store)
+    {
+        try
+        {
+            DiagnosticSet diagnosticSet = new DiagnosticSet(store);
+            List<Integer> ids = new ArrayList<Integer>();
+
+            for (int i = 0; i < 2000; i++)
+            {
+                Diagnostic diagnostic = new Diagnostic();
+                diagnostic.setClassName(i % 2 == 0 ? "a.b.C" : "a.D");
+                diagnostic.setFileName(i % 2 == 0 ? "a/b/C.java" : "a/D.java");
+                diagnostic.setRuleName("Rule" + (i % 3));
+                diagnostic.setMessage(i == 0 ? null : "Message \u00e9 " + i);
+                diagnostic.setSource(Diagnostic.SOURCE_PMD);
+                diagnostic.setSeverity(i % 5);
+                diagnostic.setStartLine(i + 1);
+                diagnostic.setEndLine(i + 3);
+                diagnostic.setStartColumn(2);
+                diagnostic.setEndColumn(7);
+                diagnosticSet.add(diagnostic);
+                ids.add(diagnostic.getId());
+            }
+
+            // Diagnostics are appended to the store in batches, and the rest when the set is first read
+            Assert.assertTrue("Diagnostics should be appended in batches", store.size() < 2000);
+            Assert.assertEquals("Incorrect set size", 2000, diagnosticSet.size());
+            Assert.assertEquals("Incorrect store size", 2000, store.size());
+            Assert.assertTrue("Reading the set should seal it", diagnosticSet.isSealed());
+            Assert.assertEquals("Incorrect package size", 1000, diagnosticSet.getDiagnosticsForPackage("a.b").size());
+            Assert.assertEquals("Incorrect severity count", 400, diagnosticSet.getCountForSeverity(Diagnostic.SEVERITY_LOW));
+
+            for (int row = 0; row < store.size(); row++)
+            {
+                Diagnostic diagnostic = store.get(row);
+                Assert.assertEquals("Incorrect id", ids.get(row).intValue(), diagnostic.getId());
+                Assert.assertEquals("Incorrect class name", row % 2 == 0 ? "a.b.C" : "a.D", diagnostic.getClassName());
+                Assert.assertEquals("Incorrect package name", row % 2 == 0 ? "a.b" : "a", diagnostic.getPackageName());
+                Assert.assertEquals("Incorrect rule name", "Rule" + (row % 3), diagnostic.getRuleName());
+                Assert.assertEquals("Incorrect message", row == 0 ? null : "Message \u00e9 " + row, diagnostic.getMessage());
+                Assert.assertEquals("Incorrect severity", row % 5, diagnostic.getSeverity());
+                Assert.assertEquals("Incorrect start line", row + 1, diagnostic.getStartLine());
+                Assert.assertEquals("Incorrect end line", row + 3, diagnostic.getEndLine());
+                Assert.assertEquals("Incorrect start column", 2, diagnostic.getStartColumn());
+                Assert.assertEquals("Incorrect end column", 7, diagnostic.getEndColumn());
+                Assert.assertEquals("Views of the same row should be equal", diagnostic, store.get(row));
+            }
+
+            // Names are only stored once
+            Assert.assertSame("Class names should be shared", store.get(0).getClassName(), store.get(2).getClassName());
+
+            // Changes are written through to the store
+            Diagnostic diagnostic = diagnosticSet.getDiagnosticsForFile("a/D.java").iterator().next();
+            diagnostic.setMessage("Changed");
+            diagnostic.setStartLine(5000);
+            Assert.assertEquals("Message should have been changed", "Changed", diagnostic.getMessage());
+            Assert.assertEquals("Start line should have been changed", 5000, store.get(1).getStartLine());
+            Assert.assertEquals("End line should have been moved", 5000, store.get(1).getEndLine());
+
+            try
+            {
+                store.append(new Diagnostic());
+                Assert.fail("Should not be able to append to a sealed store");
+            }
+            catch (IllegalStateException expected)
+            {
+                Assert.assertEquals("Diagnostic should not have been appended", 2000, store.size());
+            }
+        }
+        finally
+        {
+            store.close();
+        }
+    }
+}
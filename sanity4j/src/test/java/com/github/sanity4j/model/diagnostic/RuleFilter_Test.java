@@ -0,0 +1,67 @@
+package com.github.sanity4j.model.diagnostic;
+
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * RuleFilter_Test - unit tests for {@link RuleFilter}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class RuleFilter_Test
+{
+    /** Class names to test the filters against. */
+    private static final String[] CLASS_NAMES =
+    {
+        "com.foo.Bar", "com.foo.BarTest", "com.foo.sub.Baz", "com.foobar.Baz", "comXfoo.Bar", 
+        "TestBar", "Testbar", "com.foo.Bean", "", 
+    };
+
+    /** Patterns to test, covering each kind of pattern. */
+    private static final String[] PATTERNS =
+    {
+        ".*", "com\\.foo\\.Bar", "com\\.foo\\..*", "com.foo.Bar", ".*Test", ".*Bean", "Test[A-Z].*", 
+        ".*foo.*", "com\\.foo\\.Ba.*", "Test[A-Z].*,.*Test",
+    };
+
+    @Test
+    public void testMatchesRegularExpressions()
+    {
+        for (String patterns : PATTERNS)
+        {
+            RuleFilter includeFilter = new RuleFilter(patterns, null);
+            RuleFilter excludeFilter = new RuleFilter(null, patterns);
+
+            for (String className : CLASS_NAMES)
+            {
+                boolean matches = false;
+
+                for (String pattern : patterns.split(","))
+                {
+                    matches |= Pattern.matches(pattern, className);
+                }
+
+                String msg = "Incorrect result for " + patterns + " / " + className;
+                Assert.assertEquals(msg, !matches, includeFilter.isExcluded(className));
+                Assert.assertEquals(msg, matches, excludeFilter.isExcluded(className));
+
+                // Second call is answered from the remembered decision
+                Assert.assertEquals(msg, matches, excludeFilter.isExcluded(className));
+            }
+        }
+    }
+
+    @Test
+    public void testIncludesAndExcludes()
+    {
+        RuleFilter filter = new RuleFilter("com\\.foo\\..*", ".*Test");
+
+        Assert.assertFalse("Included class should not be excluded", filter.isExcluded("com.foo.Bar"));
+        Assert.assertTrue("Excluded class should be excluded", filter.isExcluded("com.foo.BarTest"));
+        Assert.assertTrue("Class not included should be excluded", filter.isExcluded("org.foo.Bar"));
+        Assert.assertFalse("Nothing should be excluded without patterns", RuleFilter.NONE.isExcluded("org.foo.Bar"));
+    }
+}
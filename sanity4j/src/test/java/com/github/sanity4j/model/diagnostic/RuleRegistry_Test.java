@@ -0,0 +1,117 @@
+package com.github.sanity4j.model.diagnostic;
+
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * RuleRegistry_Test - unit tests for {@link RuleRegistry}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class RuleRegistry_Test
+{
+    @Test
+    public void testRules()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("PMD.RuleB.severity", "3");
+        properties.setProperty("PMD.RuleB.category", "Design/Coupling,Style");
+        properties.setProperty("PMD.RuleB.excludes", ".*Test");
+        properties.setProperty("PMD.RuleA.category", "Style");
+        properties.setProperty("SpotBugs.RuleB.severity", "1");
+
+        RuleRegistry registry = new RuleRegistry(properties);
+        Assert.assertEquals("Incorrect rule count", 3, registry.getRuleCount());
+
+        RuleRegistry.Rule rule = registry.getRule("PMD", "RuleB");
+        Assert.assertSame("Incorrect rule for id", rule, registry.getRule(rule.getId()));
+        Assert.assertEquals("Rules should be sorted", 1, rule.getId());
+        Assert.assertEquals("Incorrect severity", 3, rule.getSeverity());
+        Assert.assertArrayEquals("Incorrect categories", new String[] { "Design/Coupling", "Style" }, rule.getCategories());
+        Assert.assertTrue("Class should be excluded", rule.getFilter().isExcluded("a.BTest"));
+
+        Assert.assertEquals("Missing severity should be undefined", RuleRegistry.UNDEFINED_SEVERITY,
+                            registry.getRule("PMD", "RuleA").getSeverity());
+        Assert.assertEquals("Incorrect severity for source", 1, registry.getRule("SpotBugs", "RuleB").getSeverity());
+        Assert.assertNull("Unknown rule should not be found", registry.getRule("PMD", "RuleC"));
+        Assert.assertNull("Unknown source should not be found", registry.getRule("Other", "RuleB"));
+    }
+
+    @Test
+    public void testMalformedSeverity()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("PMD.RuleA.severity", "high");
+        properties.setProperty("PMD.RuleB.severity", "2");
+
+        RuleRegistry registry = new RuleRegistry(properties);
+        Assert.assertEquals("Malformed severity should be undefined", RuleRegistry.UNDEFINED_SEVERITY,
+                            registry.getRule("PMD", "RuleA").getSeverity());
+        Assert.assertEquals("Other rules should still be read", 2, registry.getRule("PMD", "RuleB").getSeverity());
+    }
+
+    @Test
+    public void testOverlay()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("PMD.RuleA.severity", "3");
+        RuleRegistry registry = new RuleRegistry(properties);
+
+        Properties overlay = new Properties();
+        overlay.setProperty("PMD.RuleA.severity", "4");
+
+        RuleRegistry overlaid = registry.withOverlay(overlay);
+        Assert.assertEquals("Overlay should override severity", 4, overlaid.getRule("PMD", "RuleA").getSeverity());
+        Assert.assertEquals("Original registry should not be modified", 3, registry.getRule("PMD", "RuleA").getSeverity());
+    }
+
+    @Test
+    public void testDiagnosticRuleLookup()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("PMD.RuleA.severity", "2");
+        properties.setProperty("PMD.RuleB.severity", "4");
+        properties.setProperty("PMD.RuleB.excludes", "a\\.B");
+        DiagnosticFactory factory = DiagnosticFactory.getInstance(properties);
+
+        Assert.assertSame("Factory should be reused for the same properties", factory,
+                          DiagnosticFactory.getInstance(properties));
+
+        Diagnostic diagnostic = factory.getDiagnostic();
+        diagnostic.setSource(Diagnostic.SOURCE_PMD);
+        diagnostic.setClassName("a.B");
+        diagnostic.setRuleName("RuleA");
+        diagnostic.calcSeverity();
+        Assert.assertEquals("Incorrect severity", 2, diagnostic.getSeverity());
+        Assert.assertFalse("Diagnostic should not be excluded", diagnostic.isExcluded());
+
+        diagnostic.setRuleName("RuleB");
+        diagnostic.calcSeverity();
+        Assert.assertEquals("Incorrect severity after rule change", 4, diagnostic.getSeverity());
+        Assert.assertTrue("Diagnostic should be excluded", diagnostic.isExcluded());
+
+        diagnostic.setRuleName("NoSuchRule");
+        diagnostic.calcSeverity();
+        Assert.assertEquals("Unknown rule should default to info", Diagnostic.SEVERITY_INFO, diagnostic.getSeverity());
+        Assert.assertEquals("Unknown rule should not have categories", 0, diagnostic.getCategories().length);
+    }
+
+    @Test
+    public void testOverlaysDoNotAccumulate()
+    {
+        Properties first = new Properties();
+        first.setProperty("PMD.RuleA.severity", "2");
+        DiagnosticFactory factory = DiagnosticFactory.getInstance(first);
+        Assert.assertEquals("Incorrect severity", 2, factory.getRuleRegistry().getRule("PMD", "RuleA").getSeverity());
+
+        Properties second = new Properties();
+        second.setProperty("PMD.RuleB.severity", "4");
+        factory = DiagnosticFactory.getInstance(second);
+        Assert.assertSame("Default factory should be replaced", factory, DiagnosticFactory.getInstance());
+        Assert.assertEquals("Incorrect severity", 4, factory.getRuleRegistry().getRule("PMD", "RuleB").getSeverity());
+        Assert.assertNull("Previous run's properties should not be kept", factory.getRuleRegistry().getRule("PMD", "RuleA"));
+    }
+}
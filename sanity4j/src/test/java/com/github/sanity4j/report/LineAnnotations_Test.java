@@ -0,0 +1,103 @@
+package com.github.sanity4j.report;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.sanity4j.model.coverage.ClassCoverage;
+import com.github.sanity4j.model.diagnostic.Diagnostic;
+
+/**
+ * LineAnnotations_Test - unit tests for {@link LineAnnotations}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class LineAnnotations_Test
+{
+    @Test
+    public void testAnnotations()
+    {
+        List<Diagnostic> diags = new ArrayList<Diagnostic>();
+        Diagnostic low = createDiagnostic(2, 6, Diagnostic.SEVERITY_LOW);
+        Diagnostic high = createDiagnostic(4, 4, Diagnostic.SEVERITY_HIGH);
+        Diagnostic moderate = createDiagnostic(2, 3, Diagnostic.SEVERITY_MODERATE);
+        Diagnostic noLine = createDiagnostic(-1, -1, Diagnostic.SEVERITY_HIGH);
+        diags.add(low);
+        diags.add(high);
+        diags.add(moderate);
+        diags.add(noLine);
+
+        ClassCoverage coverage = new ClassCoverage("a.B");
+        coverage.addLineCoverage(1, 0, false);
+        coverage.addLineCoverage(2, 3, false);
+        coverage.addLineCoverage(3, 1, true);
+        coverage.addBranchCoverage(3, 0.5);
+        coverage.addLineCoverage(9, 1, true);
+        coverage.addBranchCoverage(9, 1.0);
+
+        LineAnnotations annotations = new LineAnnotations(diags, coverage);
+
+        int[] expectedSeverities = {-1, 2, 2, 4, 1, 1, -1, -1, -1, -1};
+
+        for (int line = 1; line <= expectedSeverities.length; line++)
+        {
+            Assert.assertEquals("Incorrect severity for line " + line, expectedSeverities[line - 1], annotations.getMaxSeverity(line));
+        }
+
+        Assert.assertEquals("Incorrect coverage", LineAnnotations.COVERAGE_NO, annotations.getCoverage(1));
+        Assert.assertEquals("Incorrect coverage", LineAnnotations.COVERAGE_YES, annotations.getCoverage(2));
+        Assert.assertEquals("Incorrect coverage", LineAnnotations.COVERAGE_PARTIAL, annotations.getCoverage(3));
+        Assert.assertEquals("Incorrect coverage", LineAnnotations.COVERAGE_NONE, annotations.getCoverage(4));
+        Assert.assertEquals("Incorrect coverage", LineAnnotations.COVERAGE_YES, annotations.getCoverage(9));
+        Assert.assertEquals("Incorrect coverage", LineAnnotations.COVERAGE_NONE, annotations.getCoverage(100));
+
+        Assert.assertEquals("Incorrect order", toList(noLine, low, moderate, high), annotations.getDiagnostics());
+        Assert.assertEquals("Incorrect diagnostics for line 2", toList(low, moderate), annotations.getDiagnosticsStartingAt(2));
+        Assert.assertEquals("Incorrect diagnostics for line 4", toList(high), annotations.getDiagnosticsStartingAt(4));
+        Assert.assertTrue("Line 5 should have no diagnostics", annotations.getDiagnosticsStartingAt(5).isEmpty());
+        Assert.assertTrue("Line 100 should have no diagnostics", annotations.getDiagnosticsStartingAt(100).isEmpty());
+    }
+
+    /**
+     * Creates a diagnostic for testing.
+     *
+     * @param startLine the start line, or -1 for none.
+     * @param endLine the end line, or -1 for none.
+     * @param severity the severity.
+     * @return a new diagnostic.
+     */
+    private static Diagnostic createDiagnostic(final int startLine, final int endLine, final int severity)
+    {
+        Diagnostic diagnostic = new Diagnostic();
+
+        if (startLine != -1)
+        {
+            diagnostic.setStartLine(startLine);
+            diagnostic.setEndLine(endLine);
+        }
+
+        diagnostic.setSeverity(severity);
+        return diagnostic;
+    }
+
+    /**
+     * Creates a list of diagnostics.
+     *
+     * @param diags the diagnostics.
+     * @return a list containing the given diagnostics.
+     */
+    private static List<Diagnostic> toList(final Diagnostic... diags)
+    {
+        List<Diagnostic> list = new ArrayList<Diagnostic>();
+
+        for (Diagnostic diag : diags)
+        {
+            list.add(diag);
+        }
+
+        return list;
+    }
+}
@@ -1,5 +1,7 @@
 package com.github.sanity4j.report;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +41,19 @@ public class ReportUtil_Test
                      "&lt;hello &amp; world!&gt;", ReportUtil.htmlEscape("<hello & world!>"));
     }
     
+    @Test
+    public void testHtmlEscapeToWriter() throws IOException
+    {
+        StringWriter out = new StringWriter();
+        XmlWriter xml = new XmlWriter(out);
+        
+        xml.append("<p>").appendEscaped("<hello & \"world\">").append(42).appendEscaped(null).append("</p>");
+        xml.close();
+        
+        Assert.assertEquals("Incorrect escaped output", 
+                            "<p>&lt;hello &amp; &quot;world&quot;&gt;42null</p>", out.toString());
+    }
+    
     @Test
     public void testMapDiagnosticsByClassName()
     {
@@ -0,0 +1,137 @@
+package com.github.sanity4j.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.sanity4j.model.diagnostic.Diagnostic;
+import com.github.sanity4j.util.ExtractStats;
+import com.github.sanity4j.util.FileUtil;
+import com.github.sanity4j.workflow.QAConfig;
+import com.github.sanity4j.workflow.WorkUnitGroup;
+
+/**
+ * ReportWriter_Test - unit tests for {@link ReportWriter}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class ReportWriter_Test
+{
+    /** The temporary directory containing the sources and reports. */
+    private File tempDir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        tempDir = new File(System.getProperty("java.io.tmpdir"), "sanity4j-report-test-" + System.currentTimeMillis());
+        File sourceDir = new File(tempDir, "src");
+
+        for (int pkg = 0; pkg < 3; pkg++)
+        {
+            for (int cls = 0; cls < 4; cls++)
+            {
+                String source = "package pkg" + pkg + ";\n\npublic class Class" + cls + "\n{\n    int field;\n}\n";
+                File file = new File(sourceDir, "pkg" + pkg + "/Class" + cls + ".java");
+                file.getParentFile().mkdirs();
+                FileUtil.writeToFile(source, file);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        WorkUnitGroup.setMaxThreads(1);
+        FileUtil.delete(tempDir);
+    }
+
+    @Test
+    public void testParallelReportMatchesSequential() throws IOException
+    {
+        WorkUnitGroup.setMaxThreads(1);
+        Map<String, String> sequential = writeReport("sequential");
+
+        WorkUnitGroup.setMaxThreads(4);
+        Map<String, String> parallel = writeReport("parallel");
+
+        Assert.assertTrue("No pages written", sequential.size() > 12);
+        Assert.assertEquals("Incorrect pages", sequential.keySet(), parallel.keySet());
+
+        for (Map.Entry<String, String> entry : sequential.entrySet())
+        {
+            Assert.assertEquals("Incorrect content for " + entry.getKey(), entry.getValue(), parallel.get(entry.getKey()));
+        }
+    }
+
+    /**
+     * Writes a report for the test sources.
+     *
+     * @param name the name of the report directory.
+     * @return the content of the report's XML pages, keyed by path, with run dates and diagnostic ids removed.
+     * @throws IOException if there is an error writing the report.
+     */
+    private Map<String, String> writeReport(final String name) throws IOException
+    {
+        ExtractStats stats = new ExtractStats(new File(tempDir, "src").getPath());
+
+        for (int pkg = 0; pkg < 3; pkg++)
+        {
+            for (int cls = 0; cls < 4; cls++)
+            {
+                Diagnostic diagnostic = new Diagnostic();
+                diagnostic.setFileName(new File(stats.getSourceDirectory(), "pkg" + pkg + "/Class" + cls + ".java").getPath());
+                diagnostic.setClassName("pkg" + pkg + ".Class" + cls);
+                diagnostic.setStartLine(5);
+                diagnostic.setEndLine(5);
+                diagnostic.setMessage("Unused <field> & " + cls);
+                diagnostic.setRuleName("UnusedField");
+                diagnostic.setSeverity(1 + (pkg + cls) % 5);
+                diagnostic.setSource(Diagnostic.SOURCE_PMD);
+                stats.getDiagnostics().add(diagnostic);
+            }
+        }
+
+        stats.extractLineCounts();
+
+        QAConfig config = new QAConfig();
+        config.setProductsDir(tempDir.getPath());
+
+        File reportDir = new File(tempDir, name);
+        new ReportWriter(stats, false, reportDir).produceReport(config);
+
+        Map<String, String> pages = new TreeMap<String, String>();
+        readPages(reportDir, "", pages);
+        return pages;
+    }
+
+    /**
+     * Reads the XML pages in a directory.
+     *
+     * @param dir the directory to read.
+     * @param path the path of the directory relative to the report directory.
+     * @param pages the map to add the pages to.
+     * @throws IOException if there is an error reading a page.
+     */
+    private static void readPages(final File dir, final String path, final Map<String, String> pages) throws IOException
+    {
+        for (File file : dir.listFiles())
+        {
+            if (file.isDirectory())
+            {
+                readPages(file, path + file.getName() + '/', pages);
+            }
+            else if (file.getName().endsWith(".xml"))
+            {
+                String content = new String(FileUtil.read(file), "UTF-8");
+                pages.put(path + file.getName(), content.replaceAll("(runDate|id)=\"[^\"]*\"", ""));
+            }
+        }
+    }
+}
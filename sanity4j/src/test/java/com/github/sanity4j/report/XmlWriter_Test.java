@@ -0,0 +1,77 @@
+package com.github.sanity4j.report;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.sanity4j.util.FileUtil;
+
+/**
+ * XmlWriter_Test - unit tests for {@link XmlWriter}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class XmlWriter_Test
+{
+    /** The directory to write the test pages to. */
+    private File tempDir;
+
+    @Before
+    public void setUp()
+    {
+        tempDir = new File(System.getProperty("java.io.tmpdir"), "sanity4j-xmlwriter-test-" + System.currentTimeMillis());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtil.delete(tempDir);
+    }
+
+    @Test
+    public void testClose() throws IOException
+    {
+        File file = new File(tempDir, "page.xml");
+        XmlWriter xml = new XmlWriter(file);
+
+        try
+        {
+            xml.append("<page>").appendEscaped("a < b").append("</page>");
+            xml.close();
+        }
+        finally
+        {
+            xml.discard();
+        }
+
+        Assert.assertEquals("Incorrect page", "<page>a &lt; b</page>", new String(FileUtil.read(file), "UTF-8"));
+    }
+
+    @Test
+    public void testDiscard() throws IOException
+    {
+        File file = new File(tempDir, "page.xml");
+        XmlWriter xml = new XmlWriter(file);
+
+        try
+        {
+            xml.append("<page>");
+            throw new IllegalStateException("Rendering failed");
+        }
+        catch (IllegalStateException expected)
+        {
+            Assert.assertEquals("Original failure should be kept", "Rendering failed", expected.getMessage());
+        }
+        finally
+        {
+            xml.discard();
+        }
+
+        Assert.assertFalse("Partially written page should be deleted", file.exists());
+    }
+}
@@ -144,6 +144,23 @@ public class ExtractStats_Test
         checkDiagnostics(stats);
     }
 
+    @Test
+    public void testCanonicalPathCache() throws Exception
+    {
+        ExtractStats stats = new ExtractStats(config.getCombinedSourceDir().getCanonicalPath());
+        String relativePath = "packagg" + File.separatorChar + "ClassOne.java";
+        String absolutePath = new File(stats.getSourceDirectory(), relativePath).getPath();
+
+        String canonicalPath = stats.getCanonicalPath(relativePath);
+        Assert.assertEquals("Incorrect canonical path", new File(absolutePath).getCanonicalPath(), canonicalPath);
+        Assert.assertSame("Canonical path should be shared", canonicalPath, stats.getCanonicalPath(absolutePath));
+        Assert.assertNull("Missing file should not have a path", stats.getCanonicalPath("packagg/Missing.java"));
+
+        Assert.assertEquals(INCORRECT_CLASSNAME_MSG, "packagg.ClassOne", stats.getClassNameForSourcePath(canonicalPath));
+        Assert.assertEquals("Incorrect package name", "packagg", stats.getPackageName(canonicalPath));
+        Assert.assertEquals("Incorrect class name for null path", "unknown", stats.getClassNameForSourcePath(null));
+    }
+
     @Test
     public void testExtractJaCoCoCoverage() throws Exception
     {
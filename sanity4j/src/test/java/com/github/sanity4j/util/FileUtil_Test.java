@@ -2,6 +2,7 @@ package com.github.sanity4j.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -77,6 +78,34 @@ public class FileUtil_Test
         }
     }
     
+    @Test
+    public void testCopy() throws IOException
+    {
+        File tempDir = getTempDir();
+        
+        try
+        {
+            File source = new File(tempDir, "source.txt");
+            File original = new File(tempDir, "original.txt");
+            File link = new File(tempDir, "link.txt");
+            FileUtil.writeToFile("source", source);
+            FileUtil.writeToFile("original", original);
+            
+            FileUtil.copy(source, new File(tempDir, "sub/copy.txt"));
+            Assert.assertEquals("Incorrect copy", "source", new String(FileUtil.read(new File(tempDir, "sub/copy.txt")), "UTF-8"));
+            
+            // Copying over a hard link must not modify the file it is linked to
+            Files.createLink(link.toPath(), original.toPath());
+            FileUtil.copy(source, link);
+            Assert.assertEquals("Incorrect copy", "source", new String(FileUtil.read(link), "UTF-8"));
+            Assert.assertEquals("Linked file modified", "original", new String(FileUtil.read(original), "UTF-8"));
+        }
+        finally
+        {
+            FileUtil.delete(tempDir);
+        }
+    }
+    
     private File getTempDir() throws IOException
     {
         // Alternatively, could read system property java.io.tmpdir ...
@@ -0,0 +1,163 @@
+package com.github.sanity4j.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * InProcessJavaRunner_Test - unit tests for InProcessJavaRunner.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class InProcessJavaRunner_Test
+{
+    @Test
+    public void testRunCommandLine() throws Exception
+    {
+        Assume.assumeTrue(InProcessJavaRunner.isAvailable());
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        File testClasses = new File(InProcessJavaRunner_Test.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        List<String> classpath = Arrays.asList(new String[] { testClasses.getPath() });
+
+        String cmdLine = "\"java\" -Xmx64M -cp \"" + testClasses.getPath() + "\" "
+                       + TestProgram.class.getName() + " \"hello world\" 3";
+
+        int result = InProcessJavaRunner.runCommandLine(cmdLine, classpath, stdout, stderr);
+
+        Assert.assertEquals("Incorrect exit code", 3, result);
+        Assert.assertEquals("Incorrect stdout", "hello world", stdout.toString().trim());
+        Assert.assertEquals("Program should have been loaded in its own class loader", "ChildFirstClassLoader", stderr.toString().trim());
+
+        // Exceptions are reported on stderr, as they would be by the VM
+        stdout.reset();
+        stderr.reset();
+        result = InProcessJavaRunner.runMain(classpath, TestProgram.class.getName(), new String[0], stdout, stderr);
+
+        Assert.assertEquals("Incorrect exit code", 1, result);
+        Assert.assertTrue("Exception should have been reported", stderr.toString().contains("ArrayIndexOutOfBoundsException"));
+    }
+
+    @Test
+    public void testVmStateRestored() throws Exception
+    {
+        Assume.assumeTrue(InProcessJavaRunner.isAvailable());
+
+        PrintStream vmOut = System.out;
+        File testClasses = new File(InProcessJavaRunner_Test.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        List<String> classpath = Arrays.asList(new String[] { testClasses.getPath() });
+
+        String cmdLine = "java -Dsanity4j.test.property=a -cp x " + TestProgram.class.getName() + " \"hello world\" 0";
+        int result = InProcessJavaRunner.runCommandLine(cmdLine, classpath, new ByteArrayOutputStream(), new ByteArrayOutputStream());
+
+        Assert.assertEquals("Incorrect exit code", 0, result);
+        Assert.assertSame("System.out should have been restored", vmOut, System.out);
+        Assert.assertNull("SecurityManager should have been removed", System.getSecurityManager());
+        Assert.assertNull("System property should have been cleared", System.getProperty("sanity4j.test.property"));
+    }
+
+    @Test
+    public void testProgramThreadOutput() throws Exception
+    {
+        Assume.assumeTrue(InProcessJavaRunner.isAvailable());
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        File testClasses = new File(InProcessJavaRunner_Test.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        List<String> classpath = Arrays.asList(new String[] { testClasses.getPath() });
+
+        int result = InProcessJavaRunner.runMain(classpath, ThreadedTestProgram.class.getName(),
+                                                 new String[] { "from thread" }, stdout, new ByteArrayOutputStream());
+
+        Assert.assertEquals("Incorrect exit code", 0, result);
+        Assert.assertEquals("Output from the program's thread should be piped", "from thread", stdout.toString().trim());
+    }
+
+    @Test
+    public void testConflictingSystemProperties()
+    {
+        Map<String, String> a = Collections.singletonMap("sanity4j.test.property", "a");
+        Map<String, String> b = Collections.singletonMap("sanity4j.test.property", "b");
+
+        InProcessJavaRunner.acquireSystemProperties(a);
+
+        try
+        {
+            InProcessJavaRunner.acquireSystemProperties(b);
+            Assert.fail("Conflicting system property should not have been set");
+        }
+        catch (InProcessJavaRunner.UnavailableException expected)
+        {
+            Assert.assertEquals("Existing value should be kept", "a", System.getProperty("sanity4j.test.property"));
+        }
+        finally
+        {
+            InProcessJavaRunner.releaseSystemProperties(a);
+        }
+
+        Assert.assertNull("System property should have been cleared", System.getProperty("sanity4j.test.property"));
+    }
+
+    /**
+     * A program which prints its first argument to stdout and its class loader type to stderr,
+     * then exits with the status in its second argument.
+     */
+    public static final class TestProgram
+    {
+        /** Only the main method is used. */
+        private TestProgram()
+        {
+        }
+
+        /**
+         * Runs the test program.
+         * @param args the program arguments.
+         */
+        public static void main(final String[] args)
+        {
+            System.out.println(args[0]);
+            System.err.println(TestProgram.class.getClassLoader().getClass().getSimpleName());
+            System.exit(Integer.parseInt(args[1]));
+        }
+    }
+
+    /**
+     * A program which prints its first argument to stdout from another thread.
+     */
+    public static final class ThreadedTestProgram
+    {
+        /** Only the main method is used. */
+        private ThreadedTestProgram()
+        {
+        }
+
+        /**
+         * Runs the test program.
+         * @param args the program arguments.
+         * @throws InterruptedException if interrupted while waiting for the thread.
+         */
+        public static void main(final String[] args) throws InterruptedException
+        {
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    System.out.println(args[0]);
+                }
+            };
+
+            thread.start();
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.sanity4j.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JavaCommandLine_Test - unit tests for {@link JavaCommandLine}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class JavaCommandLine_Test
+{
+    @Test
+    public void testSplitArguments()
+    {
+        Assert.assertArrayEquals("Quoted arguments should not be split",
+                                 new String[] { "-Xmx1g", "-Dx=a b", "-Dlog=/tmp/my dir/log" },
+                                 JavaCommandLine.splitArguments(" -Xmx1g  -Dx=\"a b\" \"-Dlog=/tmp/my dir/log\" "));
+
+        Assert.assertEquals("Blank command line should not have any arguments", 0, JavaCommandLine.splitArguments("  ").length);
+    }
+
+    @Test
+    public void testParse()
+    {
+        JavaCommandLine cmdLine = JavaCommandLine.parse("\"java\" -cp \"a b.jar\" -Dx=\"a b\" some.Main \"hello world\" 3");
+
+        Assert.assertEquals("Incorrect main class", "some.Main", cmdLine.getMainClass());
+        Assert.assertArrayEquals("Incorrect arguments", new String[] { "hello world", "3" }, cmdLine.getArguments());
+        Assert.assertEquals("Incorrect system property", "a b", cmdLine.getSystemProperties().get("x"));
+    }
+}
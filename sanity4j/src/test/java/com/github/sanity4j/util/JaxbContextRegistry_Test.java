@@ -0,0 +1,82 @@
+package com.github.sanity4j.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JaxbContextRegistry_Test - unit tests for {@link JaxbContextRegistry}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class JaxbContextRegistry_Test
+{
+    /** The package used for testing. */
+    private static final String TARGET_PACKAGE = "com.github.sanity4j.gen.checkstyle_4_4";
+
+    @Test
+    public void testContextCreatedOnce() throws Exception
+    {
+        final ClassLoader loader = getClass().getClassLoader();
+        final List<JAXBContext> contexts = Collections.synchronizedList(new ArrayList<JAXBContext>());
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < 4; i++)
+        {
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        contexts.add(JaxbContextRegistry.getContext(TARGET_PACKAGE, loader));
+                    }
+                    catch (JAXBException e)
+                    {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+
+            thread.start();
+            threads.add(thread);
+        }
+
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        Assert.assertEquals("Incorrect number of contexts", 4, contexts.size());
+
+        for (JAXBContext context : contexts)
+        {
+            Assert.assertSame("Context should be shared", JaxbContextRegistry.getContext(TARGET_PACKAGE, loader), context);
+        }
+    }
+
+    @Test
+    public void testUnmarshallersPooled() throws JAXBException
+    {
+        ClassLoader loader = getClass().getClassLoader();
+
+        Unmarshaller first = JaxbContextRegistry.acquireUnmarshaller(TARGET_PACKAGE, loader);
+        Unmarshaller second = JaxbContextRegistry.acquireUnmarshaller(TARGET_PACKAGE, loader);
+        Assert.assertNotSame("Unmarshallers in use should not be shared", first, second);
+
+        JaxbContextRegistry.releaseUnmarshaller(TARGET_PACKAGE, loader, first);
+        Assert.assertSame("Released unmarshaller should be reused", first, JaxbContextRegistry.acquireUnmarshaller(TARGET_PACKAGE, loader));
+
+        JaxbContextRegistry.releaseUnmarshaller(TARGET_PACKAGE, loader, first);
+        JaxbContextRegistry.releaseUnmarshaller(TARGET_PACKAGE, loader, second);
+    }
+}
@@ -5,6 +5,11 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.events.StartElement;
+
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -122,4 +127,37 @@ public class JaxbMarshaller_Test
         Assert.assertEquals("Incorrect number of errors unmarshalled",
                      3, errors.size());
     }
+
+    @Test
+    public void testTraverse() throws IOException
+    {
+        FileUtil.writeToFile(XML, tempFile);
+
+        final List<String> columns = new ArrayList<String>();
+
+        JaxbMarshaller.traverse(tempFile, TARGET_PACKAGE, "http://com.github.sanity4j/namespace/checkstyle-4.4", new StartElementListener()
+        {
+            public void foundElement(final StartElement element, final XMLEventReader reader, final Unmarshaller unmarshaller) throws JAXBException
+            {
+                if ("error".equals(element.getName().getLocalPart()))
+                {
+                    com.github.sanity4j.gen.checkstyle_4_4.Error error =
+                        unmarshaller.unmarshal(reader, com.github.sanity4j.gen.checkstyle_4_4.Error.class).getValue();
+                    columns.add(error.getColumn().toString());
+                }
+            }
+        });
+
+        Assert.assertEquals("Incorrect errors unmarshalled", "[53, 67, 69]", columns.toString());
+    }
+
+    @Test
+    public void testUnmarshallEmptyRoot() throws IOException
+    {
+        FileUtil.writeToFile("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<checkstyle version=\"4.4\"/>", tempFile);
+
+        Checkstyle checkStyle = (Checkstyle) JaxbMarshaller.unmarshal(tempFile, TARGET_PACKAGE, "http://com.github.sanity4j/namespace/checkstyle-4.4");
+        Assert.assertEquals("Incorrect version field value unmarshalled", new BigDecimal("4.4"), checkStyle.getVersion());
+        Assert.assertTrue("Should not contain any files", checkStyle.getFile().isEmpty());
+    }
 }
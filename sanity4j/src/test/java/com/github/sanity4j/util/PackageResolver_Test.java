@@ -0,0 +1,87 @@
+package com.github.sanity4j.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * PackageResolver_Test - unit tests for {@link PackageResolver}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class PackageResolver_Test
+{
+    /** The directory containing the test files. */
+    private File testDir;
+
+    @Before
+    public void setUp()
+    {
+        testDir = new File(System.getProperty("java.io.tmpdir"), "sanity4j-package-test-" + System.currentTimeMillis());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtil.delete(testDir);
+    }
+
+    @Test
+    public void testGetPackageForSourceFile() throws IOException
+    {
+        File file = new File(testDir, "A.java");
+
+        FileUtil.writeToFile("/* package x; */\r\n// package y;\r\npackage a.b_c.d1;\r\nclass A {}", file);
+        Assert.assertEquals("Incorrect package", "a.b_c.d1", PackageResolver.getPackageForSourceFile(file));
+
+        FileUtil.writeToFile("class A { String s = \"x\"; }", file);
+        Assert.assertNull("Default package should be null", PackageResolver.getPackageForSourceFile(file));
+    }
+
+    @Test
+    public void testGetPackageForClassFile() throws URISyntaxException, IOException
+    {
+        File classDir = new File(PackageResolver.class.getResource("PackageResolver.class").toURI()).getParentFile();
+        List<File> classFiles = new ArrayList<File>();
+
+        for (File file : classDir.listFiles())
+        {
+            if (file.getName().endsWith(".class"))
+            {
+                classFiles.add(file);
+            }
+        }
+
+        Assert.assertFalse("No classes found", classFiles.isEmpty());
+
+        for (File file : classFiles)
+        {
+            String expected = new ClassParser(file.getPath()).parse().getPackageName();
+            Assert.assertEquals("Incorrect package for " + file.getName(), expected, PackageResolver.getPackageForClassFile(file));
+        }
+    }
+
+    @Test
+    public void testCachedResultUpdated() throws IOException
+    {
+        File file = new File(testDir, "A.java");
+        FileUtil.writeToFile("package a;", file);
+
+        List<File> files = new ArrayList<File>();
+        files.add(file);
+        PackageResolver.resolveAll(files);
+        Assert.assertEquals("Incorrect package", "a", PackageResolver.getPackage(file));
+
+        FileUtil.writeToFile("package bb;", file);
+        Assert.assertEquals("Changed file should be read again", "bb", PackageResolver.getPackage(file));
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.sanity4j.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.sanity4j.model.coverage.ClassCoverage;
+import com.github.sanity4j.model.coverage.Coverage;
+import com.github.sanity4j.model.coverage.PackageCoverage;
+import com.github.sanity4j.model.diagnostic.Diagnostic;
+import com.github.sanity4j.model.diagnostic.DiagnosticSet;
+
+/**
+ * PackageTree_Test - unit tests for {@link PackageTree}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class PackageTree_Test
+{
+    @Test
+    public void testRollUp()
+    {
+        Map<String, Integer> lineCounts = new HashMap<String, Integer>();
+        lineCounts.put("a", 10);
+        lineCounts.put("a.b", 20);
+        lineCounts.put("a.b.c", 40);
+        lineCounts.put("x.y", 80);
+
+        Map<String, Integer> classCounts = new HashMap<String, Integer>();
+        classCounts.put("a", 1);
+        classCounts.put("a.b", 2);
+        classCounts.put("a.b.c", 3);
+        classCounts.put("x.y", 4);
+
+        ClassCoverage classCoverage = new ClassCoverage("a.b.C");
+        classCoverage.addLineCoverage(1, 1, false);
+        classCoverage.addLineCoverage(2, 0, false);
+        PackageCoverage packageCoverage = new PackageCoverage("a.b");
+        packageCoverage.addClass(classCoverage);
+        Coverage coverage = new Coverage();
+        coverage.addPackage(packageCoverage);
+
+        DiagnosticSet diagnostics = new DiagnosticSet();
+        diagnostics.add(createDiagnostic("a.A", Diagnostic.SEVERITY_HIGH));
+        diagnostics.add(createDiagnostic("a.b.c.C", Diagnostic.SEVERITY_HIGH));
+        diagnostics.add(createDiagnostic("a.b.c.C", Diagnostic.SEVERITY_LOW));
+        diagnostics.add(createDiagnostic("a.gen.G", Diagnostic.SEVERITY_LOW));
+
+        PackageTree tree = new PackageTree(lineCounts, classCounts, coverage, diagnostics);
+        PackageTree.Node root = tree.getRoot();
+
+        Assert.assertEquals("Incorrect total line count", 150, root.getLineCount(true));
+        Assert.assertEquals("Incorrect total class count", 10, root.getClassCount(true));
+        Assert.assertEquals("Incorrect total count", 4, root.getCountForSeverity(Diagnostic.SEVERITY_ALL, true));
+        Assert.assertSame("Incorrect root coverage", coverage, root.getCoverage());
+        Assert.assertEquals("Incorrect number of top-level packages", 2, root.getChildren().size());
+        Assert.assertEquals("Children should be sorted", "a", root.getChildren().get(0).getName());
+
+        PackageTree.Node a = tree.getNode("a");
+        Assert.assertEquals("Incorrect direct line count", 10, a.getLineCount(false));
+        Assert.assertEquals("Incorrect rolled-up line count", 70, a.getLineCount(true));
+        Assert.assertEquals("Incorrect rolled-up class count", 6, a.getClassCount(true));
+        Assert.assertEquals("Incorrect direct high count", 1, a.getCountForSeverity(Diagnostic.SEVERITY_HIGH, false));
+        Assert.assertEquals("Incorrect rolled-up high count", 2, a.getCountForSeverity(Diagnostic.SEVERITY_HIGH, true));
+        Assert.assertEquals("Incorrect rolled-up low count", 2, a.getCountForSeverity(Diagnostic.SEVERITY_LOW, true));
+        Assert.assertNull("Package should not have coverage", a.getCoverage());
+        Assert.assertEquals("Incorrect direct executable lines", 0, a.getExecutableLineCount(false));
+        Assert.assertEquals("Incorrect rolled-up executable lines", 2, a.getExecutableLineCount(true));
+        Assert.assertEquals("Incorrect rolled-up covered lines", 1, a.getCoveredLineCount(true));
+
+        PackageTree.Node x = tree.getNode("x");
+        Assert.assertNotNull("Intermediate package missing", x);
+        Assert.assertEquals("Incorrect intermediate line count", 80, x.getLineCount(true));
+        Assert.assertSame("Incorrect parent", x, tree.getNode("x.y").getParent());
+        Assert.assertNull("Unknown package should not have a node", tree.getNode("z"));
+    }
+
+    /**
+     * Creates a diagnostic for testing.
+     *
+     * @param className the class name.
+     * @param severity the severity.
+     * @return a new diagnostic.
+     */
+    private static Diagnostic createDiagnostic(final String className, final int severity)
+    {
+        Diagnostic diagnostic = new Diagnostic();
+        diagnostic.setClassName(className);
+        diagnostic.setFileName(className.replace('.', '/') + ".java");
+        diagnostic.setSeverity(severity);
+        return diagnostic;
+    }
+}
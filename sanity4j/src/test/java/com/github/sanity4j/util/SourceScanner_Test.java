@@ -0,0 +1,102 @@
+package com.github.sanity4j.util;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.sanity4j.workflow.FileFingerprints;
+
+/**
+ * SourceScanner_Test - unit tests for {@link SourceScanner}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class SourceScanner_Test
+{
+    /** The directory containing the test files. */
+    private File testDir;
+
+    @Before
+    public void setUp()
+    {
+        testDir = new File(System.getProperty("java.io.tmpdir"), "sanity4j-scanner-test-" + System.currentTimeMillis());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtil.delete(testDir);
+    }
+
+    @Test
+    public void testScan() throws IOException
+    {
+        File file = new File(testDir, "A.java");
+        String source = "/* package x; */\r\npackage a.b;\r\n\r\nclass A {}";
+        FileUtil.writeToFile(source, file);
+
+        SourceScanner scanner = new SourceScanner(true);
+        SourceMetadata metadata = scanner.scan(file);
+        Assert.assertEquals("Incorrect line count", 4, metadata.getLineCount());
+        Assert.assertEquals("Incorrect package", "a.b", metadata.getPackageName());
+        Assert.assertEquals("Incorrect hash", FileFingerprints.hash(source), metadata.getHash());
+        Assert.assertSame("Metadata should be cached", metadata, scanner.scan(file));
+        Assert.assertNotSame("Metadata should not be shared between scanners", metadata, new SourceScanner(true).scan(file));
+
+        FileUtil.writeToFile("", file);
+        Assert.assertEquals("Empty file should not have any lines", 0, scanner.scan(file).getLineCount());
+    }
+
+    @Test
+    public void testScanWithoutHash() throws IOException
+    {
+        File file = new File(testDir, "A.java");
+        FileUtil.writeToFile("package a;\nclass A {}", file);
+
+        SourceMetadata metadata = new SourceScanner(false).scan(file);
+        Assert.assertEquals("Incorrect line count", 2, metadata.getLineCount());
+        Assert.assertEquals("Incorrect package", "a", metadata.getPackageName());
+        Assert.assertNull("Contents should not be hashed", metadata.getHash());
+    }
+
+    @Test
+    public void testScanLargeFile() throws IOException
+    {
+        StringBuilder source = new StringBuilder("package big;\n");
+
+        for (int i = 0; i < 20000; i++)
+        {
+            source.append("    // Line ").append(i).append('\n');
+        }
+
+        File file = new File(testDir, "Big.java");
+        FileUtil.writeToFile(source.toString(), file);
+
+        SourceMetadata metadata = new SourceScanner(true).scan(file);
+        Assert.assertEquals("Incorrect line count", 20002, metadata.getLineCount());
+        Assert.assertEquals("Incorrect package", "big", metadata.getPackageName());
+        Assert.assertEquals("Incorrect hash", FileFingerprints.hash(source.toString()), metadata.getHash());
+    }
+
+    @Test
+    public void testCopied() throws IOException
+    {
+        File file = new File(testDir, "A.java");
+        File copy = new File(testDir, "copy/A.java");
+        FileUtil.writeToFile("package a;\nclass A {}\n", file);
+
+        SourceScanner scanner = new SourceScanner(true);
+        SourceMetadata metadata = scanner.scan(file);
+        FileUtil.copy(file, copy);
+        scanner.copied(file, copy);
+
+        SourceMetadata copyMetadata = scanner.scan(copy);
+        Assert.assertEquals("Incorrect copied hash", metadata.getHash(), copyMetadata.getHash());
+        Assert.assertEquals("Incorrect copied line count", 3, copyMetadata.getLineCount());
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.sanity4j.util.math;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * CompiledExpression_Test - unit tests for {@link CompiledExpression}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class CompiledExpression_Test
+{
+    /** Tolerance for comparing results. */
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testMatchesInterpretedEvaluation() throws SyntaxException
+    {
+        String[] expressions =
+        {
+            "(12.34-(2+3.3)*4/3)^2",
+            "-#a + #b * -2",
+            "2^3^2",
+            "1.0 - ((#a * 100.0 + #b * 20.0) / #c)",
+        };
+
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("a", 3);
+        variables.put("b", 7);
+        variables.put("c", 1000);
+        double[] values = { 3, 7, 1000 };
+
+        for (String expression : expressions)
+        {
+            InfixExpression infix = new InfixExpression(expression);
+            CompiledExpression compiled = infix.compile("a", "b", "c");
+
+            Assert.assertEquals("Incorrect result for " + expression, infix.evaluate(variables), compiled.evaluate(values), DELTA);
+        }
+    }
+
+    @Test
+    public void testBatchEvaluation() throws SyntaxException
+    {
+        CompiledExpression compiled = new InfixExpression("#x * 2 + #y").compile("x", "y");
+        double[] results = new double[3];
+        compiled.evaluate(new double[] { 1, 1, 2, 0, 3, -1 }, results);
+
+        Assert.assertEquals("Incorrect variable count", 2, compiled.getVariableCount());
+        Assert.assertEquals("Incorrect result for row 0", 3.0, results[0], DELTA);
+        Assert.assertEquals("Incorrect result for row 1", 4.0, results[1], DELTA);
+        Assert.assertEquals("Incorrect result for row 2", 5.0, results[2], DELTA);
+    }
+
+    @Test
+    public void testInvalidExpressions()
+    {
+        String[] expressions = { "#unknown + 1", "1 +", "abc" };
+
+        for (String expression : expressions)
+        {
+            try
+            {
+                new InfixExpression(expression).compile("x");
+                Assert.fail("Should have failed to compile " + expression);
+            }
+            catch (SyntaxException expected)
+            {
+                Assert.assertNotNull("Missing message", expected.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.sanity4j.workflow;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.sanity4j.util.FileUtil;
+
+/**
+ * AbstractFileCollector_Test - unit tests for {@link AbstractFileCollector}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class AbstractFileCollector_Test
+{
+    /** The directory containing the test files. */
+    private File testDir;
+
+    /** The configuration used for the runs. */
+    private QAConfig config;
+
+    @Before
+    public void setUp()
+    {
+        testDir = new File(System.getProperty("java.io.tmpdir"), "sanity4j-collector-test-" + System.currentTimeMillis());
+        config = new QAConfig();
+        config.setWorkspaceDir(new File(testDir, "workspace").getPath());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtil.delete(testDir);
+    }
+
+    @Test
+    public void testSynchronizeWorkspace() throws IOException
+    {
+        File srcA = new File(testDir, "src/A.java");
+        File srcB = new File(testDir, "src/B.java");
+        FileUtil.writeToFile("package a; class A {}", srcA);
+        FileUtil.writeToFile("package b; class B {}", srcB);
+        config.addSourcePath(srcA.getParent());
+
+        new SourceFileCollector(config).run();
+
+        File destA = new File(config.getCombinedSourceDir(), "a/A.java");
+        File destB = new File(config.getCombinedSourceDir(), "b/B.java");
+        Assert.assertTrue("A should have been collected", destA.exists());
+        Assert.assertTrue("B should have been collected", destB.exists());
+        Assert.assertEquals("Modification time should be kept", srcA.lastModified(), destA.lastModified());
+
+        // Mark the unchanged file so that we can tell it was left alone
+        FileUtil.writeToFile("package a; class X {}", destA);
+        destA.setLastModified(srcA.lastModified());
+
+        srcB.delete();
+        File srcC = new File(testDir, "src/C.java");
+        FileUtil.writeToFile("package a; class C {}", srcC);
+
+        new SourceFileCollector(config).run();
+
+        Assert.assertEquals("Unchanged file should not be copied", "package a; class X {}", read(destA));
+        Assert.assertFalse("Stale file should be removed", destB.exists());
+        Assert.assertFalse("Empty package should be removed", destB.getParentFile().exists());
+        Assert.assertEquals("New file should be collected", "package a; class C {}", read(new File(config.getCombinedSourceDir(), "a/C.java")));
+    }
+
+    /**
+     * Reads a file.
+     *
+     * @param file the file to read.
+     * @return the contents of the file.
+     * @throws IOException if there is an error reading the file.
+     */
+    private static String read(final File file) throws IOException
+    {
+        return new String(FileUtil.read(file), "UTF-8");
+    }
+}
@@ -0,0 +1,222 @@
+package com.github.sanity4j.workflow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.sanity4j.util.QAException;
+
+/**
+ * WorkUnitGraph_Test - unit tests for {@link WorkUnitGraph}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class WorkUnitGraph_Test
+{
+    /** Maximum time to wait for a latch, in seconds. */
+    private static final int TIMEOUT = 10;
+
+    @After
+    public void tearDown()
+    {
+        WorkUnitGroup.setMaxThreads(1);
+    }
+
+    @Test
+    public void testDependencyOrdering()
+    {
+        WorkUnitGroup.setMaxThreads(1);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        WorkUnitGraph graph = new WorkUnitGraph("dependencies");
+
+        // Added in reverse order, but must run in dependency order
+        graph.add(new RecordingWorkUnit(order, "c"), new String[] { "b" }, null);
+        graph.add(new RecordingWorkUnit(order, "b"), new String[] { "a", "external" }, new String[] { "b" });
+        graph.add(new RecordingWorkUnit(order, "a"), null, new String[] { "a" });
+
+        graph.run();
+
+        Assert.assertEquals("Incorrect execution order", "[a, b, c]", order.toString());
+    }
+
+    @Test
+    public void testLongestFirst()
+    {
+        WorkUnitGroup.setMaxThreads(1);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        WorkUnit quick = new RecordingWorkUnit(order, "quick");
+        WorkUnit slow = new RecordingWorkUnit(order, "slow");
+        WorkUnit reader = new RecordingWorkUnit(order, "reader");
+
+        WorkUnitTimings timings = new WorkUnitTimings();
+        timings.record(quick, 10);
+        timings.record(slow, 1000);
+
+        WorkUnitGraph graph = new WorkUnitGraph("priorities");
+        graph.setTimings(timings);
+        graph.add(quick, null, null);
+        graph.add(slow, null, new String[] { "slowResult" });
+        graph.add(reader, new String[] { "slowResult" }, null);
+
+        graph.run();
+
+        Assert.assertEquals("Incorrect execution order", "[slow, quick, reader]", order.toString());
+    }
+
+    @Test
+    public void testIndependentWorkRunsConcurrently()
+    {
+        WorkUnitGroup.setMaxThreads(2);
+
+        // The two latch units wait for each other, so this would never complete unless they run concurrently.
+        final CountDownLatch latch = new CountDownLatch(2);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        WorkUnitGraph graph = new WorkUnitGraph("concurrent");
+
+        graph.add(new RecordingWorkUnit(order, "a"), null, new String[] { "a" });
+        graph.add(new LatchWorkUnit(latch), new String[] { "a" }, null);
+        graph.add(new LatchWorkUnit(latch), null, null);
+
+        graph.run();
+
+        Assert.assertEquals("Incorrect execution order", "[a]", order.toString());
+    }
+
+    @Test
+    public void testCycleDetection()
+    {
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        WorkUnitGraph graph = new WorkUnitGraph("cyclic");
+
+        graph.add(new RecordingWorkUnit(order, "a"), new String[] { "b" }, new String[] { "a" });
+        graph.add(new RecordingWorkUnit(order, "b"), new String[] { "a" }, new String[] { "b" });
+
+        try
+        {
+            graph.run();
+            Assert.fail("Should have thrown a QAException");
+        }
+        catch (QAException expected)
+        {
+            Assert.assertTrue("No work should have been run", order.isEmpty());
+        }
+    }
+
+    @Test
+    public void testFailurePropagation()
+    {
+        WorkUnitGroup.setMaxThreads(1);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        WorkUnitGraph graph = new WorkUnitGraph("failing");
+
+        graph.add(new TestWorkUnit("fail")
+        {
+            public void run()
+            {
+                throw new QAException("expected");
+            }
+        }, null, new String[] { "a" });
+
+        graph.add(new RecordingWorkUnit(order, "b"), new String[] { "a" }, null);
+
+        try
+        {
+            graph.run();
+            Assert.fail("Should have thrown a QAException");
+        }
+        catch (QAException e)
+        {
+            Assert.assertEquals("Incorrect exception propagated", "expected", e.getMessage());
+        }
+
+        Assert.assertTrue("Dependent work should not have been run", order.isEmpty());
+    }
+
+    /** A WorkUnit with a fixed description. */
+    private abstract static class TestWorkUnit implements WorkUnit
+    {
+        /** The description of the unit. */
+        private final String description;
+
+        /**
+         * Creates a TestWorkUnit.
+         * @param description the description of the unit.
+         */
+        TestWorkUnit(final String description)
+        {
+            this.description = description;
+        }
+
+        /** {@inheritDoc} */
+        public String getDescription()
+        {
+            return description;
+        }
+    }
+
+    /** A WorkUnit which records its description when run. */
+    private static final class RecordingWorkUnit extends TestWorkUnit
+    {
+        /** The list to record to. */
+        private final List<String> order;
+
+        /**
+         * Creates a RecordingWorkUnit.
+         * @param order the list to record to.
+         * @param description the description of the unit.
+         */
+        RecordingWorkUnit(final List<String> order, final String description)
+        {
+            super(description);
+            this.order = order;
+        }
+
+        /** Records the description. */
+        public void run()
+        {
+            order.add(getDescription());
+        }
+    }
+
+    /** A WorkUnit which waits for the other units sharing its latch. */
+    private static final class LatchWorkUnit extends TestWorkUnit
+    {
+        /** The latch to wait on. */
+        private final CountDownLatch latch;
+
+        /**
+         * Creates a LatchWorkUnit.
+         * @param latch the latch to wait on.
+         */
+        LatchWorkUnit(final CountDownLatch latch)
+        {
+            super("latch");
+            this.latch = latch;
+        }
+
+        /** Waits for the other units. */
+        public void run()
+        {
+            latch.countDown();
+
+            try
+            {
+                Assert.assertTrue("Units were not run concurrently", latch.await(TIMEOUT, TimeUnit.SECONDS));
+            }
+            catch (InterruptedException e)
+            {
+                Assert.fail("Interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.github.sanity4j.workflow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.sanity4j.util.QAException;
+
+/**
+ * WorkUnitGroup_Test - unit tests for {@link WorkUnitGroup}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class WorkUnitGroup_Test
+{
+    /** Maximum time to wait for a latch, in seconds. */
+    private static final int TIMEOUT = 10;
+
+    @After
+    public void tearDown()
+    {
+        WorkUnitGroup.setMaxThreads(1);
+    }
+
+    @Test
+    public void testSequentialOrdering()
+    {
+        WorkUnitGroup.setMaxThreads(4);
+
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        WorkUnitGroup group = new WorkUnitGroup("sequential");
+
+        for (int i = 0; i < 10; i++)
+        {
+            group.add(new RecordingWorkUnit(order, i));
+        }
+
+        group.run();
+
+        for (int i = 0; i < 10; i++)
+        {
+            Assert.assertEquals("Incorrect execution order", Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentExecution()
+    {
+        WorkUnitGroup.setMaxThreads(2);
+
+        // Each unit waits for the other, so this would never complete if run sequentially.
+        final CountDownLatch latch = new CountDownLatch(2);
+        WorkUnitGroup group = new WorkUnitGroup(true, "concurrent");
+
+        for (int i = 0; i < 2; i++)
+        {
+            group.add(new TestWorkUnit()
+            {
+                public void run()
+                {
+                    latch.countDown();
+
+                    try
+                    {
+                        Assert.assertTrue("Units were not run concurrently", latch.await(TIMEOUT, TimeUnit.SECONDS));
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Assert.fail("Interrupted");
+                    }
+                }
+            });
+        }
+
+        group.run();
+    }
+
+    @Test
+    public void testMaxThreadsIsPerRun() throws InterruptedException
+    {
+        WorkUnitGroup.setMaxThreads(1);
+
+        // Another run in the same VM must not change this run's limit
+        Thread otherRun = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                WorkUnitGroup.setMaxThreads(4);
+            }
+        };
+
+        otherRun.start();
+        otherRun.join();
+
+        final Thread caller = Thread.currentThread();
+        final AtomicBoolean inline = new AtomicBoolean(true);
+        WorkUnitGroup group = new WorkUnitGroup(true, "per run");
+
+        for (int i = 0; i < 4; i++)
+        {
+            group.add(new TestWorkUnit()
+            {
+                public void run()
+                {
+                    if (Thread.currentThread() != caller)
+                    {
+                        inline.set(false);
+                    }
+                }
+            });
+        }
+
+        group.run();
+        Assert.assertTrue("Work should have been run on the calling thread", inline.get());
+    }
+
+    @Test
+    public void testSingleThreadRunsInline()
+    {
+        WorkUnitGroup.setMaxThreads(1);
+
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final Thread caller = Thread.currentThread();
+        WorkUnitGroup group = new WorkUnitGroup(true, "concurrent, one thread");
+
+        for (int i = 0; i < 5; i++)
+        {
+            final int index = i;
+
+            group.add(new TestWorkUnit()
+            {
+                public void run()
+                {
+                    Assert.assertSame("Should run on the calling thread", caller, Thread.currentThread());
+                    order.add(index);
+                }
+            });
+        }
+
+        group.run();
+        Assert.assertEquals("Incorrect number of units run", 5, order.size());
+    }
+
+    @Test
+    public void testFailurePropagation()
+    {
+        WorkUnitGroup.setMaxThreads(2);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean(false);
+        WorkUnitGroup group = new WorkUnitGroup(true, "failing");
+
+        // This unit is handed to a worker thread, and blocks until cancelled.
+        group.add(new TestWorkUnit()
+        {
+            public void run()
+            {
+                started.countDown();
+
+                try
+                {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT));
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted.set(true);
+
+                    // Take a while to stop, so that the group must wait for this unit
+                    long stop = System.currentTimeMillis() + 200;
+
+                    while (System.currentTimeMillis() < stop)
+                    {
+                        Thread.yield();
+                    }
+                }
+
+                finished.countDown();
+            }
+        });
+
+        // This unit runs on the calling thread, and fails.
+        group.add(new TestWorkUnit()
+        {
+            public void run()
+            {
+                try
+                {
+                    started.await(TIMEOUT, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Assert.fail("Interrupted");
+                }
+
+                throw new QAException("expected");
+            }
+        });
+
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        group.add(new RecordingWorkUnit(order, 1));
+
+        try
+        {
+            group.run();
+            Assert.fail("Should have thrown a QAException");
+        }
+        catch (QAException e)
+        {
+            Assert.assertEquals("Incorrect exception propagated", "expected", e.getMessage());
+        }
+
+        Assert.assertEquals("Cancelled unit should have stopped before the failure was reported", 0, finished.getCount());
+
+        Assert.assertTrue("Running unit should have been cancelled", interrupted.get());
+        Assert.assertTrue("Remaining units should not have been started", order.isEmpty());
+    }
+
+    /** A WorkUnit with a fixed description. */
+    private abstract static class TestWorkUnit implements WorkUnit
+    {
+        /** {@inheritDoc} */
+        public String getDescription()
+        {
+            return "test";
+        }
+    }
+
+    /** A WorkUnit which records its index when run. */
+    private static final class RecordingWorkUnit extends TestWorkUnit
+    {
+        /** The list to record to. */
+        private final List<Integer> order;
+
+        /** The index to record. */
+        private final int index;
+
+        /**
+         * Creates a RecordingWorkUnit.
+         * @param order the list to record to.
+         * @param index the index to record.
+         */
+        RecordingWorkUnit(final List<Integer> order, final int index)
+        {
+            this.order = order;
+            this.index = index;
+        }
+
+        /** Records the index. */
+        public void run()
+        {
+            order.add(index);
+        }
+    }
+}
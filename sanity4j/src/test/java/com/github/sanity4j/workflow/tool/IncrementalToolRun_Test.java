@@ -0,0 +1,275 @@
+package com.github.sanity4j.workflow.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.sanity4j.model.diagnostic.Diagnostic;
+import com.github.sanity4j.util.ExtractStats;
+import com.github.sanity4j.util.FileUtil;
+import com.github.sanity4j.util.SourceScanner;
+import com.github.sanity4j.util.Tool;
+import com.github.sanity4j.workflow.FileFingerprints;
+import com.github.sanity4j.workflow.QAConfig;
+
+/**
+ * IncrementalToolRun_Test - unit tests for {@link IncrementalToolRun}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class IncrementalToolRun_Test
+{
+    /** The configuration used for the runs. */
+    private QAConfig config;
+
+    /** The directory containing the sources being analysed. */
+    private File sourceDir;
+
+    @Before
+    public void setUp()
+    {
+        config = new QAConfig();
+        config.setTempDir(new File(System.getProperty("java.io.tmpdir"), "sanity4j-incremental-test-" + System.currentTimeMillis()));
+        config.setResultCacheDir(new File(config.getTempDir(), "cache").getPath());
+        sourceDir = config.getCombinedSourceDir();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtil.delete(config.getTempDir());
+    }
+
+    @Test
+    public void testOnlyChangedFilesAnalysed() throws IOException
+    {
+        FileUtil.writeToFile("one", new File(sourceDir, "a/A.java"));
+        FileUtil.writeToFile("two", new File(sourceDir, "a/B.java"));
+
+        List<String> analysed = new ArrayList<String>();
+        Assert.assertEquals("Incorrect first run", "[A.java: one, B.java: two]", run(analysed));
+        Assert.assertEquals("All files should be analysed on the first run", "[A.java, B.java]", analysed.toString());
+
+        FileUtil.writeToFile("three", new File(sourceDir, "a/B.java"));
+        analysed.clear();
+        Assert.assertEquals("Incorrect second run", "[A.java: one, B.java: three]", run(analysed));
+        Assert.assertEquals("Only the changed file should be analysed", "[B.java]", analysed.toString());
+
+        analysed.clear();
+        Assert.assertEquals("Incorrect third run", "[A.java: one, B.java: three]", run(analysed));
+        Assert.assertEquals("No files should be analysed", "[]", analysed.toString());
+    }
+
+    @Test
+    public void testConfigurationChangeInvalidatesCache() throws IOException
+    {
+        FileUtil.writeToFile("one", new File(sourceDir, "a/A.java"));
+
+        List<String> analysed = new ArrayList<String>();
+        run(analysed);
+
+        config.setToolProperty("sanity4j.test.incremental", "changed");
+        analysed.clear();
+        run(analysed);
+        Assert.assertEquals("Files should be analysed again", "[A.java]", analysed.toString());
+    }
+
+    @Test
+    public void testReferencedConfigurationChangeInvalidatesCache() throws IOException
+    {
+        FileUtil.writeToFile("one", new File(sourceDir, "a/A.java"));
+
+        File configDir = new File(config.getTempDir(), "config");
+        File suppressions = new File(configDir, "suppressions.xml");
+        FileUtil.writeToFile("<suppressions/>", suppressions);
+        FileUtil.writeToFile("<module name=\"SuppressionFilter\"><property name=\"file\" value=\"${config_loc}/suppressions.xml\"/></module>",
+                             new File(configDir, "checkstyle.xml"));
+        config.setToolConfig(Tool.CHECKSTYLE.getId(), "7.7", new File(configDir, "checkstyle.xml").getPath(), null);
+
+        List<String> analysed = new ArrayList<String>();
+        run(analysed);
+
+        analysed.clear();
+        run(analysed);
+        Assert.assertEquals("No files should be analysed", "[]", analysed.toString());
+
+        FileUtil.writeToFile("<suppressions><suppress checks=\".*\" files=\"A.java\"/></suppressions>", suppressions);
+        analysed.clear();
+        run(analysed);
+        Assert.assertEquals("Files should be analysed again", "[A.java]", analysed.toString());
+    }
+
+    @Test
+    public void testClasspathChangeInvalidatesCache() throws IOException
+    {
+        FileUtil.writeToFile("one", new File(sourceDir, "a/A.java"));
+        FileUtil.writeToFile("rules", getToolJar());
+
+        List<String> analysed = new ArrayList<String>();
+        run(analysed);
+
+        FileUtil.writeToFile("more rules", getToolJar());
+        analysed.clear();
+        run(analysed);
+        Assert.assertEquals("Files should be analysed again", "[A.java]", analysed.toString());
+    }
+
+    /**
+     * @return the jar which the test tool is run with.
+     */
+    private File getToolJar()
+    {
+        return new File(config.getTempDir(), "lib/tool.jar");
+    }
+
+    /**
+     * Runs the test tool incrementally.
+     *
+     * @param analysed the names of the files which the tool analysed are added to this list.
+     * @return the diagnostic messages, sorted.
+     * @throws IOException if there is an error accessing the files.
+     */
+    private String run(final List<String> analysed) throws IOException
+    {
+        FileFingerprints fingerprints = new FileFingerprints(new SourceScanner(true));
+        fingerprints.record("a/A.java", new File(sourceDir, "a/A.java"));
+
+        if (new File(sourceDir, "a/B.java").exists())
+        {
+            fingerprints.record("a/B.java", new File(sourceDir, "a/B.java"));
+        }
+
+        ExtractStats stats = new ExtractStats(sourceDir.getPath());
+        TestRunner runner = new TestRunner(analysed, getToolJar());
+        runner.setConfig(config);
+        new IncrementalToolRun(config, Tool.CHECKSTYLE, "7.7", runner, new TestReader(), stats, fingerprints).run();
+
+        List<String> messages = new ArrayList<String>();
+
+        for (Diagnostic diagnostic : stats.getDiagnostics())
+        {
+            Assert.assertTrue("Diagnostic should be for combined source", new File(diagnostic.getFileName()).exists());
+            Assert.assertTrue("Diagnostic should be for combined source", diagnostic.getFileName().startsWith(stats.getSourceDirectory()));
+            messages.add(diagnostic.getMessage());
+        }
+
+        Collections.sort(messages);
+        return messages.toString();
+    }
+
+    /**
+     * A runner which records which files it would analyse.
+     */
+    private static final class TestRunner extends AbstractToolRunner
+    {
+        /** The names of the files which were analysed. */
+        private final List<String> analysed;
+
+        /** The jar which the tool is run with. */
+        private final File toolJar;
+
+        /**
+         * Creates a TestRunner.
+         * @param analysed the names of the files which the runner analyses are added to this list.
+         * @param toolJar the jar which the tool is run with.
+         */
+        private TestRunner(final List<String> analysed, final File toolJar)
+        {
+            super(Tool.CHECKSTYLE);
+            this.analysed = analysed;
+            this.toolJar = toolJar;
+        }
+
+        @Override
+        protected List<String> getToolJars()
+        {
+            return Collections.singletonList(toolJar.getPath());
+        }
+
+        @Override
+        public void run()
+        {
+            for (File file : new File(getSourceDir(), "a").listFiles())
+            {
+                analysed.add(file.getName());
+            }
+
+            Collections.sort(analysed);
+        }
+
+        @Override
+        protected void runTool(final String commandLine)
+        {
+            // Not used
+        }
+
+        /** {@inheritDoc} */
+        public String getDescription()
+        {
+            return "Running test tool";
+        }
+    }
+
+    /**
+     * A reader which creates a diagnostic for each source file, containing the file's contents.
+     */
+    private static final class TestReader implements ResultReader
+    {
+        /** The stats to add the results to. */
+        private ExtractStats stats;
+
+        /** {@inheritDoc} */
+        public void setProperties(final Properties properties)
+        {
+            // Not used
+        }
+
+        /** {@inheritDoc} */
+        public void setStats(final ExtractStats stats)
+        {
+            this.stats = stats;
+        }
+
+        /** {@inheritDoc} */
+        public void setResultFile(final File resultFile)
+        {
+            // Not used
+        }
+
+        /** {@inheritDoc} */
+        public void run()
+        {
+            try
+            {
+                for (File file : new File(stats.getSourceDirectory(), "a").listFiles())
+                {
+                    Diagnostic diagnostic = new Diagnostic();
+                    diagnostic.setFileName(stats.getCanonicalPath(file.getPath()));
+                    diagnostic.setSource(Diagnostic.SOURCE_CHECKSTYLE);
+                    diagnostic.setRuleName("TestCheck");
+                    diagnostic.setMessage(file.getName() + ": " + new String(FileUtil.read(file), "UTF-8"));
+                    stats.getDiagnostics().add(diagnostic);
+                }
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /** {@inheritDoc} */
+        public String getDescription()
+        {
+            return "Reading test results";
+        }
+    }
+}
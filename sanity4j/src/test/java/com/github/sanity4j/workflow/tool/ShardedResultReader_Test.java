@@ -0,0 +1,237 @@
+package com.github.sanity4j.workflow.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.sanity4j.model.diagnostic.Diagnostic;
+import com.github.sanity4j.util.ExtractStats;
+import com.github.sanity4j.util.FileUtil;
+import com.github.sanity4j.util.Tool;
+import com.github.sanity4j.workflow.QAConfig;
+
+/**
+ * ShardedResultReader_Test - unit tests for {@link ShardedResultReader} and
+ * the sharding of sources by {@link AbstractToolRunner}.
+ *
+ * @author Yiannis Paschalidis
+ * @since Sanity4J 1.8.2
+ */
+public class ShardedResultReader_Test
+{
+    /** The configuration used for the runs. */
+    private QAConfig config;
+
+    @Before
+    public void setUp()
+    {
+        config = new QAConfig();
+        config.setTempDir(new File(System.getProperty("java.io.tmpdir"), "sanity4j-shard-test-" + System.currentTimeMillis()));
+        config.setToolShards(2);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtil.delete(config.getTempDir());
+    }
+
+    @Test
+    public void testShardedRun() throws IOException
+    {
+        File sourceDir = config.getCombinedSourceDir();
+        FileUtil.writeToFile(repeat(100), new File(sourceDir, "p1/A.java"));
+        FileUtil.writeToFile(repeat(100), new File(sourceDir, "p1/B.java"));
+        FileUtil.writeToFile(repeat(150), new File(sourceDir, "p2/C.java"));
+        FileUtil.writeToFile(repeat(40), new File(sourceDir, "p3/D.java"));
+
+        ShardTestRunner runner = new ShardTestRunner();
+        runner.setConfig(config);
+        runner.setToolVersion("7.7");
+        Assert.assertTrue("Runner should be sharded", runner.isSharded());
+
+        runner.run();
+
+        // Packages are kept together, and assigned largest first to the smallest shard
+        Assert.assertEquals("Incorrect shard count", 2, runner.getShards().size());
+        Assert.assertEquals("Incorrect shard 0", "[p1/A.java, p1/B.java]", listFiles(runner.getShards().get(0)));
+        Assert.assertEquals("Incorrect shard 1", "[p2/C.java, p3/D.java]", listFiles(runner.getShards().get(1)));
+
+        ExtractStats stats = new ExtractStats(sourceDir.getPath());
+        ShardedResultReader reader = new ShardedResultReader(runner, new TestReader());
+        reader.setStats(stats);
+        reader.run();
+
+        List<String> classNames = new ArrayList<String>();
+
+        for (Diagnostic diagnostic : stats.getDiagnostics())
+        {
+            Assert.assertTrue("Diagnostic should be for combined source", diagnostic.getFileName().startsWith(stats.getSourceDirectory()));
+            Assert.assertTrue("Diagnostic file should exist", new File(diagnostic.getFileName()).exists());
+            classNames.add(diagnostic.getClassName());
+        }
+
+        Collections.sort(classNames);
+        Assert.assertEquals("Incorrect diagnostics", "[p1.A, p1.B, p2.C, p3.D]", classNames.toString());
+    }
+
+    /**
+     * Lists the files analysed by a shard.
+     *
+     * @param shard the shard runner.
+     * @return the paths of the files in the shard, relative to the shard directory.
+     * @throws IOException if there is an error reading the shard's result file.
+     */
+    private static String listFiles(final AbstractToolRunner shard) throws IOException
+    {
+        return new String(FileUtil.read(new File(shard.getToolResultFile())), "UTF-8");
+    }
+
+    /**
+     * Creates a string of the given length.
+     *
+     * @param length the length of the string.
+     * @return a string of the given length.
+     */
+    private static String repeat(final int length)
+    {
+        StringBuilder buf = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++)
+        {
+            buf.append('x');
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * A runner which writes the relative paths of the files it would analyse to its result file.
+     */
+    public static final class ShardTestRunner extends AbstractToolRunner
+    {
+        /**
+         * Creates a ShardTestRunner.
+         */
+        public ShardTestRunner()
+        {
+            super(Tool.CHECKSTYLE);
+        }
+
+        @Override
+        protected boolean isShardable()
+        {
+            return true;
+        }
+
+        @Override
+        public void run()
+        {
+            if (isSharded())
+            {
+                super.run();
+                return;
+            }
+
+            List<String> paths = new ArrayList<String>();
+
+            for (File dir : getSourceDir().listFiles())
+            {
+                for (File file : dir.listFiles())
+                {
+                    paths.add(dir.getName() + '/' + file.getName());
+                }
+            }
+
+            Collections.sort(paths);
+
+            try
+            {
+                FileUtil.writeToFile(paths.toString(), new File(getToolResultFile()));
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        protected void runTool(final String commandLine)
+        {
+            // Not used
+        }
+
+        /** {@inheritDoc} */
+        public String getDescription()
+        {
+            return "Running test tool";
+        }
+    }
+
+    /**
+     * A reader which creates a diagnostic for each file listed in the result file.
+     */
+    private static final class TestReader implements ResultReader
+    {
+        /** The stats to add the results to. */
+        private ExtractStats stats;
+
+        /** The result file to read. */
+        private File resultFile;
+
+        /** {@inheritDoc} */
+        public void setProperties(final Properties properties)
+        {
+            // Not used
+        }
+
+        /** {@inheritDoc} */
+        public void setStats(final ExtractStats stats)
+        {
+            this.stats = stats;
+        }
+
+        /** {@inheritDoc} */
+        public void setResultFile(final File resultFile)
+        {
+            this.resultFile = resultFile;
+        }
+
+        /** {@inheritDoc} */
+        public void run()
+        {
+            try
+            {
+                String paths = new String(FileUtil.read(resultFile), "UTF-8");
+
+                for (String path : paths.substring(1, paths.length() - 1).split(", "))
+                {
+                    Diagnostic diagnostic = new Diagnostic();
+                    diagnostic.setFileName(stats.getCanonicalPath(path));
+                    diagnostic.setClassName(stats.getClassNameForSourcePath(diagnostic.getFileName()));
+                    diagnostic.setSource(Diagnostic.SOURCE_CHECKSTYLE);
+                    diagnostic.setRuleName("TestCheck");
+                    stats.getDiagnostics().add(diagnostic);
+                }
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /** {@inheritDoc} */
+        public String getDescription()
+        {
+            return "Reading test results";
+        }
+    }
+}